@@ -4,7 +4,7 @@ import static org.basex.core.Text.*;
 
 import java.io.*;
 import java.net.*;
-import java.util.*;
+import java.nio.channels.*;
 
 import org.basex.api.client.*;
 import org.basex.core.*;
@@ -23,14 +23,14 @@ import org.basex.util.*;
  * @author Andreas Weiler
  */
 public final class BaseXServer extends CLI implements Runnable {
-  /** New sessions. */
-  private final HashSet<ClientListener> authorizing = new HashSet<>();
   /** Indicates if server is running. */
   private volatile boolean running;
   /** Indicates if server is to be stopped. */
   private volatile boolean stop;
   /** Server socket. */
-  private ServerSocket socket;
+  private ServerSocketChannel socket;
+  /** Dispatcher for client sessions. */
+  private ClientDispatcher dispatcher;
   /** Start as service. */
   private boolean service;
   /** Daemon flag. */
@@ -99,9 +99,9 @@ public final class BaseXServer extends CLI implements Runnable {
     }
 
     try {
-      socket = new ServerSocket();
-      socket.setReuseAddress(true);
-      socket.bind(new InetSocketAddress(addr, port));
+      socket = ServerSocketChannel.open();
+      socket.socket().setReuseAddress(true);
+      socket.socket().bind(new InetSocketAddress(addr, port));
       stopFile = stopFile(getClass(), port);
     } catch(final BindException ex) {
       context.log.writeServer(LogType.ERROR, Util.message(ex));
@@ -115,6 +115,8 @@ public final class BaseXServer extends CLI implements Runnable {
       throw new BaseXException(ex.getLocalizedMessage());
     }
 
+    dispatcher = new ClientDispatcher(context);
+    dispatcher.start();
     new Thread(this).start();
 
     // show info that server has been started
@@ -134,33 +136,13 @@ public final class BaseXServer extends CLI implements Runnable {
     running = true;
     while(running) {
       try {
-        final Socket s = socket.accept();
-        s.setTcpNoDelay(true);
+        final SocketChannel s = socket.accept();
         if(stopFile.exists()) {
           close();
         } else {
-          // drop inactive connections
-          final long ka = context.soptions.get(StaticOptions.KEEPALIVE) * 1000L;
-          if(ka > 0) {
-            final long ms = System.currentTimeMillis();
-            for(final ClientListener cs : context.sessions) {
-              if(ms - cs.last > ka) cs.close();
-            }
-          }
-          // create client listener, stop authentication after timeout
-          final ClientListener cl = new ClientListener(s, context, this);
-          if(ka > 0) {
-            cl.timeout.schedule(new TimerTask() {
-              @Override
-              public void run() {
-                cl.close();
-              }
-            }, ka);
-            authorizing.add(cl);
-          }
-          cl.start();
+          dispatcher.accept(s);
         }
-      } catch(final SocketException ex) {
+      } catch(final SocketException | ClosedChannelException ex) {
         Util.debug(ex);
         break;
       } catch(final Throwable ex) {
@@ -188,10 +170,7 @@ public final class BaseXServer extends CLI implements Runnable {
   private synchronized void close() {
     if(!running) return;
 
-    for(final ClientListener cl : authorizing) {
-      remove(cl);
-      cl.close();
-    }
+    dispatcher.close();
     context.sessions.close();
 
     try {
@@ -332,15 +311,4 @@ public final class BaseXServer extends CLI implements Runnable {
     // wait until server was stopped
     do Performance.sleep(10); while(stopFile.exists());
   }
-
-  /**
-   * Removes a client listener that is waiting for authentication.
-   * @param client client to be removed
-   */
-  public void remove(final ClientListener client) {
-    synchronized(authorizing) {
-      client.timeout.cancel();
-      authorizing.remove(client);
-    }
-  }
 }
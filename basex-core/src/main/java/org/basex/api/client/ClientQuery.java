@@ -19,6 +19,15 @@ import org.basex.util.*;
  * client/server architecture. All sent data is received by the
  * {@link ClientListener} and interpreted by the {@link ServerQuery}.
  *
+ * Iterated results are read from the socket one by one, and the server is blocked if the client
+ * consumes them slower than they are generated. If another request is sent via the same session
+ * before all results have been read, the remaining results are cached, unless requests are
+ * multiplexed. As the query is evaluated while its results are being sent, the server keeps the
+ * read locks of the query until the last result has been consumed (or until the query is closed):
+ * a slow consumer will delay updates on the locked databases. The time spent by the client is not
+ * counted against the timeout of the query. If the client does not consume any results within the
+ * keep-alive time, the server closes the connection.
+ *
  * @author BaseX Team 2005-18, BSD License
  * @author Christian Gruen
  */
@@ -59,7 +68,7 @@ public class ClientQuery extends Query {
 
   @Override
   public void bind(final String name, final Object value, final String type) throws IOException {
-    cache = null;
+    drain(false);
 
     final Object vl = value instanceof BXNode ? ((BXNode) value).getNode() : value;
     String t = type == null ? "" : type;
@@ -105,18 +114,23 @@ public class ClientQuery extends Query {
 
   @Override
   public void close() throws IOException {
+    drain(false);
     cs.exec(ServerCmd.CLOSE, id, null);
   }
 
   @Override
   public void cache(final boolean full) throws IOException {
-    cs.sout.write((full ? ServerCmd.FULL : ServerCmd.RESULTS).code);
-    cs.send(id);
-    cs.sout.flush();
-
-    @SuppressWarnings("resource")
-    final BufferInput bi = BufferInput.get(cs.sin);
-    cache(bi, full);
-    if(!ClientSession.ok(bi)) throw new BaseXException(bi.readString());
+    final ClientSession.Request request = cs.request();
+    request.out.write((full ? ServerCmd.FULL : ServerCmd.RESULTS).code);
+    ClientSession.send(id, request.out);
+    results(request.send(), full);
+    // results must be read before the next request is sent, unless requests are multiplexed
+    if(cs.mux == null) cs.receiving = this;
+  }
+
+  @Override
+  void finish(final BufferInput in) throws IOException {
+    cs.receiving = null;
+    if(!ClientSession.ok(in)) throw new BaseXException(in.readString());
   }
 }
@@ -24,6 +24,11 @@ import org.basex.util.*;
  * <li> {@link #close} closes the session by sending the {@link Cmd#EXIT}
  * command to the server.</li>
  * </ul>
+ * If {@link #multiplex()} is called, requests and responses will be sent in frames.
+ * In this mode, a session can be shared by multiple threads, and several queries can be evaluated
+ * in parallel. All requests share the state of the session (opened database, options): other
+ * commands (e.g. OPEN or SET) are executed exclusively by the server. The server stops sending
+ * the data of a response if the client has not consumed the previously received data.
  *
  * @author BaseX Team 2005-18, BSD License
  * @author Christian Gruen
@@ -33,6 +38,12 @@ public class ClientSession extends Session {
   final PrintOutput sout;
   /** Server input. */
   final InputStream sin;
+  /** Query whose results are currently being received (can be {@code null}). */
+  ClientQuery receiving;
+  /** Multiplexer (can be {@code null}). */
+  volatile Multiplexer mux;
+  /** Command infos of the threads that share a multiplexed session. */
+  private final ThreadLocal<String> infos = new ThreadLocal<>();
 
   /** Socket reference. */
   private final Socket socket;
@@ -116,8 +127,8 @@ public class ClientSession extends Session {
 
     // send user name and hashed password
     sout = PrintOutput.get(socket.getOutputStream());
-    send(username);
-    send(Strings.md5(Strings.md5(code) + nonce));
+    send(username, sout);
+    send(Strings.md5(Strings.md5(code) + nonce), sout);
     sout.flush();
 
     // receive success flag
@@ -154,11 +165,48 @@ public class ClientSession extends Session {
     socket.close();
   }
 
+  /**
+   * Enables multiplexing. Afterwards, requests and responses are sent in frames, and the
+   * session can be used by multiple threads. Servers of older versions do not support this mode.
+   * @return {@code true} if multiplexing is supported by the server
+   * @throws IOException I/O exception
+   */
+  @SuppressWarnings("resource")
+  public synchronized boolean multiplex() throws IOException {
+    if(mux == null) {
+      prepare();
+      sout.write(ServerCmd.MULTIPLEX.code);
+      sout.write(0);
+      sout.flush();
+      final BufferInput bi = BufferInput.get(sin);
+      receive(bi, new ArrayOutput());
+      final String msg = bi.readString();
+      if(!ok(bi)) {
+        Util.debug(msg);
+        return false;
+      }
+      final Multiplexer mx = new Multiplexer(sin, sout);
+      mx.start();
+      mux = mx;
+    }
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   * If multiplexing is enabled, the info of the last command of the current thread is returned.
+   */
+  @Override
+  public String info() {
+    final String inf = mux != null ? infos.get() : null;
+    return inf != null ? inf : info;
+  }
+
   @Override
   protected void execute(final String command, final OutputStream output) throws IOException {
-    send(command);
-    sout.flush();
-    receive(output);
+    final Request request = request();
+    send(command, request.out);
+    receive(request.send(), output, true);
   }
 
   @Override
@@ -166,30 +214,20 @@ public class ClientSession extends Session {
     execute(command.toString(), output);
   }
 
-  /**
-   * Sends the specified stream to the server.
-   * @param input input stream
-   * @throws IOException I/O exception
-   */
-  private void send(final InputStream input) throws IOException {
-    final ServerOutput so = new ServerOutput(sout);
-    for(int b; (b = input.read()) != -1;) so.write(b);
-    sout.write(0);
-    sout.flush();
-    receive(null);
-  }
-
   /**
    * Receives the info string.
+   * @param input buffered server input
    * @param output output stream to send result to. If {@code null}, no result will be requested
+   * @param result receive result
    * @throws IOException I/O exception
    */
-  @SuppressWarnings("resource")
-  private void receive(final OutputStream output) throws IOException {
-    final BufferInput bi = BufferInput.get(sin);
-    if(output != null) receive(bi, output);
-    info = bi.readString();
-    if(!ok(bi)) throw new BaseXException(info);
+  private void receive(final BufferInput input, final OutputStream output, final boolean result)
+      throws IOException {
+    if(result) receive(input, output);
+    final String inf = input.readString();
+    info = inf;
+    infos.set(inf);
+    if(!ok(input)) throw new BaseXException(inf);
   }
 
   /**
@@ -212,9 +250,14 @@ public class ClientSession extends Session {
   private void send(final ServerCmd command, final InputStream input, final String... args)
       throws IOException {
 
-    sout.write(command.code);
-    for(final String arg : args) send(arg);
-    send(input);
+    final Request request = request();
+    final PrintOutput po = request.out;
+    po.write(command.code);
+    for(final String arg : args) send(arg, po);
+    final ServerOutput so = new ServerOutput(po);
+    for(int b; (b = input.read()) != -1;) so.write(b);
+    po.write(0);
+    receive(request.send(), null, false);
   }
 
   /**
@@ -228,14 +271,36 @@ public class ClientSession extends Session {
     for(int b; (b = si.read()) != -1;) output.write(b);
   }
 
+  /**
+   * Reads the remaining results of an iterated query before a new request is sent to the server.
+   * @throws IOException I/O exception
+   */
+  void prepare() throws IOException {
+    final ClientQuery query = receiving;
+    if(query != null) query.drain(true);
+  }
+
+  /**
+   * Starts a new request.
+   * @return request
+   * @throws IOException I/O exception
+   */
+  Request request() throws IOException {
+    final Multiplexer mx = mux;
+    if(mx != null) return mx.request();
+    prepare();
+    return new Request(sout, sin, null);
+  }
+
   /**
    * Sends a string to the server.
    * @param string string to be sent
+   * @param output output stream
    * @throws IOException I/O exception
    */
-  void send(final String string) throws IOException {
-    sout.write(Token.token(string));
-    sout.write(0);
+  static void send(final String string, final OutputStream output) throws IOException {
+    output.write(Token.token(string));
+    output.write(0);
   }
 
   /**
@@ -250,11 +315,11 @@ public class ClientSession extends Session {
   String exec(final ServerCmd command, final String arg, final OutputStream output)
       throws IOException {
 
+    final Request request = request();
     final OutputStream o = output == null ? new ArrayOutput() : output;
-    sout.write(command.code);
-    send(arg);
-    sout.flush();
-    final BufferInput bi = BufferInput.get(sin);
+    request.out.write(command.code);
+    send(arg, request.out);
+    final BufferInput bi = request.send();
     receive(bi, o);
     if(!ok(bi)) throw new BaseXException(bi.readString());
     return o.toString();
@@ -264,4 +329,37 @@ public class ClientSession extends Session {
   public String toString() {
     return Prop.PROJECT_NAME + ":/" + socket.getLocalAddress() + ':' + socket.getPort();
   }
+
+  /** Request to the server. */
+  static final class Request {
+    /** Output stream for the request. */
+    final PrintOutput out;
+    /** Input stream for the response. */
+    private final InputStream in;
+    /** Frame output (can be {@code null}). */
+    private final FrameOutput frames;
+
+    /**
+     * Constructor.
+     * @param out output stream for the request
+     * @param in input stream for the response
+     * @param frames frame output (can be {@code null})
+     */
+    Request(final PrintOutput out, final InputStream in, final FrameOutput frames) {
+      this.out = out;
+      this.in = in;
+      this.frames = frames;
+    }
+
+    /**
+     * Sends the request.
+     * @return input stream for the response
+     * @throws IOException I/O exception
+     */
+    BufferInput send() throws IOException {
+      out.flush();
+      if(frames != null) frames.close();
+      return BufferInput.get(in);
+    }
+  }
 }
@@ -46,7 +46,7 @@ public class LocalQuery extends Query {
   public void cache(final boolean full) throws IOException {
     final ArrayOutput ao = new ArrayOutput();
     ql.execute(ao, true, true, full);
-    cache(new ArrayInput(ao.finish()), full);
+    results(new ArrayInput(ao.finish()), full);
   }
 
   @Override
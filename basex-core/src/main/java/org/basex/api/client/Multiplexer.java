@@ -0,0 +1,99 @@
+package org.basex.api.client;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.basex.io.in.*;
+import org.basex.io.out.*;
+
+/**
+ * This class sends the multiplexed requests of a client session and distributes the frames of
+ * the incoming responses. The server is blocked if the client has not consumed the data of
+ * earlier frames of a response (see {@link FrameOutput#WINDOW}).
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+final class Multiplexer extends Thread {
+  /** Inputs of pending responses, indexed by request ids. */
+  private final Map<Integer, FrameInput> responses = new ConcurrentHashMap<>();
+  /** Outputs of pending requests, indexed by request ids. */
+  private final Map<Integer, FrameOutput> requests = new ConcurrentHashMap<>();
+  /** Request id counter. */
+  private final AtomicInteger ids = new AtomicInteger();
+  /** Server input. */
+  private final InputStream in;
+  /** Server output. */
+  private final OutputStream out;
+  /** Exception that terminated the connection (can be {@code null}). */
+  private volatile IOException error;
+
+  /**
+   * Constructor.
+   * @param in server input
+   * @param out server output
+   */
+  Multiplexer(final InputStream in, final OutputStream out) {
+    this.in = in;
+    this.out = out;
+    setDaemon(true);
+  }
+
+  /**
+   * Starts a new request.
+   * @return request
+   * @throws IOException I/O exception
+   */
+  ClientSession.Request request() throws IOException {
+    final int id = ids.incrementAndGet();
+    final FrameInput input = new FrameInput(out, id);
+    final FrameOutput frames = new FrameOutput(out, id);
+    responses.put(id, input);
+    requests.put(id, frames);
+    final IOException ex = error;
+    if(ex != null) {
+      responses.remove(id);
+      requests.remove(id);
+      throw ex;
+    }
+    return new ClientSession.Request(PrintOutput.get(frames), input, frames);
+  }
+
+  @Override
+  public void run() {
+    final BufferInput bi = new BufferInput(in);
+    try {
+      while(true) {
+        final int id = FrameInput.readInt(bi), len = FrameInput.readInt(bi);
+        if(len == FrameOutput.CREDIT) {
+          // credit for sending further data of a request
+          final int bytes = FrameInput.readInt(bi);
+          final FrameOutput frames = requests.get(id);
+          if(frames != null) frames.grant(bytes);
+          continue;
+        }
+        final FrameInput input = responses.get(id);
+        if(len < 0) {
+          responses.remove(id);
+          requests.remove(id);
+          if(input != null) input.finish(null);
+        } else {
+          final byte[] data = new byte[len];
+          for(int d = 0; d < len; d++) {
+            final int b = bi.read();
+            if(b == -1) throw new EOFException();
+            data[d] = (byte) b;
+          }
+          if(input != null) input.add(data);
+        }
+      }
+    } catch(final IOException ex) {
+      // connection was closed: finish all pending responses
+      error = ex;
+      for(final FrameInput input : responses.values()) input.finish(ex);
+      for(final FrameOutput frames : requests.values()) frames.cancel(ex);
+    }
+  }
+}
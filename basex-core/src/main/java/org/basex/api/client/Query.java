@@ -2,6 +2,7 @@ package org.basex.api.client;
 
 import java.io.*;
 
+import org.basex.core.*;
 import org.basex.io.in.*;
 import org.basex.query.value.type.*;
 import org.basex.query.value.type.Type.ID;
@@ -16,19 +17,30 @@ import org.basex.util.list.*;
  * stream that has been specified via the constructor or via
  * {@link Session#setOutputStream(OutputStream)}.</p>
  *
+ * <p>If results are iterated, they are read from the input stream one by one, which is why
+ * the memory consumption does not depend on the size of the result.</p>
+ *
  * @author BaseX Team 2005-18, BSD License
  * @author Christian Gruen
  */
 public abstract class Query implements Closeable {
   /** Client output stream. */
   protected OutputStream out;
-  /** Cached results. */
+  /** Cached results (the next items to be returned). */
   protected TokenList cache;
 
   /** Cached result types. */
   private ByteList types;
   /** Cache pointer. */
   private int pos;
+  /** Type of the current item. */
+  private int type;
+  /** Input stream with results that have not been read yet (can be {@code null}). */
+  private BufferInput input;
+  /** Retrieve full type information. */
+  private boolean full;
+  /** Error to be raised after the cached results have been returned (can be {@code null}). */
+  private BaseXException error;
 
   /**
    * Binds a value to an external variable.
@@ -73,14 +85,25 @@ public abstract class Query implements Closeable {
    */
   public boolean more() throws IOException {
     if(cache == null) cache(false);
+    if(pos == cache.size() && input != null) {
+      cache.reset();
+      types.reset();
+      pos = 0;
+      read(1);
+    }
     if(pos < cache.size()) return true;
     cache = null;
     types = null;
+    if(error != null) {
+      final BaseXException ex = error;
+      error = null;
+      throw ex;
+    }
     return false;
   }
 
   /**
-   * Caches the query result.
+   * Executes the query and prepares the results for iteration.
    * @param full retrieve full type information
    * @throws IOException I/O exception
    */
@@ -94,6 +117,7 @@ public abstract class Query implements Closeable {
   public final String next() throws IOException {
     if(more()) {
       final byte[] item = cache.get(pos);
+      type = types.get(pos);
       cache.set(pos++, null);
       if(out == null) return Token.string(item);
       out.write(item);
@@ -106,36 +130,92 @@ public abstract class Query implements Closeable {
    * @return item type
    */
   public final Type type() {
-    return ID.getType(types.get(pos - 1));
+    return ID.getType(type);
   }
 
   /**
-   * Caches the incoming input.
-   * @param input input stream
-   * @param full retrieve full type information
-   * @throws IOException I/O exception
+   * Assigns the input stream with the results.
+   * @param in input stream
+   * @param fll retrieve full type information
    */
-  void cache(final InputStream input, final boolean full) throws IOException {
+  final void results(final BufferInput in, final boolean fll) {
     cache = new TokenList();
     types = new ByteList();
+    pos = 0;
+    input = in;
+    full = fll;
+    error = null;
+  }
+
+  /**
+   * Reads all results that have not been read yet.
+   * @param keep cache the results (otherwise, they will be discarded)
+   * @throws IOException I/O exception
+   */
+  final void drain(final boolean keep) throws IOException {
+    while(input != null) {
+      if(keep) {
+        try {
+          read(Integer.MAX_VALUE);
+        } catch(final BaseXException ex) {
+          error = ex;
+        }
+      } else {
+        cache.reset();
+        types.reset();
+        pos = 0;
+        try {
+          read(1);
+        } catch(final BaseXException ex) {
+          Util.debug(ex);
+        }
+      }
+    }
+    if(!keep) {
+      cache = null;
+      types = null;
+    }
+  }
+
+  /**
+   * Reads results from the input stream and adds them to the cache.
+   * @param max maximum number of results to be read
+   * @throws IOException I/O exception
+   */
+  private void read(final int max) throws IOException {
+    final BufferInput in = input;
     final ByteList bl = new ByteList();
-    for(int t; (t = input.read()) > 0;) {
+    for(int r = 0; r < max; r++) {
+      final int t = in.read();
+      if(t <= 0) {
+        // end of results
+        input = null;
+        finish(in);
+        return;
+      }
       // skip type information
       if(full) {
         final ID id = ID.get(t);
         if(id != null && id.isExtended()) {
-          while(input.read() > 0);
+          while(in.read() > 0);
         }
       }
       // read and decode result
-      final ServerInput si = new ServerInput(input);
+      final ServerInput si = new ServerInput(in);
       for(int b; (b = si.read()) != -1;) bl.add(b);
       cache.add(bl.next());
       types.add(t);
     }
-    pos = 0;
   }
 
+  /**
+   * Called when all results have been read from the specified input stream.
+   * @param in input stream
+   * @throws IOException I/O exception
+   */
+  @SuppressWarnings("unused")
+  void finish(final BufferInput in) throws IOException { }
+
   /**
    * Returns the complete result of the query.
    * @return item string or {@code null}
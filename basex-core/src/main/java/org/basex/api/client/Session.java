@@ -95,7 +95,7 @@ public abstract class Session implements Closeable {
    * was specified.
    * @return command info
    */
-  public final String info() {
+  public String info() {
     return info;
   }
 
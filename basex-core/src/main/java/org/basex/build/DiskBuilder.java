@@ -92,6 +92,7 @@ public final class DiskBuilder extends Builder {
         }
       }
       meta.dbfile(DATATMP).delete();
+      if(meta.compression) CompressedFile.compress(meta);
 
       // return database instance
       return new DiskData(meta, elemNames, attrNames, path, nspaces);
@@ -15,6 +15,10 @@ import org.basex.util.*;
 public final class Datas {
   /** Pinned databases (data instance, number of pins). */
   private final IdentityHashMap<Data, Integer> list = new IdentityHashMap<>();
+  /** Databases that are accessed by snapshots (database name, number of snapshots). */
+  private final HashMap<String, Integer> snapshots = new HashMap<>();
+  /** Names of databases whose files are currently created, replaced or deleted. */
+  private final HashSet<String> reserved = new HashSet<>();
 
   /**
    * Pins and returns a database with the specified name.
@@ -65,6 +69,16 @@ public final class Datas {
     return get(name) != null;
   }
 
+  /**
+   * Checks if the database with the specified name is pinned and opened in main memory.
+   * @param name name of the database
+   * @return result of check
+   */
+  public synchronized boolean inMemory(final String name) {
+    final Entry<Data, Integer> entry = get(name);
+    return entry != null && entry.getKey().inMemory();
+  }
+
   /**
    * Returns the number of pins for the database with the specified name,
    * or {@code 0} if the database is not opened.
@@ -76,6 +90,52 @@ public final class Datas {
     return entry == null ? 0 : entry.getValue();
   }
 
+  /**
+   * Registers a snapshot of the database with the specified name. Waits until the database
+   * is not reserved anymore (see {@link #reserve(String...)}).
+   * @param name name of the database
+   */
+  public synchronized void snapshot(final String name) {
+    final String key = key(name);
+    while(reserved.contains(key)) await();
+    snapshots.merge(key, 1, Integer::sum);
+  }
+
+  /**
+   * Unregisters a snapshot of the database with the specified name.
+   * @param name name of the database
+   */
+  public synchronized void release(final String name) {
+    snapshots.computeIfPresent(key(name), (key, count) -> count == 1 ? null : count - 1);
+    notifyAll();
+  }
+
+  /**
+   * Reserves databases for operations that create, replace or delete their files
+   * (create, drop, alter, copy, restore, optimize all). Waits until the databases are neither
+   * accessed by snapshots nor reserved by other operations. No new snapshots will be registered
+   * until the databases have been released via {@link #unreserve(String...)}.
+   * All databases of an operation must be reserved in a single call.
+   * @param names names of the databases
+   */
+  public synchronized void reserve(final String... names) {
+    final HashSet<String> keys = new HashSet<>();
+    for(final String name : names) keys.add(key(name));
+    while(keys.stream().anyMatch(key -> reserved.contains(key) || snapshots.containsKey(key))) {
+      await();
+    }
+    reserved.addAll(keys);
+  }
+
+  /**
+   * Releases reserved databases.
+   * @param names names of the databases
+   */
+  public synchronized void unreserve(final String... names) {
+    for(final String name : names) reserved.remove(key(name));
+    notifyAll();
+  }
+
   /**
    * Closes all data references.
    */
@@ -96,4 +156,24 @@ public final class Datas {
     }
     return null;
   }
+
+  /**
+   * Returns a key for the specified database name.
+   * @param name name of the database
+   * @return key
+   */
+  private static String key(final String name) {
+    return Prop.CASE ? name : name.toLowerCase(Locale.ENGLISH);
+  }
+
+  /**
+   * Waits until the state of the snapshots or reserved databases changes.
+   */
+  private void await() {
+    try {
+      wait();
+    } catch(final InterruptedException ex) {
+      throw Util.notExpected("Thread was interrupted: %", ex);
+    }
+  }
 }
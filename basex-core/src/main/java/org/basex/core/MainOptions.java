@@ -99,6 +99,8 @@ public final class MainOptions extends Options {
   public static final BooleanOption UPDINDEX = new BooleanOption("UPDINDEX", false);
   /** Flag for automatic index updates. */
   public static final BooleanOption AUTOOPTIMIZE = new BooleanOption("AUTOOPTIMIZE", false);
+  /** Flag for compressing the table and the texts. */
+  public static final BooleanOption COMPRESSION = new BooleanOption("COMPRESSION", false);
   /** Index split size. */
   public static final NumberOption SPLITSIZE = new NumberOption("SPLITSIZE", 0);
 
@@ -127,6 +129,14 @@ public final class MainOptions extends Options {
   public static final NumberOption INLINELIMIT = new NumberOption("INLINELIMIT", 100);
   /** Flag for tail-call optimization. */
   public static final NumberOption TAILCALLS = new NumberOption("TAILCALLS", 256);
+  /** Maximum number of records that are sorted in main memory (0: no limit). */
+  public static final NumberOption SORTLIMIT = new NumberOption("SORTLIMIT", 0);
+  /** Maximum number of groups that are built in main memory (0: no limit). */
+  public static final NumberOption GROUPLIMIT = new NumberOption("GROUPLIMIT", 0);
+  /** Scan database axes in batches of pre values. */
+  public static final BooleanOption SCANBATCH = new BooleanOption("SCANBATCH", true);
+  /** Evaluate the tuples of FLWOR for clauses in parallel. */
+  public static final BooleanOption PARALLELFOR = new BooleanOption("PARALLELFOR", false);
   /** Favor global database when opening resources. */
   public static final BooleanOption DEFAULTDB = new BooleanOption("DEFAULTDB", false);
   /** Forces database creation for unknown documents. */
@@ -2,7 +2,9 @@ package org.basex.core;
 
 import java.util.*;
 
+import org.basex.index.*;
 import org.basex.io.*;
+import org.basex.io.random.*;
 import org.basex.util.*;
 import org.basex.util.options.*;
 
@@ -31,8 +33,26 @@ public final class StaticOptions extends Options {
   public static final BooleanOption LANGKEYS = new BooleanOption("LANGKEYS", false);
   /** Locking strategy. */
   public static final BooleanOption FAIRLOCK = new BooleanOption("FAIRLOCK", false);
+  /** Evaluate read-only queries on database snapshots, which are not locked by updates. */
+  public static final BooleanOption SNAPSHOTS = new BooleanOption("SNAPSHOTS", false);
   /** Timeout (seconds) for remembering result of asynchronous queries. */
   public static final NumberOption CACHETIMEOUT = new NumberOption("CACHETIMEOUT", 3600);
+  /** Size of the page cache (MB), which is shared by all opened databases. */
+  public static final NumberOption PAGECACHE = new NumberOption("PAGECACHE", 32);
+  /** Number of modified disk blocks that will be written in the background (0: disabled). */
+  public static final NumberOption FLUSHBATCH = new NumberOption("FLUSHBATCH", 64);
+  /** Access database table and texts via memory mapping. */
+  public static final BooleanOption MMAP = new BooleanOption("MMAP", false);
+  /** Maximum number of cached index entries, which are shared by all opened indexes. */
+  public static final NumberOption INDEXCACHE = new NumberOption("INDEXCACHE", 100000);
+  /** Number of threads for building index structures. */
+  public static final NumberOption INDEXTHREADS = new NumberOption("INDEXTHREADS", 1);
+  /** Number of threads for evaluating queries in parallel (0: number of processors). */
+  public static final NumberOption FORKJOINTHREADS = new NumberOption("FORKJOINTHREADS", 0);
+  /** Maximum number of tasks of a single job that are evaluated in parallel (0: no limit). */
+  public static final NumberOption FORKJOINLIMIT = new NumberOption("FORKJOINLIMIT", 0);
+  /** Maximum number of parsed queries that are cached for subsequent executions (0: disabled). */
+  public static final NumberOption QUERYCACHE = new NumberOption("QUERYCACHE", 100);
 
   /** Comment: written to options file. */
   public static final Comment C_CLIENT = new Comment("Client/Server Architecture");
@@ -70,6 +90,11 @@ public final class StaticOptions extends Options {
   public static final BooleanOption LOG = new BooleanOption("LOG", true);
   /** Log message cut-off. */
   public static final NumberOption LOGMSGMAXLEN = new NumberOption("LOGMSGMAXLEN", 1000);
+  /** Maximum number of log entries that have not been written yet. */
+  public static final NumberOption LOGQUEUE = new NumberOption("LOGQUEUE", 8192);
+  /** Handling of new log entries if the queue is full. */
+  public static final EnumOption<LogOverflow> LOGOVERFLOW =
+      new EnumOption<>("LOGOVERFLOW", LogOverflow.BLOCK);
 
   /** Comment: written to options file. */
   public static final Comment C_HTTP = new Comment("HTTP Services");
@@ -103,6 +128,18 @@ public final class StaticOptions extends Options {
     }
   }
 
+  /** Handling of log entries if the log queue is full. */
+  public enum LogOverflow {
+    /** Wait until the entry can be queued.    */ BLOCK,
+    /** Drop the entry.                        */ DROP,
+    /** Only keep errors and every n-th entry. */ SAMPLE;
+
+    @Override
+    public String toString() {
+      return super.toString().toLowerCase(Locale.ENGLISH);
+    }
+  }
+
   /**
    * Constructor, adopting system properties starting with "org.basex.".
    * @param file if {@code true}, options will be read from disk
@@ -115,6 +152,9 @@ public final class StaticOptions extends Options {
     Prop.language = get(LANG);
     Prop.langkeys = get(LANGKEYS);
     Prop.debug = get(DEBUG);
+    PageCache.size(get(PAGECACHE));
+    IndexCache.size(get(INDEXCACHE));
+    WriteBack.batch(get(FLUSHBATCH));
     final String ph = get(PROXYHOST);
     if(!ph.isEmpty()) {
       Prop.setSystem("http.proxyHost", ph);
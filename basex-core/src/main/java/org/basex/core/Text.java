@@ -176,6 +176,10 @@ public interface Text {
   String LI_SIZE = LI + "Size: ";
   /** Index info. */
   String LI_ENTRIES = LI + "Entries: ";
+  /** Index info. */
+  String LI_CACHED = LI + "Cached Entries: ";
+  /** Index info. */
+  String LI_UPDATED = LI + "Updated Entries: ";
 
   /** Index info. */
   String HASH = "Hash";
@@ -1344,6 +1348,16 @@ public interface Text {
 
   /** Info on used main memory. */
   String USED_MEM = lang("used_mem");
+  /** Page cache. */
+  String PAGE_CACHE = lang("page_cache");
+  /** Write back. */
+  String WRITE_BACK = lang("write_back");
+  /** Index cache. */
+  String INDEX_CACHE = lang("index_cache");
+  /** Query cache. */
+  String QUERY_CACHE = lang("query_cache");
+  /** Log queue. */
+  String LOG_QUEUE = lang("log_queue");
   /** Memory information. */
   String TOTAL_MEM_C = lang("total_mem") + COLS;
   /** Memory information. */
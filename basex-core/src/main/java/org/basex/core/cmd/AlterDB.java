@@ -39,14 +39,20 @@ public final class AlterDB extends ACreate {
     // target database already exists
     if(soptions.dbExists(trg)) return error(DB_EXISTS_X, trg);
 
-    // close database if it's currently opened and not opened by others
-    if(!closed) closed = close(context, src);
-    // check if source database is still opened
-    if(context.pinned(src)) return error(DB_PINNED_X, src);
-
-    // try to alter database
-    return alter(src, trg, soptions) && (!closed || new Open(trg).run(context)) ?
-        info(DB_RENAMED_X, src, trg) : error(DB_NOT_RENAMED_X, src);
+    // wait until the databases are not accessed by snapshots anymore
+    context.datas.reserve(src, trg);
+    try {
+      // close database if it's currently opened and not opened by others
+      if(!closed) closed = close(context, src);
+      // check if source database is still opened
+      if(context.pinned(src)) return error(DB_PINNED_X, src);
+      // try to alter database
+      if(!alter(src, trg, soptions)) return error(DB_NOT_RENAMED_X, src);
+    } finally {
+      context.datas.unreserve(src, trg);
+    }
+    return !closed || new Open(trg).run(context) ? info(DB_RENAMED_X, src, trg) :
+      error(DB_NOT_RENAMED_X, src);
   }
 
   @Override
@@ -93,20 +93,26 @@ public final class CreateDB extends ACreate {
         context.openDB(data);
         context.datas.pin(data);
       } else {
-        if(context.pinned(name)) return error(DB_PINNED_X, name);
-
-        // create disk-based instance
-        final DiskBuilder builder = pushJob(new DiskBuilder(name, parser, soptions, options));
+        // wait until the database is not accessed by snapshots anymore
+        context.datas.reserve(name);
         try {
-          builder.build().close();
+          if(context.pinned(name)) return error(DB_PINNED_X, name);
+
+          // create disk-based instance
+          final DiskBuilder builder = pushJob(new DiskBuilder(name, parser, soptions, options));
+          try {
+            builder.build().close();
+          } finally {
+            popJob();
+          }
+
+          // second step: open database and create index structures
+          final Open open = new Open(name);
+          if(!open.run(context)) return error(open.info());
         } finally {
-          popJob();
+          context.datas.unreserve(name);
         }
 
-        // second step: open database and create index structures
-        final Open open = new Open(name);
-        if(!open.run(context)) return error(open.info());
-
         data = context.data();
       }
 
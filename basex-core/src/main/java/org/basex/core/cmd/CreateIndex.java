@@ -3,6 +3,8 @@ package org.basex.core.cmd;
 import static org.basex.core.Text.*;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 import org.basex.core.*;
 import org.basex.core.parse.*;
@@ -76,16 +78,35 @@ public final class CreateIndex extends ACreate {
   }
 
   /**
-   * Builds the index structures.
+   * Builds the index structures. If more than one thread is available, the indexes will be
+   * built in parallel.
    * @param data data reference
    * @param cmd calling command
    * @throws IOException I/O exception
    */
   static void create(final Data data, final ACreate cmd) throws IOException {
-    if(data.meta.createtext) create(IndexType.TEXT, data, cmd);
-    if(data.meta.createattr) create(IndexType.ATTRIBUTE, data, cmd);
-    if(data.meta.createtoken) create(IndexType.TOKEN, data, cmd);
-    if(data.meta.createft) create(IndexType.FULLTEXT, data, cmd);
+    final MetaData meta = data.meta;
+    final ArrayList<IndexType> types = new ArrayList<>(4);
+    if(meta.createtext) types.add(IndexType.TEXT);
+    if(meta.createattr) types.add(IndexType.ATTRIBUTE);
+    if(meta.createtoken) types.add(IndexType.TOKEN);
+    if(meta.createft) types.add(IndexType.FULLTEXT);
+
+    if(meta.indexthreads < 2 || types.size() < 2 || data.inMemory()) {
+      for(final IndexType type : types) create(type, data, cmd);
+      return;
+    }
+
+    for(final IndexType type : types) DropIndex.drop(type, data);
+    final ArrayList<Callable<Void>> tasks = new ArrayList<>(types.size());
+    for(final IndexType type : types) {
+      tasks.add(() -> {
+        data.createIndex(type, cmd);
+        return null;
+      });
+    }
+    IndexBuilder.invoke(tasks, meta.indexthreads);
+    for(final IndexType type : types) meta.index(type, true);
   }
 
   /**
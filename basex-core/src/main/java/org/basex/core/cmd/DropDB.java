@@ -33,24 +33,31 @@ public final class DropDB extends ACreate {
     final StringList dbs = context.listDBs(args[0]);
     if(dbs.isEmpty()) return info(NO_DB_DROPPED, args[0]);
 
-    // loop through all databases
-    boolean ok = true;
-    for(final String db : dbs) {
-      // close database if it's currently opened
-      close(context, db);
-      // check if database is still pinned
-      if(context.pinned(db)) {
-        info(DB_PINNED_X, db);
-        ok = false;
-      } else if(!drop(db, soptions)) {
-        // dropping was not successful
-        info(DB_NOT_DROPPED_X, db);
-        ok = false;
-      } else {
-        info(DB_DROPPED_X, db);
+    // wait until the databases are not accessed by snapshots anymore
+    final String[] names = dbs.finish();
+    context.datas.reserve(names);
+    try {
+      // loop through all databases
+      boolean ok = true;
+      for(final String db : names) {
+        // close database if it's currently opened
+        close(context, db);
+        // check if database is still pinned
+        if(context.pinned(db)) {
+          info(DB_PINNED_X, db);
+          ok = false;
+        } else if(!drop(db, soptions)) {
+          // dropping was not successful
+          info(DB_NOT_DROPPED_X, db);
+          ok = false;
+        } else {
+          info(DB_DROPPED_X, db);
+        }
       }
+      return ok;
+    } finally {
+      context.datas.unreserve(names);
     }
-    return ok;
   }
 
   /**
@@ -6,6 +6,8 @@ import java.io.*;
 
 import org.basex.core.*;
 import org.basex.core.users.*;
+import org.basex.index.*;
+import org.basex.io.random.*;
 import org.basex.util.*;
 import org.basex.util.options.*;
 
@@ -46,6 +48,11 @@ public final class Info extends AInfo {
 
     final User user = context.user();
     info(tb, USED_MEM, Performance.getMemory());
+    info(tb, PAGE_CACHE, PageCache.info());
+    info(tb, WRITE_BACK, WriteBack.info());
+    info(tb, INDEX_CACHE, IndexCache.info());
+    info(tb, QUERY_CACHE, context.queries.info());
+    info(tb, LOG_QUEUE, context.log.info());
 
     if(user.has(Perm.ADMIN)) {
       final StaticOptions sopts = context.soptions;
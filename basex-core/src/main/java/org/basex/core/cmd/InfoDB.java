@@ -8,6 +8,7 @@ import org.basex.core.locks.*;
 import org.basex.core.parse.*;
 import org.basex.core.parse.Commands.*;
 import org.basex.data.*;
+import org.basex.io.random.*;
 import org.basex.util.*;
 
 /**
@@ -56,6 +57,7 @@ public final class InfoDB extends AInfo {
     info(tb, MetaProp.BINARIES, meta);
     info(tb, MetaProp.TIMESTAMP, meta);
     info(tb, MetaProp.UPTODATE, meta);
+    if(meta.compression) info(tb, MetaProp.COMPRESSION.name(), CompressedFile.info(meta));
     if(meta.corrupt) tb.add(' ' + DB_CORRUPT + NL);
 
     tb.add(NL).addExt(header, RES_PROPS);
@@ -107,7 +107,8 @@ public final class Optimize extends ACreate {
 
     // initialize structural indexes
     final MetaData meta = data.meta;
-    if(!meta.uptodate) {
+    final boolean updated = !meta.uptodate;
+    if(updated) {
       data.paths.init();
       data.elemNames.init();
       data.attrNames.init();
@@ -160,7 +161,8 @@ public final class Optimize extends ACreate {
     optimize(IndexType.TEXT, data, meta.createtext, enforceText, cmd);
     optimize(IndexType.ATTRIBUTE, data, meta.createattr, enforceAttr, cmd);
     optimize(IndexType.TOKEN, data, meta.createtoken, enforceToken, cmd);
-    optimize(IndexType.FULLTEXT, data, meta.createft, enforceFt, cmd);
+    // merge updates of full-text index
+    optimize(IndexType.FULLTEXT, data, meta.createft, enforceFt || updated && meta.ftindex, cmd);
   }
 
   /**
@@ -199,6 +201,7 @@ public final class Optimize extends ACreate {
       if(data.meta.textindex) optimize(IndexType.TEXT, data, true, true, null);
       if(data.meta.attrindex) optimize(IndexType.ATTRIBUTE, data, true, true, null);
       if(data.meta.tokenindex) optimize(IndexType.TOKEN, data, true, true, null);
+      if(data.meta.ftindex) optimize(IndexType.FULLTEXT, data, true, true, null);
     }
   }
 }
@@ -35,17 +35,24 @@ public final class OptimizeAll extends ACreate {
   @Override
   protected boolean run() {
     final Data data = context.data();
-    if(!update(data, new Code() {
-      @Override
-      boolean run() throws IOException {
-        try {
-          optimizeAll(data, context, options, OptimizeAll.this);
-          return true;
-        } finally {
-          context.closeDB();
+    // wait until the database is not accessed by snapshots anymore
+    final String name = data.meta.name;
+    context.datas.reserve(name);
+    try {
+      if(!update(data, new Code() {
+        @Override
+        boolean run() throws IOException {
+          try {
+            optimizeAll(data, context, options, OptimizeAll.this);
+            return true;
+          } finally {
+            context.closeDB();
+          }
         }
-      }
-    })) return false;
+      })) return false;
+    } finally {
+      context.datas.unreserve(name);
+    }
 
     final Open open = new Open(data.meta.name);
     return open.run(context) ? info(DB_OPTIMIZED_X, data.meta.name, jc().performance) :
@@ -108,6 +115,7 @@ public final class OptimizeAll extends ACreate {
     // adopt original index options
     options.set(MainOptions.MAXLEN, ometa.maxlen);
     options.set(MainOptions.MAXCATS, ometa.maxcats);
+    options.set(MainOptions.COMPRESSION, ometa.compression);
 
     // build database and index structures
     final StaticOptions sopts = context.soptions;
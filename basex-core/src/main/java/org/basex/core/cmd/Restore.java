@@ -39,20 +39,23 @@ public final class Restore extends ABackup {
     final String backup = backups.get(0);
     final String db = Databases.name(backup);
 
-    // close database if it's currently opened and not opened by others
-    if(!closed) closed = close(context, db);
-    // check if database is still pinned
-    if(context.pinned(db)) return error(DB_PINNED_X, db);
-
-    // try to restore database
+    // wait until the database is not accessed by snapshots anymore
+    context.datas.reserve(db);
     try {
+      // close database if it's currently opened and not opened by others
+      if(!closed) closed = close(context, db);
+      // check if database is still pinned
+      if(context.pinned(db)) return error(DB_PINNED_X, db);
+      // try to restore database
       restore(db, backup, soptions, this);
-      return !closed || new Open(db).run(context) ? info(DB_RESTORED_X, backup, jc().performance) :
-        error(DB_NOT_RESTORED_X, db);
     } catch(final IOException ex) {
       Util.debug(ex);
       return error(DB_NOT_RESTORED_X, db);
+    } finally {
+      context.datas.unreserve(db);
     }
+    return !closed || new Open(db).run(context) ? info(DB_RESTORED_X, backup, jc().performance) :
+      error(DB_NOT_RESTORED_X, db);
   }
 
   @Override
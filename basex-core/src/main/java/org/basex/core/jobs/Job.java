@@ -19,6 +19,10 @@ public abstract class Job {
   private JobContext jc = new JobContext(this);
   /** Timer. */
   private Timer timer;
+  /** Time spent waiting for clients (ns). */
+  private long waited;
+  /** Start of the current waiting period (ns; {@code 0}: job is not waiting). */
+  private long waiting;
 
   /** This flag indicates that a job is updating. */
   public boolean updating;
@@ -65,7 +69,9 @@ public abstract class Job {
    * @return job
    */
   public final Job active() {
-    return children.isEmpty() ? this : children.get(0).active();
+    synchronized(children) {
+      return children.isEmpty() ? this : children.get(0).active();
+    }
   }
 
   /**
@@ -83,8 +89,26 @@ public abstract class Job {
   /**
    * Pops the last job.
    */
-  public final synchronized void popJob() {
-    children.remove(children.size() - 1);
+  public final void popJob() {
+    synchronized(children) {
+      children.remove(children.size() - 1);
+    }
+  }
+
+  /**
+   * Removes the specified child job. Must be called instead of {@link #popJob()} if child jobs
+   * are run in parallel.
+   * @param job child job
+   */
+  public final void popJob(final Job job) {
+    synchronized(children) {
+      for(int c = children.size() - 1; c >= 0; c--) {
+        if(children.get(c) == job) {
+          children.remove(c);
+          break;
+        }
+      }
+    }
   }
 
   /**
@@ -108,6 +132,23 @@ public abstract class Job {
     state(JobState.MEMORY);
   }
 
+  /**
+   * Pauses or resumes the timeout. Called while the job waits for a client that consumes
+   * the results: the time spent by the client will not be counted against the timeout.
+   * @param pause pause or resume timeout
+   */
+  public final void pauseTimeout(final boolean pause) {
+    synchronized(children) {
+      for(final Job job : children) job.pauseTimeout(pause);
+      if(pause) {
+        waiting = System.nanoTime();
+      } else if(waiting != 0) {
+        waited += System.nanoTime() - waiting;
+        waiting = 0;
+      }
+    }
+  }
+
   /**
    * Checks if the job was stopped; if yes, throws a runtime exception.
    */
@@ -128,7 +169,9 @@ public abstract class Job {
    * @param js new state
    */
   public void state(final JobState js) {
-    for(final Job job : children) job.state(js);
+    synchronized(children) {
+      for(final Job job : children) job.state(js);
+    }
     state = js;
     if(js == JobState.STOPPED || js == JobState.TIMEOUT || js == JobState.MEMORY) {
       stopped = true;
@@ -176,7 +219,9 @@ public abstract class Job {
    * @param ctx job context
    */
   final void jobContext(final JobContext ctx) {
-    for(final Job job : children) job.jobContext(ctx);
+    synchronized(children) {
+      for(final Job job : children) job.jobContext(ctx);
+    }
     jc = ctx;
   }
 
@@ -188,20 +233,52 @@ public abstract class Job {
    */
   private void startTimeout(final long sec) {
     if(sec == 0) return;
-    timer = new Timer(true);
+    synchronized(children) {
+      timer = new Timer(true);
+      scheduleTimeout(sec * 1000L);
+    }
+  }
+
+  /**
+   * Schedules a timeout. If the job has been waiting for clients in the meantime,
+   * the timeout will be postponed by the waiting time.
+   * @param ms milliseconds to wait
+   */
+  private void scheduleTimeout(final long ms) {
+    final long start = waited();
     timer.schedule(new TimerTask() {
       @Override
-      public void run() { timeout(); }
-    }, sec * 1000L);
+      public void run() {
+        synchronized(children) {
+          if(timer == null) return;
+          final long wait = (waited() - start + 999999) / 1000000;
+          if(wait > 0) {
+            scheduleTimeout(wait);
+            return;
+          }
+        }
+        timeout();
+      }
+    }, ms);
+  }
+
+  /**
+   * Returns the total time spent waiting for clients.
+   * @return time (ns)
+   */
+  private long waited() {
+    return waiting == 0 ? waited : waited + System.nanoTime() - waiting;
   }
 
   /**
    * Stops the timeout thread.
    */
   private void stopTimeout() {
-    if(timer != null) {
-      timer.cancel();
-      timer = null;
+    synchronized(children) {
+      if(timer != null) {
+        timer.cancel();
+        timer = null;
+      }
     }
   }
 }
@@ -1,5 +1,7 @@
 package org.basex.core.jobs;
 
+import java.util.concurrent.atomic.*;
+
 import org.basex.core.*;
 import org.basex.core.locks.*;
 import org.basex.query.*;
@@ -27,6 +29,12 @@ public final class JobContext {
   public final Locks locks = new Locks();
   /** Time of creation. */
   public final long time = System.currentTimeMillis();
+  /** Number of parallel tasks that are waiting for a worker thread. */
+  public final AtomicInteger queued = new AtomicInteger();
+  /** Number of parallel tasks that are evaluated by worker threads. */
+  public final AtomicInteger running = new AtomicInteger();
+  /** Number of worker threads that are reserved for parallel tasks. */
+  final AtomicInteger reserved = new AtomicInteger();
 
   /** Root job. */
   private final Job job;
@@ -33,4 +33,8 @@ public interface JobsText {
   byte[] WRITES = token("writes");
   /** Time of registering. */
   byte[] TIME = token("time");
+  /** Number of running parallel tasks. */
+  byte[] WORKERS = token("workers");
+  /** Number of queued parallel tasks. */
+  byte[] QUEUED = token("queued");
 }
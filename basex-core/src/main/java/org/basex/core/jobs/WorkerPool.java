@@ -0,0 +1,76 @@
+package org.basex.core.jobs;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.basex.core.*;
+
+/**
+ * Pool of worker threads, which is shared by all jobs for evaluating tasks in parallel.
+ * Threads are created on demand. The number of threads that are reserved by a single job
+ * is limited by {@link #limit}.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class WorkerPool {
+  /** Maximum number of tasks of a single job that are evaluated in parallel. */
+  public final int limit;
+  /** Fork/join pool. */
+  private final ForkJoinPool pool;
+
+  /**
+   * Constructor.
+   * @param sopts static options
+   */
+  WorkerPool(final StaticOptions sopts) {
+    final int threads = sopts.get(StaticOptions.FORKJOINTHREADS);
+    pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    final int parallelism = pool.getParallelism(), max = sopts.get(StaticOptions.FORKJOINLIMIT);
+    limit = max > 0 ? Math.min(max, parallelism) : parallelism;
+  }
+
+  /**
+   * Reserves worker threads for evaluating tasks of a job in parallel. The number of threads
+   * that are used by a single job will never exceed {@link #limit}. If the method is called by
+   * a worker thread, this thread will evaluate one of the chunks.
+   * @param jc job context
+   * @param tasks number of tasks
+   * @return reserved workers
+   */
+  public Workers reserve(final JobContext jc, final long tasks) {
+    final int own = ForkJoinTask.getPool() == pool ? 1 : 0;
+    final int max = (int) Math.min(tasks, limit) - own;
+    final AtomicInteger reserved = jc.reserved;
+    int threads;
+    while(true) {
+      final int r = reserved.get();
+      threads = Math.max(0, Math.min(max, limit - r));
+      if(threads == 0 || reserved.compareAndSet(r, r + threads)) break;
+    }
+
+    // a single chunk will be evaluated by the current thread
+    final int chunks = threads + own;
+    if(chunks > 1) return new Workers(jc, chunks, threads);
+    reserved.addAndGet(-threads);
+    return new Workers(jc, 1, 0);
+  }
+
+  /**
+   * Evaluates a task and returns its result.
+   * @param <T> result type
+   * @param task task
+   * @return result
+   */
+  public <T> T invoke(final ForkJoinTask<T> task) {
+    // tasks of worker threads are evaluated in the same thread
+    return ForkJoinTask.getPool() == pool ? task.invoke() : pool.invoke(task);
+  }
+
+  /**
+   * Stops all worker threads.
+   */
+  void close() {
+    pool.shutdownNow();
+  }
+}
@@ -0,0 +1,70 @@
+package org.basex.core.jobs;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Worker threads that have been reserved by a job for evaluating tasks in parallel.
+ * The tasks are split into chunks, each of which is evaluated by a single thread.
+ * The instance must be closed after the evaluation.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class Workers implements AutoCloseable {
+  /** Number of chunks (1: tasks will be evaluated sequentially by the current thread). */
+  public final int chunks;
+
+  /** Job context. */
+  private final JobContext jc;
+  /** Number of reserved threads. */
+  private final int reserved;
+  /** Number of chunks whose evaluation has not started yet. */
+  private final AtomicInteger pending;
+
+  /**
+   * Constructor.
+   * @param jc job context
+   * @param chunks number of chunks
+   * @param reserved number of reserved threads
+   */
+  Workers(final JobContext jc, final int chunks, final int reserved) {
+    this.jc = jc;
+    this.chunks = chunks;
+    this.reserved = reserved;
+    final int queued = chunks > 1 ? chunks : 0;
+    pending = new AtomicInteger(queued);
+    jc.queued.addAndGet(queued);
+  }
+
+  /**
+   * Called before a chunk is evaluated.
+   * @return {@code false} if the evaluation has been finished, and if the chunk must be skipped
+   */
+  public boolean start() {
+    while(true) {
+      final int p = pending.get();
+      if(p == 0) return false;
+      if(pending.compareAndSet(p, p - 1)) break;
+    }
+    jc.queued.decrementAndGet();
+    jc.running.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Called after a chunk has been evaluated (if {@link #start()} returned {@code true}).
+   */
+  public void finish() {
+    jc.running.decrementAndGet();
+  }
+
+  /**
+   * Releases the reserved threads. Chunks that have not been started yet (because the
+   * evaluation was cancelled or has failed) will be skipped.
+   */
+  @Override
+  public void close() {
+    jc.queued.addAndGet(-pending.getAndSet(0));
+    jc.reserved.addAndGet(-reserved);
+  }
+}
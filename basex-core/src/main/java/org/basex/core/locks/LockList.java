@@ -2,6 +2,8 @@ package org.basex.core.locks;
 
 import java.util.*;
 
+import org.basex.core.*;
+import org.basex.data.*;
 import org.basex.util.*;
 import org.basex.util.list.*;
 
@@ -89,6 +91,23 @@ public final class LockList implements Iterable<String> {
     list.removeAll(locks.list);
   }
 
+  /**
+   * Removes all locks on persistent databases, including the locks for the current context.
+   * Locks on main-memory databases and other resources will be retained.
+   * @param ctx database context
+   */
+  public void removeDatabases(final Context ctx) {
+    final Data data = ctx.data();
+    final boolean mem = data != null && data.inMemory();
+    for(int s = 0; s < list.size(); s++) {
+      final String lock = list.get(s);
+      final boolean db = Strings.eq(lock, Locking.COLLECTION, Locking.CONTEXT) ? !mem :
+        !lock.startsWith(Locking.PREFIX) && !lock.startsWith(Locking.QUERY_PREFIX) &&
+        !lock.startsWith(Locking.JAVA_PREFIX) && !ctx.datas.inMemory(lock);
+      if(db) list.remove(s--);
+    }
+  }
+
   /**
    * Returns the element at the specified position.
    * @param index element index
@@ -12,7 +12,7 @@ public interface DataText {
   // META DATA ====================================================================================
 
   /** Database version; older version cannot open these instances. */
-  String STORAGE = "9.0.1";
+  String STORAGE = "9.1.2";
   /** Index version; older version cannot open indexes of these instances. */
   String ISTORAGE = "8.6";
 
@@ -34,6 +34,8 @@ public interface DataText {
   String DBUPDIDX = "UPDINDEX";
   /** Automatic optimization. */
   String DBAUTOOPT = "AUTOOPT";
+  /** Compression. */
+  String DBCMPR = "COMPRESSION";
   /** Text index. */
   String DBTXTIDX = "TXTINDEX";
   /** Attribute index. */
@@ -96,6 +98,8 @@ public interface DataText {
   String DATAINF = "inf";
   /** Database - Tokens. */
   String DATATBL = "tbl";
+  /** Database - Block directory of compressed files. */
+  String DATABLK = "blk";
   /** Database - Temporary Size References. */
   String DATATMP = "tmp";
   /** Database - Text index. */
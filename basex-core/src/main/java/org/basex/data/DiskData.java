@@ -5,6 +5,7 @@ import static org.basex.data.DataText.*;
 import static org.basex.util.Token.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.build.*;
 import org.basex.core.*;
@@ -16,6 +17,7 @@ import org.basex.index.path.*;
 import org.basex.index.value.*;
 import org.basex.io.*;
 import org.basex.io.in.DataInput;
+import org.basex.io.out.*;
 import org.basex.io.out.DataOutput;
 import org.basex.io.random.*;
 import org.basex.util.*;
@@ -47,6 +49,10 @@ import org.basex.util.*;
  *   - NOT COMPRESSED: return external text unchanged
  * </pre>
  *
+ * If snapshots are enabled (see {@link MetaData#snapshots}), updates are versioned: modified table
+ * pages are copied, and texts are appended instead of being overwritten. Queries may read
+ * snapshots of committed versions (see {@link #snapshot()}) while updates are performed.
+ *
  * @author BaseX Team 2005-18, BSD License
  * @author Christian Gruen
  * @author Tim Petrowsky
@@ -56,6 +62,12 @@ public final class DiskData extends Data {
   private DataAccess texts;
   /** Values access file. */
   private DataAccess values;
+  /** Snapshots of committed versions, ordered by their versions. */
+  private final ArrayDeque<SnapshotData> snapshots = new ArrayDeque<>();
+  /** Indicates if a versioned update is performed (guarded by the snapshot list). */
+  private boolean updating;
+  /** Indicates if an update waits for snapshots that access the index structures. */
+  private boolean pending;
 
   /**
    * Default constructor, called from {@link Open#open}.
@@ -83,7 +95,7 @@ public final class DiskData extends Data {
     // open data and indexes
     init();
     if(meta.updindex) {
-      idmap = new IdPreMap(meta.dbfile(DATAIDP));
+      idmap = new IdPreMap(this);
       if(meta.textindex) textIndex = new UpdatableDiskValues(this, IndexType.TEXT);
       if(meta.attrindex) attrIndex = new UpdatableDiskValues(this, IndexType.ATTRIBUTE);
       if(meta.tokenindex) tokenIndex = new UpdatableDiskValues(this, IndexType.TOKEN);
@@ -92,7 +104,11 @@ public final class DiskData extends Data {
       if(meta.attrindex) attrIndex = new DiskValues(this, IndexType.ATTRIBUTE);
       if(meta.tokenindex) tokenIndex = new DiskValues(this, IndexType.TOKEN);
     }
-    if(meta.ftindex) ftIndex = new FTIndex(this);
+    if(meta.ftindex) {
+      final FTIndex index = new FTIndex(this);
+      meta.ftupdindex = index.updatable();
+      ftIndex = index;
+    }
   }
 
   /**
@@ -123,8 +139,8 @@ public final class DiskData extends Data {
    */
   private void init() throws IOException {
     table = new TableDiskAccess(meta, false);
-    texts = new DataAccess(meta.dbfile(DATATXT));
-    values = new DataAccess(meta.dbfile(DATAATV));
+    texts = new DataAccess(meta.dbfile(DATATXT), meta.mmap);
+    values = new DataAccess(meta.dbfile(DATAATV), meta.mmap);
   }
 
   /**
@@ -156,6 +172,9 @@ public final class DiskData extends Data {
   public synchronized void close() {
     if(closed) return;
     super.close();
+    synchronized(snapshots) {
+      snapshots.clear();
+    }
     try {
       write();
       table.close();
@@ -197,7 +216,8 @@ public final class DiskData extends Data {
       if(cmd != null) cmd.pushJob(ib);
       set(type, ib.build());
     } finally {
-      if(cmd != null) cmd.popJob();
+      // index structures may be built in parallel
+      if(cmd != null) cmd.popJob(ib);
     }
   }
 
@@ -213,13 +233,16 @@ public final class DiskData extends Data {
    * @param type index to be opened
    * @param index index instance
    */
-  private void set(final IndexType type, final ValueIndex index) {
+  private synchronized void set(final IndexType type, final ValueIndex index) {
     meta.dirty = true;
     switch(type) {
       case TEXT:      textIndex = index; break;
       case ATTRIBUTE: attrIndex = index; break;
       case TOKEN:     tokenIndex = index; break;
-      case FULLTEXT:  ftIndex = index; break;
+      case FULLTEXT:
+        ftIndex = index;
+        meta.ftupdindex = index != null && ((FTIndex) index).updatable();
+        break;
       default:        break;
     }
   }
@@ -232,6 +255,32 @@ public final class DiskData extends Data {
       if(upd.exists()) throw new BaseXException(DB_UPDATED_X, meta.name);
       if(!upd.touch()) throw Util.notExpected("%: could not create lock file.", meta.name);
     }
+    if(meta.snapshots) {
+      synchronized(snapshots) {
+        // wait until snapshots that access the index structures have been released
+        pending = true;
+        try {
+          while(snapshots.stream().anyMatch(s -> s.indexed)) snapshots.wait();
+        } catch(final InterruptedException ex) {
+          throw Util.notExpected("Thread was interrupted: %", ex);
+        } finally {
+          pending = false;
+        }
+        // preserve the current version for queries that will be started during the update
+        final SnapshotData snapshot = snapshots.peekLast();
+        if(snapshot == null || snapshot.meta.version != meta.version) {
+          try {
+            snapshots.add(newSnapshot());
+          } catch(final IOException ex) {
+            throw new BaseXException(ex);
+          }
+        }
+        // index structures will be modified: existing snapshots must not access them anymore
+        for(final SnapshotData s : snapshots) s.indexes = false;
+        updating = true;
+      }
+      ((TableDiskAccess) table).begin();
+    }
   }
 
   @Override
@@ -249,6 +298,97 @@ public final class DiskData extends Data {
 
     flush(auto);
     if(!table.lock(false)) throw Util.notExpected("Database '%': could not unlock.", meta.name);
+
+    if(meta.snapshots) {
+      synchronized(snapshots) {
+        if(updating) {
+          // replaced pages can be released when the previous version is not accessed anymore
+          snapshots.getLast().pages = ((TableDiskAccess) table).end();
+          meta.version++;
+          updating = false;
+          cleanup();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a snapshot of the latest committed version of the database.
+   * The snapshot must be released by calling {@link SnapshotData#close()}.
+   * @return snapshot
+   * @throws IOException I/O exception
+   */
+  public SnapshotData snapshot() throws IOException {
+    synchronized(snapshots) {
+      SnapshotData snapshot = snapshots.peekLast();
+      // create new snapshot if the version has changed, or if a pending update would otherwise
+      // have to wait for new readers of the current snapshot
+      final boolean detach = pending && snapshot != null && snapshot.indexes;
+      if(snapshot == null || !updating && snapshot.meta.version != meta.version || detach) {
+        snapshot = newSnapshot();
+        if(detach) snapshot.indexes = false;
+        snapshots.add(snapshot);
+      }
+      snapshot.readers++;
+      return snapshot;
+    }
+  }
+
+  /**
+   * Releases a snapshot.
+   * @param snapshot snapshot
+   */
+  void release(final SnapshotData snapshot) {
+    synchronized(snapshots) {
+      if(--snapshot.readers == 0 && snapshot.indexed) {
+        snapshot.indexed = false;
+        snapshots.notifyAll();
+      }
+      cleanup();
+    }
+  }
+
+  /**
+   * Grants a snapshot access to the index structures of the database. Access is granted if no
+   * update has been started since the snapshot was created. Subsequent updates will wait until
+   * all readers of the snapshot have released it.
+   * @param snapshot snapshot
+   * @return result of check
+   */
+  boolean indexes(final SnapshotData snapshot) {
+    synchronized(snapshots) {
+      if(snapshot.indexes) snapshot.indexed = true;
+      return snapshot.indexes;
+    }
+  }
+
+  /**
+   * Drops unused snapshots of outdated versions, starting with the oldest one, and releases the
+   * pages that have been replaced by subsequent versions.
+   */
+  private void cleanup() {
+    for(SnapshotData snapshot; (snapshot = snapshots.peekFirst()) != null;) {
+      if(snapshot.readers > 0 || snapshot.meta.version == meta.version) break;
+      snapshots.removeFirst();
+      if(snapshot.pages != null) ((TableDiskAccess) table).release(snapshot.pages);
+    }
+  }
+
+  /**
+   * Creates a snapshot of the current version. Must not be called while an update is performed.
+   * @return snapshot
+   * @throws IOException I/O exception
+   */
+  private SnapshotData newSnapshot() throws IOException {
+    final ArrayOutput ao = new ArrayOutput();
+    try(DataOutput out = new DataOutput(ao)) {
+      meta.write(out);
+      elemNames.write(out);
+      attrNames.write(out);
+      paths.write(out);
+      nspaces.write(out);
+    }
+    return new SnapshotData(this, new DataInput(new IOContent(ao.finish())));
   }
 
   @Override
@@ -261,6 +401,7 @@ public final class DiskData extends Data {
         values.flush();
         if(textIndex != null) textIndex.flush();
         if(attrIndex != null) attrIndex.flush();
+        if(ftIndex != null) ftIndex.flush();
       }
     } catch(final IOException ex) {
       Util.stack(ex);
@@ -269,31 +410,69 @@ public final class DiskData extends Data {
 
   @Override
   public byte[] text(final int pre, final boolean text) {
-    final long value = textRef(pre);
-    return Inline.inlined(value) ? Inline.unpack(value) : txt(value, text);
+    return text(textRef(pre), text);
   }
 
   @Override
   public long textItr(final int pre, final boolean text) {
-    final long value = textRef(pre);
-    return Inline.inlined(value) ? Inline.unpackLong(value) : toLong(txt(value, text));
+    return textItr(textRef(pre), text);
   }
 
   @Override
   public double textDbl(final int pre, final boolean text) {
-    final long value = textRef(pre);
-    return Inline.inlined(value) ? Inline.unpackDouble(value) : toDouble(txt(value, text));
+    return textDbl(textRef(pre), text);
   }
 
   @Override
   public int textLen(final int pre, final boolean text) {
-    final long value = textRef(pre);
+    return textLen(textRef(pre), text);
+  }
+
+  /**
+   * Returns a text (text, comment, pi) or attribute value.
+   * @param value text reference
+   * @param text text or attribute flag
+   * @return text
+   */
+  byte[] text(final long value, final boolean text) {
+    return Inline.inlined(value) ? Inline.unpack(value) : txt(value, text);
+  }
+
+  /**
+   * Returns a text (text, comment, pi) or attribute value as integer value.
+   * @param value text reference
+   * @param text text or attribute flag
+   * @return numeric value
+   */
+  long textItr(final long value, final boolean text) {
+    return Inline.inlined(value) ? Inline.unpackLong(value) : toLong(txt(value, text));
+  }
+
+  /**
+   * Returns a text (text, comment, pi) or attribute value as double value.
+   * @param value text reference
+   * @param text text or attribute flag
+   * @return numeric value
+   */
+  double textDbl(final long value, final boolean text) {
+    return Inline.inlined(value) ? Inline.unpackDouble(value) : toDouble(txt(value, text));
+  }
+
+  /**
+   * Returns the byte length of a (possibly compressed) text.
+   * @param value text reference
+   * @param text text or attribute flag
+   * @return length
+   */
+  int textLen(final long value, final boolean text) {
     if(Inline.inlined(value)) return Inline.unpackLength(value);
 
     final DataAccess da = text ? texts : values;
-    final int l = da.readNum(value & Compress.COMPRESS - 1);
-    // if text is compressed, read number of compressed bytes
-    return Compress.compressed(value) ? da.readNum() : l;
+    synchronized(da) {
+      final int l = da.readNum(value & Compress.COMPRESS - 1);
+      // if text is compressed, read number of compressed bytes
+      return Compress.compressed(value) ? da.readNum() : l;
+    }
   }
 
   /**
@@ -319,7 +498,10 @@ public final class DiskData extends Data {
     // old entry (offset or value)
     final long old = textRef(pre);
     // if old text was not inlined, fill unused space in text file with zero bytes
-    if(!Inline.inlined(old)) (text ? texts : values).free(old & Compress.COMPRESS - 1, 0);
+    // (skipped if snapshots are enabled: the text may still be accessed by older versions)
+    if(!Inline.inlined(old) && !meta.snapshots) {
+      (text ? texts : values).free(old & Compress.COMPRESS - 1, 0);
+    }
   }
 
   @Override
@@ -336,7 +518,7 @@ public final class DiskData extends Data {
     final long v = Inline.packInt(value);
     if(v != -1) {
       // invalidate old entry if it was not inlined
-      if(!Inline.inlined(oldRef)) store.free(oldRef & Compress.COMPRESS - 1, 0);
+      if(!Inline.inlined(oldRef) && !meta.snapshots) store.free(oldRef & Compress.COMPRESS - 1, 0);
       // inline integer value
       textRef(pre, v);
     } else {
@@ -345,8 +527,8 @@ public final class DiskData extends Data {
 
       // choose inserting position
       final long off;
-      if(Inline.inlined(oldRef)) {
-        // old entry was inlined: append new entry to heap file
+      if(Inline.inlined(oldRef) || meta.snapshots) {
+        // old entry was inlined or may still be accessed: append new entry to heap file
         off = store.length();
       } else {
         // otherwise, compute inserting position and invalidate old entry
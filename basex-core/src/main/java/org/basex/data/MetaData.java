@@ -52,6 +52,8 @@ public final class MetaData {
   public boolean updindex;
   /** Flag for automatic index updating. */
   public boolean autooptimize;
+  /** Flag for compressed table and texts. */
+  public boolean compression;
 
   /** Indicates if the text index is to be recreated. */
   public boolean createtext;
@@ -101,6 +103,17 @@ public final class MetaData {
   /** Last (highest) id assigned to a node. Can be {@code -1} if database is empty. */
   public int lastid = -1;
 
+  /** Flag for memory-mapped access to the table and texts (not stored on disk). */
+  public boolean mmap;
+  /** Number of threads for building index structures (not stored on disk). */
+  public int indexthreads = 1;
+  /** Flag for an updatable full-text index (not stored on disk). */
+  public boolean ftupdindex;
+  /** Flag for versioned updates, which allow queries to read snapshots (not stored on disk). */
+  public boolean snapshots;
+  /** Number of versioned updates since the database was opened (not stored on disk). */
+  public int version;
+
   /** Flag for out-of-date indexes. */
   private boolean oldindex;
 
@@ -121,6 +134,9 @@ public final class MetaData {
   public MetaData(final String name, final MainOptions options, final StaticOptions sopts) {
     this.name = name;
     path = sopts != null ? sopts.dbPath(name) : null;
+    mmap = sopts != null && sopts.get(StaticOptions.MMAP);
+    if(sopts != null) indexthreads = Math.max(1, sopts.get(StaticOptions.INDEXTHREADS));
+    snapshots = sopts != null && sopts.get(StaticOptions.SNAPSHOTS);
     createtext = options.get(MainOptions.TEXTINDEX);
     createattr = options.get(MainOptions.ATTRINDEX);
     createtoken = options.get(MainOptions.TOKENINDEX);
@@ -130,6 +146,7 @@ public final class MetaData {
     casesens = options.get(MainOptions.CASESENS);
     updindex = options.get(MainOptions.UPDINDEX);
     autooptimize = options.get(MainOptions.AUTOOPTIMIZE);
+    compression = options.get(MainOptions.COMPRESSION);
     maxlen = options.get(MainOptions.MAXLEN);
     maxcats = options.get(MainOptions.MAXCATS);
     stopwords = options.get(MainOptions.STOPWORDS);
@@ -141,6 +158,17 @@ public final class MetaData {
     splitsize = options.get(MainOptions.SPLITSIZE);
   }
 
+  /**
+   * Constructor for the meta data of a snapshot. The remaining values need to be read from the
+   * serialized meta data of the database.
+   * @param meta meta data of the database
+   */
+  MetaData(final MetaData meta) {
+    name = meta.name;
+    path = meta.path;
+    version = meta.version;
+  }
+
   // STATIC METHODS ===============================================================================
 
   /**
@@ -393,6 +421,7 @@ public final class MetaData {
         case DBFTDC:     diacritics = toBool(v); break;
         case DBUPDIDX:   updindex = toBool(v); break;
         case DBAUTOOPT:  autooptimize = toBool(v); break;
+        case DBCMPR:     compression = toBool(v); break;
         case DBTXTIDX:   textindex = toBool(v); break;
         case DBATVIDX:   attrindex = toBool(v); break;
         case DBTOKIDX:   tokenindex = toBool(v); break;
@@ -436,6 +465,7 @@ public final class MetaData {
     writeInfo(out, DBSIZE,     size);
     writeInfo(out, DBUPDIDX,   updindex);
     writeInfo(out, DBAUTOOPT,  autooptimize);
+    writeInfo(out, DBCMPR,     compression);
     writeInfo(out, DBTXTIDX,   textindex);
     writeInfo(out, DBATVIDX,   attrindex);
     writeInfo(out, DBTOKIDX,   tokenindex);
@@ -474,7 +504,7 @@ public final class MetaData {
       attrindex = false;
       tokenindex = false;
     }
-    ftindex = false;
+    if(!updindex || !ftupdindex) ftindex = false;
   }
 
   /**
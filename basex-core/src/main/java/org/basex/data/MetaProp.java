@@ -49,6 +49,11 @@ public enum MetaProp {
     public Boolean value(final MetaData meta) { return meta.uptodate; }
   },
   /** Property. */
+  COMPRESSION(false) {
+    @Override
+    public Boolean value(final MetaData meta) { return meta.compression; }
+  },
+  /** Property. */
   INPUTPATH(false) {
     @Override
     public String value(final MetaData meta) { return meta.original; }
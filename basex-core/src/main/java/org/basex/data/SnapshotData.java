@@ -0,0 +1,150 @@
+package org.basex.data;
+
+import java.io.*;
+
+import org.basex.core.*;
+import org.basex.index.*;
+import org.basex.index.name.*;
+import org.basex.index.path.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.random.*;
+import org.basex.util.*;
+
+/**
+ * This class provides read-only access to a committed version of a {@link DiskData} instance.
+ * Snapshots are created by {@link DiskData#snapshot()} and must be released by calling
+ * {@link #close()}.
+ *
+ * A snapshot shares the table pages and texts of the database. Pages that are modified by
+ * subsequent updates will be copied, and texts will only be appended. Index structures are not
+ * versioned: they are shared with the database as long as no update has been started after the
+ * snapshot was created, and subsequent updates will wait until index-accessing snapshots have
+ * been released. Binary resources are not versioned.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class SnapshotData extends Data {
+  /** Database. */
+  private final DiskData data;
+  /** Number of readers (guarded by the snapshot list of the database). */
+  int readers;
+  /** Pages that have been replaced by the update following this version (can be {@code null}). */
+  int[] pages;
+  /** Indicates if the index structures of the database can be accessed (guarded, see above). */
+  boolean indexes = true;
+  /** Indicates if the index structures are accessed by the current readers (guarded, see above). */
+  boolean indexed;
+
+  /**
+   * Constructor, called from {@link DiskData#snapshot()}.
+   * @param data database
+   * @param in serialized meta data, names, paths and namespaces of the database
+   * @throws IOException I/O exception
+   */
+  SnapshotData(final DiskData data, final DataInput in) throws IOException {
+    super(new MetaData(data.meta));
+    this.data = data;
+
+    meta.read(in);
+    elemNames = new Names(in, meta);
+    attrNames = new Names(in, meta);
+    paths = new PathIndex(this, in);
+    nspaces = new Namespaces(in);
+    resources.snapshot(data.resources);
+
+    // index structures will not be versioned, and are shared until the next update is started
+    textIndex = data.textIndex;
+    attrIndex = data.attrIndex;
+    tokenIndex = data.tokenIndex;
+    ftIndex = data.ftIndex;
+    // no id/pre mapping is available: ids will be looked up in the table
+    meta.updindex = false;
+    meta.corrupt = data.meta.corrupt;
+    table = ((TableDiskAccess) data.table).snapshot(meta);
+  }
+
+  /**
+   * Returns the database of this snapshot.
+   * @return database
+   */
+  public DiskData data() {
+    return data;
+  }
+
+  /**
+   * Releases the snapshot.
+   */
+  @Override
+  public void close() {
+    data.release(this);
+  }
+
+  @Override
+  public boolean indexed(final IndexType type) {
+    return meta.index(type) && data.indexes(this);
+  }
+
+  @Override
+  public void createIndex(final IndexType type, final Command cmd) {
+    throw Util.notExpected();
+  }
+
+  @Override
+  public void dropIndex(final IndexType type) {
+    throw Util.notExpected();
+  }
+
+  @Override
+  public void startUpdate(final MainOptions opts) {
+    throw Util.notExpected();
+  }
+
+  @Override
+  public void finishUpdate(final MainOptions opts) {
+    throw Util.notExpected();
+  }
+
+  @Override
+  public void flush(final boolean all) { }
+
+  @Override
+  public byte[] text(final int pre, final boolean text) {
+    return data.text(textRef(pre), text);
+  }
+
+  @Override
+  public long textItr(final int pre, final boolean text) {
+    return data.textItr(textRef(pre), text);
+  }
+
+  @Override
+  public double textDbl(final int pre, final boolean text) {
+    return data.textDbl(textRef(pre), text);
+  }
+
+  @Override
+  public int textLen(final int pre, final boolean text) {
+    return data.textLen(textRef(pre), text);
+  }
+
+  @Override
+  public boolean inMemory() {
+    return false;
+  }
+
+  @Override
+  protected void delete(final int pre, final boolean text) {
+    throw Util.notExpected();
+  }
+
+  @Override
+  protected void updateText(final int pre, final byte[] value, final int kind) {
+    throw Util.notExpected();
+  }
+
+  @Override
+  protected long textRef(final byte[] value, final boolean text) {
+    throw Util.notExpected();
+  }
+}
@@ -0,0 +1,126 @@
+package org.basex.index;
+
+import java.io.*;
+
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.util.list.*;
+
+/**
+ * Bloom filter for index keys. It is used to answer lookups of keys that do not exist in an index
+ * without accessing the index files. Keys can be added, but not removed: a filter may report
+ * false positives, but never false negatives.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class BloomFilter {
+  /** Number of bits per key (results in a false positive rate of approx. 1%). */
+  private static final int BITS = 10;
+  /** Number of hash functions. */
+  private static final int HASHES = 7;
+
+  /** Bit array. */
+  private final long[] bits;
+  /** Number of bits. */
+  private final long size;
+
+  /**
+   * Constructor.
+   * @param hashes hash values of the keys to be added (see {@link #hash(byte[])})
+   */
+  public BloomFilter(final LongList hashes) {
+    final int hs = hashes.size();
+    bits = new long[Math.max(1, (int) Math.min((long) hs * BITS + 63 >>> 6, Integer.MAX_VALUE))];
+    size = (long) bits.length << 6;
+    for(int h = 0; h < hs; h++) add(hashes.get(h));
+  }
+
+  /**
+   * Constructor, reading the filter from disk.
+   * @param in input stream
+   * @throws IOException I/O exception
+   */
+  private BloomFilter(final DataInput in) throws IOException {
+    bits = in.readLongs(in.readNum());
+    size = (long) bits.length << 6;
+  }
+
+  /**
+   * Reads a filter from the specified file.
+   * @param file file
+   * @return filter, or {@code null} if the file does not exist
+   * @throws IOException I/O exception
+   */
+  public static BloomFilter read(final IOFile file) throws IOException {
+    if(!file.exists()) return null;
+    try(DataInput in = new DataInput(file)) {
+      return new BloomFilter(in);
+    }
+  }
+
+  /**
+   * Writes the filter to the specified file.
+   * @param file file
+   * @throws IOException I/O exception
+   */
+  public void write(final IOFile file) throws IOException {
+    try(DataOutput out = new DataOutput(file)) {
+      out.writeLongs(bits);
+    }
+  }
+
+  /**
+   * Adds a key.
+   * @param key key
+   */
+  public void add(final byte[] key) {
+    add(hash(key));
+  }
+
+  /**
+   * Checks if the specified key may be contained in the index.
+   * @param key key
+   * @return {@code false} if the key is known not to exist
+   */
+  public boolean contains(final byte[] key) {
+    final long hash = hash(key);
+    final long h1 = hash >>> 32, h2 = hash & 0xFFFFFFFFL;
+    for(int h = 0; h < HASHES; h++) {
+      final long b = (h1 + h * h2) % size;
+      if((bits[(int) (b >>> 6)] & 1L << b) == 0) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Adds a hash value.
+   * @param hash hash value
+   */
+  private void add(final long hash) {
+    final long h1 = hash >>> 32, h2 = hash & 0xFFFFFFFFL;
+    for(int h = 0; h < HASHES; h++) {
+      final long b = (h1 + h * h2) % size;
+      bits[(int) (b >>> 6)] |= 1L << b;
+    }
+  }
+
+  /**
+   * Computes a 64-bit hash value for the specified key (FNV-1a).
+   * @param key key
+   * @return hash value
+   */
+  public static long hash(final byte[] key) {
+    long h = 0xCBF29CE484222325L;
+    for(final byte b : key) {
+      h ^= b;
+      h *= 0x100000001B3L;
+    }
+    // finalize bits
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    return h;
+  }
+}
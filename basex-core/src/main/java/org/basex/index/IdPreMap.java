@@ -3,6 +3,7 @@ package org.basex.index;
 import java.io.*;
 import java.util.*;
 
+import org.basex.data.*;
 import org.basex.io.*;
 import org.basex.io.in.DataInput;
 import org.basex.io.out.DataOutput;
@@ -12,56 +13,97 @@ import org.basex.util.list.*;
 /**
  * Updatable ID-PRE mapping.
  *
+ * The mapping consists of runs of consecutive IDs, which are stored in the order of their PRE
+ * values. Each run is a node of two treaps with shared priorities:
+ * <ul>
+ *   <li> The PRE treap is ordered by the position of the runs and stores the number of IDs
+ *        of each subtree. The PRE value of an ID is computed by summing up the sizes of all
+ *        runs to the left of its node.</li>
+ *   <li> The ID treap is ordered by the first ID of each run. It is used to find the run of
+ *        an ID.</li>
+ * </ul>
+ * Lookups and updates take logarithmic time. The number of nodes is bounded by the number of
+ * runs (not by the number of updates): nodes of deleted runs are reused, and IDs that are
+ * inserted after their predecessor ID will extend its run.
+ *
  * @author BaseX Team 2005-18, BSD License
  * @author Dimitar Popov
  */
 public class IdPreMap {
-  /** Invalid id-value. */
-  private static final int INV = -1;
-  /** Base ID value. */
-  private int baseid;
-  /** PRE values of the inserted/deleted IDs. */
-  private int[] pres;
-  /** Inserted first ID values. */
+  /** Marker for the current file format (files of older versions start with the base ID). */
+  private static final int FORMAT = -2;
+  /** Null node. */
+  private static final int NIL = 0;
+
+  /** First ID values of the runs. */
   private int[] fids;
-  /** Inserted last ID values. */
-  private int[] nids;
-  /** Increments showing how the PRE values have been modified. */
-  private int[] incs;
-  /** ID values for the PRE, before inserting/deleting a record. */
-  private int[] oids;
+  /** Number of IDs of the runs. */
+  private int[] sizes;
+  /** Priorities. */
+  private int[] prios;
+  /** PRE treap: number of IDs in a subtree. */
+  private int[] sums;
+  /** PRE treap: left children. */
+  private int[] lefts;
+  /** PRE treap: right children (and next free node). */
+  private int[] rights;
+  /** PRE treap: parents. */
+  private int[] parents;
+  /** ID treap: left children. */
+  private int[] ilefts;
+  /** ID treap: right children. */
+  private int[] irights;
+
+  /** Root of the PRE treap. */
+  private int root;
+  /** Root of the ID treap. */
+  private int iroot;
+  /** Number of allocated nodes (including the null node). */
+  private int nodes;
+  /** First free node. */
+  private int free;
+  /** Number of runs. */
+  private int runs;
+  /** Last ID of the initial database (only evaluated as long as no updates have been registered). */
+  private int baseid;
+  /** Indicates if no updates have been registered yet: PRE values are identical to IDs. */
+  private boolean identity;
+  /** Seed for generating priorities. */
+  private int seed = 0x2545F491;
 
-  /** Number of records in the table. */
-  private int rows;
+  /** Left result of the last split operation. */
+  private int left;
+  /** Right result of the last split operation. */
+  private int right;
 
   /**
    * Constructor.
    * @param id last inserted ID
    */
   public IdPreMap(final int id) {
-    baseid = id;
-    pres = new int[1];
-    fids = new int[1];
-    nids = new int[1];
-    incs = new int[1];
-    oids = new int[1];
+    finish(id);
   }
 
   /**
-   * Constructs a map by reading it from a file.
-   * @param f file to read from
+   * Constructs a map by reading it from the database directory. If no map exists, or if it
+   * has been stored in an outdated format, it will be recreated from the database table.
+   * @param data data reference
    * @throws IOException I/O error while reading from the file
    */
-  public IdPreMap(final IOFile f) throws IOException {
-    try(DataInput in = new DataInput(f)) {
-      baseid = in.readNum();
-      rows = in.readNum();
-      pres = in.readNums();
-      fids = in.readNums();
-      nids = in.readNums();
-      incs = in.readNums();
-      oids = in.readNums();
+  public IdPreMap(final Data data) throws IOException {
+    finish(-1);
+    identity = false;
+    final IOFile file = data.meta.dbfile(DataText.DATAIDP);
+    if(file.exists()) {
+      try(DataInput in = new DataInput(file)) {
+        if(in.readNum() == FORMAT) {
+          for(int r = in.readNum(); r > 0; r--) append(in.readNum(), in.readNum());
+          return;
+        }
+      }
     }
+    final int size = data.meta.size;
+    for(int pre = 0; pre < size; pre++) append(data.id(pre), 1);
   }
 
   /**
@@ -70,14 +112,22 @@ public class IdPreMap {
    * @throws IOException I/O error while writing to the file
    */
   public final void write(final IOFile file) throws IOException {
+    init();
     try(DataOutput out = new DataOutput(file)) {
-      out.writeNum(baseid);
-      out.writeNum(rows);
-      out.writeNums(pres);
-      out.writeNums(fids);
-      out.writeNums(nids);
-      out.writeNums(incs);
-      out.writeNums(oids);
+      out.writeNum(FORMAT);
+      out.writeNum(runs);
+      final IntList stack = new IntList();
+      for(int n = root; n != NIL || !stack.isEmpty();) {
+        if(n != NIL) {
+          stack.add(n);
+          n = lefts[n];
+        } else {
+          n = stack.pop();
+          out.writeNum(fids[n]);
+          out.writeNum(sizes[n]);
+          n = rights[n];
+        }
+      }
     }
   }
 
@@ -86,7 +136,23 @@ public class IdPreMap {
    * @param base last id
    */
   public final void finish(final int base) {
+    final int c = 8;
+    fids = new int[c];
+    sizes = new int[c];
+    prios = new int[c];
+    sums = new int[c];
+    lefts = new int[c];
+    rights = new int[c];
+    parents = new int[c];
+    ilefts = new int[c];
+    irights = new int[c];
+    root = NIL;
+    iroot = NIL;
+    nodes = 1;
+    free = NIL;
+    runs = 0;
     baseid = base;
+    identity = true;
   }
 
   /**
@@ -95,18 +161,12 @@ public class IdPreMap {
    * @return PRE or -1 if the ID is already deleted
    */
   public int pre(final int id) {
-    // no updates or id is not affected by updates
-    if(rows == 0 || id < pres[0]) return id;
-
-    if(id > baseid) {
-      // id was inserted by update
-      for(int i = 0; i < rows; ++i) {
-        if(fids[i] <= id && id <= nids[i]) return pres[i] + id - fids[i];
-      }
-    } else {
-      // id is affected by updates
-      final int i = sortedLastIndexOf(oids, id);
-      return id + incs[i < 0 ? -i - 2 : i];
+    if(identity) return id;
+    int n = iroot;
+    while(n != NIL) {
+      if(id < fids[n]) n = ilefts[n];
+      else if(id >= fids[n] + sizes[n]) n = irights[n];
+      else return rank(n) + id - fids[n];
     }
     return -1;
   }
@@ -118,55 +178,25 @@ public class IdPreMap {
    * @param c number of inserted records
    */
   public void insert(final int pre, final int id, final int c) {
-    if(rows == 0 && pre == id && id == baseid + 1) {
+    if(identity && pre == id && id == baseid + 1) {
       // no mapping and we append at the end => nothing to do
       baseid += c;
       return;
     }
-
-    int pos = 0;
-    int inc = c;
-    int oid = pre;
-
-    if(rows > 0) {
-      pos = Arrays.binarySearch(pres, 0, rows, pre);
-      if(pos < 0) {
-        pos = -pos - 1;
-        if(pos != 0) {
-          // check if inserting into an existing id interval
-          final int prev = pos - 1;
-          final int prevcnt = nids[prev] - fids[prev] + 1;
-          final int prevpre = pres[prev];
-
-          if(pre < prevpre + prevcnt) {
-            // split the id interval
-            final int split = pre - prevpre;
-            final int fid = fids[prev] + split;
-
-            // add a new next interval
-            add(pos, pre, fid, nids[prev], incs[prev], oids[prev]);
-
-            // shrink the previous interval
-            nids[prev] = fid - 1;
-            incs[prev] -= prevcnt - split;
-
-            oid = oids[prev];
-            inc += incs[prev];
-          } else {
-            oid = pre - incs[prev];
-            inc += incs[prev];
-          }
-        }
-      } else if(pos > 0) {
-        oid = oids[pos];
-        inc += incs[pos - 1];
+    init();
+    // extend preceding run if it ends with the previous ID
+    if(pre > 0) {
+      final int n = node(pre - 1);
+      if(fids[n] + sizes[n] == id && rank(n) + sizes[n] == pre) {
+        sizes[n] += c;
+        for(int p = n; p != NIL; p = parents[p]) sums[p] += c;
+        return;
       }
-
-      increment(pos, c);
     }
-
-    // add the new interval
-    add(pos, pre, id, id + c - 1, inc, oid);
+    split(root, pre);
+    final int l = left, r = right;
+    root = merge(merge(l, create(id, c)), r);
+    parents[root] = NIL;
   }
 
   /**
@@ -176,214 +206,305 @@ public class IdPreMap {
    * @param c number of deleted records (negative)
    */
   public void delete(final int pre, final int id, final int c) {
-    if(rows == 0 && pre == id && id - c == baseid + 1) {
-      // no mapping and we delete at the end => nothing to do
-      baseid += c;
-      return;
+    init();
+    split(root, pre);
+    final int l = left;
+    split(right, -c);
+    final int r = right;
+
+    // release all runs of the deleted subtree
+    final IntList stack = new IntList(), deleted = new IntList();
+    if(left != NIL) stack.add(left);
+    while(!stack.isEmpty()) {
+      final int n = stack.pop();
+      if(lefts[n] != NIL) stack.add(lefts[n]);
+      if(rights[n] != NIL) stack.add(rights[n]);
+      deleted.add(n);
     }
+    for(final int n : deleted.finish()) release(n);
 
-    if(rows == 0) {
-      // no previous updates: add a new record
-      add(0, pre, INV, INV, c, id);
-      return;
-    }
+    root = merge(l, r);
+    parents[root] = NIL;
+  }
 
-    final int end = pre - c - 1;
-    final int startIndex = findPre(pre);
+  /**
+   * Returns the size of the map.
+   * @return number of stored runs
+   */
+  public int size() {
+    init();
+    return runs;
+  }
 
-    // remove all updates which has affected records which now have to be deleted
-    final int removeStart = startIndex < rows && pres[startIndex] < pre ?
-         startIndex + 1 : startIndex;
-    int removeEnd = -1;
-    for(int i = startIndex; i < rows; ++i) {
-      if(end < pres[i] + nids[i] - fids[i]) break;
-      removeEnd = i;
-    }
+  /**
+   * Creates the initial run of IDs if no updates have been registered yet.
+   */
+  private void init() {
+    if(!identity) return;
+    identity = false;
+    if(baseid >= 0) append(0, baseid + 1);
+  }
 
-    final int inc;
-    final int oid;
-    int endIndex;
-    if(removeEnd >= 0) {
-      inc = incs[removeEnd];
-      oid = oids[removeEnd];
-      endIndex = removeStart;
-      remove(removeStart, removeEnd);
+  /**
+   * Appends a run of IDs.
+   * @param id first ID
+   * @param c number of IDs
+   */
+  private void append(final int id, final int c) {
+    final int n = node(sums[root] - 1);
+    if(n != NIL && fids[n] + sizes[n] == id) {
+      sizes[n] += c;
+      for(int p = n; p != NIL; p = parents[p]) sums[p] += c;
     } else {
-      inc = startIndex > 0 ? incs[startIndex - 1] : 0;
-      oid = id;
-      endIndex = startIndex;
-    }
-
-    if(rows <= startIndex) {
-      // the delete does not affect previous updates
-      add(startIndex, pre, INV, INV, inc + c, oid);
-      return;
+      root = merge(root, create(id, c));
+      parents[root] = NIL;
     }
+  }
 
-    final int min = pres[startIndex];
-    if(startIndex < endIndex) {
-      if(endIndex < rows && pres[endIndex] <= end) {
-        shrinkFromStart(endIndex, pre, c);
-        shrinkFromEnd(startIndex, pre, inc + c);
+  /**
+   * Returns the node of the run that contains the specified position.
+   * @param pos position
+   * @return node, or {@link #NIL} if the position is out of range
+   */
+  private int node(final int pos) {
+    if(pos < 0) return NIL;
+    int n = root, p = pos;
+    while(n != NIL) {
+      final int ls = sums[lefts[n]];
+      if(p < ls) {
+        n = lefts[n];
       } else {
-        --endIndex;     // endIndex is not processed, so we let the increment do that
-        shrinkFromEnd(startIndex, pre, inc + c);
+        p -= ls;
+        if(p < sizes[n]) return n;
+        p -= sizes[n];
+        n = rights[n];
       }
-    } else if(min < pre) {
-      add(++endIndex, pres[startIndex], fids[startIndex], nids[startIndex],
-          incs[startIndex], oids[startIndex]);
-      shrinkFromStart(endIndex, pre, c);
-      shrinkFromEnd(startIndex, pre, inc + c);
-    } else if(end < min) {
-      add(endIndex, pre, INV, INV, inc + c, oid);
-    } else {
-      shrinkFromStart(startIndex, pre, c);
     }
-
-    increment(endIndex + 1, c);
+    return NIL;
   }
 
   /**
-   * Shrinks the given tuple from the start.
-   * @param i index of the tuple
-   * @param pre pre-value
-   * @param c number of deleted records (negative number)
+   * Returns the position of the first ID of a run.
+   * @param node node
+   * @return position
    */
-  private void shrinkFromStart(final int i, final int pre, final int c) {
-    incs[i] += c;
-    fids[i] += pre - c - pres[i];
-    pres[i] = pre;
+  private int rank(final int node) {
+    int r = sums[lefts[node]];
+    for(int n = node, p = parents[n]; p != NIL; n = p, p = parents[p]) {
+      if(rights[p] == n) r += sums[lefts[p]] + sizes[p];
+    }
+    return r;
   }
 
   /**
-   * Shrinks the given tuple from the end.
-   * @param i index of the tuple
-   * @param pre pre-value
-   * @param inc new inc-value
+   * Splits a PRE treap after the specified number of IDs. A run will be divided in two if
+   * the split position is located inside it. The results are assigned to {@link #left} and
+   * {@link #right}.
+   * @param node root of the treap
+   * @param k number of IDs in the left treap
    */
-  private void shrinkFromEnd(final int i, final int pre, final int inc) {
-    nids[i] = fids[i] + pre - pres[i] - 1;
-    incs[i] = inc;
+  private void split(final int node, final int k) {
+    if(node == NIL) {
+      left = NIL;
+      right = NIL;
+      return;
+    }
+    final int ls = sums[lefts[node]], size = sizes[node];
+    if(k <= ls) {
+      split(lefts[node], k);
+      lefts[node] = right;
+      update(node);
+      right = node;
+    } else if(k >= ls + size) {
+      split(rights[node], k - ls - size);
+      rights[node] = left;
+      update(node);
+      left = node;
+    } else {
+      final int o = k - ls, r = rights[node];
+      sizes[node] = o;
+      rights[node] = NIL;
+      update(node);
+      final int n = create(fids[node] + o, size - o);
+      right = merge(n, r);
+      left = node;
+    }
   }
 
   /**
-   * Increments the pre- and inc-values of all tuples starting from the given index.
-   * @param from start index
-   * @param with increment value
+   * Merges two PRE treaps.
+   * @param l left treap
+   * @param r right treap
+   * @return root of the merged treap
    */
-  private void increment(final int from, final int with) {
-    for(int i = from; i < rows; ++i) {
-      pres[i] += with;
-      incs[i] += with;
+  private int merge(final int l, final int r) {
+    if(l == NIL) return r;
+    if(r == NIL) return l;
+    if(prios[l] > prios[r]) {
+      rights[l] = merge(rights[l], r);
+      update(l);
+      return l;
     }
+    lefts[r] = merge(l, lefts[r]);
+    update(r);
+    return r;
   }
 
   /**
-   * Returns the size of the map.
-   * @return number of stored tuples.
+   * Updates the size of a subtree and the parent references of its children.
+   * @param node node
    */
-  public int size() {
-    return rows;
+  private void update(final int node) {
+    final int l = lefts[node], r = rights[node];
+    sums[node] = sums[l] + sums[r] + sizes[node];
+    if(l != NIL) parents[l] = node;
+    if(r != NIL) parents[r] = node;
   }
 
   /**
-   * Searches for a given pre value.
-   * @param pre pre value
-   * @return index of the record where the pre is found, or the insertion point if not found
+   * Inserts a node into an ID treap.
+   * @param node root of the treap
+   * @param n node to be inserted
+   * @return new root
    */
-  private int findPre(final int pre) {
-    int low = 0;
-    int high = rows - 1;
-    while(low <= high) {
-      final int mid = low + high >>> 1;
-      final int midValMin = pres[mid];
-      final int midValMax = midValMin + nids[mid] - fids[mid];
-      if(midValMax < pre) low = mid + 1;
-      else if(midValMin > pre) high = mid - 1;
-      else return mid; // key found
+  private int insertId(final int node, final int n) {
+    if(node == NIL) return n;
+    if(prios[n] > prios[node]) {
+      splitId(node, fids[n]);
+      ilefts[n] = left;
+      irights[n] = right;
+      return n;
     }
-    return low; // key not found.
+    if(fids[n] < fids[node]) ilefts[node] = insertId(ilefts[node], n);
+    else irights[node] = insertId(irights[node], n);
+    return node;
   }
 
   /**
-   * Binary search of a key in a list. If there are several hits the last one is returned.
-   * @param a array to search into
-   * @param e key to search for
-   * @return index of the found hit or where the key ought to be inserted
+   * Removes a node from an ID treap.
+   * @param node root of the treap
+   * @param n node to be removed
+   * @return new root
    */
-  private int sortedLastIndexOf(final int[] a, final int e) {
-    int i = Arrays.binarySearch(a, 0, rows, e);
-    if(i >= 0) {
-      while(++i < rows && a[i] == e);
-      return i - 1;
-    }
-    return i;
+  private int deleteId(final int node, final int n) {
+    if(node == n) return mergeId(ilefts[n], irights[n]);
+    if(fids[n] < fids[node]) ilefts[node] = deleteId(ilefts[node], n);
+    else irights[node] = deleteId(irights[node], n);
+    return node;
   }
 
   /**
-   * Adds a record to the table and the ID index.
-   * @param i index in the table where the record should be inserted
-   * @param pre pre value
-   * @param fid first ID value
-   * @param nid last ID value
-   * @param inc increment value
-   * @param oid original ID value
+   * Splits an ID treap. The results are assigned to {@link #left} and {@link #right}.
+   * @param node root of the treap
+   * @param id first ID of the right treap
    */
-  private void add(final int i, final int pre, final int fid, final int nid,
-      final int inc, final int oid) {
-    if(rows == pres.length) {
-      final int s = Array.newSize(rows);
-      pres = Arrays.copyOf(pres, s);
-      fids = Arrays.copyOf(fids, s);
-      nids = Arrays.copyOf(nids, s);
-      incs = Arrays.copyOf(incs, s);
-      oids = Arrays.copyOf(oids, s);
+  private void splitId(final int node, final int id) {
+    if(node == NIL) {
+      left = NIL;
+      right = NIL;
+    } else if(fids[node] < id) {
+      splitId(irights[node], id);
+      irights[node] = left;
+      left = node;
+    } else {
+      splitId(ilefts[node], id);
+      ilefts[node] = right;
+      right = node;
     }
-    if(i < rows) {
-      final int destPos = i + 1;
-      final int length = rows - i;
-      Array.copy(pres, i, length, pres, destPos);
-      Array.copy(fids, i, length, fids, destPos);
-      Array.copy(nids, i, length, nids, destPos);
-      Array.copy(incs, i, length, incs, destPos);
-      Array.copy(oids, i, length, oids, destPos);
+  }
+
+  /**
+   * Merges two ID treaps.
+   * @param l left treap
+   * @param r right treap
+   * @return root of the merged treap
+   */
+  private int mergeId(final int l, final int r) {
+    if(l == NIL) return r;
+    if(r == NIL) return l;
+    if(prios[l] > prios[r]) {
+      irights[l] = mergeId(irights[l], r);
+      return l;
     }
-    pres[i] = pre;
-    fids[i] = fid;
-    nids[i] = nid;
-    incs[i] = inc;
-    oids[i] = oid;
-    ++rows;
+    ilefts[r] = mergeId(l, ilefts[r]);
+    return r;
   }
 
   /**
-   * Removes a records from the table and the ID index.
-   * @param s start index of records in the table (inclusive)
-   * @param e end index of records in the table (inclusive)
+   * Creates a node for a new run and adds it to the ID treap.
+   * @param id first ID
+   * @param c number of IDs
+   * @return node
    */
-  private void remove(final int s, final int e) {
-    if(s <= e) {
-      final int last = e + 1;
-      final int length = rows - last;
-      Array.copy(pres, last, length, pres, s);
-      Array.copy(fids, last, length, fids, s);
-      Array.copy(nids, last, length, nids, s);
-      Array.copy(incs, last, length, incs, s);
-      Array.copy(oids, last, length, oids, s);
-      rows -= last - s;
+  private int create(final int id, final int c) {
+    int n = free;
+    if(n != NIL) {
+      free = rights[n];
+    } else {
+      if(nodes == fids.length) {
+        final int s = Array.newSize(nodes);
+        fids = Arrays.copyOf(fids, s);
+        sizes = Arrays.copyOf(sizes, s);
+        prios = Arrays.copyOf(prios, s);
+        sums = Arrays.copyOf(sums, s);
+        lefts = Arrays.copyOf(lefts, s);
+        rights = Arrays.copyOf(rights, s);
+        parents = Arrays.copyOf(parents, s);
+        ilefts = Arrays.copyOf(ilefts, s);
+        irights = Arrays.copyOf(irights, s);
+      }
+      n = nodes++;
     }
+    // xorshift generator
+    seed ^= seed << 13;
+    seed ^= seed >>> 17;
+    seed ^= seed << 5;
+
+    fids[n] = id;
+    sizes[n] = c;
+    sums[n] = c;
+    prios[n] = seed;
+    lefts[n] = NIL;
+    rights[n] = NIL;
+    parents[n] = NIL;
+    ilefts[n] = NIL;
+    irights[n] = NIL;
+    iroot = insertId(iroot, n);
+    runs++;
+    return n;
+  }
+
+  /**
+   * Removes a node from the ID treap and releases it.
+   * @param n node
+   */
+  private void release(final int n) {
+    iroot = deleteId(iroot, n);
+    rights[n] = free;
+    free = n;
+    runs--;
   }
 
   @Override
   public String toString() {
     final Table t = new Table();
-    t.header.add("PRE").add("FID").add("NID").add("INC").add("OID");
-    for(int i = 0; i < 5; ++i) t.align.add(true);
-    for(int i = 0; i < rows; i++) {
-      final TokenList tl = new TokenList();
-      tl.add(pres[i]).add(fids[i]).add(nids[i]).add(incs[i]).add(oids[i]);
-      t.contents.add(tl);
+    t.header.add("PRE").add("FID").add("NID");
+    for(int i = 0; i < 3; ++i) t.align.add(true);
+    final IntList stack = new IntList();
+    int pre = 0;
+    for(int n = root; n != NIL || !stack.isEmpty();) {
+      if(n != NIL) {
+        stack.add(n);
+        n = lefts[n];
+      } else {
+        n = stack.pop();
+        final TokenList tl = new TokenList();
+        tl.add(pre).add(fids[n]).add(fids[n] + sizes[n] - 1);
+        t.contents.add(tl);
+        pre += sizes[n];
+        n = rights[n];
+      }
     }
-    return t + "\n- BaseID: " + baseid + '\n';
+    return t + "\n- Runs: " + runs + '\n';
   }
 }
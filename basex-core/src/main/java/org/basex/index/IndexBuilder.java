@@ -3,6 +3,8 @@ package org.basex.index;
 import static org.basex.core.Text.*;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 import org.basex.core.*;
 import org.basex.core.jobs.*;
@@ -64,6 +66,48 @@ public abstract class IndexBuilder extends Job {
     if(Performance.memory() >= maxMem) clean();
   }
 
+  /**
+   * Evaluates the specified tasks in parallel and waits until all of them have been completed.
+   * If the calling thread belongs to a fork/join pool, the tasks will be forked in this pool.
+   * Otherwise, a new pool will be created.
+   * @param tasks tasks to evaluate
+   * @param threads maximum number of threads
+   * @throws IOException I/O exception (the first exception raised by one of the tasks)
+   */
+  public static void invoke(final List<Callable<Void>> tasks, final int threads)
+      throws IOException {
+
+    final List<? extends Future<Void>> futures;
+    ForkJoinPool pool = null;
+    if(ForkJoinTask.inForkJoinPool()) {
+      final ArrayList<ForkJoinTask<Void>> list = new ArrayList<>(tasks.size());
+      for(final Callable<Void> task : tasks) list.add(ForkJoinTask.adapt(task).fork());
+      futures = list;
+    } else {
+      pool = new ForkJoinPool(Math.max(1, threads));
+      futures = pool.invokeAll(tasks);
+    }
+
+    try {
+      for(final Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch(final ExecutionException ex) {
+          final Throwable th = ex.getCause();
+          if(th instanceof IOException) throw (IOException) th;
+          if(th instanceof RuntimeException) throw (RuntimeException) th;
+          if(th instanceof Error) throw (Error) th;
+          throw new BaseXException(ex);
+        } catch(final InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new JobException(INTERRUPTED);
+        }
+      }
+    } finally {
+      if(pool != null) pool.shutdown();
+    }
+  }
+
   /**
    * Builds the index structure and returns an index instance.
    * @return index instance
@@ -86,7 +130,17 @@ public abstract class IndexBuilder extends Job {
    * @return result of check
    */
   protected final boolean indexEntry() {
-    return data.kind(pre) == (text ? Data.TEXT : Data.ATTR) && includeNames.contains(pre, text);
+    return indexEntry(pre);
+  }
+
+  /**
+   * Checks if the specified entry should be indexed.
+   * <p><em>Important:</em> This method is thread-safe.</p>
+   * @param p pre value
+   * @return result of check
+   */
+  protected final boolean indexEntry(final int p) {
+    return data.kind(p) == (text ? Data.TEXT : Data.ATTR) && includeNames.contains(p, text);
   }
 
   /**
@@ -117,6 +171,18 @@ public abstract class IndexBuilder extends Job {
     return split;
   }
 
+  /**
+   * Decides whether the temporary index structure of a concurrently built partition is so large
+   * that it must be flushed to disk before continuing.
+   * <p><em>Important:</em> This method is thread-safe.</p>
+   * @param cnt number of index operations since the structure was last flushed
+   * @param parts number of partitions that are built at the same time
+   * @return true if structure shall be flushed to disk
+   */
+  protected final boolean splitRequired(final long cnt, final int parts) {
+    return splitSize > 0 ? cnt >= Math.max(1, splitSize / parts) : Performance.memory() >= maxMem;
+  }
+
   /**
    * Performs memory cleanup after writing partial memory if necessary.
    */
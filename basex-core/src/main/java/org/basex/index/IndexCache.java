@@ -2,48 +2,95 @@ package org.basex.index;
 
 import static org.basex.util.Token.*;
 
-import java.lang.ref.*;
-import java.util.concurrent.locks.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import org.basex.util.*;
 
 /**
  * This class caches sizes and offsets from index results.
  *
+ * The entries of all index caches are stored in a process-wide structure with a fixed capacity.
+ * It is divided into segments with separate locks. Each segment is a segmented LRU cache:
+ * new entries are added to a probationary list, and entries that are accessed again are moved
+ * to a protected list. If the protected list is full, its least recently used entry is moved
+ * back to the probationary list, and if the segment is full, the least recently used entry of
+ * the probationary list will be evicted. A single pass over many keys will thus not displace
+ * frequently accessed entries.
+ *
  * @author BaseX Team 2005-18, BSD License
  * @author Dimitar Popov
  */
 public final class IndexCache {
-  /** Queue used to collect unused keys. */
-  private final ReferenceQueue<IndexEntry> queue = new ReferenceQueue<>();
-  /** Read-write lock. */
-  private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock(true);
-  /** Hash table buckets. */
-  private BucketEntry[] buckets = new BucketEntry[Array.CAPACITY];
-  /** Number of entries in the cache. */
-  private int size;
+  /** Number of segments (must be a power of two). */
+  private static final int SEGMENTS = 16;
+  /** Segments. */
+  private static final Segment[] CACHE = new Segment[SEGMENTS];
+  /** Maximum number of entries per segment. */
+  private static volatile int capacity = 100000 / SEGMENTS;
+
+  /** Number of cache hits. */
+  private static final LongAdder HITS = new LongAdder();
+  /** Number of cache misses. */
+  private static final LongAdder MISSES = new LongAdder();
+  /** Number of evicted entries. */
+  private static final LongAdder EVICTIONS = new LongAdder();
+
+  static {
+    for(int s = 0; s < SEGMENTS; s++) CACHE[s] = new Segment();
+  }
+
+  /** Number of entries of this cache. */
+  private final AtomicInteger size = new AtomicInteger();
+
+  /**
+   * Assigns the maximum number of cached entries.
+   * @param entries number of entries
+   */
+  public static void size(final int entries) {
+    capacity = Math.max(1, entries / SEGMENTS);
+  }
+
+  /**
+   * Returns cache statistics.
+   * @return info string
+   */
+  public static String info() {
+    int entries = 0;
+    for(final Segment segment : CACHE) {
+      synchronized(segment) {
+        entries += segment.probation.size() + segment.protect.size();
+      }
+    }
+    final long h = HITS.sum(), m = MISSES.sum(), a = h + m;
+    return Util.info("% of % entries, % hits (% %), % misses, % evictions",
+        entries, (long) capacity * SEGMENTS, h, a == 0 ? 0 : h * 100 / a, "%", m,
+        EVICTIONS.sum());
+  }
 
   /**
    * Gets cached entry for the specified key.
    * @param key key
-   * @return cached entry or {@code null} if the entry is stale
+   * @return cached entry or {@code null} if the entry is not cached
    */
   public IndexEntry get(final byte[] key) {
-    final int hash = hash(key);
-    rwl.readLock().lock();
-
-    try {
-      final int i = indexFor(hash, buckets.length);
-      BucketEntry e = buckets[i];
-      while(e != null) {
-        final IndexEntry entry = e.get();
-        if(entry != null && e.hash == hash && eq(entry.key, key)) return entry;
-        e = e.next;
+    final Key k = new Key(this, key);
+    final Segment segment = segment(k);
+    synchronized(segment) {
+      IndexEntry entry = segment.protect.remove(k);
+      if(entry == null) {
+        entry = segment.probation.remove(k);
+        if(entry == null) {
+          MISSES.increment();
+          return null;
+        }
       }
-    } finally {
-      rwl.readLock().unlock();
+      // move entry to the head of the protected list
+      segment.protect.put(k, entry);
+      segment.balance();
+      HITS.increment();
+      return entry;
     }
-    return null;
   }
 
   /**
@@ -55,31 +102,21 @@ public final class IndexCache {
    * @return cache entry
    */
   public IndexEntry add(final byte[] key, final int count, final long offset) {
-    final int hash = hash(key);
-    rwl.writeLock().lock();
-
-    try {
-      purge();
-      final int i = indexFor(hash, buckets.length);
-      BucketEntry current = buckets[i], prev = current;
-      while(current != null) {
-        final BucketEntry next = current.next;
-        final IndexEntry entry = current.get();
-        if(entry == null) {
-          delete(i, current, prev, next);
-        } else if(current.hash == hash && eq(entry.key, key)) {
-          update(entry, count, offset);
-          return entry;
-        }
-        prev = current;
-        current = next;
+    final Key k = new Key(this, key);
+    final Segment segment = segment(k);
+    synchronized(segment) {
+      IndexEntry entry = segment.protect.get(k);
+      if(entry == null) entry = segment.probation.get(k);
+      if(entry != null) {
+        entry.size = count;
+        entry.offset = offset;
+      } else {
+        entry = new IndexEntry(key, count, offset);
+        segment.probation.put(k, entry);
+        size.incrementAndGet();
+        segment.evict();
       }
-
-      final IndexEntry entry = new IndexEntry(key, count, offset);
-      add(i, hash, entry);
       return entry;
-    } finally {
-      rwl.writeLock().unlock();
     }
   }
 
@@ -88,143 +125,115 @@ public final class IndexCache {
    * @param key key
    */
   public void delete(final byte[] key) {
-    final int hash = hash(key);
-    rwl.writeLock().lock();
-
-    try {
-      purge();
-      final int i = indexFor(hash, buckets.length);
-      BucketEntry e = buckets[i], prev = e;
-      while(e != null) {
-        final BucketEntry next = e.next;
-        final IndexEntry entry = e.get();
-        if(entry == null) {
-          delete(i, e, prev, next);
-        } else if(e.hash == hash && eq(entry.key, key)) {
-          delete(i, e, prev, next);
-          break;
-        }
-        prev = e;
-        e = next;
+    final Key k = new Key(this, key);
+    final Segment segment = segment(k);
+    synchronized(segment) {
+      if(segment.protect.remove(k) != null || segment.probation.remove(k) != null) {
+        size.decrementAndGet();
       }
-    } finally {
-      rwl.writeLock().unlock();
     }
   }
 
   /**
-   * Purges stale entries from the cache.
+   * Removes all entries of this cache.
    */
-  private void purge() {
-    for(Object x; (x = queue.poll()) != null;) {
-      final BucketEntry e = (BucketEntry) x;
-      final int i = indexFor(e.hash, buckets.length);
-      BucketEntry prev = buckets[i], p = prev;
-      while(p != null) {
-        final BucketEntry next = p.next;
-        if(p == e) {
-          delete(i, e, prev, next);
-          break;
-        }
-        prev = p;
-        p = next;
+  public void clear() {
+    for(final Segment segment : CACHE) {
+      synchronized(segment) {
+        segment.protect.keySet().removeIf(k -> k.cache == this);
+        segment.probation.keySet().removeIf(k -> k.cache == this);
       }
     }
+    size.set(0);
   }
 
   /**
-   * Add a new index entry to the bucket with the specified index.
-   * @param i bucket index
-   * @param hash hash of the new index key
-   * @param entry index entry
+   * Returns the number of cached entries.
+   * @return number of entries
    */
-  private void add(final int i, final int hash, final IndexEntry entry) {
-    buckets[i] = new BucketEntry(hash, buckets[i], entry, queue);
-    if(++size == buckets.length) rehash();
+  public int size() {
+    return size.get();
   }
 
   /**
-   * Update an existing index entry.
-   * @param entry index entry to update
-   * @param size new size
-   * @param offset new offset
+   * Returns the segment for the specified key.
+   * @param key key
+   * @return segment
    */
-  private static void update(final IndexEntry entry, final int size, final long offset) {
-    entry.size = size;
-    entry.offset = offset;
+  private static Segment segment(final Key key) {
+    final int h = key.hash;
+    return CACHE[(h ^ h >>> 16) & SEGMENTS - 1];
   }
 
   /**
-   * Deletes a cached entry from the buckets with the specified index.
-   * @param i buckets index
-   * @param e cached entry to delete
-   * @param p previous cache entry
-   * @param n next cache entry
+   * Cache segment.
    */
-  private void delete(final int i, final BucketEntry e, final BucketEntry p, final BucketEntry n) {
-    if(p == e) buckets[i] = n;
-    else p.next = n;
-    e.next = null;
-    --size;
-  }
+  private static final class Segment {
+    /** Probationary entries (in the order of their insertion). */
+    private final LinkedHashMap<Key, IndexEntry> probation = new LinkedHashMap<>();
+    /** Protected entries (in the order of their last access). */
+    private final LinkedHashMap<Key, IndexEntry> protect = new LinkedHashMap<>();
 
-  /**
-   * Resizes the hash table.
-   */
-  private void rehash() {
-    purge();
-
-    final int s = size << 1;
-    final BucketEntry[] tmp = new BucketEntry[s];
-
-    final int l = buckets.length;
-    for(int i = 0; i < l; ++i) {
-      BucketEntry e = buckets[i];
-      buckets[i] = null;
-      while(e != null) {
-        final BucketEntry next = e.next;
-        final int p = indexFor(e.hash, tmp.length);
-        e.next = tmp[p];
-        tmp[p] = e;
-        e = next;
+    /**
+     * Moves least recently used entries from the protected to the probationary list
+     * if the protected list is full.
+     */
+    private void balance() {
+      final int max = Math.max(1, capacity * 4 / 5);
+      while(protect.size() > max) {
+        final Iterator<Map.Entry<Key, IndexEntry>> iter = protect.entrySet().iterator();
+        final Map.Entry<Key, IndexEntry> eldest = iter.next();
+        iter.remove();
+        probation.put(eldest.getKey(), eldest.getValue());
       }
+      evict();
     }
-    buckets = tmp;
-  }
 
-  /**
-   * Returns buckets index for a hash code.
-   * @param h hash code
-   * @param n number of available buckets
-   * @return index of a buckets
-   */
-  private static int indexFor(final int h, final int n) {
-    return h & n - 1;
+    /**
+     * Evicts least recently used entries if the segment is full.
+     */
+    private void evict() {
+      while(probation.size() + protect.size() > capacity) {
+        final Iterator<Key> iter = (probation.isEmpty() ? protect : probation).keySet().iterator();
+        iter.next().cache.size.decrementAndGet();
+        iter.remove();
+        EVICTIONS.increment();
+      }
+    }
   }
 
   /**
-   * Cache buckets entry. Used to implement a linked list of cache entries for
-   * each buckets. It also stores the hash of the current entry for better
-   * performance.
+   * Key of a cached entry.
    */
-  private static class BucketEntry extends SoftReference<IndexEntry> {
-    /** Hash code of the stored cache entry key. */
-    final int hash;
-    /** Next buckets entry or {@code null} if the last one for this buckets. */
-    BucketEntry next;
+  private static final class Key {
+    /** Cache. */
+    private final IndexCache cache;
+    /** Index key. */
+    private final byte[] key;
+    /** Hash code. */
+    private final int hash;
 
     /**
      * Constructor.
-     * @param h hash code of the cache entry key
-     * @param n next buckets entry or {@code null} if the last one
-     * @param v stored cache entry
-     * @param rq reference queue
+     * @param cache cache
+     * @param key index key
      */
-    BucketEntry(final int h, final BucketEntry n, final IndexEntry v,
-        final ReferenceQueue<IndexEntry> rq) {
-      super(v, rq);
-      hash = h;
-      next = n;
+    private Key(final IndexCache cache, final byte[] key) {
+      this.cache = cache;
+      this.key = key;
+      hash = hash(key) * 31 + System.identityHashCode(cache);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if(!(obj instanceof Key)) return false;
+      final Key k = (Key) obj;
+      return cache == k.cache && hash == k.hash && eq(key, k.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
     }
   }
 }
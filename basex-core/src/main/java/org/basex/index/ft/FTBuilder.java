@@ -27,6 +27,10 @@ public final class FTBuilder extends IndexBuilder {
   private final FTLexer lexer;
   /** Number of indexed tokens. */
   private long ntok;
+  /** Hash values of the final index tokens (used for creating the Bloom filter). */
+  private final LongList hashes = new LongList();
+  /** Indicates if node ids will be indexed (required for updatable indexes). */
+  private final boolean ids;
 
   /**
    * Constructor.
@@ -38,19 +42,30 @@ public final class FTBuilder extends IndexBuilder {
     final MetaData meta = data.meta;
     tree = new FTIndexTrees(data.meta.maxlen);
 
-    final FTOpt fto = new FTOpt();
-    fto.set(FTFlag.DC, meta.diacritics);
-    fto.set(FTFlag.ST, meta.stemming);
-    fto.cs = meta.casesens ? FTCase.SENSITIVE : FTCase.INSENSITIVE;
-    fto.sw = new StopWords(data, meta.stopwords);
-    fto.ln = data.meta.language;
-
+    final FTOpt fto = options(meta, new StopWords(data, meta.stopwords));
     if(!Tokenizer.supportFor(fto.ln))
       throw new BaseXException(NO_TOKENIZER_X, fto.ln);
     if(meta.stemming && !Stemmer.supportFor(fto.ln))
       throw new BaseXException(NO_STEMMER_X, fto.ln);
 
     lexer = new FTLexer(fto);
+    ids = meta.updindex;
+  }
+
+  /**
+   * Returns the full-text options for building and updating the index.
+   * @param meta meta data
+   * @param sw stop words
+   * @return full-text options
+   */
+  static FTOpt options(final MetaData meta, final StopWords sw) {
+    final FTOpt fto = new FTOpt();
+    fto.set(FTFlag.DC, meta.diacritics);
+    fto.set(FTFlag.ST, meta.stemming);
+    fto.cs = meta.casesens ? FTCase.SENSITIVE : FTCase.INSENSITIVE;
+    fto.sw = sw;
+    fto.ln = meta.language;
+    return fto;
   }
 
   @Override
@@ -76,7 +91,7 @@ public final class FTBuilder extends IndexBuilder {
               writeIndex(true);
               clean();
             }
-            tree.index(tok, pre, pos, splits);
+            tree.index(tok, ids ? data.id(pre) : pre, pos, splits);
             count++;
           }
         }
@@ -84,6 +99,8 @@ public final class FTBuilder extends IndexBuilder {
 
       // finalize partial or all index structures
       write(splits > 0);
+      new BloomFilter(hashes).write(data.meta.dbfile(DATAFTX + 'b'));
+      if(ids) FTDelta.create(data.meta.dbfile(DATAFTX + 'd'));
 
       finishIndex();
       return new FTIndex(data);
@@ -141,6 +158,7 @@ public final class FTBuilder extends IndexBuilder {
 
         // write token
         outY.writeBytes(v[m].tok);
+        hashes.add(BloomFilter.hash(v[m].tok));
         // pointer on full-text data
         outY.write5(outZ.size());
         // merge and write data size
@@ -198,6 +216,7 @@ public final class FTBuilder extends IndexBuilder {
           ind.add(tr);
         }
         for(int i = 0; i < j; ++i) outY.write1(key[i]);
+        if(!partial) hashes.add(BloomFilter.hash(key));
         // write pointer on full-text data
         outY.write5(dr);
         // write full-text data size (number of pre values)
@@ -0,0 +1,179 @@
+package org.basex.index.ft;
+
+import java.io.*;
+
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * In-memory delta of an updatable full-text index. It contains the postings of all texts that
+ * have been added after the index was built, and the ids of all nodes whose postings in the
+ * index files are outdated. The delta is merged with the index files when the index is rebuilt.
+ *
+ * The delta is stored in a separate file with the following format:
+ * {@code [n, (t, m, (id, pos)*m)*n, k, id*k]} [{@link Num}].
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+final class FTDelta {
+  /** Postings of added texts: tokens, mapped to pairs of ids and positions. */
+  private final TokenObjMap<IntList> postings = new TokenObjMap<>();
+  /** Ids of nodes with outdated postings in the index files. */
+  private final IntSet deleted = new IntSet();
+  /** Delta file. */
+  private final IOFile file;
+  /** Indicates if the delta has been modified. */
+  private boolean dirty;
+
+  /**
+   * Constructor.
+   * @param file delta file
+   * @throws IOException I/O exception
+   */
+  FTDelta(final IOFile file) throws IOException {
+    this.file = file;
+    try(DataInput in = new DataInput(file)) {
+      for(int n = in.readNum(); --n >= 0;) {
+        final byte[] token = in.readToken();
+        final int m = in.readNum() << 1;
+        final IntList list = new IntList(m);
+        for(int i = 0; i < m; i++) list.add(in.readNum());
+        postings.put(token, list);
+      }
+      for(int k = in.readNum(); --k >= 0;) deleted.add(in.readNum());
+    }
+  }
+
+  /**
+   * Creates an empty delta file.
+   * @param file delta file
+   * @throws IOException I/O exception
+   */
+  static void create(final IOFile file) throws IOException {
+    try(DataOutput out = new DataOutput(file)) {
+      out.writeNum(0);
+      out.writeNum(0);
+    }
+  }
+
+  /**
+   * Adds a posting.
+   * @param token token
+   * @param id node id
+   * @param pos position
+   */
+  void add(final byte[] token, final int id, final int pos) {
+    IntList list = postings.get(token);
+    if(list == null) {
+      list = new IntList(2);
+      postings.put(token, list);
+    }
+    list.add(id).add(pos);
+    dirty = true;
+  }
+
+  /**
+   * Deletes the postings of a node.
+   * @param token token
+   * @param id node id
+   */
+  void delete(final byte[] token, final int id) {
+    final IntList list = postings.get(token);
+    if(list != null) {
+      final int ls = list.size();
+      int n = 0;
+      for(int l = 0; l < ls; l += 2) {
+        if(list.get(l) == id) continue;
+        list.set(n++, list.get(l));
+        list.set(n++, list.get(l + 1));
+      }
+      list.size(n);
+    }
+    deleted.add(id);
+    dirty = true;
+  }
+
+  /**
+   * Checks if the postings of the specified node in the index files are outdated.
+   * @param id node id
+   * @return result of check
+   */
+  boolean deleted(final int id) {
+    return deleted.contains(id);
+  }
+
+  /**
+   * Checks if postings in the index files are outdated.
+   * @return result of check
+   */
+  boolean outdated() {
+    return !deleted.isEmpty();
+  }
+
+  /**
+   * Returns the pairs of ids and positions for the specified token.
+   * @param token token
+   * @return postings (can be {@code null})
+   */
+  IntList postings(final byte[] token) {
+    final IntList list = postings.get(token);
+    return list == null || list.isEmpty() ? null : list;
+  }
+
+  /**
+   * Returns the number of postings for the specified token.
+   * @param token token
+   * @return number of postings
+   */
+  int size(final byte[] token) {
+    final IntList list = postings.get(token);
+    return list == null ? 0 : list.size() >> 1;
+  }
+
+  /**
+   * Returns all tokens with postings.
+   * @return tokens
+   */
+  TokenList tokens() {
+    final TokenList tokens = new TokenList();
+    for(final byte[] token : postings) {
+      if(postings(token) != null) tokens.add(token);
+    }
+    return tokens;
+  }
+
+  /**
+   * Checks if the delta is empty.
+   * @return result of check
+   */
+  boolean isEmpty() {
+    return deleted.isEmpty() && tokens().isEmpty();
+  }
+
+  /**
+   * Writes the delta to disk if it has been modified.
+   * @throws IOException I/O exception
+   */
+  void write() throws IOException {
+    if(!dirty) return;
+    final TokenList tokens = tokens();
+    try(DataOutput out = new DataOutput(file)) {
+      out.writeNum(tokens.size());
+      for(final byte[] token : tokens) {
+        final IntList list = postings.get(token);
+        out.writeToken(token);
+        final int ls = list.size();
+        out.writeNum(ls >> 1);
+        for(int l = 0; l < ls; l++) out.writeNum(list.get(l));
+      }
+      out.writeNum(deleted.size());
+      for(final int id : deleted.toArray()) out.writeNum(id);
+    }
+    dirty = false;
+  }
+}
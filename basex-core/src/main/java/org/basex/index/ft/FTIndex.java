@@ -6,6 +6,7 @@ import static org.basex.util.Token.*;
 import static org.basex.util.ft.FTFlag.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.core.*;
 import org.basex.data.*;
@@ -13,6 +14,7 @@ import org.basex.index.*;
 import org.basex.index.query.*;
 import org.basex.index.stats.*;
 import org.basex.index.value.*;
+import org.basex.io.*;
 import org.basex.io.random.*;
 import org.basex.query.expr.ft.*;
 import org.basex.query.util.*;
@@ -45,6 +47,9 @@ import org.basex.util.similarity.*;
  * <li>File <b>z</b> contains the {@code id/pos} references.
  *   The values are ordered, but not distinct:
  *   {@code pre1/pos1, pre2/pos2, pre3/pos3, ...} [{@link Num}]</li>
+ * <li>File <b>b</b> contains a {@link BloomFilter} for all tokens. The file is optional.</li>
+ * <li>File <b>d</b> contains the {@link FTDelta} of an updatable index. If it exists,
+ *   file <b>z</b> contains node ids instead of pre values.</li>
  * </ul>
  *
  * @author BaseX Team 2005-18, BSD License
@@ -69,8 +74,14 @@ public final class FTIndex extends ValueIndex {
 
   /** Cache for number of hits and data reference per token. */
   private final IndexCache cache = new IndexCache();
+  /** Bloom filter for the index tokens (can be {@code null}). */
+  private final BloomFilter filter;
   /** Token positions. */
   private final int[] tp;
+  /** Delta with updated postings ({@code null} if the index is not updatable). */
+  private final FTDelta delta;
+  /** Lexer for tokenizing updated texts (lazily instantiated). */
+  private FTLexer lexer;
 
   /**
    * Constructor, initializing the index structure.
@@ -91,6 +102,30 @@ public final class FTIndex extends ValueIndex {
       tp[p] = inX.read4();
     }
     tp[tl - 1] = (int) inY.length();
+    filter = BloomFilter.read(data.meta.dbfile(DATAFTX + 'b'));
+    final IOFile file = data.meta.dbfile(DATAFTX + 'd');
+    delta = file.exists() ? new FTDelta(file) : null;
+  }
+
+  /**
+   * Indicates if the index is updatable.
+   * @return result of check
+   */
+  public boolean updatable() {
+    return delta != null;
+  }
+
+  /**
+   * Returns a lexer for tokenizing updated texts.
+   * @return lexer
+   */
+  public synchronized FTLexer lexer() {
+    if(lexer == null) {
+      final StopWords sw = new StopWords();
+      sw.compile(data);
+      lexer = new FTLexer(FTBuilder.options(data.meta, sw));
+    }
+    return lexer;
   }
 
   @Override
@@ -101,7 +136,7 @@ public final class FTIndex extends ValueIndex {
     // estimate costs for queries which stretch over multiple index entries
     final FTOpt opt = ((FTLexer) it).ftOpt();
     return IndexCosts.get(opt.is(FZ) || opt.is(WC) ? Math.max(1, data.meta.size >> 4) :
-      entry(tok).size);
+      entry(tok).size + (delta != null ? delta.size(tok) : 0));
   }
 
   @Override
@@ -118,7 +153,12 @@ public final class FTIndex extends ValueIndex {
 
     // return cached or new result
     final IndexEntry e = entry(tok);
-    return e.size > 0 ? iter(e.offset, e.size, inZ, tok) : FTIndexIterator.FTEMPTY;
+    if(delta == null) return e.size > 0 ? iter(e.offset, e.size, tok) : FTIndexIterator.FTEMPTY;
+
+    final IntList pr = new IntList(), ps = new IntList();
+    if(e.size > 0) read(e.offset, e.size, pr, ps);
+    read(tok, pr, ps);
+    return pr.isEmpty() ? FTIndexIterator.FTEMPTY : iter(new FTCache(pr, ps), tok);
   }
 
   /**
@@ -129,6 +169,8 @@ public final class FTIndex extends ValueIndex {
   private IndexEntry entry(final byte[] token) {
     final IndexEntry e = cache.get(token);
     if(e != null) return e;
+    // skip lookup if the token is known not to exist
+    if(filter != null && !filter.contains(token)) return new IndexEntry(token, 0, 0);
 
     final long p = token(token);
     return p == -1 ? new IndexEntry(token, 0, 0) :
@@ -138,6 +180,48 @@ public final class FTIndex extends ValueIndex {
   @Override
   public EntryIterator entries(final IndexEntries entries) {
     final byte[] prefix = entries.get();
+    final EntryIterator iter = entries(prefix);
+    if(delta == null) return iter;
+    synchronized(this) {
+      final TokenList tokens = delta.tokens();
+      final boolean outdated = delta.outdated();
+      if(tokens.isEmpty() && !outdated) return iter;
+
+      // merge entries of index files and delta, skip outdated postings
+      final TokenIntMap map = new TokenIntMap();
+      for(byte[] token; (token = iter.next()) != null;) {
+        final int count = outdated ? size(entry(token)) : iter.count();
+        if(count > 0) map.put(token, count);
+      }
+      for(final byte[] token : tokens) {
+        if(startsWith(token, prefix)) map.put(token, Math.max(0, map.get(token)) +
+            delta.size(token));
+      }
+      final TokenList keys = new TokenList(map.size());
+      for(final byte[] token : map) keys.add(token);
+      final byte[][] sorted = keys.finish();
+      Arrays.sort(sorted, (a, b) -> a.length != b.length ? a.length - b.length : diff(a, b));
+      return new EntryIterator() {
+        int i = -1;
+
+        @Override
+        public byte[] next() {
+          return ++i < sorted.length ? sorted[i] : null;
+        }
+        @Override
+        public int count() {
+          return map.get(sorted[i]);
+        }
+      };
+    }
+  }
+
+  /**
+   * Returns an iterator for all entries in the index files that start with the specified prefix.
+   * @param prefix prefix
+   * @return iterator
+   */
+  private EntryIterator entries(final byte[] prefix) {
     return new EntryIterator() {
       int ti = prefix.length - 1, i, e, nr;
       boolean inner;
@@ -214,6 +298,8 @@ public final class FTIndex extends ValueIndex {
     final long l = inX.length() + inY.length() + inZ.length();
     tb.add(LI_NAMES).add(data.meta.ftinclude).add(NL);
     tb.add(LI_SIZE).add(Performance.format(l)).add(NL);
+    tb.add(LI_CACHED).addInt(cache.size()).add(NL);
+    if(delta != null) tb.add(LI_UPDATED).addInt(delta.tokens().size()).add(NL);
 
     final IndexStats stats = new IndexStats(options.get(MainOptions.MAXSTAT));
     addOccs(stats);
@@ -228,9 +314,11 @@ public final class FTIndex extends ValueIndex {
 
   @Override
   public synchronized void close() {
+    flush();
     inX.close();
     inY.close();
     inZ.close();
+    cache.clear();
   }
 
   @Override
@@ -338,11 +426,20 @@ public final class FTIndex extends ValueIndex {
       while(t < tl && r == -1) r = tp[t++];
       while(p < r) {
         if(ls.similar(inY.readBytes(p, s), token, k)) {
-          it = FTIndexIterator.union(iter(pointer(p, s), size(p, s), inZ, token), it);
+          it = FTIndexIterator.union(iter(pointer(p, s), size(p, s), token), it);
         }
         p += s + ENTRY;
       }
     }
+    if(delta != null) {
+      for(final byte[] t : delta.tokens()) {
+        if(t.length >= tokl - k && t.length <= tokl + k && ls.similar(t, token, k)) {
+          final IntList pr = new IntList(), ps = new IntList();
+          read(t, pr, ps);
+          it = FTIndexIterator.union(iter(new FTCache(pr, ps), token), it);
+        }
+      }
+    }
     return it;
   }
 
@@ -372,17 +469,15 @@ public final class FTIndex extends ValueIndex {
       while(i < e) {
         final byte[] t = inY.readBytes(i, ti);
         if(!startsWith(t, pref)) break;
-        if(wc.match(t)) {
-          inZ.cursor(pointer(i, ti));
-          final int s = size(i, ti);
-          for(int d = 0; d < s; d++) {
-            pr.add(inZ.readNum());
-            ps.add(inZ.readNum());
-          }
-        }
+        if(wc.match(t)) read(pointer(i, ti), size(i, ti), pr, ps);
         i += ti + ENTRY;
       }
     }
+    if(delta != null) {
+      for(final byte[] t : delta.tokens()) {
+        if(wc.match(t)) read(t, pr, ps);
+      }
+    }
     return iter(new FTCache(pr, ps), token);
   }
 
@@ -390,19 +485,67 @@ public final class FTIndex extends ValueIndex {
    * Returns an iterator for an index entry.
    * @param off offset on entries
    * @param size number of id/pos entries
-   * @param da data source
    * @param token index token
    * @return iterator
    */
-  private static FTIndexIterator iter(final long off, final int size, final DataAccess da,
-      final byte[] token) {
-    da.cursor(off);
+  private FTIndexIterator iter(final long off, final int size, final byte[] token) {
     final IntList pr = new IntList(size), ps = new IntList(size);
+    read(off, size, pr, ps);
+    return iter(new FTCache(pr, ps), token);
+  }
+
+  /**
+   * Reads the pre values and positions of an index entry.
+   * If the index is updatable, ids are converted to pre values, and outdated entries are skipped.
+   * @param off offset on entries
+   * @param size number of id/pos entries
+   * @param pr pre values
+   * @param ps positions
+   */
+  private void read(final long off, final int size, final IntList pr, final IntList ps) {
+    inZ.cursor(off);
     for(int c = 0; c < size; c++) {
-      pr.add(da.readNum());
-      ps.add(da.readNum());
+      final int id = inZ.readNum(), pos = inZ.readNum();
+      if(delta == null) {
+        pr.add(id);
+        ps.add(pos);
+      } else if(!delta.deleted(id)) {
+        pr.add(data.pre(id));
+        ps.add(pos);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of postings of an index entry that are not outdated.
+   * @param entry index entry
+   * @return number of postings
+   */
+  private int size(final IndexEntry entry) {
+    final int size = entry.size;
+    int count = 0;
+    inZ.cursor(entry.offset);
+    for(int c = 0; c < size; c++) {
+      if(!delta.deleted(inZ.readNum())) count++;
+      inZ.readNum();
+    }
+    return count;
+  }
+
+  /**
+   * Adds the pre values and positions of a token in the delta.
+   * @param token token
+   * @param pr pre values
+   * @param ps positions
+   */
+  private void read(final byte[] token, final IntList pr, final IntList ps) {
+    final IntList list = delta.postings(token);
+    if(list == null) return;
+    final int ls = list.size();
+    for(int l = 0; l < ls; l += 2) {
+      pr.add(data.pre(list.get(l)));
+      ps.add(list.get(l + 1));
     }
-    return iter(new FTCache(pr, ps), token);
   }
 
   /**
@@ -484,15 +627,32 @@ public final class FTIndex extends ValueIndex {
   }
 
   @Override
-  public void add(final ValueCache vc) {
-    throw Util.notExpected();
+  public synchronized void add(final ValueCache vc) {
+    if(delta == null) throw Util.notExpected();
+    for(final byte[] key : vc) {
+      final IntList ids = vc.ids(key), pos = vc.pos(key);
+      final int is = ids.size();
+      for(int i = 0; i < is; i++) delta.add(key, ids.get(i), pos.get(i));
+    }
   }
 
   @Override
-  public void delete(final ValueCache vc) {
-    throw Util.notExpected();
+  public synchronized void delete(final ValueCache vc) {
+    if(delta == null) throw Util.notExpected();
+    for(final byte[] key : vc) {
+      final IntList ids = vc.ids(key);
+      final int is = ids.size();
+      for(int i = 0; i < is; i++) delta.delete(key, ids.get(i));
+    }
   }
 
   @Override
-  public void flush() { }
+  public synchronized void flush() {
+    if(delta == null) return;
+    try {
+      delta.write();
+    } catch(final IOException ex) {
+      Util.stack(ex);
+    }
+  }
 }
@@ -59,6 +59,15 @@ final class Docs {
     pathIndex = data.meta.dbfile(DATAPTH).exists();
   }
 
+  /**
+   * Adopts the document index of the specified instance. Paths will be generated from the
+   * snapshot table if they are requested.
+   * @param dcs document index of the database
+   */
+  synchronized void snapshot(final Docs dcs) {
+    docList = new IntList(dcs.docs().toArray());
+  }
+
   /**
    * Writes the document index.
    * @param out output stream
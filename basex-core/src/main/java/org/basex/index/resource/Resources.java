@@ -43,6 +43,14 @@ public final class Resources implements Index {
     docs.read(in);
   }
 
+  /**
+   * Adopts the document index of the specified resources. Called by snapshots of databases.
+   * @param resources resources of the database
+   */
+  public void snapshot(final Resources resources) {
+    docs.snapshot(resources.docs);
+  }
+
   /**
    * Writes information on database resources to disk.
    * @param out output stream
@@ -0,0 +1,129 @@
+package org.basex.index.stats;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+
+/**
+ * Equi-depth histogram for numeric values. While values are added, a fixed-size random sample
+ * is collected. The boundaries of the buckets, each of which contains the same number of values,
+ * are computed from the sorted sample.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+final class Histogram {
+  /** Maximum number of sampled values. */
+  private static final int SAMPLES = 512;
+  /** Maximum number of buckets. */
+  private static final int BUCKETS = 32;
+
+  /** Sampled values (can be {@code null}). */
+  private double[] sample;
+  /** Number of added values. */
+  private long added;
+  /** Seed for choosing the values to be sampled. */
+  private long seed = 0x2545F4914F6CDD1DL;
+  /** Bucket boundaries (can be {@code null}). */
+  private double[] bounds;
+
+  /**
+   * Default constructor.
+   */
+  Histogram() {
+    sample = new double[8];
+  }
+
+  /**
+   * Constructor, specifying an input stream.
+   * @param in input stream
+   * @throws IOException I/O exception
+   */
+  Histogram(final DataInput in) throws IOException {
+    final int bl = in.readNum();
+    bounds = new double[bl];
+    for(int b = 0; b < bl; b++) bounds[b] = in.readDouble();
+  }
+
+  /**
+   * Writes the histogram to the specified output stream.
+   * @param out output stream
+   * @throws IOException I/O exception
+   */
+  void write(final DataOutput out) throws IOException {
+    final double[] bnds = bounds();
+    out.writeNum(bnds.length);
+    for(final double b : bnds) out.writeDouble(b);
+  }
+
+  /**
+   * Adds a value. Reservoir sampling is used to choose the values that will be sampled.
+   * @param value value
+   */
+  void add(final double value) {
+    if(sample == null) return;
+    final long a = added++;
+    if(a < SAMPLES) {
+      if(a == sample.length) sample = Arrays.copyOf(sample, (int) a << 1);
+      sample[(int) a] = value;
+    } else {
+      // xorshift generator: constant seed yields the same histogram for the same input
+      long s = seed;
+      s ^= s << 13;
+      s ^= s >>> 7;
+      s ^= s << 17;
+      seed = s;
+      final long r = (s >>> 1) % (a + 1);
+      if(r < SAMPLES) sample[(int) r] = value;
+    }
+    bounds = null;
+  }
+
+  /**
+   * Returns the estimated fraction of the values that are located in the specified range.
+   * @param min minimum (inclusive)
+   * @param max maximum (inclusive)
+   * @return fraction (between {@code 0} and {@code 1})
+   */
+  double selectivity(final double min, final double max) {
+    final double[] bnds = bounds();
+    final int bl = bnds.length - 1;
+    if(min > max || bl == -1) return 0;
+    if(bl == 0) return min <= bnds[0] && max >= bnds[0] ? 1 : 0;
+
+    double sel = 0;
+    for(int b = 0; b < bl; b++) {
+      final double lo = bnds[b], hi = bnds[b + 1];
+      if(max < lo || min > hi) continue;
+      if(lo == hi || min <= lo && max >= hi) {
+        sel += 1;
+      } else {
+        // assume uniform distribution within a bucket
+        sel += (Math.min(max, hi) - Math.max(min, lo)) / (hi - lo);
+      }
+    }
+    return Math.min(1, sel / bl);
+  }
+
+  /**
+   * Returns the bucket boundaries.
+   * @return boundaries
+   */
+  private double[] bounds() {
+    if(bounds == null) {
+      final int sl = (int) Math.min(added, SAMPLES);
+      final double[] sorted = Arrays.copyOf(sample, sl);
+      Arrays.sort(sorted);
+      if(sl < 2) {
+        bounds = sorted;
+      } else {
+        final int bl = Math.min(BUCKETS, sl - 1);
+        bounds = new double[bl + 1];
+        for(int b = 0; b <= bl; b++) bounds[b] = sorted[(int) ((long) b * (sl - 1) / bl)];
+      }
+    }
+    return bounds;
+  }
+}
@@ -0,0 +1,64 @@
+package org.basex.index.stats;
+
+/**
+ * HyperLogLog sketch for estimating the number of distinct values.
+ * The standard error of the estimate is about 3 percent.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+final class Sketch {
+  /** Number of bits used for addressing the registers. */
+  private static final int BITS = 10;
+  /** Number of registers. */
+  private static final int SIZE = 1 << BITS;
+  /** Registers: maximum number of leading zeros (plus one) of the hashed values. */
+  private final byte[] registers = new byte[SIZE];
+
+  /**
+   * Adds a value.
+   * @param value value
+   */
+  void add(final byte[] value) {
+    final long hash = hash(value);
+    final int r = (int) (hash >>> 64 - BITS);
+    final byte zeros = (byte) (Long.numberOfLeadingZeros(hash << BITS | 1L << BITS - 1) + 1);
+    if(registers[r] < zeros) registers[r] = zeros;
+  }
+
+  /**
+   * Returns the estimated number of distinct values.
+   * @return estimate
+   */
+  int estimate() {
+    double sum = 0;
+    int empty = 0;
+    for(final byte reg : registers) {
+      sum += 1.0 / (1L << reg);
+      if(reg == 0) empty++;
+    }
+    double est = 0.7213 / (1 + 1.079 / SIZE) * SIZE * SIZE / sum;
+    // small cardinalities: linear counting
+    if(est <= 2.5 * SIZE && empty > 0) est = SIZE * Math.log((double) SIZE / empty);
+    return (int) Math.min(Integer.MAX_VALUE, Math.round(est));
+  }
+
+  /**
+   * Computes a 64-bit hash value (FNV-1a, with a final bit mixing step).
+   * @param value value
+   * @return hash value
+   */
+  private static long hash(final byte[] value) {
+    long h = 0xCBF29CE484222325L;
+    for(final byte b : value) {
+      h ^= b & 0xFF;
+      h *= 0x100000001B3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
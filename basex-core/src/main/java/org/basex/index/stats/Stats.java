@@ -30,6 +30,12 @@ public final class Stats {
 
   /** Leaf node flag. Indicates if all nodes only have a text node as child. */
   private boolean leaf;
+  /** Histogram of numeric values (can be {@code null}). */
+  private Histogram histogram;
+  /** Sketch for estimating the number of distinct values (can be {@code null}). */
+  private Sketch sketch;
+  /** Estimated number of distinct values (assigned if statistics have been read from disk). */
+  private int distinct;
 
   /**
    * Default constructor.
@@ -61,7 +67,11 @@ public final class Stats {
     }
     count = in.readNum();
     leaf = in.readBool();
-    in.readDouble();
+    // additional statistics (written since version 9.1)
+    if(in.readDouble() != 0) {
+      distinct = in.readNum();
+      if(in.readBool()) histogram = new Histogram(in);
+    }
   }
 
   /**
@@ -91,8 +101,11 @@ public final class Stats {
 
     out.writeNum(count);
     out.writeBool(leaf);
-    // legacy (required before version 7.1)
-    out.writeDouble(0);
+    // legacy (required before version 7.1), indicates additional statistics
+    out.writeDouble(1);
+    out.writeNum(distinct());
+    out.writeBool(histogram != null);
+    if(histogram != null) histogram.write(out);
   }
 
   /**
@@ -100,6 +113,8 @@ public final class Stats {
    * to an integer, it is treated as double value. If conversion fails again, it is handled as
    * string category. Next, all values are cached. As soon as their number exceeds a maximum,
    * the cached values are skipped, and contents are treated as arbitrary strings.
+   * Numeric values are sampled for a histogram, and the number of distinct values is estimated
+   * if the values are no longer cached.
    * @param value value to be added
    * @param meta meta data
    */
@@ -111,6 +126,7 @@ public final class Stats {
       // start with integer type
       if(t == NONE) {
         t = INTEGER;
+        histogram = new Histogram();
       }
       // try to save new value as integer
       if(t == INTEGER) {
@@ -120,6 +136,7 @@ public final class Stats {
         } else {
           if(min > d) min = d;
           if(max < d) max = d;
+          if(histogram != null) histogram.add(d);
         }
       }
       // try to save new value as double
@@ -127,9 +144,11 @@ public final class Stats {
         final double d = toDouble(value);
         if(Double.isNaN(d)) {
           t = STRING;
+          histogram = null;
         } else {
           if(min > d) min = d;
           if(max < d) max = d;
+          if(histogram != null) histogram.add(d);
         }
       }
     }
@@ -137,15 +156,73 @@ public final class Stats {
 
     // save distinct values
     if(values != null) {
-      if(vl > meta.maxlen || vl > 0 && ws(value)) {
-        // give up categories if string is too long or only consists of whitespaces
-        values = null;
-      } else {
+      // give up categories if string is too long or only consists of whitespaces
+      if(vl <= meta.maxlen && (vl == 0 || !ws(value))) {
         values.put(value, Math.max(1, values.get(value) + 1));
         // give up categories if number of entries exceeds limit
-        if(values.size() > meta.maxcats) values = null;
+        if(values.size() <= meta.maxcats) return;
+      }
+      sketch = new Sketch();
+      for(final byte[] v : values) sketch.add(v);
+      values = null;
+    }
+    if(sketch != null) sketch.add(value);
+  }
+
+  /**
+   * Returns the (estimated) number of distinct values.
+   * @return number of distinct values
+   */
+  public int distinct() {
+    return values != null ? values.size() : sketch != null ? sketch.estimate() : distinct;
+  }
+
+  /**
+   * Returns the estimated fraction of the values that equal the specified value.
+   * @param value value
+   * @return fraction (between {@code 0} and {@code 1}), or {@code -1} if it is unknown
+   */
+  public double selectivity(final byte[] value) {
+    if(values != null) {
+      final long total = total();
+      return total == 0 ? 0 : (double) Math.max(0, values.get(value)) / total;
+    }
+    final int d = distinct();
+    return d > 0 ? 1.0 / d : -1;
+  }
+
+  /**
+   * Returns the estimated fraction of the numeric values that are located in the specified range.
+   * @param mn minimum (inclusive)
+   * @param mx maximum (inclusive)
+   * @return fraction (between {@code 0} and {@code 1}), or {@code -1} if it is unknown
+   */
+  public double selectivity(final double mn, final double mx) {
+    if(!isNumeric(type) || mn > max || mx < min) return isNumeric(type) ? 0 : -1;
+    if(values != null) {
+      long found = 0;
+      for(final byte[] value : values) {
+        final double d = toDouble(value);
+        if(d >= mn && d <= mx) found += values.get(value);
       }
+      final long total = total();
+      return total == 0 ? 0 : (double) found / total;
     }
+    if(histogram == null) return -1;
+    final double sel = histogram.selectivity(mn, mx);
+    // single values: consider number of distinct values
+    final int d = distinct();
+    return mn == mx && d > 0 ? Math.max(sel, 1.0 / d) : sel;
+  }
+
+  /**
+   * Returns the number of cached values.
+   * @return number of values
+   */
+  private long total() {
+    long total = 0;
+    for(final byte[] value : values) total += values.get(value);
+    return total;
   }
 
   /**
@@ -36,6 +36,8 @@ public class DiskValues extends ValueIndex {
   final IntObjMap<byte[]> ctext = new IntObjMap<>();
   /** Number of current index entries. */
   final AtomicInteger size = new AtomicInteger();
+  /** Bloom filter for the index keys (can be {@code null}). */
+  final BloomFilter filter;
 
   /** Synchronization object. */
   private final Object monitor = new Object();
@@ -62,6 +64,7 @@ public class DiskValues extends ValueIndex {
     super(data, type);
     idxl = new DataAccess(data.meta.dbfile(pref + 'l'));
     idxr = new DataAccess(data.meta.dbfile(pref + 'r'));
+    filter = BloomFilter.read(data.meta.dbfile(pref + 'b'));
     size.set(idxl.read4());
   }
 
@@ -75,6 +78,7 @@ public class DiskValues extends ValueIndex {
     synchronized(monitor) {
       final long l = idxl.length() + idxr.length();
       tb.add(LI_SIZE).add(Performance.format(l)).add(NL);
+      tb.add(LI_CACHED).addInt(cache.size()).add(NL);
       final int entries = size();
       for(int index = 0; index < entries; index++) {
         final long pos = idxr.read5(index * 5L);
@@ -129,11 +133,12 @@ public class DiskValues extends ValueIndex {
   }
 
   @Override
-  public final void close() {
+  public void close() {
     synchronized(monitor) {
       idxl.close();
       idxr.close();
     }
+    cache.clear();
   }
 
   @Override
@@ -155,7 +160,7 @@ public class DiskValues extends ValueIndex {
   }
 
   @Override
-  public final void flush() {
+  public void flush() {
     idxl.flush();
     idxr.flush();
   }
@@ -214,6 +219,9 @@ public class DiskValues extends ValueIndex {
     final IndexEntry entry = cache.get(key);
     if(entry != null) return entry;
 
+    // skip lookup if the key is known not to exist
+    if(filter != null && !filter.contains(key)) return new IndexEntry(key, 0, 0);
+
     final long index = get(key);
     if(index < 0) return new IndexEntry(key, 0, 0);
 
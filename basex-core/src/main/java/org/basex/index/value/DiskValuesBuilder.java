@@ -3,6 +3,9 @@ package org.basex.index.value;
 import static org.basex.util.Token.*;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import org.basex.data.*;
 import org.basex.index.*;
@@ -26,14 +29,21 @@ import org.basex.util.list.*;
  *   structure. Instead, they can be found by following the id references to
  *   the main table.
  * </li>
+ * <li> {@code DATATXT/ATV + 'b'}: contains a {@link BloomFilter} for all keys.
+ *   The file is optional.</li>
  * </ul>
  *
  * @author BaseX Team 2005-18, BSD License
  * @author Christian Gruen
  */
 public final class DiskValuesBuilder extends ValuesBuilder {
+  /** Minimum number of nodes of a partition that is indexed by a separate thread. */
+  private static final int PARTITION = 1 << 16;
+
   /** Temporary value tree. */
   private IndexTree index;
+  /** Hash values of the final index keys (used for creating the Bloom filter). */
+  private final LongList hashes = new LongList();
 
   /**
    * Constructor.
@@ -50,33 +60,34 @@ public final class DiskValuesBuilder extends ValuesBuilder {
     Util.debug(detailedInfo());
 
     try {
-      final boolean updindex = data.meta.updindex;
-      for(pre = 0; pre < size; ++pre) {
-        if((pre & 0x0FFF) == 0) check();
-        if(indexEntry()) {
-          final int id = updindex ? data.id(pre) : pre;
-          if(tokenize) {
-            int pos = 0;
-            for(final byte[] token : distinctTokens(data.text(pre, text))) {
-              index.add(token, id, pos++);
-              count++;
-            }
-          } else if(data.textLen(pre, text) <= data.meta.maxlen) {
-            index.add(data.text(pre, text), id, 0);
-            count++;
-          }
+      final int parts = Math.min(data.meta.indexthreads, size / PARTITION);
+      if(parts > 1) {
+        // index partitions in parallel, merge partial indexes
+        scan(parts);
+        if(splits == 0) {
+          writeIndex(false);
+        } else {
+          index = null;
+          clean();
+          merge();
+        }
+      } else {
+        for(pre = 0; pre < size; ++pre) {
+          if((pre & 0x0FFF) == 0) check();
+          if(indexEntry()) count += add(index, pre);
         }
-      }
 
-      writeIndex(splits > 0);
-      if(splits > 1) {
-        index = null;
-        clean();
-        merge();
+        writeIndex(splits > 0);
+        if(splits > 1) {
+          index = null;
+          clean();
+          merge();
+        }
       }
 
+      new BloomFilter(hashes).write(data.meta.dbfile(DiskValues.fileSuffix(type) + 'b'));
       finishIndex();
-      return updindex ? new UpdatableDiskValues(data, type) : new DiskValues(data, type);
+      return data.meta.updindex ? new UpdatableDiskValues(data, type) : new DiskValues(data, type);
 
     } catch(final Throwable th) {
       // drop index files
@@ -96,6 +107,67 @@ public final class DiskValuesBuilder extends ValuesBuilder {
     }
   }
 
+  /**
+   * Indexes the database in parallel. The nodes are divided into partitions, which are
+   * indexed concurrently and written to disk as partial indexes.
+   * @param parts number of partitions
+   * @throws IOException I/O exception
+   */
+  private void scan(final int parts) throws IOException {
+    final AtomicInteger runs = new AtomicInteger(), done = new AtomicInteger();
+    final AtomicLong ops = new AtomicLong();
+    final ArrayList<Callable<Void>> tasks = new ArrayList<>(parts);
+    for(int p = 0; p < parts; p++) {
+      final int first = (int) ((long) size * p / parts);
+      final int last = (int) ((long) size * (p + 1) / parts);
+      tasks.add(() -> {
+        IndexTree tree = new IndexTree(type);
+        long cnt = 0;
+        for(int pr = first; pr < last; pr++) {
+          if((pr & 0x0FFF) == 0) {
+            checkStop();
+            pre = done.addAndGet(0x1000);
+            // check if main memory is exhausted
+            if(cnt > 0 && splitRequired(cnt, parts)) {
+              writeIndex(tree, runs.getAndIncrement());
+              tree = new IndexTree(type);
+              ops.addAndGet(cnt);
+              cnt = 0;
+              clean();
+            }
+          }
+          if(indexEntry(pr)) cnt += add(tree, pr);
+        }
+        if(tree.size() > 0) writeIndex(tree, runs.getAndIncrement());
+        ops.addAndGet(cnt);
+        return null;
+      });
+    }
+    invoke(tasks, parts);
+    splits = runs.get();
+    count = ops.get();
+    pre = size;
+  }
+
+  /**
+   * Adds the value of the specified node to an index tree.
+   * <p><em>Important:</em> This method is thread-safe.</p>
+   * @param tree index tree
+   * @param pr pre value
+   * @return number of index operations
+   */
+  private int add(final IndexTree tree, final int pr) {
+    final int id = data.meta.updindex ? data.id(pr) : pr;
+    int ops = 0;
+    if(tokenize) {
+      for(final byte[] token : distinctTokens(data.text(pr, text))) tree.add(token, id, ops++);
+    } else if(data.textLen(pr, text) <= data.meta.maxlen) {
+      tree.add(data.text(pr, text), id, 0);
+      ops++;
+    }
+    return ops;
+  }
+
   /**
    * Merges cached index files.
    * @throws IOException I/O exception
@@ -136,6 +208,7 @@ public final class DiskValuesBuilder extends ValuesBuilder {
         }
 
         // parse through all values, cache and sort id values
+        final byte[] key = vm[min].key;
         final int ms = ml.size();
         for(int m = 0; m < ms; ++m) {
           final DiskValuesMerger t = vm[ml.get(m)];
@@ -152,6 +225,7 @@ public final class DiskValuesBuilder extends ValuesBuilder {
         }
         // write final structure to disk
         write(outL, outR, id, pos);
+        hashes.add(BloomFilter.hash(key));
         ++entries;
       }
     }
@@ -168,16 +242,31 @@ public final class DiskValuesBuilder extends ValuesBuilder {
    * @throws IOException I/O exception
    */
   private void writeIndex(final boolean partial) throws IOException {
+    writeIndex(index, partial ? splits : -1);
+    // increase split counter
+    splits++;
+  }
+
+  /**
+   * Writes an index tree to disk.
+   * <p><em>Important:</em> This method is thread-safe if a partial index is written.</p>
+   * @param tree index tree
+   * @param split number of the partial index, or {@code -1} if the final index is written
+   * @throws IOException I/O exception
+   */
+  private void writeIndex(final IndexTree tree, final int split) throws IOException {
     // write id arrays and references
-    final String name = DiskValues.fileSuffix(type) + (partial ? splits : "");
+    final boolean partial = split != -1;
+    final String name = DiskValues.fileSuffix(type) + (partial ? split : "");
     try(DataOutput outL = new DataOutput(data.meta.dbfile(name + 'l'));
         DataOutput outR = new DataOutput(data.meta.dbfile(name + 'r'))) {
-      outL.write4(index.size());
+      outL.write4(tree.size());
 
       final IntList id = new IntList(), pos = tokenize ? new IntList() : null;
-      index.init();
-      while(index.more()) {
-        final byte[] values = index.ids.get(index.next());
+      tree.init();
+      while(tree.more()) {
+        final int i = tree.next();
+        final byte[] values = tree.ids.get(i);
         final int vs = Num.size(values);
 
         if(partial) {
@@ -195,6 +284,7 @@ public final class DiskValuesBuilder extends ValuesBuilder {
           }
           // write final structure to disk
           write(outL, outR, id, pos);
+          hashes.add(BloomFilter.hash(tree.keys.get(i)));
         }
       }
     }
@@ -202,12 +292,10 @@ public final class DiskValuesBuilder extends ValuesBuilder {
     // temporarily write texts
     if(partial) {
       try(DataOutput outT = new DataOutput(data.meta.dbfile(name + 't'))) {
-        index.init();
-        while(index.more()) outT.writeToken(index.keys.get(index.next()));
+        tree.init();
+        while(tree.more()) outT.writeToken(tree.keys.get(tree.next()));
       }
     }
-    // increase split counter
-    splits++;
   }
 
   /**
@@ -4,6 +4,7 @@ import java.io.*;
 
 import org.basex.data.*;
 import org.basex.index.*;
+import org.basex.io.*;
 import org.basex.util.*;
 import org.basex.util.list.*;
 
@@ -17,6 +18,8 @@ import org.basex.util.list.*;
 public final class UpdatableDiskValues extends DiskValues {
   /** Free slots. */
   private final FreeSlots free = new FreeSlots();
+  /** Indicates if the Bloom filter has been modified, and if its file has been removed. */
+  private boolean dirty;
 
   /**
    * Constructor, initializing the index structure.
@@ -69,6 +72,16 @@ public final class UpdatableDiskValues extends DiskValues {
       }
     }
 
+    // register new keys in the Bloom filter
+    if(filter != null && !newKeys.isEmpty()) {
+      if(!dirty) {
+        // remove outdated filter, which would otherwise skip new keys after a crash
+        filterFile().delete();
+        dirty = true;
+      }
+      for(final byte[] key : newKeys) filter.add(key);
+    }
+
     // insert new keys in descending order
     final int ns = newKeys.size();
     for(int j = ns - 1, oldIndex = sz - 1, newIndex = sz + j; j >= 0; --j) {
@@ -103,6 +116,18 @@ public final class UpdatableDiskValues extends DiskValues {
     deleteKeys(keys);
   }
 
+  @Override
+  public synchronized void flush() {
+    writeFilter();
+    super.flush();
+  }
+
+  @Override
+  public synchronized void close() {
+    writeFilter();
+    super.close();
+  }
+
   @Override
   protected IntList pres(final int sz, final long offset) {
     return super.pres(sz, offset).sort();
@@ -221,6 +246,29 @@ public final class UpdatableDiskValues extends DiskValues {
     ctext.put(index, key);
   }
 
+  /**
+   * Writes a modified Bloom filter to disk.
+   */
+  private void writeFilter() {
+    if(!dirty) return;
+    final IOFile file = filterFile();
+    try {
+      filter.write(file);
+      dirty = false;
+    } catch(final IOException ex) {
+      Util.debug(ex);
+      file.delete();
+    }
+  }
+
+  /**
+   * Returns the file of the Bloom filter.
+   * @return file
+   */
+  private IOFile filterFile() {
+    return data.meta.dbfile(fileSuffix(type) + 'b');
+  }
+
   /**
    * Assigns the number of index entries.
    * @param sz number of index entries
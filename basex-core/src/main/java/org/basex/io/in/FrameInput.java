@@ -0,0 +1,135 @@
+package org.basex.io.in;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.io.out.*;
+import org.basex.util.*;
+
+/**
+ * This class returns the data of a message that is sent in frames (see
+ * {@link org.basex.io.out.FrameOutput}). The frames are added by another thread, and reading
+ * threads will be blocked until new data is available or until the message is complete.
+ * Consumed data is reported to the sender, which will be blocked if too much data is pending.
+ * The data of a message must be read by a single thread.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class FrameInput extends InputStream {
+  /** Shared output stream for granting credit to the sender. */
+  private final OutputStream os;
+  /** Message id. */
+  private final int id;
+  /** Data of the frames that have not been read yet. */
+  private final ArrayDeque<byte[]> frames = new ArrayDeque<>();
+  /** Data of the current frame. */
+  private byte[] frame = {};
+  /** Position in the current frame. */
+  private int pos;
+  /** Indicates if the message is complete. */
+  private boolean finished;
+  /** Exception to be raised after the data has been read (can be {@code null}). */
+  private IOException error;
+  /** Number of consumed bytes that have not been reported to the sender yet. */
+  private int consumed;
+
+  /**
+   * Constructor.
+   * @param os shared output stream for granting credit to the sender
+   * @param id message id
+   */
+  public FrameInput(final OutputStream os, final int id) {
+    this.os = os;
+    this.id = id;
+  }
+
+  /**
+   * Adds the data of a frame.
+   * @param data data
+   */
+  public synchronized void add(final byte[] data) {
+    frames.add(data);
+    notifyAll();
+  }
+
+  /**
+   * Marks the message as complete.
+   * @param ex exception to be raised after the data has been read (can be {@code null})
+   */
+  public synchronized void finish(final IOException ex) {
+    finished = true;
+    error = ex;
+    notifyAll();
+  }
+
+  @Override
+  public int read() throws IOException {
+    return next() ? frame[pos++] & 0xFF : -1;
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    if(len == 0) return 0;
+    if(!next()) return -1;
+    final int l = Math.min(len, frame.length - pos);
+    System.arraycopy(frame, pos, b, off, l);
+    pos += l;
+    return l;
+  }
+
+  /**
+   * Waits until new data is available. Before waiting, or if half of the window has been
+   * consumed, the consumed data is reported to the sender. No lock is held while the credit is
+   * sent, as the output stream may be blocked as well.
+   * @return {@code false} if the end of the message has been reached
+   * @throws IOException I/O exception
+   */
+  private boolean next() throws IOException {
+    while(pos == frame.length) {
+      consumed += frame.length;
+      frame = Token.EMPTY;
+      pos = 0;
+      final byte[] data;
+      synchronized(this) {
+        data = frames.poll();
+        if(data == null) {
+          if(finished) {
+            if(error != null) throw error;
+            return false;
+          }
+          if(consumed == 0) {
+            try {
+              wait();
+            } catch(final InterruptedException ex) {
+              throw new InterruptedIOException(ex.getMessage());
+            }
+            continue;
+          }
+        }
+      }
+      if(data != null) frame = data;
+      if(data == null || consumed >= FrameOutput.WINDOW / 2) {
+        FrameOutput.credit(os, id, consumed);
+        consumed = 0;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads an integer of a frame header.
+   * @param in input stream
+   * @return integer
+   * @throws IOException I/O exception
+   */
+  public static int readInt(final InputStream in) throws IOException {
+    int v = 0;
+    for(int i = 0; i < 4; i++) {
+      final int b = in.read();
+      if(b == -1) throw new EOFException();
+      v = v << 8 | b;
+    }
+    return v;
+  }
+}
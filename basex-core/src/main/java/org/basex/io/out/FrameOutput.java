@@ -0,0 +1,151 @@
+package org.basex.io.out;
+
+import java.io.*;
+
+/**
+ * This class writes a message to an output stream that is shared by several messages.
+ * A message is split into frames, which may be interleaved with the frames of other messages.
+ * A frame consists of the message id, the length of the data, and the data itself.
+ * A frame with the length {@code -1} marks the end of a message.
+ *
+ * The data of a message is sent with flow control: the sender may send {@link #WINDOW} bytes
+ * in advance, and it will be blocked until the receiver has consumed the data and granted
+ * further credit. A frame with the length {@link #CREDIT} grants credit for a message;
+ * its header is followed by the number of bytes (see {@link #credit(OutputStream, int, int)}).
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class FrameOutput extends OutputStream {
+  /** Maximum number of bytes that can be sent before they are consumed. */
+  public static final int WINDOW = 1 << 16;
+  /** Frame length indicating that credit is granted. */
+  public static final int CREDIT = -2;
+
+  /** Shared output stream. */
+  private final OutputStream os;
+  /** Message id. */
+  private final int id;
+  /** Number of bytes that can be sent without blocking. */
+  private int credit = WINDOW;
+  /** Exception that terminated the message (can be {@code null}). */
+  private IOException error;
+
+  /**
+   * Constructor.
+   * @param os shared output stream
+   * @param id message id
+   */
+  public FrameOutput(final OutputStream os, final int id) {
+    this.os = os;
+    this.id = id;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    write(new byte[] { (byte) b }, 0, 1);
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    for(int o = off, e = off + len; o < e;) {
+      final int l = acquire(e - o);
+      frame(b, o, l);
+      o += l;
+    }
+  }
+
+  /**
+   * Grants credit for sending further data.
+   * @param bytes number of bytes that have been consumed by the receiver
+   */
+  public synchronized void grant(final int bytes) {
+    credit += bytes;
+    notifyAll();
+  }
+
+  /**
+   * Cancels the message. Blocked and subsequent write operations will raise the specified
+   * exception.
+   * @param ex exception
+   */
+  public synchronized void cancel(final IOException ex) {
+    error = ex;
+    notifyAll();
+  }
+
+  /**
+   * Marks the end of the message. The shared output stream will not be closed.
+   * @throws IOException I/O exception
+   */
+  @Override
+  public void close() throws IOException {
+    frame(null, 0, -1);
+  }
+
+  /**
+   * Writes a frame that grants credit to the sender of a message.
+   * @param os shared output stream
+   * @param id message id
+   * @param bytes number of bytes that have been consumed
+   * @throws IOException I/O exception
+   */
+  public static void credit(final OutputStream os, final int id, final int bytes)
+      throws IOException {
+    synchronized(os) {
+      writeInt(os, id);
+      writeInt(os, CREDIT);
+      writeInt(os, bytes);
+      os.flush();
+    }
+  }
+
+  /**
+   * Waits until data can be sent.
+   * @param len number of bytes to be sent
+   * @return number of bytes that can be sent
+   * @throws IOException I/O exception
+   */
+  private synchronized int acquire(final int len) throws IOException {
+    while(credit == 0 && error == null) {
+      try {
+        wait();
+      } catch(final InterruptedException ex) {
+        throw new InterruptedIOException(ex.getMessage());
+      }
+    }
+    if(error != null) throw error;
+    final int l = Math.min(len, credit);
+    credit -= l;
+    return l;
+  }
+
+  /**
+   * Writes a frame.
+   * @param b bytes
+   * @param off offset
+   * @param len number of bytes ({@code -1}: end of message)
+   * @throws IOException I/O exception
+   */
+  private void frame(final byte[] b, final int off, final int len) throws IOException {
+    synchronized(os) {
+      writeInt(os, id);
+      writeInt(os, len);
+      if(len > 0) os.write(b, off, len);
+      os.flush();
+    }
+  }
+
+  /**
+   * Writes an integer.
+   * @param os output stream
+   * @param v integer
+   * @throws IOException I/O exception
+   */
+  private static void writeInt(final OutputStream os, final int v) throws IOException {
+    os.write(v >>> 24);
+    os.write(v >>> 16);
+    os.write(v >>> 8);
+    os.write(v);
+  }
+}
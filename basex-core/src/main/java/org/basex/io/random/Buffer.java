@@ -11,8 +11,44 @@ import org.basex.io.*;
 final class Buffer {
   /** Buffer data. */
   final byte[] data = new byte[IO.BLOCKSIZE];
+  /** Buffer manager of the file this block belongs to. */
+  final Buffers owner;
   /** Disk offset, or block position. */
-  long pos = -1;
+  final long pos;
   /** Dirty flag. */
-  boolean dirty;
+  volatile boolean dirty;
+  /** Reference flag (will be reset by the clock hand of the page cache). */
+  volatile boolean used;
+  /** Number of times the buffer has been assigned as current buffer of its owner. */
+  volatile int pins;
+  /** Pin count before the buffer was written by another thread than its owner. */
+  int stamp;
+  /** Indicates if the block contents have been read from disk. */
+  private volatile boolean loaded;
+
+  /**
+   * Constructor.
+   * @param owner buffer manager
+   * @param pos disk offset, or block position
+   */
+  Buffer(final Buffers owner, final long pos) {
+    this.owner = owner;
+    this.pos = pos;
+  }
+
+  /**
+   * Reads the block contents if this has not been done yet.
+   * @return self reference
+   */
+  Buffer load() {
+    if(!loaded) {
+      synchronized(this) {
+        if(!loaded) {
+          owner.read(this);
+          loaded = true;
+        }
+      }
+    }
+    return this;
+  }
 }
@@ -1,53 +1,275 @@
 package org.basex.io.random;
 
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.io.*;
+
 /**
- * This class provides a simple, clock-based buffer management.
+ * This class organizes the buffered blocks of a single file.
+ * The blocks themselves are managed by the process-wide {@link PageCache}.
+ * Write operations are serialized by locking this instance. Dirty blocks may be written by the
+ * updating thread, by threads that need to evict blocks from the page cache, or by the
+ * {@link WriteBack} thread. Only the owner modifies blocks, and only its current block.
+ * Other threads skip the current block, and keep a block dirty if it has been pinned again
+ * by the owner while it was being written.
  *
  * @author BaseX Team 2005-18, BSD License
  * @author Christian Gruen
  */
-final class Buffers {
-  /** Number of buffers (must be 1 << n). */
-  private static final int BUFFERS = 1 << 4;
-  /** Buffers. */
-  private final Buffer[] buf = new Buffer[BUFFERS];
-  /** Current buffer offset. */
-  private int off;
+abstract class Buffers {
+  /** Maximum number of buffers written in a single operation. */
+  private static final int MAX_VECTOR = 1 << 8;
+
+  /** Cached blocks of this file, indexed by their disk offsets or block positions. */
+  final ConcurrentHashMap<Long, Buffer> pages = new ConcurrentHashMap<>();
+  /** Current buffer (will not be evicted from the page cache). */
+  volatile Buffer current = new Buffer(this, -1);
+  /** Closed flag. */
+  volatile boolean closed;
+  /** Indicates if the file has been queued for being written in the background. */
+  volatile boolean queued;
+  /** Number of blocks that have been modified since the last flush (approximate). */
+  private int modified;
 
   /**
-   * Constructor.
+   * Returns the current buffer.
+   * @return current buffer
    */
-  Buffers() {
-    for(int b = 0; b < BUFFERS; ++b) buf[b] = new Buffer();
+  final Buffer current() {
+    return current;
   }
 
   /**
-   * Returns all buffers.
-   * @return buffers
+   * Chooses the buffer with the specified position and assigns it as current buffer.
+   * @param p buffer pointer
+   * @return true if cursor has changed
    */
-  Buffer[] all() {
-    return buf;
+  final boolean cursor(final long p) {
+    final Buffer bf = current;
+    if(bf.pos == p) return false;
+    if(bf.dirty) {
+      // write modified blocks in the background
+      final int batch = WriteBack.get().batch();
+      if(batch != 0 && ++modified >= batch) {
+        modified = 0;
+        WriteBack.get().schedule(this);
+      }
+    }
+    PageCache.get().pin(this, p);
+    return true;
   }
 
   /**
-   * Returns the current buffer.
-   * @return current buffer
+   * Returns the buffer with the specified position without changing the current buffer.
+   * The returned buffer must only be used for reading.
+   * @param p buffer pointer
+   * @return buffer
    */
-  Buffer current() {
-    return buf[off];
+  final Buffer get(final long p) {
+    final Buffer bf = current;
+    return bf.pos == p ? bf : PageCache.get().fetch(this, p);
   }
 
   /**
-   * Chooses a buffer and sets the offset.
-   * @param p buffer pointer
-   * @return true if cursor has changed
+   * Writes all dirty buffers to disk.
+   * @throws IOException I/O exception
+   */
+  final void flush() throws IOException {
+    flush(true);
+  }
+
+  /**
+   * Writes dirty buffers to disk. Adjacent buffers will be written in a single operation.
+   * @param all include current buffer
+   * @throws IOException I/O exception
    */
-  boolean cursor(final long p) {
-    final int o = off;
-    do {
-      if(buf[off].pos == p) return false;
-    } while((off = off + 1 & BUFFERS - 1) != o);
-    off = o + 1 & BUFFERS - 1;
+  final synchronized void flush(final boolean all) throws IOException {
+    if(closed) return;
+    final long start = System.nanoTime();
+    final ArrayList<Buffer> list = new ArrayList<>();
+    for(final Buffer bf : pages.values()) {
+      if(all ? bf.dirty : idle(bf)) list.add(bf);
+    }
+    if(all) modified = 0;
+
+    int w = 0;
+    final int bl = list.size();
+    final FileChannel fc = channel();
+    if(fc == null) {
+      for(final Buffer bf : list) write(bf);
+      w = bl;
+    } else {
+      final Buffer[] bfs = list.toArray(new Buffer[bl]);
+      Arrays.sort(bfs, (b1, b2) -> Long.compare(b1.pos, b2.pos));
+      for(int s = 0; s < bl; w++) s = write(fc, bfs, s);
+    }
+    if(!all) {
+      for(final Buffer bf : list) written(bf);
+    }
+    WriteBack.get().written(bl, w, System.nanoTime() - start);
+  }
+
+  /**
+   * Writes the specified buffer to disk if it is dirty and not accessed by the owner.
+   * Called by threads that evict buffers from the page cache.
+   * @param bf buffer
+   * @return {@code true} if the buffer was written
+   * @throws IOException I/O exception
+   */
+  final synchronized boolean save(final Buffer bf) throws IOException {
+    if(closed || !idle(bf)) return false;
+    write(bf);
+    written(bf);
     return true;
   }
+
+  /**
+   * Checks if the specified buffer is dirty and not the current buffer of the owner.
+   * Its pin count is remembered before the current buffer is checked.
+   * @param bf buffer
+   * @return result of check
+   */
+  private boolean idle(final Buffer bf) {
+    bf.stamp = bf.pins;
+    return bf.dirty && bf != current;
+  }
+
+  /**
+   * Called after an idle buffer has been written by another thread than the owner.
+   * The buffer remains dirty if the owner has pinned it in the meantime, as it may have been
+   * modified while it was written. The dirty flag is reset before the buffer is written,
+   * so changes that are made after this check will set it again.
+   * @param bf buffer
+   */
+  private void written(final Buffer bf) {
+    if(bf.pins != bf.stamp || bf == current) bf.dirty = true;
+  }
+
+  /**
+   * Flushes all buffers and removes them from the page cache.
+   * @throws IOException I/O exception
+   */
+  final synchronized void close() throws IOException {
+    flush();
+    closed = true;
+    pages.clear();
+    PageCache.get().remove(this);
+  }
+
+  /**
+   * Returns the channel for vectored writes.
+   * @return channel, or {@code null} if buffers need to be written one by one
+   */
+  FileChannel channel() {
+    return null;
+  }
+
+  /**
+   * Returns the disk offset of the specified buffer.
+   * @param bf buffer
+   * @return disk offset
+   */
+  long offset(final Buffer bf) {
+    return bf.pos;
+  }
+
+  /**
+   * Returns the number of bytes of the specified buffer to be written.
+   * @param bf buffer
+   * @return length (may be {@code 0} or negative if the buffer exceeds the file length)
+   */
+  long length(final Buffer bf) {
+    return IO.BLOCKSIZE;
+  }
+
+  /**
+   * Reads the contents of the specified block from disk.
+   * @param bf buffer
+   */
+  abstract void read(Buffer bf);
+
+  /**
+   * Writes the specified buffer to disk and resets the dirty flag.
+   * Will only be called by threads that have locked this instance.
+   * @param bf buffer
+   * @throws IOException I/O exception
+   */
+  abstract void write(Buffer bf) throws IOException;
+
+  /**
+   * Reads bytes from the specified file into a buffer.
+   * @param fc file channel
+   * @param bf buffer
+   * @param len number of bytes to read
+   * @param off file offset
+   * @throws IOException I/O exception
+   */
+  static void read(final FileChannel fc, final Buffer bf, final int len, final long off)
+      throws IOException {
+    final ByteBuffer bb = ByteBuffer.wrap(bf.data, 0, len);
+    while(bb.hasRemaining()) {
+      if(fc.read(bb, off + bb.position()) == -1) throw new EOFException();
+    }
+  }
+
+  /**
+   * Writes bytes of a buffer to the specified file and resets the dirty flag.
+   * @param fc file channel
+   * @param bf buffer
+   * @param len number of bytes to write
+   * @param off file offset
+   * @throws IOException I/O exception
+   */
+  static void write(final FileChannel fc, final Buffer bf, final int len, final long off)
+      throws IOException {
+    bf.dirty = false;
+    final ByteBuffer bb = ByteBuffer.wrap(bf.data, 0, len);
+    while(bb.hasRemaining()) fc.write(bb, off + bb.position());
+  }
+
+  /**
+   * Writes a sequence of adjacent dirty buffers in a single operation and resets their
+   * dirty flags.
+   * @param fc file channel
+   * @param bfs buffers, sorted by their positions
+   * @param start index of the first buffer
+   * @return index of the first buffer that has not been written
+   * @throws IOException I/O exception
+   */
+  private int write(final FileChannel fc, final Buffer[] bfs, final int start)
+      throws IOException {
+    final int bl = bfs.length;
+    final long off = offset(bfs[start]);
+    long end = off;
+    int e = start;
+    for(; e < bl && e - start < MAX_VECTOR; e++) {
+      final Buffer bf = bfs[e];
+      final long len = length(bf);
+      if(offset(bf) != end || len <= 0) break;
+      end += len;
+      if(len < IO.BLOCKSIZE) {
+        e++;
+        break;
+      }
+    }
+    // skip buffers beyond the end of the file
+    if(e == start) {
+      bfs[start].dirty = false;
+      return start + 1;
+    }
+
+    final ByteBuffer[] bbs = new ByteBuffer[e - start];
+    for(int b = start; b < e; b++) {
+      final Buffer bf = bfs[b];
+      bf.dirty = false;
+      bbs[b - start] = ByteBuffer.wrap(bf.data, 0, (int) length(bf));
+    }
+    fc.position(off);
+    for(long w = end - off; w > 0;) w -= fc.write(bbs);
+    return e;
+  }
 }
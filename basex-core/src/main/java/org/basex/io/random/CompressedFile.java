@@ -0,0 +1,248 @@
+package org.basex.io.random;
+
+import static org.basex.data.DataText.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.util.*;
+
+/**
+ * This class stores the blocks of a database file in compressed form.
+ *
+ * Each block is compressed with {@link LZ4} and written to a slot of the file. Slots are
+ * aligned to {@link #ALIGN} bytes. Blocks that cannot be compressed are stored raw. If a
+ * rewritten block does not fit into its old slot anymore, a new slot is appended, and the space
+ * of the old slot is reclaimed when the database is optimized.
+ *
+ * The block directory is stored in a separate file, which has the prefix {@link DataText#DATABLK}.
+ * It contains the logical file length, the slot offsets, and the compressed block sizes.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class CompressedFile {
+  /** Compressed database files. */
+  private static final String[] FILES = { DATATBL, DATATXT, DATAATV };
+  /** Alignment of slots. */
+  private static final int ALIGN = 1 << 8;
+  /** Minimum length of blocks to be compressed. */
+  private static final int MIN_LENGTH = 1 << 6;
+
+  /** File channel. */
+  private final FileChannel fc;
+  /** Block directory. */
+  private final IOFile dir;
+  /** Slot offsets of the blocks ({@code -1}: block does not exist). */
+  private long[] offsets;
+  /** Block sizes: compressed size, shifted by one bit; lowest bit: raw flag. */
+  private int[] sizes;
+  /** Number of blocks. */
+  private int blocks;
+  /** End of the last slot. */
+  private long end;
+  /** Logical file length. */
+  private long length;
+  /** Dirty flag. */
+  private boolean dirty;
+
+  /**
+   * Constructor.
+   * @param fc file channel
+   * @param file database file
+   * @throws IOException I/O exception
+   */
+  CompressedFile(final FileChannel fc, final IOFile file) throws IOException {
+    this.fc = fc;
+    dir = directory(file);
+    if(dir.exists()) {
+      try(DataInput in = new DataInput(dir)) {
+        final long[] longs = in.readLongs(in.readNum());
+        length = longs[0];
+        end = longs[1];
+        blocks = longs.length - 2;
+        offsets = Arrays.copyOfRange(longs, 2, longs.length);
+        sizes = in.readNums();
+      }
+    } else {
+      offsets = new long[0];
+      sizes = new int[0];
+      dirty = true;
+    }
+  }
+
+  /**
+   * Returns the block directory of the specified file.
+   * @param file database file
+   * @return directory
+   */
+  static IOFile directory(final IOFile file) {
+    return new IOFile(file.dir(), DATABLK + file.name());
+  }
+
+  /**
+   * Returns information on the compressed files of a database.
+   * @param meta meta data
+   * @return info string
+   */
+  public static String info(final MetaData meta) {
+    long raw = 0, stored = 0;
+    for(final String name : FILES) {
+      final IOFile file = meta.dbfile(name), dir = directory(file);
+      if(!dir.exists()) continue;
+      try(DataInput in = new DataInput(dir)) {
+        raw += in.readLongs(in.readNum())[0];
+        stored += file.length() + dir.length();
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
+    return Util.info("% raw, % compressed", Performance.format(raw), Performance.format(stored));
+  }
+
+  /**
+   * Compresses the table and the texts of a database.
+   * @param meta meta data
+   * @throws IOException I/O exception
+   */
+  public static void compress(final MetaData meta) throws IOException {
+    for(final String name : FILES) compress(meta.dbfile(name));
+  }
+
+  /**
+   * Compresses the specified raw file.
+   * @param file database file
+   * @throws IOException I/O exception
+   */
+  private static void compress(final IOFile file) throws IOException {
+    final IOFile tmp = new IOFile(file.dir(), DATATMP + file.name());
+    tmp.delete();
+    directory(tmp).delete();
+    final Buffer bf = new Buffer(null, 0);
+    try(RandomAccessFile in = new RandomAccessFile(file.file(), "r");
+        RandomAccessFile out = new RandomAccessFile(tmp.file(), "rw")) {
+      final long len = in.length();
+      final CompressedFile cf = new CompressedFile(out.getChannel(), tmp);
+      for(long pos = 0; pos < len; pos += IO.BLOCKSIZE) {
+        final int l = (int) Math.min(IO.BLOCKSIZE, len - pos);
+        Buffers.read(in.getChannel(), bf, l, pos);
+        cf.write(bf, pos / IO.BLOCKSIZE, l);
+      }
+      cf.length(len);
+      cf.flush();
+    }
+    if(!file.delete() || !tmp.rename(file) || !directory(tmp).rename(directory(file)))
+      throw new IOException("Could not compress " + file);
+  }
+
+  /**
+   * Returns the logical file length.
+   * @return length
+   */
+  synchronized long length() {
+    return length;
+  }
+
+  /**
+   * Assigns the logical file length and drops all blocks beyond the new length.
+   * @param len length
+   */
+  synchronized void length(final long len) {
+    if(len == length) return;
+    length = len;
+    final int bl = (int) ((len + IO.BLOCKSIZE - 1) / IO.BLOCKSIZE);
+    for(int b = bl; b < blocks; b++) offsets[b] = -1;
+    blocks = Math.min(blocks, bl);
+    dirty = true;
+  }
+
+  /**
+   * Reads a block into the specified buffer. Non-existing blocks will be filled with zero bytes.
+   * @param bf buffer
+   * @param block block index
+   * @throws IOException I/O exception
+   */
+  void read(final Buffer bf, final long block) throws IOException {
+    final long off;
+    final int size;
+    synchronized(this) {
+      if(block >= blocks || offsets[(int) block] == -1) {
+        Arrays.fill(bf.data, (byte) 0);
+        return;
+      }
+      off = offsets[(int) block];
+      size = sizes[(int) block];
+    }
+    final int len = size >>> 1;
+    final byte[] packed = (size & 1) != 0 ? bf.data : new byte[len];
+    final ByteBuffer bb = ByteBuffer.wrap(packed, 0, len);
+    while(bb.hasRemaining()) {
+      if(fc.read(bb, off + bb.position()) == -1) throw new EOFException();
+    }
+    final int l = packed != bf.data ? LZ4.decompress(packed, len, bf.data) : len;
+    Arrays.fill(bf.data, l, IO.BLOCKSIZE, (byte) 0);
+  }
+
+  /**
+   * Compresses a buffer and writes it to disk. Resets the dirty flag.
+   * @param bf buffer
+   * @param block block index
+   * @param len number of bytes to write
+   * @throws IOException I/O exception
+   */
+  void write(final Buffer bf, final long block, final int len) throws IOException {
+    bf.dirty = false;
+    final byte[] packed = new byte[len - 1];
+    int l = len > MIN_LENGTH ? LZ4.compress(bf.data, len, packed) : -1;
+    final byte[] data = l == -1 ? bf.data : packed;
+    if(l == -1) l = len;
+
+    final long off;
+    synchronized(this) {
+      final int b = (int) block, cap = (l + ALIGN - 1) & -ALIGN;
+      if(b >= offsets.length) {
+        final int ns = Math.max(b + 1, Array.newSize(offsets.length));
+        final int os = offsets.length;
+        offsets = Arrays.copyOf(offsets, ns);
+        sizes = Arrays.copyOf(sizes, ns);
+        Arrays.fill(offsets, os, ns, -1);
+      }
+      for(int i = blocks; i < b; i++) offsets[i] = -1;
+      blocks = Math.max(blocks, b + 1);
+      // reuse slot if the compressed block fits, or append a new slot
+      if(offsets[b] == -1 || ((sizes[b] >>> 1) + ALIGN - 1 & -ALIGN) < cap) {
+        offsets[b] = end;
+        end += cap;
+      }
+      off = offsets[b];
+      sizes[b] = l << 1 | (data == bf.data ? 1 : 0);
+      length = Math.max(length, block * IO.BLOCKSIZE + len);
+      dirty = true;
+    }
+    final ByteBuffer bb = ByteBuffer.wrap(data, 0, l);
+    while(bb.hasRemaining()) fc.write(bb, off + bb.position());
+  }
+
+  /**
+   * Writes the block directory to disk.
+   * @throws IOException I/O exception
+   */
+  synchronized void flush() throws IOException {
+    if(!dirty) return;
+    try(DataOutput out = new DataOutput(dir)) {
+      final long[] longs = new long[blocks + 2];
+      longs[0] = length;
+      longs[1] = end;
+      Array.copy(offsets, 0, blocks, longs, 2);
+      out.writeLongs(longs);
+      out.writeNums(Arrays.copyOf(sizes, blocks));
+    }
+    dirty = false;
+  }
+}
@@ -1,6 +1,8 @@
 package org.basex.io.random;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
 
 import org.basex.io.*;
 import org.basex.util.*;
@@ -13,11 +15,59 @@ import org.basex.util.*;
  */
 public final class DataAccess implements Closeable {
   /** Buffer manager. */
-  private final Buffers bm = new Buffers();
+  private final Buffers bm = new Buffers() {
+    @Override
+    void read(final Buffer bf) {
+      try {
+        if(compressed != null) {
+          compressed.read(bf, bf.pos / IO.BLOCKSIZE);
+          return;
+        }
+        final long len = Math.min(length, raf.length()) - bf.pos;
+        if(len > 0) {
+          final int l = (int) Math.min(len, IO.BLOCKSIZE);
+          final ByteBuffer segment = mapping != null ? mapping.segment(bf.pos, l) : null;
+          if(segment != null) {
+            final ByteBuffer dup = segment.duplicate();
+            dup.position(MappedFile.offset(bf.pos));
+            dup.get(bf.data, 0, l);
+          } else {
+            read(raf.getChannel(), bf, l, bf.pos);
+          }
+        }
+      } catch(final IOException ex) {
+        Util.stack(ex);
+      }
+    }
+
+    @Override
+    void write(final Buffer bf) throws IOException {
+      final long len = length(bf);
+      if(len <= 0) bf.dirty = false;
+      else if(compressed != null) compressed.write(bf, bf.pos / IO.BLOCKSIZE, (int) len);
+      else write(raf.getChannel(), bf, (int) len, bf.pos);
+    }
+
+    @Override
+    FileChannel channel() {
+      return compressed == null ? raf.getChannel() : null;
+    }
+
+    @Override
+    long length(final Buffer bf) {
+      return Math.min(IO.BLOCKSIZE, length - bf.pos);
+    }
+  };
   /** Reference to the data input stream. */
   private final RandomAccessFile raf;
+  /** Compressed blocks (can be {@code null}). */
+  private final CompressedFile compressed;
+  /** Memory mapping of the file (can be {@code null}). */
+  private final MappedFile mapping;
+  /** Indicates if the file contains changes that have not been flushed yet. */
+  private volatile boolean pending;
   /** File length. */
-  private long length;
+  private volatile long length;
   /** Changed flag. */
   private boolean changed;
   /** Offset. */
@@ -29,11 +79,24 @@ public final class DataAccess implements Closeable {
    * @throws IOException I/O Exception
    */
   public DataAccess(final IOFile file) throws IOException {
+    this(file, false);
+  }
+
+  /**
+   * Constructor, initializing the file reader.
+   * @param file the file to be read
+   * @param mmap map file into memory (ignored if the file is compressed)
+   * @throws IOException I/O Exception
+   */
+  public DataAccess(final IOFile file, final boolean mmap) throws IOException {
     RandomAccessFile f = null;
     try {
       f = new RandomAccessFile(file.file(), "rw");
-      length = f.length();
+      compressed = CompressedFile.directory(file).exists() ?
+        new CompressedFile(f.getChannel(), file) : null;
+      length = compressed != null ? compressed.length() : f.length();
       raf = f;
+      mapping = mmap && compressed == null ? new MappedFile(f.getChannel()) : null;
       cursor(0);
     } catch(final IOException ex) {
       if(f != null) f.close();
@@ -46,13 +109,19 @@ public final class DataAccess implements Closeable {
    */
   public synchronized void flush() {
     try {
-      for(final Buffer b : bm.all()) {
-        if(b.dirty) writeBlock(b);
-      }
-      if(changed) {
-        raf.setLength(length);
-        changed = false;
+      // prevent background writes while the file length is adjusted
+      synchronized(bm) {
+        bm.flush();
+        if(compressed != null) {
+          compressed.length(length);
+          compressed.flush();
+        } else if(changed) {
+          if(mapping != null && length < raf.length()) mapping.reset();
+          raf.setLength(length);
+        }
       }
+      changed = false;
+      pending = false;
     } catch(final IOException ex) {
       Util.stack(ex);
     }
@@ -62,6 +131,8 @@ public final class DataAccess implements Closeable {
   public synchronized void close() {
     flush();
     try {
+      bm.close();
+      if(mapping != null) mapping.reset();
       raf.close();
     } catch(final IOException ex) {
       Util.stack(ex);
@@ -158,12 +229,44 @@ public final class DataAccess implements Closeable {
 
   /**
    * Reads a token from disk.
+   * If the file is memory-mapped and contains no pending changes, the token will directly be
+   * read from the mapping, and the cursor will not be changed.
    * @param p text position
    * @return text as byte array
    */
-  public synchronized byte[] readToken(final long p) {
-    cursor(p);
-    return readToken();
+  public byte[] readToken(final long p) {
+    if(mapping != null && !pending) {
+      try {
+        final MappedFile mf = mapping;
+        long pos = p;
+        final int value = mf.get(pos++);
+        final int len;
+        switch(value & 0xC0) {
+          case 0:
+            len = value;
+            break;
+          case 0x40:
+            len = (value - 0x40 << 8) + mf.get(pos++);
+            break;
+          case 0x80:
+            len = (value - 0x80 << 24) + (mf.get(pos++) << 16) + (mf.get(pos++) << 8) +
+              mf.get(pos++);
+            break;
+          default:
+            len = (mf.get(pos++) << 24) + (mf.get(pos++) << 16) + (mf.get(pos++) << 8) +
+              mf.get(pos++);
+        }
+        final byte[] token = new byte[len];
+        mf.get(pos, token);
+        return token;
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
+    synchronized(this) {
+      cursor(p);
+      return readToken();
+    }
   }
 
   /**
@@ -214,19 +317,7 @@ public final class DataAccess implements Closeable {
    */
   public void cursor(final long pos) {
     off = (int) (pos & IO.BLOCKSIZE - 1);
-    final long b = pos - off;
-    if(!bm.cursor(b)) return;
-
-    final Buffer bf = bm.current();
-    try {
-      if(bf.dirty) writeBlock(bf);
-      bf.pos = b;
-      raf.seek(bf.pos);
-      if(bf.pos < raf.length())
-        raf.readFully(bf.data, 0, (int) Math.min(length - bf.pos, IO.BLOCKSIZE));
-    } catch(final IOException ex) {
-      Util.stack(ex);
-    }
+    bm.cursor(pos - off);
   }
 
   /**
@@ -308,6 +399,7 @@ public final class DataAccess implements Closeable {
   public void writeBytes(final byte[] buffer, final int offset, final int len) {
     final int last = offset + len;
     int o = offset;
+    pending = true;
 
     while(o < last) {
       final Buffer bf = buffer();
@@ -327,7 +419,7 @@ public final class DataAccess implements Closeable {
    * @param pos write position
    * @param values byte array to be appended
    */
-  public void writeToken(final long pos, final byte[] values) {
+  public synchronized void writeToken(final long pos, final byte[] values) {
     cursor(pos);
     writeToken(values, 0, values.length);
   }
@@ -397,9 +489,10 @@ public final class DataAccess implements Closeable {
    * @param value byte to be written
    */
   private void write(final int value) {
+    pending = true;
     final Buffer bf = buffer();
-    bf.dirty = true;
     bf.data[off++] = (byte) value;
+    bf.dirty = true;
     final long nl = bf.pos + off;
     if(nl > length) length(nl);
   }
@@ -415,18 +508,6 @@ public final class DataAccess implements Closeable {
     writeBytes(buffer, offset, len);
   }
 
-  /**
-   * Writes the specified block to disk.
-   * @param buffer buffer to write
-   * @throws IOException I/O exception
-   */
-  private void writeBlock(final Buffer buffer) throws IOException {
-    final long pos = buffer.pos, len = Math.min(IO.BLOCKSIZE, length - pos);
-    raf.seek(pos);
-    raf.write(buffer.data, 0, (int) len);
-    buffer.dirty = false;
-  }
-
   /**
    * Returns a buffer which can be used for writing new bytes.
    * @return buffer
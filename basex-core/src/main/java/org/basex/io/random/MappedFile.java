@@ -0,0 +1,124 @@
+package org.basex.io.random;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.*;
+import java.util.*;
+
+/**
+ * Read-only memory mapping of a file, which is organized in segments.
+ * Segments are mapped on demand. If a file grows, the last segment will be remapped as soon as
+ * data beyond its end is requested. The contents of the mapping are kept consistent with
+ * positional writes on the same channel by the operating system.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+final class MappedFile {
+  /** Segment size (power of two, multiple of the block size). */
+  private static final int POWER = 28;
+  /** Segment size. */
+  private static final int SEGMENT = 1 << POWER;
+
+  /** File channel. */
+  private final FileChannel fc;
+  /** Mapped segments (entries can be {@code null}). */
+  private volatile ByteBuffer[] segments = {};
+
+  /**
+   * Constructor.
+   * @param fc file channel
+   */
+  MappedFile(final FileChannel fc) {
+    this.fc = fc;
+  }
+
+  /**
+   * Returns the offset of the specified file position in its segment.
+   * @param pos file position
+   * @return offset
+   */
+  static int offset(final long pos) {
+    return (int) (pos & SEGMENT - 1);
+  }
+
+  /**
+   * Returns the segment that contains the specified range.
+   * @param pos file position
+   * @param len length of the range (must not exceed the segment boundary)
+   * @return segment, or {@code null} if the range exceeds the file size
+   * @throws IOException I/O exception
+   */
+  ByteBuffer segment(final long pos, final int len) throws IOException {
+    final int s = (int) (pos >>> POWER), end = offset(pos) + len;
+    final ByteBuffer[] segs = segments;
+    if(s < segs.length) {
+      final ByteBuffer bb = segs[s];
+      if(bb != null && end <= bb.limit()) return bb;
+    }
+    return map(s, end);
+  }
+
+  /**
+   * Returns a byte.
+   * @param pos file position
+   * @return byte
+   * @throws IOException I/O exception
+   */
+  int get(final long pos) throws IOException {
+    final ByteBuffer bb = segment(pos, 1);
+    if(bb == null) throw new EOFException();
+    return bb.get(offset(pos)) & 0xFF;
+  }
+
+  /**
+   * Copies bytes to the specified array.
+   * @param pos file position
+   * @param array target array
+   * @throws IOException I/O exception
+   */
+  void get(final long pos, final byte[] array) throws IOException {
+    long p = pos;
+    for(int a = 0, al = array.length; a < al;) {
+      final int o = offset(p), l = Math.min(al - a, SEGMENT - o);
+      final ByteBuffer bb = segment(p, l);
+      if(bb == null) throw new EOFException();
+      final ByteBuffer dup = bb.duplicate();
+      dup.position(o);
+      dup.get(array, a, l);
+      a += l;
+      p += l;
+    }
+  }
+
+  /**
+   * Drops all mappings. Must be called before a file is truncated.
+   */
+  synchronized void reset() {
+    segments = new ByteBuffer[0];
+  }
+
+  /**
+   * Maps a segment.
+   * @param s segment index
+   * @param end required end offset of the segment
+   * @return segment, or {@code null} if the file is too small
+   * @throws IOException I/O exception
+   */
+  private synchronized ByteBuffer map(final int s, final int end) throws IOException {
+    ByteBuffer[] segs = segments;
+    if(s < segs.length) {
+      final ByteBuffer bb = segs[s];
+      if(bb != null && end <= bb.limit()) return bb;
+    }
+    final long start = (long) s << POWER, len = Math.min(SEGMENT, fc.size() - start);
+    if(len < end) return null;
+
+    segs = Arrays.copyOf(segs, Math.max(segs.length, s + 1));
+    final ByteBuffer bb = fc.map(MapMode.READ_ONLY, start, len);
+    segs[s] = bb;
+    segments = segs;
+    return bb;
+  }
+}
@@ -0,0 +1,245 @@
+package org.basex.io.random;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.basex.io.*;
+import org.basex.util.*;
+
+/**
+ * Process-wide cache for the disk blocks of all opened database files.
+ *
+ * The blocks are organized in a clock: blocks that have been accessed again since the
+ * clock hand last passed them get a second chance. New blocks are inserted without
+ * reference flag, so that a single sequential scan cannot displace frequently accessed blocks.
+ * Only clean blocks are evicted. Dirty blocks get another chance, and one of them is written back
+ * to disk after the cache has been unlocked, so that it can be evicted later on.
+ * The current block of each file will never be evicted, as it may be modified by the thread
+ * that owns it. The blocks of a file are removed when the file is closed.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class PageCache {
+  /** Singleton instance. */
+  private static final PageCache INSTANCE = new PageCache();
+
+  /** Cached buffers. */
+  private Buffer[] clock = new Buffer[1 << 8];
+  /** Number of cached buffers. */
+  private int size;
+  /** Clock hand. */
+  private int hand;
+  /** Maximum number of cached buffers. */
+  private int capacity = 32 << 8;
+
+  /** Number of cache hits. */
+  private final LongAdder hits = new LongAdder();
+  /** Number of cache misses. */
+  private long misses;
+  /** Number of evicted buffers. */
+  private long evictions;
+  /** Number of buffers that have been written back to disk in order to be evicted. */
+  private long writes;
+  /** Dirty buffer that has been skipped by the clock hand, and that will be written back. */
+  private Buffer skipped;
+
+  /** Private constructor. */
+  private PageCache() { }
+
+  /**
+   * Returns the singleton instance.
+   * @return instance
+   */
+  static PageCache get() {
+    return INSTANCE;
+  }
+
+  /**
+   * Assigns the maximum size of the cache.
+   * @param mb size in megabytes
+   */
+  public static void size(final int mb) {
+    synchronized(INSTANCE) {
+      INSTANCE.capacity = Math.max(1, (int) Math.min(Integer.MAX_VALUE,
+          ((long) mb << 20) / IO.BLOCKSIZE));
+    }
+  }
+
+  /**
+   * Returns cache statistics.
+   * @return info string
+   */
+  public static String info() {
+    synchronized(INSTANCE) {
+      final long h = INSTANCE.hits.sum(), m = INSTANCE.misses, a = h + m;
+      return Util.info("% of %, % hits (% %), % misses, % evictions, % writes",
+          Performance.format((long) INSTANCE.size * IO.BLOCKSIZE),
+          Performance.format((long) INSTANCE.capacity * IO.BLOCKSIZE),
+          h, a == 0 ? 0 : h * 100 / a, "%", m, INSTANCE.evictions, INSTANCE.writes);
+    }
+  }
+
+  /**
+   * Assigns the buffer with the specified position as current buffer of the specified file.
+   * If it is not cached yet, it will be added and read from disk.
+   * @param owner buffer manager of the file
+   * @param pos disk offset, or block position
+   */
+  void pin(final Buffers owner, final long pos) {
+    while(true) {
+      final Buffer bf = owner.pages.get(pos);
+      if(bf == null) break;
+      // assign buffer, and check if it has not been evicted in the meantime
+      bf.pins++;
+      owner.current = bf;
+      if(owner.pages.get(pos) == bf) {
+        hit(bf).load();
+        return;
+      }
+    }
+    final Buffer bf, dirty;
+    synchronized(this) {
+      bf = miss(owner, pos);
+      bf.pins++;
+      owner.current = bf;
+      dirty = skipped();
+    }
+    save(dirty);
+    bf.load();
+  }
+
+  /**
+   * Returns the buffer with the specified position. If it is not cached yet, it will be added
+   * and read from disk. This function does not lock the cache if the buffer is found.
+   * @param owner buffer manager of the file
+   * @param pos disk offset, or block position
+   * @return buffer
+   */
+  Buffer fetch(final Buffers owner, final long pos) {
+    Buffer bf = owner.pages.get(pos);
+    if(bf != null) {
+      hit(bf);
+    } else {
+      final Buffer dirty;
+      synchronized(this) {
+        bf = miss(owner, pos);
+        dirty = skipped();
+      }
+      save(dirty);
+    }
+    return bf.load();
+  }
+
+  /**
+   * Removes all buffers of a closed file.
+   * @param owner buffer manager of the file
+   */
+  synchronized void remove(final Buffers owner) {
+    int s = 0;
+    for(int c = 0; c < size; c++) {
+      final Buffer bf = clock[c];
+      if(bf.owner != owner) clock[s++] = bf;
+    }
+    Arrays.fill(clock, s, size, null);
+    size = s;
+    if(hand >= s) hand = 0;
+    if(skipped != null && skipped.owner == owner) skipped = null;
+  }
+
+  /**
+   * Returns and resets the dirty buffer that has been skipped by the clock hand.
+   * @return buffer or {@code null}
+   */
+  private Buffer skipped() {
+    final Buffer bf = skipped;
+    skipped = null;
+    return bf;
+  }
+
+  /**
+   * Writes a dirty buffer to disk. Called after the cache has been unlocked.
+   * @param bf buffer (can be {@code null})
+   */
+  private void save(final Buffer bf) {
+    if(bf == null) return;
+    try {
+      if(bf.owner.save(bf)) {
+        synchronized(this) {
+          writes++;
+        }
+      }
+    } catch(final IOException ex) {
+      Util.stack(ex);
+    }
+  }
+
+  /**
+   * Returns a hit buffer.
+   * @param bf buffer
+   * @return buffer
+   */
+  private Buffer hit(final Buffer bf) {
+    hits.increment();
+    bf.used = true;
+    return bf;
+  }
+
+  /**
+   * Returns a buffer for a block that has not been found in the cache.
+   * The contents of the buffer are not read yet.
+   * @param owner buffer manager of the file
+   * @param pos disk offset, or block position
+   * @return buffer
+   */
+  private Buffer miss(final Buffers owner, final long pos) {
+    // check if the buffer has been cached by another thread
+    Buffer bf = owner.pages.get(pos);
+    if(bf != null) return hit(bf);
+
+    misses++;
+    bf = new Buffer(owner, pos);
+    final int slot = size < capacity ? -1 : evict();
+    if(slot == -1) {
+      if(size == clock.length) clock = Arrays.copyOf(clock, Array.newSize(size));
+      clock[size++] = bf;
+    } else {
+      clock[slot] = bf;
+    }
+    owner.pages.put(pos, bf);
+    return bf;
+  }
+
+  /**
+   * Evicts a clean buffer and returns its slot. The first dirty buffer that is found is
+   * remembered, and it will be written back after the cache has been unlocked.
+   * @return slot, or {@code -1} if all buffers are pinned or dirty
+   */
+  private int evict() {
+    for(int c = size << 1; c >= 0; c--) {
+      final int slot = hand;
+      hand = hand + 1 == size ? 0 : hand + 1;
+
+      final Buffer bf = clock[slot];
+      final Buffers owner = bf.owner;
+      if(owner.closed) return slot;
+      if(bf.used) {
+        bf.used = false;
+        continue;
+      }
+      if(bf.dirty) {
+        if(skipped == null && owner.current != bf) skipped = bf;
+        continue;
+      }
+      // remove buffer first, then check if it has been pinned or modified in the meantime
+      if(owner.pages.remove(bf.pos, bf) && (owner.current == bf || bf.dirty)) {
+        owner.pages.put(bf.pos, bf);
+        continue;
+      }
+      evictions++;
+      return slot;
+    }
+    return -1;
+  }
+}
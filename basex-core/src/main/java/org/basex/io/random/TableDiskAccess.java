@@ -3,6 +3,7 @@ package org.basex.io.random;
 import static org.basex.data.DataText.*;
 
 import java.io.*;
+import java.nio.*;
 import java.nio.channels.*;
 import java.util.*;
 
@@ -12,25 +13,72 @@ import org.basex.io.*;
 import org.basex.io.in.DataInput;
 import org.basex.io.out.DataOutput;
 import org.basex.util.*;
+import org.basex.util.list.*;
 
 /**
  * This class stores the table on disk and reads it page-wise.
  *
- * NOTE: this class is not thread-safe.
+ * Read operations do not synchronize and may be called by concurrent threads. Updates must be
+ * performed by a single thread, and no read operations must be run by other threads in the
+ * meantime (this is ensured by the database locks).
+ *
+ * If updates are versioned (see {@link #begin()}), pages will be copied before they are modified,
+ * and replaced pages will only be reused after they have been released by all snapshots
+ * (see {@link #snapshot(MetaData)}). Snapshots may be read while updates are performed.
  *
  * @author BaseX Team 2005-18, BSD License
  * @author Christian Gruen
  * @author Tim Petrowsky
  */
 public final class TableDiskAccess extends TableAccess {
+  /** Invalid frame. */
+  private static final Frame INVALID = new BufferFrame(0, 0, 0, null);
+
   /** Buffer manager. */
-  private final Buffers bm = new Buffers();
+  private final Buffers bm = new Buffers() {
+    @Override
+    void read(final Buffer bf) {
+      try {
+        if(bf.pos >= size) {
+          size = (int) bf.pos + 1;
+        } else if(compressed != null) {
+          compressed.read(bf, bf.pos);
+        } else {
+          read(file.getChannel(), bf, IO.BLOCKSIZE, bf.pos * IO.BLOCKSIZE);
+        }
+      } catch(final IOException ex) {
+        Util.stack(ex);
+      }
+    }
+
+    @Override
+    void write(final Buffer bf) throws IOException {
+      if(compressed != null) compressed.write(bf, bf.pos, IO.BLOCKSIZE);
+      else write(file.getChannel(), bf, IO.BLOCKSIZE, bf.pos * IO.BLOCKSIZE);
+    }
+
+    @Override
+    FileChannel channel() {
+      return compressed == null ? file.getChannel() : null;
+    }
+
+    @Override
+    long offset(final Buffer bf) {
+      return bf.pos * IO.BLOCKSIZE;
+    }
+  };
   /** File storing all pages. */
   private final RandomAccessFile file;
   /** Bitmap storing free (=0) and used (=1) pages. */
   private BitArray usedPages;
   /** File lock. */
   private FileLock fl;
+  /** Compressed blocks (can be {@code null}). */
+  private final CompressedFile compressed;
+  /** Memory mapping of the file (can be {@code null}). */
+  private final MappedFile mapping;
+  /** Indicates if pages are read from the memory mapping. */
+  private volatile boolean mapped;
 
   /** First pre values (ascending order); will be initialized with the first update. */
   private int[] fpres;
@@ -41,7 +89,23 @@ public final class TableDiskAccess extends TableAccess {
   /** Number of used pages. */
   private int used;
 
-  /** Pointer to current page. */
+  /** Pages that have last been accessed by the read operations of each thread. */
+  private final ThreadLocal<Frame> frames = ThreadLocal.withInitial(() -> INVALID);
+  /** Version of the page layout (incremented whenever frames become invalid). */
+  private volatile int version;
+
+  /** Indicates if the current update is versioned. */
+  private boolean versioned;
+  /** Pages that have been allocated by the current versioned update. */
+  private BitArray fresh;
+  /** Pages that have been replaced or deleted by the current versioned update. */
+  private IntList retired;
+  /** Pages that may still be accessed by snapshots (marked as used in the bitmap). */
+  private final BitArray reserved = new BitArray();
+  /** Reserved pages that have been released by snapshots. */
+  private final IntList released = new IntList();
+
+  /** Pointer to current page (only used by update operations). */
   private int page = -1;
   /** Pre value of the first entry in the current page. */
   private int firstPre = -1;
@@ -82,7 +146,11 @@ public final class TableDiskAccess extends TableAccess {
     }
 
     // initialize data file
-    file = new RandomAccessFile(meta.dbfile(DATATBL).file(), "rw");
+    final IOFile tbl = meta.dbfile(DATATBL);
+    file = new RandomAccessFile(tbl.file(), "rw");
+    compressed = CompressedFile.directory(tbl).exists() ?
+      new CompressedFile(file.getChannel(), tbl) : null;
+    mapping = meta.mmap && compressed == null ? new MappedFile(file.getChannel()) : null;
     if(!lock(write)) throw new BaseXException(Text.DB_PINNED_X, md.name);
   }
 
@@ -106,9 +174,8 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public synchronized void flush(final boolean all) throws IOException {
-    for(final Buffer b : bm.all()) {
-      if(b.dirty) write(b);
-    }
+    bm.flush();
+    if(compressed != null) compressed.flush();
     if(!dirty || !all) return;
 
     try(DataOutput out = new DataOutput(meta.dbfile(DATATBL + 'i'))) {
@@ -121,7 +188,10 @@ public final class TableDiskAccess extends TableAccess {
       out.writeNum(sz);
       for(int s = 0; s < sz; s++) out.writeNum(pages[s]);
 
-      out.writeLongs(usedPages.toArray());
+      // reserved pages will be free when the database is opened again
+      final BitArray bits = new BitArray(usedPages.toArray(), sz);
+      for(int p = reserved.nextSet(0); p != -1; p = reserved.nextSet(p + 1)) bits.clear(p);
+      out.writeLongs(bits.toArray());
     }
     dirty = false;
   }
@@ -129,6 +199,8 @@ public final class TableDiskAccess extends TableAccess {
   @Override
   public synchronized void close() throws IOException {
     flush(true);
+    bm.close();
+    if(mapping != null) mapping.reset();
     file.close();
   }
 
@@ -140,40 +212,96 @@ public final class TableDiskAccess extends TableAccess {
         fl.release();
       }
       fl = file.getChannel().tryLock(0, Long.MAX_VALUE, !write);
+      // pages are only read from the mapping if no updates are pending
+      mapped = mapping != null && !write && fl != null;
+      invalidate();
       return fl != null;
     } catch(final IOException ex) {
       throw Util.notExpected(ex);
     }
   }
 
+  /**
+   * Starts a versioned update: pages that are accessed by snapshots will not be modified.
+   * Pages that have been released by snapshots in the meantime will be marked as free.
+   */
+  public void begin() {
+    synchronized(released) {
+      final int rs = released.size();
+      for(int r = 0; r < rs; r++) {
+        final int pg = released.get(r);
+        usedPages.clear(pg);
+        reserved.clear(pg);
+      }
+      released.reset();
+    }
+    fresh = new BitArray();
+    retired = new IntList();
+    versioned = true;
+    // enforce that the first modified page will be copied
+    page = -1;
+    firstPre = -1;
+    nextPre = -1;
+  }
+
+  /**
+   * Finishes a versioned update.
+   * @return pages that have been replaced or deleted by the update
+   */
+  public int[] end() {
+    final int[] pgs = retired.finish();
+    versioned = false;
+    fresh = null;
+    retired = null;
+    return pgs;
+  }
+
+  /**
+   * Releases pages that have been returned by {@link #end()} and that are not accessed by
+   * snapshots anymore. The pages will be reused by the next versioned update.
+   * This method may be called by concurrent threads.
+   * @param pgs pages
+   */
+  public void release(final int[] pgs) {
+    synchronized(released) {
+      released.add(pgs);
+    }
+  }
+
+  /**
+   * Returns a read-only view on the current state of the table. The view remains valid as long as
+   * the pages that are replaced by subsequent updates have not been released.
+   * This method must not be called while an update is performed.
+   * @param md meta data of the snapshot
+   * @return table view
+   */
+  public TableAccess snapshot(final MetaData md) {
+    return new Snapshot(md, fpres == null ? null : Arrays.copyOf(fpres, used),
+        pages == null ? null : Arrays.copyOf(pages, used), used);
+  }
+
   @Override
-  public synchronized int read1(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return b[o] & 0xFF;
+  public int read1(final int pre, final int off) {
+    final Frame f = frame(pre);
+    return f.read1(off + (pre - f.first << IO.NODEPOWER));
   }
 
   @Override
-  public synchronized int read2(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((b[o] & 0xFF) << 8) + (b[o + 1] & 0xFF);
+  public int read2(final int pre, final int off) {
+    final Frame f = frame(pre);
+    return f.read2(off + (pre - f.first << IO.NODEPOWER));
   }
 
   @Override
-  public synchronized int read4(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((b[o] & 0xFF) << 24) + ((b[o + 1] & 0xFF) << 16) +
-      ((b[o + 2] & 0xFF) << 8) + (b[o + 3] & 0xFF);
+  public int read4(final int pre, final int off) {
+    final Frame f = frame(pre);
+    return f.read4(off + (pre - f.first << IO.NODEPOWER));
   }
 
   @Override
-  public synchronized long read5(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((long) (b[o] & 0xFF) << 32) + ((long) (b[o + 1] & 0xFF) << 24) +
-      ((b[o + 2] & 0xFF) << 16) + ((b[o + 3] & 0xFF) << 8) + (b[o + 4] & 0xFF);
+  public long read5(final int pre, final int off) {
+    final Frame f = frame(pre);
+    return f.read5(off + (pre - f.first << IO.NODEPOWER));
   }
 
   @Override
@@ -251,7 +379,7 @@ public final class TableDiskAccess extends TableAccess {
       // if whole page was deleted, remove it from the index
       if(nextPre == firstPre) {
         // mark the page as empty
-        usedPages.clear(pages[page]);
+        free(pages[page]);
 
         Array.remove(fpres, page, 1, used);
         Array.remove(pages, page, 1, used);
@@ -270,17 +398,17 @@ public final class TableDiskAccess extends TableAccess {
         ++unused;
         // mark the pages as empty; range clear cannot be used because the
         // pages may not be consecutive
-        usedPages.clear(pages[page]);
+        free(pages[page]);
       }
       setPage(page + 1);
       from = 0;
     }
 
     // if the last page is empty, clear the corresponding bit
-    read(pages[page]);
+    readPage(page);
     final Buffer bf = bm.current();
     if(nextPre == last) {
-      usedPages.clear((int) bf.pos);
+      free((int) bf.pos);
       ++unused;
       if(page < used - 1) readPage(page + 1);
       else ++page;
@@ -315,8 +443,14 @@ public final class TableDiskAccess extends TableAccess {
     int split = 0;
     if(used == 0) {
       // special case: insert new data into first page if database is empty
-      readPage(0);
-      usedPages.set(0);
+      if(versioned) {
+        // pages that are reserved by snapshots must not be overwritten
+        pages[0] = allocate();
+        readPage(0);
+      } else {
+        readPage(0);
+        usedPages.set(0);
+      }
       ++used;
     } else if(pre > 0) {
       // find the offset within the page where the new records will be inserted
@@ -430,58 +564,136 @@ public final class TableDiskAccess extends TableAccess {
       usedPages = new BitArray(used, true);
     }
     dirty = true;
+    invalidate();
   }
 
   // PRIVATE METHODS ==============================================================================
 
+  /**
+   * Returns a frame for the page containing the entry for the specified pre value.
+   * @param pre pre of the entry to search for
+   * @return frame
+   */
+  private Frame frame(final int pre) {
+    Frame f = frames.get();
+    final int v = version;
+    if(pre < f.first || pre >= f.next || f.version != v) {
+      final int p = find(pre, -1, -1, -1);
+      final int fp = fpre(p), np = p + 1 >= used ? meta.size : fpre(p + 1);
+      f = mapped ? mappedFrame(fp, np, page(p), v) : null;
+      if(f == null) f = new BufferFrame(fp, np, v, bm.get(page(p)).data);
+      frames.set(f);
+    }
+    return f;
+  }
+
+  /**
+   * Returns a frame for a page in the memory mapping.
+   * @param first first pre value
+   * @param next first pre value of the next page
+   * @param pg page
+   * @param vrsn version of the page layout
+   * @return frame, or {@code null} if the page is not available in the mapping
+   */
+  private Frame mappedFrame(final int first, final int next, final int pg, final int vrsn) {
+    try {
+      final long pos = (long) pg * IO.BLOCKSIZE;
+      final ByteBuffer segment = mapping.segment(pos, IO.BLOCKSIZE);
+      if(segment != null) {
+        return new MappedFrame(first, next, vrsn, segment, MappedFile.offset(pos));
+      }
+    } catch(final IOException ex) {
+      Util.debug(ex);
+    }
+    return null;
+  }
+
+  /**
+   * Invalidates the frames of the last read operations of all threads.
+   */
+  private void invalidate() {
+    version++;
+  }
+
   /**
    * Searches for the page containing the entry for the specified pre value.
    * Reads the page and returns its offset inside the page.
    * @param pre pre of the entry to search for
    * @return offset of the entry in the page
    */
-  private synchronized int cursor(final int pre) {
-    int fp = firstPre, np = nextPre;
-    if(pre < fp || pre >= np) {
-      final int last = used - 1;
-      int l = 0, h = last, m = page;
-      while(l <= h) {
-        if(pre < fp) h = m - 1;
-        else if(pre >= np) l = m + 1;
-        else break;
-        m = h + l >>> 1;
-        fp = fpre(m);
-        np = m == last ? meta.size : fpre(m + 1);
-      }
-      if(l > h) throw Util.notExpected(
-          "Data Access out of bounds:" +
-          "\n- pre value: " + pre +
-          "\n- table size: " + meta.size +
-          "\n- first/next pre value: " + fp + '/' + np +
-          "\n- #total/used pages: " + size + '/' + used +
-          "\n- accessed page: " + m + " (" + l + " > " + h + ']');
-      readPage(m);
-    }
+  private int cursor(final int pre) {
+    if(pre < firstPre || pre >= nextPre) readPage(find(pre, page, firstPre, nextPre));
     return pre - firstPre << IO.NODEPOWER;
   }
 
+  /**
+   * Returns the index of the page containing the entry for the specified pre value.
+   * @param pre pre of the entry to search for
+   * @param start index of the page to start from
+   * @param first first pre value of the start page
+   * @param next first pre value of the page following the start page
+   * @return page index
+   */
+  private int find(final int pre, final int start, final int first, final int next) {
+    final int last = used - 1;
+    int l = 0, h = last, m = start, fp = first, np = next;
+    while(l <= h) {
+      if(pre < fp) h = m - 1;
+      else if(pre >= np) l = m + 1;
+      else return m;
+      m = h + l >>> 1;
+      fp = fpre(m);
+      np = m == last ? meta.size : fpre(m + 1);
+    }
+    throw Util.notExpected(
+        "Data Access out of bounds:" +
+        "\n- pre value: " + pre +
+        "\n- table size: " + meta.size +
+        "\n- first/next pre value: " + fp + '/' + np +
+        "\n- #total/used pages: " + size + '/' + used +
+        "\n- accessed page: " + m + " (" + l + " > " + h + ']');
+  }
+
   /**
    * Updates the page pointers.
    * @param p page index
    */
-  private synchronized void setPage(final int p) {
+  private void setPage(final int p) {
     page = p;
     firstPre = fpre(p);
     nextPre = p + 1 >= used ? meta.size : fpre(p + 1);
+    invalidate();
   }
 
   /**
    * Updates the index pointers and fetches the requested page.
    * @param p page index
    */
-  private synchronized void readPage(final int p) {
+  private void readPage(final int p) {
     setPage(p);
-    read(page(p));
+    final int pg = page(p);
+    read(versioned && p < used && !fresh.get(pg) ? copyPage(p, pg) : pg);
+  }
+
+  /**
+   * Copies a page that may be accessed by snapshots to a free page, which replaces the original
+   * page in the page index.
+   * @param p page index
+   * @param pg page to be copied
+   * @return new page
+   */
+  private int copyPage(final int p, final int pg) {
+    dirty();
+    final byte[] data = bm.get(pg).data;
+    final int np = allocate();
+    read(np);
+    final Buffer bf = bm.current();
+    Array.copy(data, IO.BLOCKSIZE, bf.data);
+    bf.dirty = true;
+    pages[p] = np;
+    retired.add(pg);
+    reserved.set(pg);
+    return np;
   }
 
   /**
@@ -489,7 +701,7 @@ public final class TableDiskAccess extends TableAccess {
    * @param p index of the page to fetch
    * @return pre value
    */
-  private synchronized int page(final int p) {
+  private int page(final int p) {
     return pages == null ? p : pages[p];
   }
 
@@ -498,7 +710,7 @@ public final class TableDiskAccess extends TableAccess {
    * @param p index of the page to fetch
    * @return pre value
    */
-  private synchronized int fpre(final int p) {
+  private int fpre(final int p) {
     return fpres == null ? p * IO.ENTRIES : fpres[p];
   }
 
@@ -506,44 +718,47 @@ public final class TableDiskAccess extends TableAccess {
    * Reads a page from disk.
    * @param p page to fetch
    */
-  private synchronized void read(final int p) {
-    if(!bm.cursor(p)) return;
-
-    final Buffer bf = bm.current();
-    try {
-      if(bf.dirty) write(bf);
-      bf.pos = p;
-      if(p >= size) {
-        size = p + 1;
-      } else {
-        file.seek(bf.pos * IO.BLOCKSIZE);
-        file.readFully(bf.data);
-      }
-    } catch(final IOException ex) {
-      Util.stack(ex);
-    }
+  private void read(final int p) {
+    bm.cursor(p);
   }
 
   /**
    * Moves the cursor to a free page (either new or existing empty one).
    */
   private void freePage() {
-    final int p = usedPages.nextFree(0);
-    usedPages.set(p);
-    read(p);
+    read(allocate());
     ++used;
     ++page;
   }
 
   /**
-   * Writes the specified buffer disk and resets the dirty flag.
-   * @param bf buffer to write
-   * @throws IOException I/O exception
+   * Marks the next free page as used.
+   * @return page
+   */
+  private int allocate() {
+    final int p = usedPages.nextFree(0);
+    usedPages.set(p);
+    if(versioned) fresh.set(p);
+    // resize directory arrays if the table will be extended (entries are written for all pages)
+    if(p >= fpres.length) {
+      final int ns = Math.max(fpres.length << 1, p + 1);
+      fpres = Arrays.copyOf(fpres, ns);
+      pages = Arrays.copyOf(pages, ns);
+    }
+    return p;
+  }
+
+  /**
+   * Marks a page as free. If the page may still be accessed by snapshots, it will be retired.
+   * @param pg page
    */
-  private void write(final Buffer bf) throws IOException {
-    file.seek(bf.pos * IO.BLOCKSIZE);
-    file.write(bf.data);
-    bf.dirty = false;
+  private void free(final int pg) {
+    if(versioned && !fresh.get(pg)) {
+      retired.add(pg);
+      reserved.set(pg);
+    } else {
+      usedPages.clear(pg);
+    }
   }
 
   /**
@@ -593,4 +808,277 @@ public final class TableDiskAccess extends TableAccess {
   private int occSpace(final int i) {
     return (i + 1 < used ? fpres[i + 1] : meta.size) - fpres[i];
   }
+
+  /** Read-only view on a committed state of the table. */
+  private final class Snapshot extends TableAccess {
+    /** First pre values ({@code null} if the page index is regular). */
+    private final int[] fpres;
+    /** Page index ({@code null} if the page index is regular). */
+    private final int[] pages;
+    /** Number of used pages. */
+    private final int used;
+    /** Pages that have last been accessed by the read operations of each thread. */
+    private final ThreadLocal<Frame> frames = ThreadLocal.withInitial(() -> INVALID);
+
+    /**
+     * Constructor.
+     * @param md meta data
+     * @param fpres first pre values
+     * @param pages page index
+     * @param used number of used pages
+     */
+    Snapshot(final MetaData md, final int[] fpres, final int[] pages, final int used) {
+      super(md);
+      this.fpres = fpres;
+      this.pages = pages;
+      this.used = used;
+    }
+
+    @Override
+    public int read1(final int pre, final int off) {
+      final Frame f = frame(pre);
+      return f.read1(off + (pre - f.first << IO.NODEPOWER));
+    }
+
+    @Override
+    public int read2(final int pre, final int off) {
+      final Frame f = frame(pre);
+      return f.read2(off + (pre - f.first << IO.NODEPOWER));
+    }
+
+    @Override
+    public int read4(final int pre, final int off) {
+      final Frame f = frame(pre);
+      return f.read4(off + (pre - f.first << IO.NODEPOWER));
+    }
+
+    @Override
+    public long read5(final int pre, final int off) {
+      final Frame f = frame(pre);
+      return f.read5(off + (pre - f.first << IO.NODEPOWER));
+    }
+
+    /**
+     * Returns a frame for the page containing the entry for the specified pre value.
+     * @param pre pre of the entry to search for
+     * @return frame
+     */
+    private Frame frame(final int pre) {
+      Frame f = frames.get();
+      if(pre < f.first || pre >= f.next) {
+        if(pre < 0 || pre >= meta.size) throw Util.notExpected(
+            "Data Access out of bounds:\n- pre value: %\n- table size: %", pre, meta.size);
+        int p;
+        if(fpres == null) {
+          p = pre / IO.ENTRIES;
+        } else {
+          p = Arrays.binarySearch(fpres, 0, used, pre);
+          if(p < 0) p = -p - 2;
+          while(p + 1 < used && fpres[p + 1] <= pre) p++;
+        }
+        final int fp = fpre(p), np = p + 1 >= used ? meta.size : fpre(p + 1);
+        f = new BufferFrame(fp, np, 0, bm.get(pages == null ? p : pages[p]).data);
+        frames.set(f);
+      }
+      return f;
+    }
+
+    /**
+     * Returns the first pre value of the specified page.
+     * @param p page index
+     * @return pre value
+     */
+    private int fpre(final int p) {
+      return fpres == null ? p * IO.ENTRIES : fpres[p];
+    }
+
+    @Override
+    public void flush(final boolean all) { }
+
+    @Override
+    public void close() { }
+
+    @Override
+    public boolean lock(final boolean write) {
+      return !write;
+    }
+
+    @Override
+    public void write1(final int pre, final int off, final int v) {
+      throw Util.notExpected();
+    }
+
+    @Override
+    public void write2(final int pre, final int off, final int v) {
+      throw Util.notExpected();
+    }
+
+    @Override
+    public void write4(final int pre, final int off, final int v) {
+      throw Util.notExpected();
+    }
+
+    @Override
+    public void write5(final int pre, final int off, final long v) {
+      throw Util.notExpected();
+    }
+
+    @Override
+    protected void dirty() {
+      throw Util.notExpected();
+    }
+
+    @Override
+    protected void copy(final byte[] entries, final int pre, final int last) {
+      throw Util.notExpected();
+    }
+
+    @Override
+    public void delete(final int pre, final int nr) {
+      throw Util.notExpected();
+    }
+
+    @Override
+    public void insert(final int pre, final byte[] entries) {
+      throw Util.notExpected();
+    }
+  }
+
+  /** Read-only view on the entries of a page. */
+  private abstract static class Frame {
+    /** First pre value. */
+    final int first;
+    /** First pre value of the next page. */
+    final int next;
+    /** Version of the page layout. */
+    final int version;
+
+    /**
+     * Constructor.
+     * @param first first pre value
+     * @param next first pre value of the next page
+     * @param version version of the page layout
+     */
+    Frame(final int first, final int next, final int version) {
+      this.first = first;
+      this.next = next;
+      this.version = version;
+    }
+
+    /**
+     * Reads a byte value and returns it as an integer value.
+     * @param o offset in the page
+     * @return integer value
+     */
+    abstract int read1(int o);
+
+    /**
+     * Reads a short value and returns it as an integer value.
+     * @param o offset in the page
+     * @return integer value
+     */
+    abstract int read2(int o);
+
+    /**
+     * Reads an integer value.
+     * @param o offset in the page
+     * @return integer value
+     */
+    abstract int read4(int o);
+
+    /**
+     * Reads a 5-byte value and returns it as a long value.
+     * @param o offset in the page
+     * @return long value
+     */
+    abstract long read5(int o);
+  }
+
+  /** Frame on a buffered page. */
+  private static final class BufferFrame extends Frame {
+    /** Page data. */
+    private final byte[] data;
+
+    /**
+     * Constructor.
+     * @param first first pre value
+     * @param next first pre value of the next page
+     * @param version version of the page layout
+     * @param data page data
+     */
+    BufferFrame(final int first, final int next, final int version, final byte[] data) {
+      super(first, next, version);
+      this.data = data;
+    }
+
+    @Override
+    int read1(final int o) {
+      final byte[] b = data;
+      return b[o] & 0xFF;
+    }
+
+    @Override
+    int read2(final int o) {
+      final byte[] b = data;
+      return ((b[o] & 0xFF) << 8) + (b[o + 1] & 0xFF);
+    }
+
+    @Override
+    int read4(final int o) {
+      final byte[] b = data;
+      return ((b[o] & 0xFF) << 24) + ((b[o + 1] & 0xFF) << 16) +
+        ((b[o + 2] & 0xFF) << 8) + (b[o + 3] & 0xFF);
+    }
+
+    @Override
+    long read5(final int o) {
+      final byte[] b = data;
+      return ((long) (b[o] & 0xFF) << 32) + ((long) (b[o + 1] & 0xFF) << 24) +
+        ((b[o + 2] & 0xFF) << 16) + ((b[o + 3] & 0xFF) << 8) + (b[o + 4] & 0xFF);
+    }
+  }
+
+  /** Frame on a memory-mapped page. */
+  private static final class MappedFrame extends Frame {
+    /** Mapped segment. */
+    private final ByteBuffer segment;
+    /** Offset of the page in the segment. */
+    private final int base;
+
+    /**
+     * Constructor.
+     * @param first first pre value
+     * @param next first pre value of the next page
+     * @param version version of the page layout
+     * @param segment mapped segment
+     * @param base offset of the page in the segment
+     */
+    MappedFrame(final int first, final int next, final int version, final ByteBuffer segment,
+        final int base) {
+      super(first, next, version);
+      this.segment = segment;
+      this.base = base;
+    }
+
+    @Override
+    int read1(final int o) {
+      return segment.get(base + o) & 0xFF;
+    }
+
+    @Override
+    int read2(final int o) {
+      return segment.getShort(base + o) & 0xFFFF;
+    }
+
+    @Override
+    int read4(final int o) {
+      return segment.getInt(base + o);
+    }
+
+    @Override
+    long read5(final int o) {
+      final int b = base + o;
+      return (long) (segment.get(b) & 0xFF) << 32 | segment.getInt(b + 1) & 0xFFFFFFFFL;
+    }
+  }
 }
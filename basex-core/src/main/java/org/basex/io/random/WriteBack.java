@@ -0,0 +1,129 @@
+package org.basex.io.random;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import org.basex.util.*;
+
+/**
+ * Process-wide background writer for dirty disk blocks.
+ *
+ * If the number of dirty blocks of a file exceeds the batch size, the file is queued, and its
+ * blocks are written to disk by a daemon thread. Adjacent blocks are coalesced to vectored
+ * writes. The current block of a file is skipped, as it may still be modified by its owner.
+ * All remaining blocks are written synchronously when an update is finished.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class WriteBack implements Runnable {
+  /** Singleton instance. */
+  private static final WriteBack INSTANCE = new WriteBack();
+
+  /** Queued files. */
+  private final LinkedBlockingQueue<Buffers> queue = new LinkedBlockingQueue<>();
+  /** Number of dirty blocks that trigger a background write ({@code 0}: disabled). */
+  private volatile int batch = 64;
+  /** Writer thread (will be started with the first request). */
+  private Thread thread;
+
+  /** Number of background flushes. */
+  private long flushes;
+  /** Number of written blocks. */
+  private long blocks;
+  /** Number of vectored write operations. */
+  private long writes;
+  /** Total flush time (nanoseconds). */
+  private long time;
+  /** Maximum flush time (nanoseconds). */
+  private long max;
+  /** Maximum queue depth. */
+  private int depth;
+
+  /** Private constructor. */
+  private WriteBack() { }
+
+  /**
+   * Returns the singleton instance.
+   * @return instance
+   */
+  static WriteBack get() {
+    return INSTANCE;
+  }
+
+  /**
+   * Assigns the number of dirty blocks that trigger a background write.
+   * @param blocks number of blocks ({@code 0}: disable background writes)
+   */
+  public static void batch(final int blocks) {
+    INSTANCE.batch = Math.max(0, blocks);
+  }
+
+  /**
+   * Returns write statistics.
+   * @return info string
+   */
+  public static String info() {
+    synchronized(INSTANCE) {
+      final long f = INSTANCE.flushes;
+      return Util.info("% queued (max: %), % flushes, % blocks, % writes, % avg, % max",
+          INSTANCE.queue.size(), INSTANCE.depth, f, INSTANCE.blocks, INSTANCE.writes,
+          Performance.getTime(f == 0 ? 0 : INSTANCE.time / f, 1),
+          Performance.getTime(INSTANCE.max, 1));
+    }
+  }
+
+  /**
+   * Returns the batch size.
+   * @return number of blocks ({@code 0}: background writes are disabled)
+   */
+  int batch() {
+    return batch;
+  }
+
+  /**
+   * Queues a file for being written in the background.
+   * @param owner buffer manager of the file
+   */
+  synchronized void schedule(final Buffers owner) {
+    if(owner.queued) return;
+    owner.queued = true;
+    queue.add(owner);
+    depth = Math.max(depth, queue.size());
+    if(thread == null) {
+      thread = new Thread(this, "WriteBack");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Registers the statistics of a flush operation.
+   * @param b number of written blocks
+   * @param w number of write operations
+   * @param t time needed (nanoseconds)
+   */
+  synchronized void written(final int b, final int w, final long t) {
+    blocks += b;
+    writes += w;
+    if(b == 0) return;
+    flushes++;
+    time += t;
+    max = Math.max(max, t);
+  }
+
+  @Override
+  public void run() {
+    while(true) {
+      try {
+        final Buffers owner = queue.take();
+        owner.queued = false;
+        owner.flush(false);
+      } catch(final InterruptedException ex) {
+        Util.debug(ex);
+      } catch(final IOException ex) {
+        Util.stack(ex);
+      }
+    }
+  }
+}
@@ -36,6 +36,8 @@ public final class CompileContext {
   private final ArrayDeque<VarScope> scopes = new ArrayDeque<>();
   /** Query focus list. */
   private final ArrayDeque<QueryFocus> focuses = new ArrayDeque<>();
+  /** Copied static declarations (assigned if the declarations of a query are copied). */
+  private IdentityHashMap<StaticDecl, StaticDecl> decls;
 
   /**
    * Constructor.
@@ -154,6 +156,29 @@ public final class CompileContext {
     return vr;
   }
 
+  /**
+   * Registers the copy of a static declaration.
+   * References to the declaration will be replaced with the copy when they are copied.
+   * @param decl declaration
+   * @param copy copied declaration
+   */
+  public void copy(final StaticDecl decl, final StaticDecl copy) {
+    if(decls == null) decls = new IdentityHashMap<>();
+    decls.put(decl, copy);
+  }
+
+  /**
+   * Returns the registered copy of a static declaration.
+   * @param <T> declaration type
+   * @param decl declaration (can be {@code null})
+   * @return copy, or the supplied declaration if no copy has been registered
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends StaticDecl> T copy(final T decl) {
+    final StaticDecl copy = decls != null ? decls.get(decl) : null;
+    return copy != null ? (T) copy : decl;
+  }
+
   /**
    * Pre-evaluates the specified expression.
    * @param expr expression
@@ -0,0 +1,267 @@
+package org.basex.query;
+
+import static org.basex.util.Token.*;
+
+import java.util.*;
+
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.query.func.*;
+import org.basex.query.scope.*;
+import org.basex.query.var.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * This class caches parsed main modules, which will be reused if the same query is evaluated
+ * again, with the same base URI and without custom static properties.
+ *
+ * Query plans are compiled for each evaluation: external variables and database references
+ * are inlined by the compiler, and compiled expressions are rewritten in place. Instead, the
+ * parsed expressions, functions and variables of a query are copied, and imported modules need
+ * not be parsed again. An entry is invalidated if an imported module file has been modified.
+ *
+ * As copies of an entry share the static contexts of the original query, which are temporarily
+ * modified by node constructors, an entry is assigned to a single query at a time.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class QueryCache {
+  /** Static options. */
+  private final StaticOptions sopts;
+  /** Cached entries, in the order of their last access. */
+  private final LinkedHashMap<String, Template> cache = new LinkedHashMap<>(16, 0.75f, true);
+  /** Number of cache hits. */
+  private long hits;
+  /** Number of cache misses. */
+  private long misses;
+
+  /**
+   * Constructor.
+   * @param sopts static options
+   */
+  public QueryCache(final StaticOptions sopts) {
+    this.sopts = sopts;
+  }
+
+  /**
+   * Parses a main module or, if possible, copies the parsed main module from the cache.
+   * @param query query string
+   * @param qc query context
+   * @param sc static context of the main module
+   * @throws QueryException query exception
+   */
+  void parse(final String query, final QueryContext qc, final StaticContext sc)
+      throws QueryException {
+
+    if(sopts.get(StaticOptions.QUERYCACHE) <= 0 || qc.parent != null ||
+        !qc.modDeclared.isEmpty() || !initial(sc)) {
+      qc.parseMain(query, null, sc);
+      return;
+    }
+
+    final String key = (sc.mixUpdates ? "+" : "-") + sc.baseURI() + '\n' + query;
+    final Template template = lease(key);
+    if(template != null) {
+      try {
+        template.init(query, qc);
+        qc.template = template;
+      } catch(final QueryException ex) {
+        template.release();
+        throw ex;
+      }
+      return;
+    }
+
+    final MainModule ctxItem = qc.ctxItem;
+    qc.parseMain(query, null, sc);
+    if(qc.ctxItem == ctxItem && qc.options.isEmpty() && qc.ftOpt == null &&
+        qc.serParams == null && !qc.resources.imports() && !qc.readLocks.local() &&
+        !qc.writeLocks.local() && !qc.readLocks.global() && !qc.writeLocks.global()) {
+      // the new entry shares the static contexts of the current query
+      try {
+        final Template tmpl = new Template(qc);
+        qc.template = tmpl;
+        store(key, tmpl);
+      } catch(final QueryException ex) {
+        Util.debug(ex);
+      }
+    }
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public synchronized void clear() {
+    cache.clear();
+  }
+
+  /**
+   * Returns cache statistics.
+   * @return info string
+   */
+  public synchronized String info() {
+    final long a = hits + misses;
+    return Util.info("% of % entries, % hits (% %), % misses", cache.size(),
+        sopts.get(StaticOptions.QUERYCACHE), hits, a == 0 ? 0 : hits * 100 / a, "%", misses);
+  }
+
+  /**
+   * Returns a valid entry that is currently not used by another query.
+   * @param key key
+   * @return entry or {@code null}
+   */
+  private synchronized Template lease(final String key) {
+    final Template template = cache.get(key);
+    if(template != null && !template.valid()) {
+      cache.remove(key);
+    } else if(template != null && !template.leased) {
+      template.leased = true;
+      hits++;
+      return template;
+    }
+    misses++;
+    return null;
+  }
+
+  /**
+   * Stores an entry and removes the least recently used entries.
+   * @param key key
+   * @param template entry
+   */
+  private synchronized void store(final String key, final Template template) {
+    if(cache.containsKey(key)) return;
+    cache.put(key, template);
+    final int max = sopts.get(StaticOptions.QUERYCACHE);
+    final Iterator<Template> iter = cache.values().iterator();
+    for(int s = cache.size(); s > max && iter.hasNext(); s--) {
+      iter.next();
+      iter.remove();
+    }
+  }
+
+  /**
+   * Checks if no custom properties have been assigned to the specified static context.
+   * @param sc static context
+   * @return result of check
+   */
+  private static boolean initial(final StaticContext sc) {
+    return sc.ns.list.isEmpty() && sc.decFormats.isEmpty() && sc.elemNS == null &&
+        eq(sc.funcNS, QueryText.FN_URI) && sc.collation == null && sc.module == null &&
+        sc.contextType == null && sc.resolver == null && !sc.strip && sc.ordered &&
+        !sc.orderGreatest && !sc.spaces && sc.preserveNS && sc.inheritNS && !sc.dynFuncCall;
+  }
+
+  /** Parsed query. */
+  static final class Template {
+    /** Query context with the parsed declarations and expressions. */
+    private final QueryContext qc;
+    /** Paths of the parsed module files. */
+    private final StringList paths = new StringList();
+    /** Timestamps of the parsed module files. */
+    private final LongList stamps = new LongList();
+    /** Indicates if the entry is currently used by a query. */
+    private volatile boolean leased = true;
+
+    /**
+     * Constructor.
+     * @param query query context of a parsed query
+     * @throws QueryException query exception
+     */
+    private Template(final QueryContext query) throws QueryException {
+      qc = new QueryContext(query.context);
+      copy(query, qc);
+      for(final byte[] path : qc.modParsed) {
+        final String p = string(path);
+        paths.add(p);
+        stamps.add(IO.get(p).timeStamp());
+      }
+    }
+
+    /**
+     * Copies the parsed query to the specified query context.
+     * @param query query string
+     * @param target target context
+     * @throws QueryException query exception
+     */
+    private void init(final String query, final QueryContext target) throws QueryException {
+      target.info.query = query;
+      copy(qc, target);
+    }
+
+    /**
+     * Indicates if none of the parsed module files has been modified.
+     * @return result of check
+     */
+    private boolean valid() {
+      final int ps = paths.size();
+      for(int p = 0; p < ps; p++) {
+        if(IO.get(paths.get(p)).timeStamp() != stamps.get(p)) return false;
+      }
+      return true;
+    }
+
+    /**
+     * Releases the entry.
+     */
+    void release() {
+      leased = false;
+    }
+
+    /**
+     * Copies the declarations and the main module of a parsed query.
+     * @param source source context
+     * @param target target context
+     * @throws QueryException query exception
+     */
+    private static void copy(final QueryContext source, final QueryContext target)
+        throws QueryException {
+
+      // declare all variables and functions before copying the expressions that reference them
+      final CompileContext cc = new CompileContext(target);
+      final ArrayList<StaticVar> vars = new ArrayList<>();
+      for(final StaticVar sv : source.vars) {
+        sv.copy(cc);
+        vars.add(sv);
+      }
+      final ArrayList<StaticFunc> funcs = new ArrayList<>();
+      final ArrayList<IntObjMap<Var>> vms = new ArrayList<>();
+      for(final StaticFunc sf : source.funcs.funcs()) {
+        final IntObjMap<Var> vm = new IntObjMap<>();
+        sf.copy(cc, vm);
+        funcs.add(sf);
+        vms.add(vm);
+      }
+
+      for(final StaticVar sv : vars) copy(sv, new IntObjMap<>(), cc);
+      final int fs = funcs.size();
+      for(int f = 0; f < fs; f++) copy(funcs.get(f), vms.get(f), cc);
+
+      target.root = source.root.copy(cc);
+      target.updating = source.updating;
+      for(final byte[] path : source.modParsed) {
+        target.modParsed.put(path, source.modParsed.get(path));
+      }
+    }
+
+    /**
+     * Copies the expression of a declaration.
+     * @param decl declaration
+     * @param vm variable mapping
+     * @param cc compilation context
+     */
+    private static void copy(final StaticDecl decl, final IntObjMap<Var> vm,
+        final CompileContext cc) {
+      if(decl.expr == null) return;
+      final StaticDecl copy = cc.copy(decl);
+      cc.pushScope(copy.vs);
+      try {
+        copy.expr = decl.expr.copy(cc, vm);
+      } finally {
+        cc.removeScope();
+      }
+    }
+  }
+}
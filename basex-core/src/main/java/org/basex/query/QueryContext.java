@@ -83,7 +83,7 @@ public final class QueryContext extends Job implements Closeable {
   /** Current full-text lexer. */
   public FTLexer ftLexer;
   /** Current full-text options. */
-  private FTOpt ftOpt;
+  FTOpt ftOpt;
   /** Full-text token positions (needed for highlighting full-text results). */
   public int ftPos;
   /** Scoring flag. */
@@ -92,6 +92,8 @@ public final class QueryContext extends Job implements Closeable {
   /** Available collations. */
   public TokenObjMap<Collation> collations;
 
+  /** Indicates if index structures are accessed by built-in functions (assigned by locking). */
+  public boolean indexes;
   /** Strings to lock defined by read-lock option. */
   public final LockList readLocks = new LockList();
   /** Strings to lock defined by write-lock option. */
@@ -120,9 +122,11 @@ public final class QueryContext extends Job implements Closeable {
   public MainModule ctxItem;
   /** Root expression of the query. */
   public MainModule root;
+  /** Cached query, which is used by this context (can be {@code null}). */
+  QueryCache.Template template;
 
   /** Serialization parameters. */
-  private SerializerOptions serParams;
+  SerializerOptions serParams;
   /** Indicates if the default serialization parameters are used. */
   private boolean defaultOutput;
 
@@ -419,6 +423,14 @@ public final class QueryContext extends Job implements Closeable {
        ctxItem != null && !ctxItem.databases(locks, this)) {
       (updating ? write : read).addGlobal();
     }
+    // read-only queries: access snapshots instead of locking persistent databases
+    // (excluded: queries that may create persistent databases for documents, and queries that
+    // call index functions, as index structures are only shared with up-to-date snapshots)
+    if(!updating && !read.global() && !indexes && context.soptions.get(StaticOptions.SNAPSHOTS) &&
+        !context.options.get(MainOptions.FORCECREATE)) {
+      read.removeDatabases(context);
+      resources.snapshots = true;
+    }
   }
 
   /**
@@ -582,12 +594,14 @@ public final class QueryContext extends Job implements Closeable {
     if(parent == null) {
       // topmost query: close resources (opened by compile step)
       resources.close();
-      threads.close();
+      if(template != null) template.release();
     } else {
       // otherwise, adopt update reference (may have been initialized by sub query)
       parent.updates = updates;
-      parent.popJob();
+      parent.popJob(this);
     }
+    // thread caches of child contexts may have been created by worker threads
+    threads.close();
     options.close();
   }
 
@@ -63,7 +63,7 @@ public final class QueryProcessor extends Job implements Closeable {
   public void parse() throws QueryException {
     if(parsed) return;
     try {
-      qc.parseMain(query, null, sc);
+      qc.context.queries.parse(query, qc, sc);
     } finally {
       parsed = true;
       updating = qc.updating;
@@ -126,7 +126,7 @@ public final class QueryProcessor extends Job implements Closeable {
    */
   public QueryProcessor bind(final String name, final Object value, final String type)
       throws QueryException {
-    qc.bind(name, value, type, sc);
+    qc.bind(name, value, type, sc());
     return this;
   }
 
@@ -149,7 +149,7 @@ public final class QueryProcessor extends Job implements Closeable {
    * @throws QueryException query exception
    */
   public QueryProcessor bind(final String name, final Value value) throws QueryException {
-    qc.bind(name, value, sc);
+    qc.bind(name, value, sc());
     return this;
   }
 
@@ -169,7 +169,7 @@ public final class QueryProcessor extends Job implements Closeable {
    * @return self reference
    */
   public QueryProcessor context(final Value value) {
-    qc.context(value, sc);
+    qc.context(value, sc());
     return this;
   }
 
@@ -182,7 +182,7 @@ public final class QueryProcessor extends Job implements Closeable {
    * @throws QueryException query exception
    */
   public QueryProcessor context(final Object value, final String type) throws QueryException {
-    qc.context(value, type, sc);
+    qc.context(value, type, sc());
     return this;
   }
 
@@ -222,12 +222,21 @@ public final class QueryProcessor extends Job implements Closeable {
   public Serializer getSerializer(final OutputStream os) throws IOException, QueryException {
     compile();
     try {
-      return Serializer.get(os, qc.serParams()).sc(sc);
+      return Serializer.get(os, qc.serParams()).sc(sc());
     } catch(final QueryIOException ex) {
       throw ex.getCause();
     }
   }
 
+  /**
+   * Returns the static context of the main module.
+   * @return static context
+   */
+  private StaticContext sc() {
+    // the main module of a cached query has its own static context
+    return qc.root != null ? qc.root.sc : sc;
+  }
+
   /**
    * Adds a module reference. Only called from the test APIs.
    * @param uri module uri
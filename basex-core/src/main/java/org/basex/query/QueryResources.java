@@ -39,6 +39,8 @@ public final class QueryResources {
   private final ArrayList<String> collNames = new ArrayList<>(1);
   /** Indicates if the first database in the context is globally opened. */
   private boolean globalData;
+  /** Indicates if snapshots of persistent databases are accessed (the databases are not locked). */
+  boolean snapshots;
 
   /** Textual resources. Required for test APIs. */
   private Map<String, String[]> texts;
@@ -64,16 +66,25 @@ public final class QueryResources {
    * Compiles the resources.
    * @param nodes input node set
    * @return context value
+   * @throws QueryException query exception
    */
-  Value compile(final DBNodes nodes) {
+  Value compile(final DBNodes nodes) throws QueryException {
     // add globally opened database
-    final Data data = addData(nodes.data());
-    synchronized(qc.context.datas) { qc.context.datas.pin(data); }
+    final Data global = nodes.data();
+    final Datas dts = qc.context.datas;
+    synchronized(dts) {
+      if(snapshots && global instanceof DiskData) dts.snapshot(global.meta.name);
+      dts.pin(global);
+    }
+    final Data data = addData(global, null);
     globalData = true;
 
     // create context value
     final boolean all = nodes.all();
-    final Value value = DBNodeSeq.get(new IntList(nodes.pres()), data, all, all);
+    // snapshot: adopt documents of the current version
+    final IntList pres = all && data != nodes.data() ?
+      new IntList(data.resources.docs().toArray()) : new IntList(nodes.pres());
+    final Value value = DBNodeSeq.get(pres, data, all, all);
 
     // add default collection. use initial node set if it contains all documents of the database.
     // otherwise, create new node set
@@ -87,7 +98,7 @@ public final class QueryResources {
    * Closes all opened data references that have not been added by the global context.
    */
   void close() {
-    for(final Data data : datas) Close.close(data, qc.context);
+    for(final Data data : datas) close(data);
     datas.clear();
     // close dynamically loaded JAR files
     if(modules != null) modules.close();
@@ -97,6 +108,14 @@ public final class QueryResources {
     }
   }
 
+  /**
+   * Indicates if Java modules, thesauri or stop word lists have been registered by the parser.
+   * @return result of check
+   */
+  boolean imports() {
+    return modules != null && !modules.isEmpty() || thes != null || stop != null;
+  }
+
   /**
    * Returns the globally opened database.
    * @return database or {@code null} if no database is globally opened
@@ -148,7 +167,7 @@ public final class QueryResources {
     // open and register database
     if(!ctx.perm(Perm.READ, name)) throw BASEX_PERMISSION_X_X.get(info, Perm.READ, name);
     try {
-      return addData(Open.open(name, ctx, ctx.options));
+      return addData(open(name), info);
     } catch(final IOException ex) {
       throw DB_OPEN2_X.get(info, ex);
     }
@@ -235,7 +254,7 @@ public final class QueryResources {
     for(int d = globalData ? 1 : 0; d < ds; d++) {
       final Data data = datas.get(d);
       if(data.meta.name.equals(name)) {
-        Close.close(data, qc.context);
+        close(data);
         datas.remove(d);
         break;
       }
@@ -356,8 +375,7 @@ public final class QueryResources {
     final String name = qi.dbName;
     if(name != null) {
       try {
-        final Context ctx = qc.context;
-        return addData(Open.open(name, ctx, ctx.options));
+        return addData(open(name), info);
       } catch(final IOException ex) {
         Util.debug(ex);
       }
@@ -405,19 +423,74 @@ public final class QueryResources {
     } catch(final IOException ex) {
       throw IOERR_X.get(info, ex);
     }
-    return addData(data);
+    return addData(data, info);
   }
 
   /**
-   * Adds a data reference.
-   * @param data data reference to be added
-   * @return argument
+   * Opens and pins a persistent database. If snapshots are accessed, the snapshot will be
+   * registered before the database is opened: operations that create, replace or delete the
+   * database files will be completed first, and new ones will wait until the snapshot has been
+   * released.
+   * @param name name of database
+   * @return database instance
+   * @throws IOException I/O exception
    */
-  public Data addData(final Data data) {
-    datas.add(data);
+  private Data open(final String name) throws IOException {
+    final Context ctx = qc.context;
+    if(!snapshots) return Open.open(name, ctx, ctx.options);
+
+    ctx.datas.snapshot(name);
+    final Data data;
+    try {
+      data = Open.open(name, ctx, ctx.options);
+    } catch(final IOException ex) {
+      ctx.datas.release(name);
+      throw ex;
+    }
+    if(!(data instanceof DiskData)) ctx.datas.release(name);
     return data;
   }
 
+  /**
+   * Adds a data reference. If snapshots are accessed, a snapshot of a persistent database
+   * will be added instead. The snapshot must have been registered before the database was
+   * opened (see {@link Datas#snapshot(String)}).
+   * @param data data reference to be added
+   * @param info input info
+   * @return data reference that has been added
+   * @throws QueryException query exception
+   */
+  public Data addData(final Data data, final InputInfo info) throws QueryException {
+    Data dt = data;
+    if(snapshots && data instanceof DiskData) {
+      try {
+        dt = ((DiskData) data).snapshot();
+      } catch(final IOException ex) {
+        // release the database reference that would have been released by the snapshot
+        Close.close(data, qc.context);
+        qc.context.datas.release(data.meta.name);
+        throw DB_OPEN2_X.get(info, ex);
+      }
+    }
+    datas.add(dt);
+    return dt;
+  }
+
+  /**
+   * Closes a data reference. Snapshots will be released.
+   * @param data data reference
+   */
+  private void close(final Data data) {
+    if(data instanceof SnapshotData) {
+      data.close();
+      final Data dt = ((SnapshotData) data).data();
+      Close.close(dt, qc.context);
+      qc.context.datas.release(dt.meta.name);
+    } else {
+      Close.close(data, qc.context);
+    }
+  }
+
   /**
    * Adds a collection to the global collection list.
    * @param coll documents of collection
@@ -417,13 +417,16 @@ public interface QueryText {
   /** Optimization info. */ String OPTREMOVE_X_X = "remove % from %";
   /** Optimization info. */ String OPTWHERE = "rewrite where clause(s)";
   /** Optimization info. */ String OPTPRED_X = "rewrite % to predicate(s)";
+  /** Optimization info. */ String OPTORDER_X = "order predicates by selectivity: %";
   /** Optimization info. */ String OPTVAR_X = "remove variable %";
   /** Optimization info. */ String OPTNAME_X = "remove unknown element/attribute %";
   /** Optimization info. */ String OPTPATH_X = "remove non-existing path %";
   /** Optimization info. */ String OPTINDEX_X_X = "apply % index for %";
   /** Optimization info. */ String OPTNORESULTS_X = "no index results: %";
+  /** Optimization info. */ String OPTSCAN_X_X = "skip index access: % results, % nodes to scan";
   /** Optimization info. */ String OPTCHILD_X = "convert to child steps: %";
   /** Optimization info. */ String OPTUNROLL_X = "unroll: %";
+  /** Optimization info. */ String OPTHASHJOIN_X = "rewrite to hash join: %";
 
   // MISCELLANEOUS ================================================================================
 
@@ -62,6 +62,38 @@ public abstract class Cmp extends Arr {
     return swap;
   }
 
+  /**
+   * Checks if the operands can be compared by their hash values. This is the case if the
+   * operands are compared for equality, and if they yield numbers or strings/untyped values.
+   * @return result of check
+   */
+  public boolean hashable() {
+    return false;
+  }
+
+  /**
+   * Checks if the types of the operands allow comparisons by hash values.
+   * Numbers can only be hashed if they are promoted to a common type without loss of precision:
+   * an integer may be equal to several distinct doubles, and vice versa.
+   * @return result of check
+   */
+  final boolean hashableTypes() {
+    final Type type1 = exprs[0].seqType().type, type2 = exprs[1].seqType().type;
+    if(coll != null) return false;
+    if(type1.isStringOrUntyped()) return type2.isStringOrUntyped();
+    return type1.instanceOf(AtomType.DEC) ? type2.instanceOf(AtomType.DEC) :
+      floating(type1) && floating(type2);
+  }
+
+  /**
+   * Checks if the specified type is a floating-point type.
+   * @param type type
+   * @return result of check
+   */
+  private static boolean floating(final Type type) {
+    return type.instanceOf(AtomType.DBL) || type.instanceOf(AtomType.FLT);
+  }
+
   /**
    * If possible, returns an optimized expression with inverted operands.
    * @param cc compilation context
@@ -177,8 +177,7 @@ public class CmpG extends Cmp {
       expr = new CmpSimpleG(expr1, expr2, op, coll, sc, info);
 
     // hash-based comparisons
-    if(expr == this && op == OpG.EQ && coll == null && (type1.isNumber() && type2.isNumber() ||
-        (type1.isStringOrUntyped() && type2.isStringOrUntyped())) && !st2.zeroOrOne())
+    if(expr == this && hashable() && !st2.zeroOrOne())
       expr = new CmpHashG(expr1, expr2, op, coll, sc, info);
 
     // pre-evaluate values or return expression
@@ -285,6 +284,11 @@ public class CmpG extends Cmp {
       new CmpG(expr1, expr2, op.invert(), coll, sc, info).optimize(cc) : this;
   }
 
+  @Override
+  public final boolean hashable() {
+    return op == OpG.EQ && hashableTypes();
+  }
+
   /**
    * Creates a union of the existing and the specified expressions.
    * @param g general comparison
@@ -204,6 +204,11 @@ public final class CmpR extends Single {
     // estimate costs
     ii.costs = ii.costs(data, nr);
     if(ii.costs == null) return false;
+    if(!ii.enforce()) {
+      // refine estimate with histogram
+      final double sel = key.selectivity(nr.min, nr.max);
+      if(sel >= 0) ii.costs = IndexCosts.get((int) Math.max(1, Math.ceil(sel * key.count)));
+    }
 
     // skip if numbers are negative, doubles, or of different string length
     final int mnl = min >= 0 && (long) min == min ? token(min).length : -1;
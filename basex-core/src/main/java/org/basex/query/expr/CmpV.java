@@ -224,6 +224,13 @@ public final class CmpV extends Cmp {
       new CmpV(expr1, expr2, op.invert(), coll, sc, info).optimize(cc) : this;
   }
 
+  @Override
+  public boolean hashable() {
+    // value comparisons raise errors for sequences with more than one item
+    return op == OpV.EQ && exprs[0].seqType().zeroOrOne() && exprs[1].seqType().zeroOrOne() &&
+        hashableTypes();
+  }
+
   @Override
   public Expr copy(final CompileContext cc, final IntObjMap<Var> vm) {
     final Cmp cmp = new CmpV(exprs[0].copy(cc, vm), exprs[1].copy(cc, vm), op, coll, sc, info);
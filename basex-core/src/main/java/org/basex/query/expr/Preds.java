@@ -4,6 +4,9 @@ import static org.basex.query.QueryText.*;
 
 import java.util.function.*;
 
+import org.basex.data.*;
+import org.basex.index.name.*;
+import org.basex.index.stats.*;
 import org.basex.query.*;
 import org.basex.query.expr.CmpG.*;
 import org.basex.query.expr.CmpV.*;
@@ -229,6 +232,78 @@ public abstract class Preds extends Arr {
     exprs = list.finish();
   }
 
+  /**
+   * Orders the predicates by their estimated selectivity, starting with the most selective one.
+   * Predicates are only reordered if all of them compare child elements or attributes with
+   * strings, as the evaluation of such comparisons will never raise errors.
+   * @param data data reference (can be {@code null})
+   * @param cc compilation context
+   */
+  public final void order(final Data data, final CompileContext cc) {
+    final int el = exprs.length;
+    if(el < 2 || data == null || !data.meta.uptodate || !data.nspaces.isEmpty()) return;
+
+    final double[] sels = new double[el];
+    for(int e = 0; e < el; e++) {
+      sels[e] = selectivity(exprs[e], data);
+      if(sels[e] < 0) return;
+    }
+
+    // stable sort (the number of predicates is small)
+    final Expr[] ordered = exprs.clone();
+    boolean changed = false;
+    for(int e = 1; e < el; e++) {
+      for(int o = e; o > 0 && sels[o - 1] > sels[o]; o--) {
+        final double sel = sels[o];
+        sels[o] = sels[o - 1];
+        sels[o - 1] = sel;
+        final Expr expr = ordered[o];
+        ordered[o] = ordered[o - 1];
+        ordered[o - 1] = expr;
+        changed = true;
+      }
+    }
+    if(changed) {
+      exprs = ordered;
+      cc.info(OPTORDER_X, (Supplier<?>) this::toString);
+    }
+  }
+
+  /**
+   * Returns the estimated selectivity of a predicate that compares a child element or an
+   * attribute with strings.
+   * @param pred predicate
+   * @param data data reference
+   * @return selectivity (between {@code 0} and {@code 1}), or {@code -1} if it is unknown
+   */
+  private static double selectivity(final Expr pred, final Data data) {
+    if(!(pred instanceof CmpG)) return -1;
+    final CmpG cmp = (CmpG) pred;
+    final Expr expr1 = cmp.exprs[0], expr2 = cmp.exprs[1];
+    if(cmp.op != OpG.EQ || cmp.coll != null || !(expr1 instanceof Path) ||
+        !(expr2 instanceof Value)) return -1;
+
+    final Path path = (Path) expr1;
+    if(path.root != null || path.steps.length != 1 || !(path.steps[0] instanceof Step)) return -1;
+    final Step step = (Step) path.steps[0];
+    final boolean elem = step.simple(Axis.CHILD, true);
+    if(!elem && !step.simple(Axis.ATTRIBUTE, true)) return -1;
+
+    final Names names = elem ? data.elemNames : data.attrNames;
+    final int id = names.id(((NameTest) step.test).local);
+    final Stats stats = id == 0 ? null : names.stats(id);
+    if(stats == null) return 0;
+
+    double sel = 0;
+    for(final Item item : (Value) expr2) {
+      if(item.type != AtomType.STR) return -1;
+      final double s = stats.selectivity(((Str) item).string());
+      if(s < 0) return -1;
+      sel += s;
+    }
+    return Math.min(1, sel);
+  }
+
   /**
    * Optimizes the predicates for boolean evaluation.
    * Drops solitary context values, flattens nested predicates.
@@ -0,0 +1,73 @@
+package org.basex.query.expr.gflwor;
+
+import org.basex.query.*;
+import org.basex.query.expr.*;
+import org.basex.query.func.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.seq.*;
+import org.basex.query.var.*;
+import org.basex.util.*;
+
+/**
+ * Running aggregate of a non-grouping variable whose values are only passed on to a single
+ * aggregate function ({@code count}, {@code sum}, {@code avg}, {@code min}, {@code max}).
+ *
+ * Instead of the original values, a compact value is bound to the variable, for which the
+ * aggregate function yields the same result. If the aggregation raises an error, the
+ * values that caused the error are bound, and the error will be raised by the function call.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+final class Accumulator {
+  /** Number of (atomized) items. */
+  private long count;
+  /** Partial result, or values that raised an error. */
+  private Value value = Empty.SEQ;
+  /** Error flag. */
+  private boolean error;
+
+  /**
+   * Adds a value.
+   * @param val value to be added
+   * @param call function call for computing the partial result ({@code null} for count)
+   * @param var variable referenced by the function call
+   * @param qc query context
+   */
+  void add(final Value val, final StandardFunc call, final Var var, final QueryContext qc) {
+    if(call == null) {
+      count += val.size();
+      return;
+    }
+    if(error || val.isEmpty()) return;
+
+    try {
+      // the number of atomized items is required for computing the average
+      final Value atoms = val.atomValue(qc, call.info);
+      qc.set(var, ValueBuilder.concat(value, atoms, qc));
+      final Item item = call.item(qc, call.info);
+      value = item == null ? Empty.SEQ : item;
+      count += atoms.size();
+    } catch(final QueryException ex) {
+      // bind the values that raised the error
+      Util.debug(ex);
+      value = ValueBuilder.concat(value, val, qc);
+      error = true;
+    }
+  }
+
+  /**
+   * Returns the compact value.
+   * @param func aggregate function
+   * @param info input info
+   * @return value
+   * @throws QueryException query exception
+   */
+  Value value(final Function func, final InputInfo info) throws QueryException {
+    if(func == Function.COUNT) return SingletonSeq.get(Bln.TRUE, count);
+    if(func == Function.AVG && !error && !value.isEmpty())
+      return Calc.DIV.eval((Item) value, Int.get(count), info);
+    return value;
+  }
+}
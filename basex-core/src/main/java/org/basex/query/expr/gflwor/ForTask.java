@@ -0,0 +1,99 @@
+package org.basex.query.expr.gflwor;
+
+import java.util.concurrent.*;
+
+import org.basex.core.jobs.*;
+import org.basex.query.*;
+import org.basex.query.value.*;
+import org.basex.query.value.seq.*;
+
+/**
+ * Evaluates the tuples of a FLWOR {@code for} clause in parallel. The items of the clause are
+ * split into chunks, which are evaluated by the shared worker threads.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+final class ForTask extends RecursiveTask<Value> {
+  /** Serial version UID. */
+  private static final long serialVersionUID = 1L;
+
+  /** FLWOR expression. */
+  private final GFLWOR flwor;
+  /** Index of the for clause. */
+  private final int index;
+  /** Items of the for clause. */
+  private final Value items;
+  /** Query context. */
+  private final QueryContext qc;
+  /** Reserved workers. */
+  private final Workers workers;
+  /** First item to evaluate. */
+  private final long start;
+  /** Last item to evaluate. */
+  private final long end;
+  /** Maximum number of items that are evaluated by a single task. */
+  private final long chunk;
+
+  /**
+   * Constructor.
+   * @param flwor FLWOR expression
+   * @param index index of the for clause
+   * @param items items of the for clause
+   * @param qc query context
+   * @param workers reserved workers
+   */
+  ForTask(final GFLWOR flwor, final int index, final Value items, final QueryContext qc,
+      final Workers workers) {
+    this(flwor, index, items, qc, workers, 0, items.size(),
+        (items.size() + workers.chunks - 1) / workers.chunks);
+  }
+
+  /**
+   * Private constructor.
+   * @param flwor FLWOR expression
+   * @param index index of the for clause
+   * @param items items of the for clause
+   * @param qc query context
+   * @param workers reserved workers
+   * @param start first item to evaluate
+   * @param end last item to evaluate
+   * @param chunk maximum number of items that are evaluated by a single task
+   */
+  private ForTask(final GFLWOR flwor, final int index, final Value items, final QueryContext qc,
+      final Workers workers, final long start, final long end, final long chunk) {
+    this.flwor = flwor;
+    this.index = index;
+    this.items = items;
+    this.qc = qc;
+    this.workers = workers;
+    this.start = start;
+    this.end = end;
+    this.chunk = chunk;
+  }
+
+  @Override
+  protected Value compute() {
+    final long s = start, e = end, l = e - s;
+    if(l <= chunk) {
+      // evaluate the tuples with a separate context and a copy of the current variables
+      // (skipped if the evaluation has been cancelled)
+      if(!workers.start()) return Empty.SEQ;
+      try(QueryContext qctx = new QueryContext(qc)) {
+        qctx.stack.enterFrame(qc.stack);
+        return flwor.value(index, items, s, e, qctx);
+      } catch(final QueryException ex) {
+        throw new QueryRTException(ex);
+      } finally {
+        workers.finish();
+      }
+    }
+
+    // split the work at a chunk boundary and join the results in the correct order
+    final long m = s + (l + chunk - 1) / chunk / 2 * chunk;
+    final ForTask task2 = new ForTask(flwor, index, items, qc, workers, m, e, chunk);
+    task2.fork();
+    final ForTask task1 = new ForTask(flwor, index, items, qc, workers, s, m, chunk);
+    return new ValueBuilder(qc).add(task1.invoke()).add(task2.join()).value();
+  }
+}
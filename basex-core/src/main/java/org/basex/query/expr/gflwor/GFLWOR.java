@@ -3,6 +3,8 @@ package org.basex.query.expr.gflwor;
 import java.util.*;
 import java.util.function.*;
 
+import org.basex.core.*;
+import org.basex.core.jobs.*;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.expr.path.*;
@@ -30,6 +32,9 @@ public final class GFLWOR extends ParseExpr {
   public final LinkedList<Clause> clauses;
   /** Return expression. */
   public Expr ret;
+  /** Index of the for clause that can be evaluated in parallel ({@code -1}: none;
+   * {@code null}: unknown). */
+  private Integer parallel;
 
   /**
    * Constructor.
@@ -68,6 +73,9 @@ public final class GFLWOR extends ParseExpr {
 
   @Override
   public Value value(final QueryContext qc) throws QueryException {
+    final int p = parallel(qc);
+    if(p != -1) return parallel(p, qc);
+
     final Eval eval = newEval();
     final ValueBuilder vb = new ValueBuilder(qc);
     while(eval.next(qc)) vb.add(ret.value(qc));
@@ -75,7 +83,11 @@ public final class GFLWOR extends ParseExpr {
   }
 
   @Override
-  public Iter iter(final QueryContext qc) {
+  public Iter iter(final QueryContext qc) throws QueryException {
+    // parallel evaluation: results are materialized
+    final int p = parallel(qc);
+    if(p != -1) return parallel(p, qc).iter();
+
     return new Iter() {
       private final Eval ev = newEval();
       private Iter sub = Empty.ITER;
@@ -95,6 +107,106 @@ public final class GFLWOR extends ParseExpr {
     };
   }
 
+  /**
+   * Returns the index of a for clause whose tuples can be evaluated in parallel.
+   * @param qc query context
+   * @return index, or {@code -1} if the expression is to be evaluated sequentially
+   */
+  private int parallel(final QueryContext qc) {
+    if(!qc.context.options.get(MainOptions.PARALLELFOR)) return -1;
+    if(parallel == null) parallel = parallel();
+    return parallel;
+  }
+
+  /**
+   * Returns the index of a for clause whose tuples can be evaluated in parallel.
+   * The clause must only be preceded by let clauses and followed by for, let and where clauses.
+   * The subsequent clauses and the return expression must not be non-deterministic or
+   * updating, and they must not depend on the context.
+   * @return index or {@code -1}
+   */
+  private int parallel() {
+    final int cs = clauses.size();
+    int p = 0;
+    while(p < cs && clauses.get(p) instanceof Let) p++;
+    if(p == cs || !(clauses.get(p) instanceof For) || ((For) clauses.get(p)).empty) return -1;
+    for(int c = p + 1; c < cs; c++) {
+      final Clause clause = clauses.get(c);
+      if(!(clause instanceof For || clause instanceof Let || clause instanceof Where) ||
+          clause.has(Flag.NDT, Flag.UPD, Flag.CTX)) return -1;
+    }
+    return ret.has(Flag.NDT, Flag.UPD, Flag.CTX) ? -1 : p;
+  }
+
+  /**
+   * Evaluates the tuples of the specified for clause in parallel.
+   * @param index index of the for clause
+   * @param qc query context
+   * @return resulting value
+   * @throws QueryException query exception
+   */
+  private Value parallel(final int index, final QueryContext qc) throws QueryException {
+    // bind the variables of the preceding let clauses
+    Eval eval = new StartEval();
+    for(int c = 0; c < index; c++) eval = clauses.get(c).eval(eval);
+    eval.next(qc);
+
+    final For fr = (For) clauses.get(index);
+    final Value items;
+    final boolean s = qc.scoring;
+    try {
+      qc.scoring = fr.scoring;
+      items = fr.expr.value(qc);
+    } finally {
+      qc.scoring = s;
+    }
+
+    final WorkerPool pool = qc.context.jobs.workers;
+    try(Workers workers = pool.reserve(qc.jc(), items.size())) {
+      if(workers.chunks == 1) return value(index, items, 0, items.size(), qc);
+      return pool.invoke(new ForTask(this, index, items, qc, workers));
+    } catch(final QueryRTException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  /**
+   * Evaluates the tuples for a range of the items of the specified for clause.
+   * @param index index of the for clause
+   * @param items items of the for clause
+   * @param start first item
+   * @param end last item
+   * @param qc query context
+   * @return resulting value
+   * @throws QueryException query exception
+   */
+  Value value(final int index, final Value items, final long start, final long end,
+      final QueryContext qc) throws QueryException {
+
+    final For fr = (For) clauses.get(index);
+    Eval eval = new Eval() {
+      /** Current position. */
+      private long p = start;
+
+      @Override
+      public boolean next(final QueryContext q) throws QueryException {
+        if(p == end) return false;
+        q.checkStop();
+        final Item item = items.itemAt(p++);
+        q.set(fr.var, item);
+        if(fr.pos != null) q.set(fr.pos, Int.get(p));
+        if(fr.score != null) q.set(fr.score, Dbl.get(item.score()));
+        return true;
+      }
+    };
+    final int cs = clauses.size();
+    for(int c = index + 1; c < cs; c++) eval = clauses.get(c).eval(eval);
+
+    final ValueBuilder vb = new ValueBuilder(qc);
+    while(eval.next(qc)) vb.add(ret.value(qc));
+    return vb.value();
+  }
+
   @Override
   public Expr compile(final CompileContext cc) throws QueryException {
     final ListIterator<Clause> iter = clauses.listIterator();
@@ -114,6 +226,7 @@ public final class GFLWOR extends ParseExpr {
 
   @Override
   public Expr optimize(final CompileContext cc) throws QueryException {
+    parallel = null;
     final ListIterator<Clause> iter = clauses.listIterator();
     while(iter.hasNext()) {
       final Clause clause = iter.next();
@@ -230,6 +343,16 @@ public final class GFLWOR extends ParseExpr {
     } while(changed);
 
     mergeWheres();
+    // rewrite for clauses with join predicates to hash joins
+    hashJoins(cc);
+    // aggregate non-grouping variables that are only passed on to aggregate functions
+    aggregates(cc);
+
+    // reset limits of order by clauses that are not trailing anymore
+    final OrderBy order = order();
+    for(final Clause clause : clauses) {
+      if(clause instanceof OrderBy && clause != order) ((OrderBy) clause).limit = Long.MAX_VALUE;
+    }
 
     calcSize();
 
@@ -261,6 +384,32 @@ public final class GFLWOR extends ParseExpr {
     return this;
   }
 
+  /**
+   * Limits the number of tuples that will be returned by a trailing order by clause.
+   * Called if only the first items of this expression will be accessed.
+   * @param max maximum number of accessed items
+   */
+  public void limit(final long max) {
+    final OrderBy order = order();
+    if(order != null && max < order.limit) order.limit = max;
+  }
+
+  /**
+   * Returns the last order by clause if it is only followed by clauses that do not change the
+   * number of tuples, and if each tuple yields at least one item.
+   * @return order by clause or {@code null}
+   */
+  private OrderBy order() {
+    if(ret.seqType().oneOrMore()) {
+      for(int c = clauses.size(); --c >= 0;) {
+        final Clause clause = clauses.get(c);
+        if(clause instanceof OrderBy) return (OrderBy) clause;
+        if(!(clause instanceof Let || clause instanceof Count)) break;
+      }
+    }
+    return null;
+  }
+
   /**
    * Checks if the return clause references variables from this FLWOR expression.
    * @return result of check
@@ -638,6 +787,117 @@ public final class GFLWOR extends ParseExpr {
     return changed;
   }
 
+  /**
+   * Rewrites for clauses with trailing equality predicates, which compare the context item with
+   * the variables of preceding clauses, to hash joins.
+   * @param cc compilation context
+   * @throws QueryException query exception
+   */
+  private void hashJoins(final CompileContext cc) throws QueryException {
+    // variables of leading let clauses are bound only once
+    int lets = 0;
+    final int cs = clauses.size();
+    while(lets < cs && clauses.get(lets) instanceof Let) lets++;
+    for(int c = lets + 1; c < cs; c++) {
+      final Clause clause = clauses.get(c);
+      if(!(clause instanceof For)) continue;
+      final For fr = (For) clause;
+      if(fr.pos != null || fr.score != null || fr.empty) continue;
+
+      // find trailing predicate and remaining input
+      final Expr expr = fr.expr;
+      final Expr[] preds;
+      if(expr instanceof Filter) {
+        preds = ((Filter) expr).exprs;
+      } else if(expr instanceof AxisPath) {
+        final Expr[] steps = ((Path) expr).steps;
+        final Expr last = steps[steps.length - 1];
+        if(!(last instanceof Step)) continue;
+        preds = ((Step) last).exprs;
+      } else {
+        continue;
+      }
+      if(preds.length == 0 || !(preds[preds.length - 1] instanceof Cmp)) continue;
+      final Cmp cmp = (Cmp) preds[preds.length - 1];
+      if(!cmp.hashable() || cmp.has(Flag.POS, Flag.NDT)) continue;
+
+      // one operand must depend on the context, the other one on the preceding clauses
+      final Expr op1 = cmp.exprs[0], op2 = cmp.exprs[1];
+      final boolean ctx1 = op1.has(Flag.CTX);
+      if(ctx1 == op2.has(Flag.CTX)) continue;
+      final Expr build = ctx1 ? op1 : op2, probe = ctx1 ? op2 : op1;
+      if(uses(build, lets, c) || !uses(probe, 0, c)) continue;
+
+      // remaining input must be independent of the preceding clauses
+      final Expr input = input(expr, cc);
+      if(uses(input, lets, c) || input.has(Flag.NDT, Flag.CNS)) continue;
+
+      final HashJoin join = new HashJoin(fr.var, input, build, probe, cmp instanceof CmpG,
+          fr.info);
+      cc.info(QueryText.OPTHASHJOIN_X, join);
+      clauses.set(c, join.optimize(cc));
+    }
+  }
+
+  /**
+   * Returns the input of a for clause without its trailing predicate.
+   * @param expr filter or path expression
+   * @param cc compilation context
+   * @return input expression
+   * @throws QueryException query exception
+   */
+  private Expr input(final Expr expr, final CompileContext cc) throws QueryException {
+    if(expr instanceof Filter) {
+      final Filter filter = (Filter) expr;
+      final Expr[] preds = filter.exprs;
+      return Filter.get(info, filter.root, Arrays.copyOf(preds, preds.length - 1)).optimize(cc);
+    }
+    final Path path = (Path) expr;
+    final Expr[] steps = path.steps.clone();
+    final int sl = steps.length - 1;
+    final Step step = (Step) steps[sl];
+    final Expr[] preds = step.exprs;
+    steps[sl] = Step.get(step.info, step.axis, step.test, Arrays.copyOf(preds, preds.length - 1));
+    return Path.get(path.info, path.root, steps).optimize(cc);
+  }
+
+  /**
+   * Checks if the specified expression uses variables declared by the specified clauses.
+   * @param expr expression
+   * @param start index of the first clause
+   * @param end index of the current clause (exclusive)
+   * @return result of check
+   */
+  private boolean uses(final Expr expr, final int start, final int end) {
+    for(int c = start; c < end; c++) {
+      for(final Var var : clauses.get(c).vars()) {
+        if(expr.uses(var)) return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks if the non-grouping variables of group by clauses can be aggregated.
+   * @param cc compilation context
+   */
+  private void aggregates(final CompileContext cc) {
+    final int cs = clauses.size();
+    boolean changed = false;
+    for(int c = 0; c < cs; c++) {
+      final Clause clause = clauses.get(c);
+      if(clause instanceof GroupBy) {
+        final GroupBy group = ((GroupBy) clause).aggregate(clauses.subList(c + 1, cs), ret, cc);
+        if(group != clause) {
+          clauses.set(c, group);
+          changed = true;
+        }
+      }
+    }
+    // pass on new variables to the tuples of subsequent clauses
+    if(changed) cleanDeadVars();
+  }
+
   /**
    * Merges consecutive {@code where} clauses.
    */
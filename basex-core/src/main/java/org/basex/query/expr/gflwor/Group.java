@@ -12,8 +12,10 @@ import org.basex.query.value.item.*;
 final class Group {
   /** Grouping key, may contain {@code null} values. */
   final Item[] key;
-  /** Non-grouping variables. */
+  /** Values of non-grouping variables ({@code null} entries: variable is aggregated). */
   final ValueBuilder[] ngv;
+  /** Aggregated non-grouping variables ({@code null} entries: values are cached). */
+  final Accumulator[] accs;
   /** Overflow list. */
   Group next;
 
@@ -21,9 +23,11 @@ final class Group {
    * Constructor.
    * @param k grouping key
    * @param ng non-grouping variables
+   * @param ac aggregated non-grouping variables
    */
-  Group(final Item[] k, final ValueBuilder[] ng) {
+  Group(final Item[] k, final ValueBuilder[] ng, final Accumulator[] ac) {
     key = k;
     ngv = ng;
+    accs = ac;
   }
 }
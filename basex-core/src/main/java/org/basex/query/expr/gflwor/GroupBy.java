@@ -1,14 +1,24 @@
 package org.basex.query.expr.gflwor;
 
+import static org.basex.query.QueryError.*;
 import static org.basex.query.QueryText.*;
 
+import java.io.*;
 import java.util.*;
+import java.util.List;
 
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.expr.gflwor.GFLWOR.*;
 import org.basex.query.util.*;
+import org.basex.query.func.*;
+import org.basex.query.func.Function;
 import org.basex.query.util.collation.*;
+import org.basex.query.util.sort.*;
 import org.basex.query.value.*;
 import org.basex.query.value.item.*;
 import org.basex.query.value.node.*;
@@ -25,12 +35,19 @@ import org.basex.util.hash.*;
  * @author Leo Woerteler
  */
 public final class GroupBy extends Clause {
+  /** Number of partitions for spilled tuples. */
+  private static final int PARTITIONS = 16;
+  /** Maximum partitioning level. */
+  private static final int LEVELS = 8;
+
   /** Grouping specs. */
   private final GroupSpec[] specs;
   /** Non-grouping variable expressions. */
   private Expr[] preExpr;
   /** Non-grouping variables. */
   private Var[] post;
+  /** Aggregate function calls of non-grouping variables ({@code null} entries: no aggregate). */
+  private StandardFunc[] aggrs;
   /** Number of non-occluded grouping variables. */
   private final int nonOcc;
 
@@ -48,6 +65,7 @@ public final class GroupBy extends Clause {
     this.specs = specs;
     this.post = post;
     preExpr = Array.copy(pre, new Expr[pre.length]);
+    aggrs = new StandardFunc[post.length];
     int n = 0;
     for(final GroupSpec spec : specs) {
       if(!spec.occluded) n++;
@@ -60,15 +78,17 @@ public final class GroupBy extends Clause {
    * @param specs grouping specs
    * @param pre pre-grouping expressions
    * @param post post-grouping variables
+   * @param aggrs aggregate function calls
    * @param nonOcc number of non-occluded grouping variables
    * @param info input info
    */
-  private GroupBy(final GroupSpec[] specs, final Expr[] pre, final Var[] post, final int nonOcc,
-      final InputInfo info) {
+  private GroupBy(final GroupSpec[] specs, final Expr[] pre, final Var[] post,
+      final StandardFunc[] aggrs, final int nonOcc, final InputInfo info) {
     super(info, SeqType.ITEM_ZM, vars(specs, post));
     this.specs = specs;
     preExpr = pre;
     this.post = post;
+    this.aggrs = aggrs;
     this.nonOcc = nonOcc;
   }
 
@@ -90,18 +110,29 @@ public final class GroupBy extends Clause {
   Eval eval(final Eval sub) {
     return new Eval() {
       /** Groups to iterate over. */
-      private Group[] groups;
-      /** Current position. */
-      private int pos;
+      private Groups groups;
 
       @Override
       public boolean next(final QueryContext qc) throws QueryException {
-        if(groups == null) groups = init(qc);
-        if(pos == groups.length) return false;
+        if(groups == null) {
+          groups = new Groups(qc);
+          final int pl = preExpr.length;
+          while(sub.next(qc)) {
+            // tuple: keys, followed by the values of the non-grouping variables
+            final Value[] tuple = new Value[nonOcc + pl];
+            int p = 0;
+            for(final GroupSpec spec : specs) {
+              final Item atom = spec.atomItem(qc, info);
+              if(!spec.occluded) tuple[p++] = atom;
+              qc.set(spec.var, atom == null ? Empty.SEQ : atom);
+            }
+            for(int g = 0; g < pl; g++) tuple[nonOcc + g] = preExpr[g].value(qc);
+            groups.add(tuple);
+          }
+        }
 
-        final Group curr = groups[pos];
-        // be nice to the garbage collector
-        groups[pos++] = null;
+        final Group curr = groups.next();
+        if(curr == null) return false;
 
         int p = 0;
         for(final GroupSpec spec : specs) {
@@ -111,75 +142,11 @@ public final class GroupBy extends Clause {
           }
         }
         final int pl = post.length;
-        for(int i = 0; i < pl; i++) qc.set(post[i], curr.ngv[i].value());
-        return true;
-      }
-
-      /**
-       * Builds up the groups.
-       * @param qc query context
-       * @throws QueryException query exception
-       */
-      private Group[] init(final QueryContext qc) throws QueryException {
-        final ArrayList<Group> grps = new ArrayList<>();
-        final IntObjMap<Group> map = new IntObjMap<>();
-        final Collation[] colls = new Collation[nonOcc];
-        int c = 0;
-        for(final GroupSpec spec : specs) {
-          if(!spec.occluded) colls[c++] = spec.coll;
-        }
-
-        while(sub.next(qc)) {
-          final Item[] key = new Item[nonOcc];
-          int p = 0, hash = 1;
-          for(final GroupSpec spec : specs) {
-            final Item atom = spec.atomItem(qc, info);
-            if(!spec.occluded) {
-              key[p++] = atom;
-              // If the values are compared using a special collation, we let them collide
-              // here and let the comparison do all the work later.
-              // This enables other non-collation specs to avoid the collision.
-              hash = 31 * hash + (atom == null || spec.coll != null ? 0 : atom.hash(info));
-            }
-            qc.set(spec.var, atom == null ? Empty.SEQ : atom);
-          }
-
-          // find the group for this key
-          final Group fst;
-          Group grp = null;
-          // no collations, so we can use hashing
-          for(Group g = fst = map.get(hash); g != null; g = g.next) {
-            if(eq(key, g.key, colls)) {
-              grp = g;
-              break;
-            }
-          }
-
-          final int pl = preExpr.length;
-          if(grp == null) {
-            // new group, add it to the list
-            final ValueBuilder[] ngs = new ValueBuilder[pl];
-            final int nl = ngs.length;
-            for(int n = 0; n < nl; n++) ngs[n] = new ValueBuilder(qc);
-            grp = new Group(key, ngs);
-            grps.add(grp);
-
-            // insert the group into the hash table
-            if(fst == null) {
-              map.put(hash, grp);
-            } else {
-              final Group nxt = fst.next;
-              fst.next = grp;
-              grp.next = nxt;
-            }
-          }
-
-          // add values of non-grouping variables to the group
-          for(int g = 0; g < pl; g++) grp.ngv[g].add(preExpr[g].value(qc));
+        for(int i = 0; i < pl; i++) {
+          qc.set(post[i], curr.ngv[i] != null ? curr.ngv[i].value() :
+            curr.accs[i].value(aggrs[i].sig, info));
         }
-
-        // we're finished, copy the array so the list can be garbage-collected
-        return grps.toArray(new Group[0]);
+        return true;
       }
     };
   }
@@ -234,6 +201,85 @@ public final class GroupBy extends Clause {
     return this;
   }
 
+  /**
+   * Checks if the values of non-grouping variables are only passed on to aggregate functions
+   * ({@code count}, {@code sum}, {@code avg}, {@code min}, {@code max}). If this is the case,
+   * the values will be aggregated while the groups are built. If the values of a variable are
+   * passed on to different functions, a new variable is introduced for each additional function.
+   * @param clauses following clauses
+   * @param ret return expression
+   * @param cc compilation context
+   * @return clause
+   */
+  GroupBy aggregate(final List<Clause> clauses, final Expr ret, final CompileContext cc) {
+    final int pl = post.length;
+    final ArrayList<ArrayList<StandardFunc>> calls = new ArrayList<>(pl);
+    for(int p = 0; p < pl; p++) calls.add(new ArrayList<>(1));
+    final int[] uses = new int[pl];
+    final ASTVisitor visitor = new ASTVisitor() {
+      @Override
+      public boolean used(final VarRef ref) {
+        final int p = index(ref.var);
+        if(p != -1) uses[p]++;
+        return true;
+      }
+
+      @Override
+      public boolean funcCall(final StandardFunc call) {
+        final Function sig = call.sig;
+        if((sig == Function.COUNT || sig == Function.SUM || sig == Function.AVG ||
+            sig == Function.MIN || sig == Function.MAX) && call.exprs.length == 1 &&
+            call.exprs[0] instanceof VarRef) {
+          final int p = index(((VarRef) call.exprs[0]).var);
+          if(p != -1) calls.get(p).add(call);
+        }
+        return true;
+      }
+
+      /**
+       * Returns the index of a non-grouping variable.
+       * @param var variable
+       * @return index, or {@code -1}
+       */
+      private int index(final Var var) {
+        for(int p = 0; p < pl; p++) {
+          if(post[p].is(var)) return p;
+        }
+        return -1;
+      }
+    };
+    for(final Clause clause : clauses) clause.accept(visitor);
+    ret.accept(visitor);
+
+    Expr[] pre = preExpr;
+    Var[] ps = post;
+    StandardFunc[] as = new StandardFunc[pl];
+    int[] origins = new int[0];
+    for(int p = 0; p < pl; p++) {
+      final ArrayList<StandardFunc> list = calls.get(p);
+      if(list.isEmpty() || list.size() != uses[p]) continue;
+      as[p] = list.get(0);
+      for(final StandardFunc call : list) {
+        if(call.sig == as[p].sig) continue;
+        // bind the values passed on to another function to a new variable
+        int n = pl;
+        while(n < ps.length && (origins[n - pl] != p || as[n].sig != call.sig)) n++;
+        if(n == ps.length) {
+          ps = Array.add(ps, cc.copy(post[p], null));
+          pre = Array.add(pre, preExpr[p].copy(cc, new IntObjMap<>()));
+          as = Array.add(as, call);
+          origins = Array.add(origins, p);
+        }
+        call.exprs[0] = new VarRef(((VarRef) call.exprs[0]).info, ps[n]);
+      }
+    }
+    if(ps.length == pl) {
+      aggrs = as;
+      return this;
+    }
+    return copyType(new GroupBy(specs, pre, ps, as, nonOcc, info));
+  }
+
   @Override
   public boolean removable(final Var var) {
     for(final GroupSpec spec : specs) {
@@ -265,7 +311,7 @@ public final class GroupBy extends Clause {
     for(int p = 0; p < pl; p++) ps[p] = cc.copy(post[p], vm);
 
     // done
-    return new GroupBy(Arr.copyAll(cc, vm, specs), pEx, ps, nonOcc, info);
+    return new GroupBy(Arr.copyAll(cc, vm, specs), pEx, ps, aggrs.clone(), nonOcc, info);
   }
 
   @Override
@@ -287,6 +333,7 @@ public final class GroupBy extends Clause {
     for(int p = 0; p < post.length; p++) {
       if(!used.get(post[p].id)) {
         preExpr = Array.remove(preExpr, p);
+        aggrs = Array.remove(aggrs, p);
         post = Array.remove(post, p--);
       }
     }
@@ -346,4 +393,237 @@ public final class GroupBy extends Clause {
     for(int s = 0; s < sl; s++) sb.append(s == 0 ? " " : SEP).append(specs[s]);
     return sb.toString();
   }
+
+  /**
+   * Groups of the incoming tuples. If the number of groups in main memory reaches the value of
+   * {@link MainOptions#GROUPLIMIT}, tuples with new keys are distributed to partitions on disk.
+   * The partitions are grouped after the groups in main memory have been returned.
+   */
+  private final class Groups {
+    /** Query context. */
+    private final QueryContext qc;
+    /** Maximum number of groups in main memory ({@code 0}: no limit). */
+    private final int limit;
+    /** Collations of the keys. */
+    private final Collation[] colls = new Collation[nonOcc];
+    /** Function calls for computing the aggregates ({@code null} entries: count or no aggregate). */
+    private final StandardFunc[] calls;
+
+    /** Groups in main memory. */
+    private final ArrayList<Group> list = new ArrayList<>();
+    /** Hash table for the groups in main memory. */
+    private IntObjMap<Group> map = new IntObjMap<>();
+    /** Current position in the list of groups. */
+    private int pos;
+    /** Partitioning level of the current groups. */
+    private int level;
+
+    /** Partitions that have not been grouped yet. */
+    private final ArrayList<Partition> partitions = new ArrayList<>();
+    /** Partitions of the current level ({@code null}: no tuples have been spilled). */
+    private Partition[] spilled;
+    /** Serializer for spilled tuples. */
+    private RecordSerializer serializer;
+
+    /**
+     * Constructor.
+     * @param qc query context
+     */
+    Groups(final QueryContext qc) {
+      this.qc = qc;
+      limit = Math.max(0, qc.context.options.get(MainOptions.GROUPLIMIT));
+      int c = 0;
+      for(final GroupSpec spec : specs) {
+        if(!spec.occluded) colls[c++] = spec.coll;
+      }
+      final int pl = post.length;
+      calls = new StandardFunc[pl];
+      for(int p = 0; p < pl; p++) {
+        final StandardFunc aggr = aggrs[p];
+        if(aggr != null && aggr.sig != Function.COUNT) {
+          // the average is computed from the sum
+          final Function func = aggr.sig == Function.AVG ? Function.SUM : aggr.sig;
+          calls[p] = func.get(aggr.sc, aggr.info, new VarRef(info, post[p]));
+        }
+      }
+    }
+
+    /**
+     * Adds a tuple to its group.
+     * @param tuple keys and values of the non-grouping variables
+     * @throws QueryException query exception
+     */
+    void add(final Value[] tuple) throws QueryException {
+      final Item[] key = new Item[nonOcc];
+      int hash = 1;
+      for(int k = 0; k < nonOcc; k++) {
+        final Item atom = (Item) tuple[k];
+        key[k] = atom;
+        // If the values are compared using a special collation, we let them collide
+        // here and let the comparison do all the work later.
+        // This enables other non-collation specs to avoid the collision.
+        hash = 31 * hash + (atom == null || colls[k] != null ? 0 : atom.hash(info));
+      }
+
+      // find the group for this key
+      final Group fst;
+      Group grp = null;
+      for(Group g = fst = map.get(hash); g != null; g = g.next) {
+        if(eq(key, g.key, colls)) {
+          grp = g;
+          break;
+        }
+      }
+
+      final int pl = post.length;
+      if(grp == null) {
+        // write tuple to partition if the maximum number of groups has been reached
+        if(limit != 0 && list.size() >= limit && level < LEVELS) {
+          spill(tuple, hash);
+          return;
+        }
+
+        // new group, add it to the list
+        final ValueBuilder[] ngv = new ValueBuilder[pl];
+        final Accumulator[] accs = new Accumulator[pl];
+        for(int p = 0; p < pl; p++) {
+          if(aggrs[p] == null) ngv[p] = new ValueBuilder(qc);
+          else accs[p] = new Accumulator();
+        }
+        grp = new Group(key, ngv, accs);
+        list.add(grp);
+
+        // insert the group into the hash table
+        if(fst == null) {
+          map.put(hash, grp);
+        } else {
+          final Group nxt = fst.next;
+          fst.next = grp;
+          grp.next = nxt;
+        }
+      }
+
+      // add values of non-grouping variables to the group
+      for(int p = 0; p < pl; p++) {
+        final Value value = tuple[nonOcc + p];
+        if(grp.ngv[p] != null) grp.ngv[p].add(value);
+        else grp.accs[p].add(value, calls[p], post[p], qc);
+      }
+    }
+
+    /**
+     * Returns the next group.
+     * @return group or {@code null}
+     * @throws QueryException query exception
+     */
+    Group next() throws QueryException {
+      while(pos == list.size()) {
+        // all tuples of the current level have been grouped: close partitions
+        if(spilled != null) {
+          try {
+            for(final Partition part : spilled) {
+              if(part == null) continue;
+              part.close();
+              partitions.add(part);
+            }
+          } catch(final IOException ex) {
+            throw IOERR_X.get(info, ex);
+          }
+          spilled = null;
+        }
+        if(partitions.isEmpty()) return null;
+
+        // group tuples of the next partition
+        final Partition part = partitions.remove(partitions.size() - 1);
+        list.clear();
+        map = new IntObjMap<>();
+        pos = 0;
+        level = part.level;
+        final SortFiles files = qc.resources.index(SortFiles.class);
+        try(DataInput in = new DataInput(part.file)) {
+          for(int t = 0; t < part.size; t++) {
+            qc.checkStop();
+            add(serializer.read(in));
+          }
+        } catch(final IOException ex) {
+          throw IOERR_X.get(info, ex);
+        }
+        files.delete(part.file);
+      }
+
+      // be nice to the garbage collector
+      final Group group = list.get(pos);
+      list.set(pos++, null);
+      return group;
+    }
+
+    /**
+     * Writes a tuple to a partition.
+     * @param tuple tuple
+     * @param hash hash value of the keys
+     * @throws QueryException query exception
+     */
+    private void spill(final Value[] tuple, final int hash) throws QueryException {
+      if(spilled == null) spilled = new Partition[PARTITIONS];
+      if(serializer == null) serializer = new RecordSerializer(qc, info);
+
+      // choose different bits of the hash value for each level
+      final int p = (hash * 0x9E3779B9 >>> (LEVELS - 1 - level) * 4) & PARTITIONS - 1;
+      try {
+        if(spilled[p] == null) {
+          spilled[p] = new Partition(qc.resources.index(SortFiles.class).create(), level + 1);
+        }
+        spilled[p].write(tuple, serializer);
+      } catch(final IOException ex) {
+        throw IOERR_X.get(info, ex);
+      }
+    }
+  }
+
+  /**
+   * Partition with spilled tuples.
+   */
+  private static final class Partition {
+    /** File. */
+    private final IOFile file;
+    /** Partitioning level. */
+    private final int level;
+    /** Output stream ({@code null} if the partition has been closed). */
+    private DataOutput out;
+    /** Number of tuples. */
+    private int size;
+
+    /**
+     * Constructor.
+     * @param file file
+     * @param level partitioning level
+     * @throws IOException I/O exception
+     */
+    private Partition(final IOFile file, final int level) throws IOException {
+      this.file = file;
+      this.level = level;
+      out = new DataOutput(file);
+    }
+
+    /**
+     * Writes a tuple.
+     * @param tuple tuple
+     * @param serializer serializer
+     * @throws IOException I/O exception
+     */
+    private void write(final Value[] tuple, final RecordSerializer serializer)
+        throws IOException {
+      serializer.write(out, tuple);
+      size++;
+    }
+
+    /**
+     * Closes the output stream.
+     * @throws IOException I/O exception
+     */
+    private void close() throws IOException {
+      out.close();
+      out = null;
+    }
+  }
 }
@@ -0,0 +1,286 @@
+package org.basex.query.expr.gflwor;
+
+import static org.basex.query.QueryText.*;
+
+import org.basex.query.*;
+import org.basex.query.expr.*;
+import org.basex.query.expr.gflwor.GFLWOR.*;
+import org.basex.query.iter.*;
+import org.basex.query.util.*;
+import org.basex.query.util.hash.*;
+import org.basex.query.util.list.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.type.*;
+import org.basex.query.var.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * FLWOR {@code for} clause, joining the incoming tuples with the items of a sequence.
+ * The clause is created for {@code for} clauses with a trailing equality predicate
+ * {@code for $v in E[B = P]}, in which the build key {@code B} only depends on the context item,
+ * and in which the probe key {@code P} depends on the preceding clauses.
+ *
+ * The items of {@code E} are evaluated once and indexed by the atomized values of their build
+ * keys. For each incoming tuple, the items are looked up by the atomized values of the probe key.
+ * The items are bound in their original order.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class HashJoin extends Clause {
+  /** Item variable. */
+  final Var var;
+  /** Bound expression. */
+  Expr expr;
+  /** Build key, evaluated with the bound items as context values. */
+  Expr build;
+  /** Probe key, evaluated for each incoming tuple. */
+  Expr probe;
+  /** General comparison. */
+  private final boolean general;
+
+  /**
+   * Constructor.
+   * @param var item variable
+   * @param expr bound expression
+   * @param build build key
+   * @param probe probe key
+   * @param general general comparison
+   * @param info input info
+   */
+  public HashJoin(final Var var, final Expr expr, final Expr build, final Expr probe,
+      final boolean general, final InputInfo info) {
+    super(info, SeqType.ITEM_ZO, var);
+    this.var = var;
+    this.expr = expr;
+    this.build = build;
+    this.probe = probe;
+    this.general = general;
+  }
+
+  @Override
+  Eval eval(final Eval sub) {
+    return new Eval() {
+      /** Bound items. */
+      private ItemList items;
+      /** Indexed keys. */
+      private HashItemSet keys;
+      /** Positions of the bound items, indexed by the ids of their keys. */
+      private IntList[] positions;
+      /** Positions of the items to be returned. */
+      private IntList hits;
+      /** Current position. */
+      private int h;
+
+      @Override
+      public boolean next(final QueryContext qc) throws QueryException {
+        while(true) {
+          if(hits != null && h < hits.size()) {
+            qc.set(var, items.get(hits.get(h++)));
+            return true;
+          }
+          if(!sub.next(qc)) return false;
+
+          // first incoming tuple: index bound items
+          if(items == null) index(qc);
+          hits = items.isEmpty() ? null : probe(qc);
+          h = 0;
+        }
+      }
+
+      /**
+       * Evaluates the bound expression and indexes the items by their keys.
+       * @param qc query context
+       * @throws QueryException query exception
+       */
+      private void index(final QueryContext qc) throws QueryException {
+        items = new ItemList();
+        keys = new HashItemSet(true);
+        positions = new IntList[Array.CAPACITY];
+
+        final QueryFocus qf = qc.focus, focus = new QueryFocus();
+        qc.focus = focus;
+        try {
+          final Iter iter = expr.iter(qc);
+          for(Item item; (item = qc.next(iter)) != null;) {
+            final int p = items.size();
+            items.add(item);
+            focus.value = item;
+            final Iter ir = build.atomIter(qc, info);
+            for(Item key; (key = qc.next(ir)) != null;) {
+              final int id = keys.put(key, info);
+              if(id == positions.length) positions = Array.copy(positions, new IntList[id << 1]);
+              IntList list = positions[id];
+              if(list == null) {
+                list = new IntList(1);
+                positions[id] = list;
+              }
+              // skip duplicate keys of the same item
+              if(list.isEmpty() || list.peek() != p) list.add(p);
+            }
+          }
+        } finally {
+          qc.focus = qf;
+        }
+      }
+
+      /**
+       * Returns the positions of the items whose keys are equal to the probe keys.
+       * @param qc query context
+       * @return positions (can be {@code null})
+       * @throws QueryException query exception
+       */
+      private IntList probe(final QueryContext qc) throws QueryException {
+        IntList list = null;
+        boolean merged = false;
+        final Iter ir = probe.atomIter(qc, info);
+        for(Item key; (key = qc.next(ir)) != null;) {
+          final int id = keys.id(key, info);
+          if(id == 0 || positions[id] == list) continue;
+          if(list == null) {
+            list = positions[id];
+          } else {
+            // merge positions of multiple keys
+            if(!merged) list = new IntList(list.toArray());
+            list.add(positions[id].toArray());
+            merged = true;
+          }
+        }
+        return merged ? list.sort().distinct() : list;
+      }
+    };
+  }
+
+  @Override
+  public boolean has(final Flag... flags) {
+    if(expr.has(flags) || probe.has(flags)) return true;
+    // the build key is evaluated with the bound items as context
+    final Flag[] flgs = Flag.CTX.remove(flags);
+    return flgs.length != 0 && build.has(flgs);
+  }
+
+  @Override
+  public HashJoin compile(final CompileContext cc) throws QueryException {
+    expr = expr.compile(cc);
+    cc.pushFocus(expr);
+    try {
+      build = build.compile(cc);
+    } finally {
+      cc.removeFocus();
+    }
+    probe = probe.compile(cc);
+    return optimize(cc);
+  }
+
+  @Override
+  public HashJoin optimize(final CompileContext cc) throws QueryException {
+    // assign type to clause and variable
+    exprType.assign(expr.seqType().type, Occ.ONE);
+    var.refineType(seqType(), size(), cc);
+    var.data = expr.data();
+    return this;
+  }
+
+  @Override
+  public boolean removable(final Var v) {
+    return expr.removable(v) && !build.uses(v) && probe.removable(v);
+  }
+
+  @Override
+  public VarUsage count(final Var v) {
+    // the build key is evaluated for each bound item
+    return VarUsage.sum(v, expr, probe).plus(build.count(v).times(2));
+  }
+
+  @Override
+  public Clause inline(final Var v, final Expr ex, final CompileContext cc)
+      throws QueryException {
+
+    boolean changed = false;
+    Expr sub = expr.inline(v, ex, cc);
+    if(sub != null) {
+      expr = sub;
+      changed = true;
+    }
+    cc.pushFocus(expr);
+    try {
+      sub = build.inline(v, ex, cc);
+    } finally {
+      cc.removeFocus();
+    }
+    if(sub != null) {
+      build = sub;
+      changed = true;
+    }
+    sub = probe.inline(v, ex, cc);
+    if(sub != null) {
+      probe = sub;
+      changed = true;
+    }
+    return changed ? optimize(cc) : null;
+  }
+
+  @Override
+  public HashJoin copy(final CompileContext cc, final IntObjMap<Var> vm) {
+    return copyType(new HashJoin(cc.copy(var, vm), expr.copy(cc, vm), build.copy(cc, vm),
+        probe.copy(cc, vm), general, info));
+  }
+
+  @Override
+  public boolean accept(final ASTVisitor visitor) {
+    return expr.accept(visitor) && build.accept(visitor) && probe.accept(visitor) &&
+        visitor.declared(var);
+  }
+
+  @Override
+  public void checkUp() throws QueryException {
+    checkNoneUp(expr, build, probe);
+  }
+
+  @Override
+  void calcSize(final long[] minMax) {
+    // each incoming tuple yields no or some of the bound items
+    final long size = expr.size(), max = minMax[1];
+    minMax[0] = 0;
+    if(max > 0) minMax[1] = size < 0 ? -1 : max * size;
+  }
+
+  @Override
+  public int exprSize() {
+    return expr.exprSize() + build.exprSize() + probe.exprSize();
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if(this == obj) return true;
+    if(!(obj instanceof HashJoin)) return false;
+    final HashJoin hj = (HashJoin) obj;
+    return var.equals(hj.var) && expr.equals(hj.expr) && build.equals(hj.build) &&
+        probe.equals(hj.probe) && general == hj.general;
+  }
+
+  @Override
+  public int hashCode() {
+    return var.hashCode();
+  }
+
+  @Override
+  public void plan(final FElem plan) {
+    final FElem elem = planElem();
+    var.plan(elem);
+    expr.plan(elem);
+    build.plan(elem);
+    probe.plan(elem);
+    plan.add(elem);
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder(FOR).append(' ').append(var).append(' ').append(IN).append(' ').
+        append(expr).append('[').append(build).append(' ').append(general ? "=" : "eq").
+        append(' ').append(probe).append(']').toString();
+  }
+}
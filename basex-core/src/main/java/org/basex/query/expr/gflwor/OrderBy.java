@@ -3,13 +3,11 @@ package org.basex.query.expr.gflwor;
 import static org.basex.query.QueryError.*;
 import static org.basex.query.QueryText.*;
 
-import java.util.*;
-import java.util.List;
-
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.expr.gflwor.GFLWOR.*;
 import org.basex.query.util.*;
+import org.basex.query.util.sort.*;
 import org.basex.query.value.*;
 import org.basex.query.value.item.*;
 import org.basex.query.value.node.*;
@@ -29,6 +27,8 @@ public final class OrderBy extends Clause {
   private VarRef[] refs;
   /** Sort keys. */
   private final OrderKey[] keys;
+  /** Maximum number of returned tuples ({@link Long#MAX_VALUE}: all tuples). */
+  long limit = Long.MAX_VALUE;
 
   /**
    * Constructor.
@@ -45,84 +45,68 @@ public final class OrderBy extends Clause {
   @Override
   Eval eval(final Eval sub) {
     return new Eval() {
-      private Value[][] tpls;
-      private Integer[] perm;
-      int pos;
+      private RecordSort sort;
 
       @Override
       public boolean next(final QueryContext qc) throws QueryException {
-        if(tpls == null) sort(qc);
-        if(pos == tpls.length) return false;
-        final int p = perm[pos++];
-        final Value[] tuple = tpls[p];
-        // free the space occupied by the tuple
-        tpls[p] = null;
-        final int rl = refs.length;
-        for(int r = 0; r < rl; r++) qc.set(refs[r].var, tuple[r]);
+        if(sort == null) sort(qc);
+        if(!sort.next()) return false;
+        // values are stored after the keys
+        final Value[] record = sort.record();
+        final int kl = keys.length, rl = refs.length;
+        for(int r = 0; r < rl; r++) qc.set(refs[r].var, record[kl + r]);
         return true;
       }
 
       /**
-       * Caches and sorts all incoming tuples.
+       * Caches and sorts all incoming tuples. If a limit is specified, only the smallest
+       * tuples are retained. If possible, the keys are compared in their normalized form.
        * @param qc query context
        * @throws QueryException evaluation exception
        */
       private void sort(final QueryContext qc) throws QueryException {
-        // keys are stored at odd positions, values at even ones
-        List<Value[]> tuples = new ArrayList<>();
+        final KeyEncoder encoder = new KeyEncoder(info);
+        for(final OrderKey key : keys) encoder.add(key.desc, key.least, key.coll);
+        sort = new RecordSort(OrderBy.this::compare, qc, info, limit, encoder);
+        final int kl = keys.length, rl = refs.length;
         while(sub.next(qc)) {
-          final int kl = keys.length;
-          final Item[] key = new Item[kl];
-          for(int k = 0; k < kl; k++) key[k] = keys[k].expr.atomItem(qc, keys[k].info);
-          tuples.add(key);
-
-          final int rl = refs.length;
-          final Value[] vals = new Value[rl];
-          for(int r = 0; r < rl; r++) vals[r] = refs[r].value(qc);
-          tuples.add(vals);
-        }
-
-        final int len = tuples.size() >>> 1;
-        final Item[][] ks = new Item[len][];
-        perm = new Integer[len];
-        tpls = new Value[len][];
-        for(int i = 0; i < len; i++) {
-          perm[i] = i;
-          tpls[i] = tuples.get(i << 1 | 1);
-          ks[i] = (Item[]) tuples.get(i << 1);
-        }
-        // be nice to the garbage collector
-        tuples = null;
-        try {
-          Arrays.sort(perm, (x, y) -> {
-            try {
-              final Item[] a = ks[x], b = ks[y];
-              final int kl = keys.length;
-              for(int k = 0; k < kl; k++) {
-                final OrderKey key = keys[k];
-                Item m = a[k], n = b[k];
-                if(m == Dbl.NAN || m == Flt.NAN) m = null;
-                if(n == Dbl.NAN || n == Flt.NAN) n = null;
-                if(m != null && n != null && !m.comparable(n))
-                  throw typeError(n, m.type, key.info);
-
-                final int c = m == null
-                    ? n == null ? 0                 : key.least ? -1 : 1
-                    : n == null ? key.least ? 1 : -1 : m.diff(n, key.coll, key.info);
-                if(c != 0) return key.desc ? -c : c;
-              }
-              return 0;
-            } catch(final QueryException ex) {
-              throw new QueryRTException(ex);
-            }
-          });
-        } catch(final QueryRTException ex) {
-          throw ex.getCause();
+          final Value[] record = new Value[kl + rl];
+          for(int k = 0; k < kl; k++) record[k] = keys[k].expr.atomItem(qc, keys[k].info);
+          for(int r = 0; r < rl; r++) record[kl + r] = refs[r].value(qc);
+          sort.add(record);
         }
       }
     };
   }
 
+  /**
+   * Compares the keys of two tuples.
+   * @param a first tuple
+   * @param b second tuple
+   * @return result of comparison
+   * @throws QueryRTException query exception
+   */
+  private int compare(final Value[] a, final Value[] b) {
+    try {
+      final int kl = keys.length;
+      for(int k = 0; k < kl; k++) {
+        final OrderKey key = keys[k];
+        Item m = (Item) a[k], n = (Item) b[k];
+        if(m == Dbl.NAN || m == Flt.NAN) m = null;
+        if(n == Dbl.NAN || n == Flt.NAN) n = null;
+        if(m != null && n != null && !m.comparable(n)) throw typeError(n, m.type, key.info);
+
+        final int c = m == null
+            ? n == null ? 0                 : key.least ? -1 : 1
+            : n == null ? key.least ? 1 : -1 : m.diff(n, key.coll, key.info);
+        if(c != 0) return key.desc ? -c : c;
+      }
+      return 0;
+    } catch(final QueryException ex) {
+      throw new QueryRTException(ex);
+    }
+  }
+
   @Override
   public boolean has(final Flag... flags) {
     for(final OrderKey key : keys) {
@@ -166,7 +150,9 @@ public final class OrderBy extends Clause {
 
   @Override
   public OrderBy copy(final CompileContext cc, final IntObjMap<Var> vm) {
-    return copyType(new OrderBy(Arr.copyAll(cc, vm, refs), Arr.copyAll(cc, vm, keys), info));
+    final OrderBy ob = new OrderBy(Arr.copyAll(cc, vm, refs), Arr.copyAll(cc, vm, keys), info);
+    ob.limit = limit;
+    return copyType(ob);
   }
 
   @Override
@@ -216,12 +202,12 @@ public final class OrderBy extends Clause {
     if(this == obj) return true;
     if(!(obj instanceof OrderBy)) return false;
     final OrderBy o = (OrderBy) obj;
-    return Array.equals(refs, o.refs) && Array.equals(keys, o.keys);
+    return limit == o.limit && Array.equals(refs, o.refs) && Array.equals(keys, o.keys);
   }
 
   @Override
   public void plan(final FElem plan) {
-    final FElem elem = planElem();
+    final FElem elem = limit == Long.MAX_VALUE ? planElem() : planElem(MAX, limit);
     for(final OrderKey key : keys) key.plan(elem);
     plan.add(elem);
   }
@@ -130,7 +130,7 @@ public final class ValueAccess extends IndexAccess {
 
     // check if index is available and if it may contain the requested term
     // otherwise, use sequential scan
-    final boolean index = data.meta.index(type) && (
+    final boolean index = data.indexed(type) && (
         !(type == IndexType.TEXT || type == IndexType.ATTRIBUTE) ||
         tl > 0 && tl <= data.meta.maxlen
     );
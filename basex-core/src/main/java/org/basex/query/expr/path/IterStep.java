@@ -1,6 +1,8 @@
 
 package org.basex.query.expr.path;
 
+import org.basex.core.*;
+import org.basex.data.*;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.iter.*;
@@ -16,6 +18,13 @@ import org.basex.util.hash.*;
  * @author Christian Gruen
  */
 public final class IterStep extends Step {
+  /** Number of scanned database nodes after which the remaining nodes are processed in batches. */
+  private static final int MIN_SCAN = 64;
+  /** Initial number of pre values that are processed in a batch. */
+  private static final int MIN_BATCH = 64;
+  /** Maximum number of pre values that are processed in a batch. */
+  private static final int MAX_BATCH = 1024;
+
   /**
    * Constructor.
    * @param info input info
@@ -29,18 +38,59 @@ public final class IterStep extends Step {
 
   @Override
   public NodeIter iter(final QueryContext qc) {
+    final boolean batch = qc.context.options.get(MainOptions.SCANBATCH);
     return new NodeIter() {
       BasicNodeIter iter;
+      // database axes: number of scanned nodes, buffered pre values, reusable node
+      int scanned, size, pos;
+      int[] pres;
+      boolean full;
+      DBNode node;
+      Data data;
 
       @Override
       public ANode next() throws QueryException {
+        if(pres != null) return batch();
         if(iter == null) iter = axis.iter(checkNode(qc));
-        for(ANode node; (node = iter.next()) != null;) {
+        for(ANode nd; (nd = iter.next()) != null;) {
           qc.checkStop();
-          if(test.eq(node) && preds(node, qc)) return node.finish();
+          // switch to batch processing if a larger number of database nodes is scanned
+          if(++scanned == MIN_SCAN && batch && iter instanceof DBNodeIter) {
+            node = ((DBNode) nd).finish();
+            data = node.data();
+            pres = new int[MIN_BATCH];
+          }
+          if(test.eq(nd) && preds(nd, qc)) return nd.finish();
+          if(pres != null) return batch();
         }
         return null;
       }
+
+      /**
+       * Returns the next matching node of a database axis. The pre values of the nodes are
+       * retrieved and filtered by the node test in batches.
+       * @return next node or {@code null}
+       * @throws QueryException query exception
+       */
+      private ANode batch() throws QueryException {
+        final DBNode nd = node;
+        final Data d = data;
+        while(true) {
+          while(pos < size) {
+            final int pre = pres[pos++];
+            nd.set(pre, d.kind(pre));
+            if(preds(nd, qc)) return nd.finish();
+          }
+          qc.checkStop();
+          // grow batches until the maximum size is reached
+          if(full && pres.length < MAX_BATCH) pres = new int[pres.length << 1];
+          final int raw = ((DBNodeIter) iter).next(pres);
+          if(raw == 0) return null;
+          full = raw == pres.length;
+          size = test.filter(d, pres, raw);
+          pos = 0;
+        }
+      }
     };
   }
 
@@ -1,5 +1,6 @@
 package org.basex.query.expr.path;
 
+import org.basex.data.*;
 import org.basex.query.value.node.*;
 import org.basex.query.value.type.*;
 import org.basex.util.*;
@@ -29,6 +30,8 @@ public class KindTest extends Test {
   public static final KindTest NOD = new KindTest(NodeType.NOD) {
     @Override
     public boolean eq(final ANode it) { return true; }
+    @Override
+    public int filter(final Data data, final int[] pres, final int size) { return size; }
   };
 
   /**
@@ -68,6 +71,17 @@ public class KindTest extends Test {
     return node.type == type;
   }
 
+  @Override
+  public int filter(final Data data, final int[] pres, final int size) {
+    final int kind = ANode.kind(type);
+    int s = 0;
+    for(int p = 0; p < size; p++) {
+      final int pre = pres[p];
+      if(data.kind(pre) == kind) pres[s++] = pre;
+    }
+    return s;
+  }
+
   @Override
   public Test intersect(final Test other) {
     if(other instanceof NodeTest || other instanceof DocTest) {
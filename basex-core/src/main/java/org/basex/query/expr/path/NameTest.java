@@ -1,6 +1,7 @@
 package org.basex.query.expr.path;
 
 import org.basex.data.*;
+import org.basex.index.name.*;
 import org.basex.query.value.*;
 import org.basex.query.value.item.*;
 import org.basex.query.value.node.*;
@@ -96,6 +97,31 @@ public final class NameTest extends Test {
     }
   }
 
+  @Override
+  public int filter(final Data data, final int[] pres, final int size) {
+    final boolean elem = type == NodeType.ELM;
+    final int kd = elem ? Data.ELEM : Data.ATTR;
+    int id = 0;
+    if(kind != Kind.WILDCARD) {
+      // without namespaces, element names have no prefixes (apart from the reserved xml prefix),
+      // and the ids of the names can be compared
+      if(!elem || kind == Kind.URI || kind == Kind.URI_NAME && name.hasURI() ||
+          !data.nspaces.isEmpty()) return super.filter(data, pres, size);
+      final Names names = data.elemNames;
+      if(names.id(Token.concat(Token.XML, Token.COLON, local)) != 0)
+        return super.filter(data, pres, size);
+      id = names.id(local);
+      if(id == 0) return 0;
+    }
+
+    int s = 0;
+    for(int p = 0; p < size; p++) {
+      final int pre = pres[p];
+      if(data.kind(pre) == kd && (id == 0 || data.nameId(pre) == id)) pres[s++] = pre;
+    }
+    return s;
+  }
+
   /**
    * Checks if the specified name matches the test.
    * @param nm name
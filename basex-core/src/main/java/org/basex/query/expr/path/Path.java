@@ -665,6 +665,8 @@ public abstract class Path extends ParseExpr {
     IndexInfo index = null;
     // cheapest predicate and step
     int indexPred = 0, indexStep = 0;
+    // number of nodes that will be scanned by the step with the cheapest predicate
+    long indexScan = -1;
 
     // check if path can be converted to an index access
     final Data data = rt != null ? rt.data() : null;
@@ -678,7 +680,8 @@ public abstract class Path extends ParseExpr {
       final int el = step.exprs.length;
       if(el > 0) {
         // check if path is iterable (i.e., will be duplicate-free)
-        final boolean iter = pathNodes(data, s) != null;
+        final ArrayList<PathNode> nodes = pathNodes(data, s);
+        final boolean iter = nodes != null;
         final IndexDb db = data != null ? new IndexStaticDb(data, iter, info) :
           new IndexDynDb(info, iter, root == null ? new ContextValue(info) : root);
 
@@ -697,6 +700,11 @@ public abstract class Path extends ParseExpr {
             index = ii;
             indexPred = e;
             indexStep = s;
+            indexScan = -1;
+            if(iter) {
+              indexScan = 0;
+              for(final PathNode pn : nodes) indexScan += pn.stats.count;
+            }
           }
         }
       }
@@ -704,6 +712,12 @@ public abstract class Path extends ParseExpr {
 
     // skip rewriting if no index access is possible, or if it is too expensive
     if(index == null || data != null && index.costs.tooExpensive(data)) return this;
+    // skip rewriting if the index will return more results than the nodes to be scanned
+    // (unless index access is enforced)
+    if(indexScan != -1 && index.costs.results() > indexScan && !index.enforce()) {
+      cc.info(QueryText.OPTSCAN_X_X, index.costs.results(), indexScan);
+      return this;
+    }
     // skip optimization if it is not enforced
     if(rt instanceof Dummy && !index.enforce()) return this;
 
@@ -115,6 +115,8 @@ public abstract class Step extends Preds {
     } finally {
       cc.removeFocus();
     }
+    // order predicates by their selectivity
+    order(value != null ? value.data() : null, cc);
 
     // compute result size
     if(!exprType(seqType(), size())) return cc.emptySeq(this);
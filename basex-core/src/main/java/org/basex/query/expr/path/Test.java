@@ -1,5 +1,6 @@
 package org.basex.query.expr.path;
 
+import org.basex.data.*;
 import org.basex.query.expr.*;
 import org.basex.query.value.*;
 import org.basex.query.value.item.*;
@@ -65,6 +66,25 @@ public abstract class Test extends ExprInfo {
     return item instanceof ANode && eq((ANode) item);
   }
 
+  /**
+   * Filters database nodes. The pre values of the nodes that match this test are moved to the
+   * beginning of the specified array.
+   * @param data data reference
+   * @param pres pre values
+   * @param size number of pre values
+   * @return number of matching nodes
+   */
+  public int filter(final Data data, final int[] pres, final int size) {
+    final DBNode node = new DBNode(data, 0, Data.DOC);
+    int s = 0;
+    for(int p = 0; p < size; p++) {
+      final int pre = pres[p];
+      node.set(pre, data.kind(pre));
+      if(eq(node)) pres[s++] = pre;
+    }
+    return s;
+  }
+
   /**
    * Copies this test.
    * @return deep copy
@@ -167,6 +167,11 @@ public abstract class StandardFunc extends Arr {
     return flgs.length != 0 && super.has(flgs);
   }
 
+  @Override
+  public boolean accept(final ASTVisitor visitor) {
+    return visitor.funcCall(this) && super.accept(visitor);
+  }
+
   @Override
   public final boolean isFunction(final Function f) {
     return sig == f;
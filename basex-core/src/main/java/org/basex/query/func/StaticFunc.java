@@ -102,6 +102,30 @@ public final class StaticFunc extends StaticDecl implements XQFunction {
     for(int p = 0; p < pl; ++p) elem.add(planAttr(ARG + p, params[p].name.string()));
   }
 
+  /**
+   * Declares a copy of this function in the query of the specified compilation context.
+   * The function body must be copied after all declarations have been copied.
+   * @param cc compilation context
+   * @param vm variable mapping
+   * @return copied function
+   * @throws QueryException query exception
+   */
+  public StaticFunc copy(final CompileContext cc, final IntObjMap<Var> vm) throws QueryException {
+    final VarScope scope = new VarScope(sc);
+    cc.pushScope(scope);
+    try {
+      final int pl = params.length;
+      final Var[] prms = new Var[pl];
+      for(int p = 0; p < pl; p++) prms[p] = cc.copy(params[p], vm);
+      final StaticFunc sf = cc.qc.funcs.declare(anns, name, prms, declType, null, xqdoc(), scope,
+          info);
+      cc.copy(this, sf);
+      return sf;
+    } finally {
+      cc.removeScope();
+    }
+  }
+
   /**
    * Checks if this function calls itself recursively.
    * @return result of check
@@ -80,7 +80,8 @@ public final class StaticFuncCall extends FuncCall {
 
   @Override
   public StaticFuncCall copy(final CompileContext cc, final IntObjMap<Var> vm) {
-    return copyType(new StaticFuncCall(name, Arr.copyAll(cc, vm, exprs), sc, func, info));
+    return copyType(new StaticFuncCall(name, Arr.copyAll(cc, vm, exprs), sc,
+        cc.copy(func), info));
   }
 
   /**
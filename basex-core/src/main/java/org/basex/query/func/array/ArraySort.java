@@ -7,7 +7,7 @@ import org.basex.query.expr.*;
 import org.basex.query.func.*;
 import org.basex.query.func.fn.*;
 import org.basex.query.util.collation.*;
-import org.basex.query.util.list.*;
+import org.basex.query.util.sort.*;
 import org.basex.query.value.*;
 import org.basex.query.value.array.*;
 import org.basex.query.value.array.XQArray;
@@ -31,15 +31,15 @@ public final class ArraySort extends StandardFunc {
       if(tok != null) coll = Collation.get(tok, qc, sc, info, WHICHCOLL_X);
     }
 
-    final long size = array.arraySize();
-    final ValueList values = new ValueList(size);
+    final RecordSort sort = FnSort.sort(this, coll, qc);
     final FItem key = exprs.length > 2 ? checkArity(exprs[2], 1, qc) : null;
     for(final Value value : array.members()) {
-      values.add((key == null ? value : key.invokeValue(qc, info, value)).atomValue(qc, info));
+      sort.add(new Value[] {
+        (key == null ? value : key.invokeValue(qc, info, value)).atomValue(qc, info) });
     }
 
     final ArrayBuilder builder = new ArrayBuilder();
-    for(final int order : FnSort.sort(values, this, coll, qc)) builder.append(array.get(order));
+    for(final int order : sort.indexes()) builder.append(array.get(order));
     return builder.freeze();
   }
 
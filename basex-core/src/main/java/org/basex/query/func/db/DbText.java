@@ -5,6 +5,7 @@ import org.basex.index.*;
 import org.basex.query.*;
 import org.basex.query.expr.index.*;
 import org.basex.query.iter.*;
+import org.basex.query.util.*;
 import org.basex.query.value.item.*;
 import org.basex.util.hash.*;
 
@@ -34,4 +35,9 @@ public class DbText extends DbAccess {
     for(Item it; (it = qc.next(iter)) != null;) set.put(toToken(it));
     return new ValueAccess(info, set, type, null, new IndexStaticDb(info, data));
   }
+
+  @Override
+  public final boolean accept(final ASTVisitor visitor) {
+    return visitor.index() && super.accept(visitor);
+  }
 }
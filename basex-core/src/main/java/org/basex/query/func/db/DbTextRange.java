@@ -6,6 +6,7 @@ import org.basex.index.query.*;
 import org.basex.query.*;
 import org.basex.query.expr.index.*;
 import org.basex.query.iter.*;
+import org.basex.query.util.*;
 
 /**
  * Function implementation.
@@ -34,4 +35,9 @@ public class DbTextRange extends DbAccess {
     final StringRange sr = new StringRange(type, min, true, max, true);
     return new StringRangeAccess(info, sr, new IndexStaticDb(info, data));
   }
+
+  @Override
+  public final boolean accept(final ASTVisitor visitor) {
+    return visitor.index() && super.accept(visitor);
+  }
 }
@@ -2,6 +2,7 @@ package org.basex.query.func.fn;
 
 import org.basex.query.*;
 import org.basex.query.expr.*;
+import org.basex.query.expr.gflwor.*;
 import org.basex.query.func.*;
 import org.basex.query.func.file.*;
 import org.basex.query.value.*;
@@ -32,6 +33,8 @@ public final class FnHead extends StandardFunc {
     if(expr instanceof FnReverse)
       return cc.function(Function._UTIL_LAST_FROM, info, ((Arr) expr).exprs);
 
+    // sort only the smallest tuple
+    if(expr instanceof GFLWOR) ((GFLWOR) expr).limit(1);
     // faster retrieval of single line
     return FileReadTextLines.rewrite(this, 1, 1, cc, info);
   }
@@ -2,14 +2,12 @@ package org.basex.query.func.fn;
 
 import static org.basex.query.QueryError.*;
 
-import java.util.*;
-
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.func.*;
 import org.basex.query.iter.*;
 import org.basex.query.util.collation.*;
-import org.basex.query.util.list.*;
+import org.basex.query.util.sort.*;
 import org.basex.query.value.*;
 import org.basex.query.value.item.*;
 import org.basex.query.value.seq.*;
@@ -50,13 +48,14 @@ public final class FnSort extends StandardFunc {
     final FItem key = exprs.length > 2 ? checkArity(exprs[2], 1, qc) : null;
 
     final long size = value.size();
-    final ValueList values = new ValueList(size);
+    final RecordSort sort = sort(this, coll, qc);
     final Iter iter = value.iter();
     for(Item item; (item = qc.next(iter)) != null;) {
-      values.add((key == null ? item : key.invokeValue(qc, info, item)).atomValue(qc, info));
+      sort.add(new Value[] {
+        (key == null ? item : key.invokeValue(qc, info, item)).atomValue(qc, info) });
     }
 
-    final Integer[] order = sort(values, this, coll, qc);
+    final int[] order = sort.indexes();
     return new BasicIter<Item>(size) {
       @Override
       public Item get(final long i) {
@@ -66,46 +65,36 @@ public final class FnSort extends StandardFunc {
   }
 
   /**
-   * Sort the input data and returns integers representing the item order.
-   * @param values value list
+   * Returns a sort instance for records with a single atomized value.
    * @param sf calling function
    * @param coll collation
    * @param qc query context
-   * @return item order
-   * @throws QueryException query exception
+   * @return sort instance
    */
-  public static Integer[] sort(final ValueList values, final StandardFunc sf, final Collation coll,
-      final QueryContext qc) throws QueryException {
+  public static RecordSort sort(final StandardFunc sf, final Collation coll,
+      final QueryContext qc) {
 
-    final int al = values.size();
-    final Integer[] order = new Integer[al];
-    for(int o = 0; o < al; o++) order[o] = o;
-    try {
-      Arrays.sort(order, (i1, i2) -> {
-        qc.checkStop();
-        try {
-          final Value value1 = values.get(i1), value2 = values.get(i2);
-          final long size1 = value1.size(), size2 = value2.size(), il = Math.min(size1, size2);
-          for(int i = 0; i < il; i++) {
-            Item item1 = value1.itemAt(i), item2 = value2.itemAt(i);
-            if(item1 == Dbl.NAN || item1 == Flt.NAN) item1 = null;
-            if(item2 == Dbl.NAN || item2 == Flt.NAN) item2 = null;
-            if(item1 != null && item2 != null && !item1.comparable(item2))
-              throw diffError(item1, item2, sf.info);
+    return new RecordSort((record1, record2) -> {
+      qc.checkStop();
+      try {
+        final Value value1 = record1[0], value2 = record2[0];
+        final long size1 = value1.size(), size2 = value2.size(), il = Math.min(size1, size2);
+        for(int i = 0; i < il; i++) {
+          Item item1 = value1.itemAt(i), item2 = value2.itemAt(i);
+          if(item1 == Dbl.NAN || item1 == Flt.NAN) item1 = null;
+          if(item2 == Dbl.NAN || item2 == Flt.NAN) item2 = null;
+          if(item1 != null && item2 != null && !item1.comparable(item2))
+            throw diffError(item1, item2, sf.info);
 
-            final int diff = item1 == null ? item2 == null ? 0 : -1 : item2 == null ? 1 :
-              item1.diff(item2, coll, sf.info);
-            if(diff != 0 && diff != Item.UNDEF) return diff;
-          }
-          return (int) (size1 - size2);
-        } catch(final QueryException ex) {
-          throw new QueryRTException(ex);
+          final int diff = item1 == null ? item2 == null ? 0 : -1 : item2 == null ? 1 :
+            item1.diff(item2, coll, sf.info);
+          if(diff != 0 && diff != Item.UNDEF) return diff;
         }
-      });
-    } catch(final QueryRTException ex) {
-      throw ex.getCause();
-    }
-    return order;
+        return (int) (size1 - size2);
+      } catch(final QueryException ex) {
+        throw new QueryRTException(ex);
+      }
+    }, qc, sf.info);
   }
 
   @Override
@@ -2,6 +2,7 @@ package org.basex.query.func.fn;
 
 import org.basex.query.*;
 import org.basex.query.expr.*;
+import org.basex.query.expr.gflwor.*;
 import org.basex.query.func.*;
 import org.basex.query.func.file.*;
 import org.basex.query.iter.*;
@@ -186,6 +187,11 @@ public class FnSubsequence extends StandardFunc {
       if(range != null) {
         // all values?
         if(range == ALL) return expr;
+        // sort only the tuples up to the last requested position
+        final long start = range[0], length = range[1];
+        if(expr instanceof GFLWOR && length < Long.MAX_VALUE - start && start + length > 1) {
+          ((GFLWOR) expr).limit(start + length - 1);
+        }
         // faster retrieval of specified lines
         return FileReadTextLines.rewrite(this, range[0], range[1], cc, info);
       }
@@ -6,6 +6,7 @@ import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.iter.*;
 import org.basex.query.util.list.*;
+import org.basex.query.util.sort.*;
 import org.basex.query.value.*;
 import org.basex.query.value.item.*;
 
@@ -27,15 +28,13 @@ public final class HofSortWith extends HofFn {
     final Comparator<Item> comp = getComp(1, qc);
     if(value.size() < 2) return value;
 
-    final ItemList items = new ItemList(value.size());
+    final RecordSort sort = new RecordSort(
+        (record1, record2) -> comp.compare((Item) record1[0], (Item) record2[0]), qc, info);
     final Iter iter = value.iter();
-    for(Item item; (item = qc.next(iter)) != null;) items.add(item);
+    for(Item item; (item = qc.next(iter)) != null;) sort.add(new Value[] { item });
 
-    try {
-      Arrays.sort(items.list, 0, items.size(), comp);
-    } catch(final QueryRTException ex) {
-      throw ex.getCause();
-    }
+    final ItemList items = new ItemList(value.size());
+    while(sort.next()) items.add((Item) sort.record()[0]);
     return items.value();
   }
 
@@ -24,7 +24,7 @@ public abstract class IndexFn extends StandardFunc {
   static final String ENTRY = "entry";
 
   @Override
-  public final boolean accept(final ASTVisitor visitor) {
+  public boolean accept(final ASTVisitor visitor) {
     return dataLock(visitor, 0) && super.accept(visitor);
   }
 
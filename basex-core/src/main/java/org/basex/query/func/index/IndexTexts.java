@@ -7,6 +7,7 @@ import org.basex.index.*;
 import org.basex.index.query.*;
 import org.basex.query.*;
 import org.basex.query.iter.*;
+import org.basex.query.util.*;
 
 /**
  * Function implementation.
@@ -35,4 +36,9 @@ public class IndexTexts extends IndexFn {
       new IndexEntries(entry, toBoolean(exprs[2], qc), it);
     return entries(data, et, this);
   }
+
+  @Override
+  public final boolean accept(final ASTVisitor visitor) {
+    return visitor.index() && super.accept(visitor);
+  }
 }
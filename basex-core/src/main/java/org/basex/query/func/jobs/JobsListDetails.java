@@ -10,6 +10,7 @@ import org.basex.query.func.*;
 import org.basex.query.iter.*;
 import org.basex.query.value.*;
 import org.basex.query.value.node.*;
+import org.basex.util.*;
 import org.basex.util.list.*;
 
 /**
@@ -42,6 +43,12 @@ public final class JobsListDetails extends StandardFunc {
         final byte[] value = entry.get(a);
         if(value.length != 0) elem.add(atts[a], value);
       }
+      // parallel tasks of running jobs
+      final Job job = jobs.active.get(Token.string(key));
+      if(job != null) {
+        final JobContext jc = job.jc();
+        elem.add(WORKERS, Token.token(jc.running.get())).add(QUEUED, Token.token(jc.queued.get()));
+      }
       elem.add(entry.get(entry.size() - 1));
       vb.add(elem);
     }
@@ -2,6 +2,7 @@ package org.basex.query.func.util;
 
 import org.basex.query.*;
 import org.basex.query.expr.*;
+import org.basex.query.expr.gflwor.*;
 import org.basex.query.func.*;
 import org.basex.query.func.file.*;
 import org.basex.query.iter.*;
@@ -62,6 +63,8 @@ public final class UtilItemAt extends StandardFunc {
       // rewrite retrieval of first item
       if(ps == 1) return cc.function(Function.HEAD, info, exprs[0]);
 
+      // sort only the tuples up to the requested position
+      if(expr instanceof GFLWOR) ((GFLWOR) expr).limit(ps);
       // faster retrieval of single line
       return FileReadTextLines.rewrite(this, ps, 1, cc, info);
     }
@@ -2,8 +2,6 @@ package org.basex.query.func.xquery;
 
 import static org.basex.query.QueryError.*;
 
-import java.util.concurrent.*;
-
 import org.basex.core.jobs.*;
 import org.basex.query.*;
 import org.basex.query.func.*;
@@ -31,19 +29,23 @@ public final class XQueryForkJoin extends StandardFunc {
     // single function: invoke directly
     if(funcs.size() == 1) return ((FItem) funcs.itemAt(0)).invokeValue(qc, info);
 
-    final ForkJoinPool pool = new ForkJoinPool();
-    final XQueryTask task = new XQueryTask(funcs, qc, info);
-    try {
-      return pool.invoke(task);
+    // split the functions into chunks, evaluate at most the permitted number of chunks in parallel
+    final WorkerPool pool = qc.context.jobs.workers;
+    try(Workers workers = pool.reserve(qc.jc(), funcs.size())) {
+      if(workers.chunks == 1) {
+        final ValueBuilder vb = new ValueBuilder(qc);
+        for(final Item func : funcs) vb.add(((FItem) func).invokeValue(qc, info));
+        return vb.value();
+      }
+      return pool.invoke(new XQueryTask(funcs, qc, info, workers));
+    } catch(final QueryException | JobException ex) {
+      throw ex;
     } catch(final Exception ex) {
       // pass on query and job exceptions
       final Throwable e = Util.rootException(ex);
       if(e instanceof QueryException) throw (QueryException) e;
       if(e instanceof JobException) throw (JobException) e;
       throw XQUERY_UNEXPECTED_X.get(info, e);
-    } finally {
-      // required?
-      pool.shutdown();
     }
   }
 
@@ -2,36 +2,48 @@ package org.basex.query.func.xquery;
 
 import java.util.concurrent.*;
 
+import org.basex.core.jobs.*;
 import org.basex.query.*;
 import org.basex.query.value.*;
 import org.basex.query.value.item.*;
+import org.basex.query.value.seq.*;
 import org.basex.util.*;
 
 /**
  * Forks a set of tasks, performing their computation in parallel followed by rejoining the results.
+ * The functions are split into chunks, which are evaluated by the shared worker threads.
  *
  * @author James Wright
  */
 final class XQueryTask extends RecursiveTask<Value> {
+  /** Serial version UID. */
+  private static final long serialVersionUID = 1L;
+
   /** Functions to evaluate in parallel. */
   private final Value funcs;
   /** Query context. */
   private final QueryContext qc;
   /** Input info. */
   private final InputInfo ii;
+  /** Reserved workers. */
+  private final Workers workers;
   /** First function to evaluate. */
   private final int start;
   /** Last function to evaluate. */
   private final int end;
+  /** Maximum number of functions that are evaluated by a single task. */
+  private final int chunk;
 
   /**
    * Constructor.
    * @param funcs functions to evaluate
    * @param qc query context
    * @param ii input info
+   * @param workers reserved workers
    */
-  XQueryTask(final Value funcs, final QueryContext qc, final InputInfo ii) {
-    this(funcs, qc, ii, 0, (int) funcs.size());
+  XQueryTask(final Value funcs, final QueryContext qc, final InputInfo ii, final Workers workers) {
+    this(funcs, qc, ii, workers, 0, (int) funcs.size(),
+        (int) ((funcs.size() + workers.chunks - 1) / workers.chunks));
   }
 
   /**
@@ -39,40 +51,48 @@ final class XQueryTask extends RecursiveTask<Value> {
    * @param funcs functions to evaluate
    * @param qc query context
    * @param ii input info
+   * @param workers reserved workers
    * @param start first function to evaluate
    * @param end last function to evaluate
+   * @param chunk maximum number of functions that are evaluated by a single task
    */
   private XQueryTask(final Value funcs, final QueryContext qc, final InputInfo ii,
-      final int start, final int end) {
+      final Workers workers, final int start, final int end, final int chunk) {
     this.funcs = funcs;
-    this.qc = new QueryContext(qc);
+    this.qc = qc;
     this.ii = ii;
+    this.workers = workers;
     this.start = start;
     this.end = end;
+    this.chunk = chunk;
   }
 
   @Override
   protected Value compute() {
-    final ValueBuilder vb = new ValueBuilder(qc);
     final int s = start, e = end, l = e - s;
-    if(l == 1) {
-      // perform the work
-      try {
-        vb.add(((FItem) funcs.itemAt(s)).invokeValue(qc, ii));
+    if(l <= chunk) {
+      // perform the work (skipped if the evaluation has been cancelled)
+      if(!workers.start()) return Empty.SEQ;
+      final ValueBuilder vb = new ValueBuilder(qc);
+      try(QueryContext qctx = new QueryContext(qc)) {
+        for(int f = s; f < e; f++) {
+          qctx.checkStop();
+          vb.add(((FItem) funcs.itemAt(f)).invokeValue(qctx, ii));
+        }
       } catch(final QueryException ex) {
         completeExceptionally(ex);
         cancel(true);
       } finally {
-        qc.close();
+        workers.finish();
       }
-    } else if(l > 1) {
-      // split the work and join the results in the correct order
-      final int m = s + l / 2;
-      final XQueryTask task2 = new XQueryTask(funcs, qc, ii, m, e);
-      task2.fork();
-      final XQueryTask task1  = new XQueryTask(funcs, qc, ii, s, m);
-      vb.add(task1.invoke()).add(task2.join());
+      return vb.value();
     }
-    return vb.value();
+
+    // split the work at a chunk boundary and join the results in the correct order
+    final int m = s + (l + chunk - 1) / chunk / 2 * chunk;
+    final XQueryTask task2 = new XQueryTask(funcs, qc, ii, workers, m, e, chunk);
+    task2.fork();
+    final XQueryTask task1 = new XQueryTask(funcs, qc, ii, workers, s, m, chunk);
+    return new ValueBuilder(qc).add(task1.invoke()).add(task2.join()).value();
   }
 }
@@ -28,6 +28,19 @@ public abstract class DBNodeIter extends BasicNodeIter {
   @Override
   public abstract DBNode next();
 
+  /**
+   * Returns the pre values of the next nodes. Iterators over the database table can override
+   * this method and skip the assignment of the iterated nodes.
+   * @param pres array to which the pre values will be written
+   * @return number of returned pre values ({@code 0} if all nodes have been returned)
+   */
+  public int next(final int[] pres) {
+    final int pl = pres.length;
+    int p = 0;
+    for(DBNode node; p < pl && (node = next()) != null;) pres[p++] = node.pre();
+    return p;
+  }
+
   @Override
   public Value value(final QueryContext qc) {
     final IntList il = new IntList();
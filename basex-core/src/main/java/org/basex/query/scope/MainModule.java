@@ -73,6 +73,37 @@ public final class MainModule extends AModule {
     this.declType = declType;
   }
 
+  /**
+   * Creates a copy of this module. The declarations of the query must have been copied before.
+   * @param cc compilation context
+   * @return copy
+   */
+  public MainModule copy(final CompileContext cc) {
+    final VarScope scope = new VarScope(sc);
+    cc.pushScope(scope);
+    try {
+      return new MainModule(scope, expr.copy(cc, new IntObjMap<>()), declType, xqdoc(), info,
+          copy(funcs(), cc), copy(vars(), cc), imports);
+    } finally {
+      cc.removeScope();
+    }
+  }
+
+  /**
+   * Returns a map with the copies of the specified declarations.
+   * @param <T> declaration type
+   * @param decls declarations (can be {@code null})
+   * @param cc compilation context
+   * @return copies (can be {@code null})
+   */
+  private static <T extends StaticDecl> TokenObjMap<T> copy(final TokenObjMap<T> decls,
+      final CompileContext cc) {
+    if(decls == null) return null;
+    final TokenObjMap<T> map = new TokenObjMap<>();
+    for(final byte[] key : decls) map.put(key, cc.copy(decls.get(key)));
+    return map;
+  }
+
   @Override
   public void comp(final CompileContext cc) throws QueryException {
     if(compiled) return;
@@ -172,6 +203,8 @@ public final class MainModule extends AModule {
     private final IdentityHashMap<Scope, Object> funcs = new IdentityHashMap<>();
     /** Reference to process list of locked databases. */
     private final Locks locks;
+    /** Query context. */
+    private final QueryContext qc;
     /** Updating flag. */
     private final boolean updating;
     /** Focus level. */
@@ -184,6 +217,7 @@ public final class MainModule extends AModule {
      */
     private LockVisitor(final Locks locks, final QueryContext qc) {
       this.locks = locks;
+      this.qc = qc;
       updating = qc.updating;
       level = qc.ctxItem == null ? 0 : 1;
     }
@@ -199,6 +233,12 @@ public final class MainModule extends AModule {
       return true;
     }
 
+    @Override
+    public boolean index() {
+      qc.indexes = true;
+      return true;
+    }
+
     @Override
     public void enterFocus() {
       level++;
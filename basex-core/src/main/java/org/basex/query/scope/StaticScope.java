@@ -51,6 +51,14 @@ public abstract class StaticScope extends ExprInfo implements Scope {
     return compiled;
   }
 
+  /**
+   * Returns the documentation string.
+   * @return documentation (can be {@code null})
+   */
+  protected final String xqdoc() {
+    return doc != null ? Token.string(doc) : null;
+  }
+
   /**
    * Returns a map with all documentation tags found for this scope or {@code null} if
    * no documentation exists. The main description is flagged with the "description" key.
@@ -103,6 +103,28 @@ abstract class ContextModifier {
     for(final UserUpdates up : userUpdates.values()) up.apply();
     if(!userUpdates.isEmpty()) ctx.users.write();
 
+    // wait until databases whose files will be replaced are not accessed by snapshots anymore
+    final StringList list = new StringList();
+    for(final NameUpdates up : nameUpdates.values()) up.databases(list);
+    for(final DataUpdates up : dbUpdates.values()) {
+      if(up.optimizeAll()) list.add(up.data().meta.name);
+    }
+    final String[] names = list.finish();
+    ctx.datas.reserve(names);
+    try {
+      applyDatabases(qc);
+    } finally {
+      ctx.datas.unreserve(names);
+    }
+  }
+
+  /**
+   * Applies all database updates.
+   * @param qc query context
+   * @throws QueryException query exception
+   */
+  private void applyDatabases(final QueryContext qc) throws QueryException {
+    final Context ctx = qc.context;
     // apply initial updates based on database names
     for(final NameUpdates up : nameUpdates.values()) up.apply(true);
 
@@ -158,6 +158,17 @@ final class DataUpdates {
     return data;
   }
 
+  /**
+   * Indicates if the database files will be replaced (i.e., if all structures will be optimized).
+   * @return result of check
+   */
+  boolean optimizeAll() {
+    for(final DBUpdate update : dbUpdates) {
+      if(update instanceof DBOptimize && ((DBOptimize) update).all()) return true;
+    }
+    return false;
+  }
+
   /**
    * Applies all updates for this specific database.
    * @param qc query context
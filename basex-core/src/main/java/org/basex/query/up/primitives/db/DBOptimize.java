@@ -59,6 +59,14 @@ public final class DBOptimize extends DBUpdate {
   @Override
   public void prepare() { }
 
+  /**
+   * Indicates if all database structures will be optimized.
+   * @return result of check
+   */
+  public boolean all() {
+    return all;
+  }
+
   @Override
   public void apply() throws QueryException {
     // create new options, based on global defaults, and overwrite with database options
@@ -75,6 +83,7 @@ public final class DBOptimize extends DBUpdate {
     options.assignIfAbsent(MainOptions.SPLITSIZE, meta.splitsize);
     options.assignIfAbsent(MainOptions.UPDINDEX, meta.updindex);
     options.assignIfAbsent(MainOptions.AUTOOPTIMIZE, meta.autooptimize);
+    options.assignIfAbsent(MainOptions.COMPRESSION, meta.compression);
     options.assignTo(opts);
 
     // adopt options to database meta data
@@ -86,6 +95,8 @@ public final class DBOptimize extends DBUpdate {
     meta.updindex = opts.get(MainOptions.UPDINDEX);
     meta.autooptimize = opts.get(MainOptions.AUTOOPTIMIZE);
     meta.splitsize = opts.get(MainOptions.SPLITSIZE);
+    // compression can only be changed if the database is rebuilt
+    if(all) meta.compression = opts.get(MainOptions.COMPRESSION);
 
     // check if other indexing options have changed
     final int maxcats = opts.get(MainOptions.MAXCATS);
@@ -64,6 +64,16 @@ public abstract class ASTVisitor {
     return true;
   }
 
+  /**
+   * Notifies the visitor of a built-in function call.
+   * @param call function call
+   * @return if more expressions should be visited ({@code true} by default)
+   */
+  @SuppressWarnings("unused")
+  public boolean funcCall(final StandardFunc call) {
+    return true;
+  }
+
   /**
    * Notifies the visitor of a dynamic function call.
    * @param call function call
@@ -96,6 +106,15 @@ public abstract class ASTVisitor {
     return true;
   }
 
+  /**
+   * Notifies the visitor of an expression that accesses the index structures of a database.
+   * Overwritten by {@link MainModule}.
+   * @return if more expressions should be visited ({@code true} by default)
+   */
+  public boolean index() {
+    return true;
+  }
+
   /**
    * Notifies the visitor of an expression entering a focus. Overwritten by {@link MainModule}.
    */
@@ -211,7 +211,7 @@ public final class IndexInfo {
    * @return type of index that can be used; {@code null} otherwise
    */
   private boolean check(final IndexType type, final Step last) {
-    return db.data().meta.index(type) && (
+    return db.data().indexed(type) && (
       type == IndexType.FULLTEXT ? text :
       type == IndexType.TOKEN ? !text :
       type == IndexType.TEXT ? text :
@@ -214,6 +214,16 @@ public abstract class Collation {
    */
   public abstract int compare(byte[] string, byte[] compare);
 
+  /**
+   * Returns a binary collation key for the specified string. The byte-wise comparison of two keys
+   * yields the same result as {@link #compare(byte[], byte[])}.
+   * @param string string
+   * @return key, or {@code null} if keys are not supported by this collation
+   */
+  public byte[] key(@SuppressWarnings("unused") final byte[] string) {
+    return null;
+  }
+
   /**
    * Returns the start or end position of the specified substring.
    * @param string string
@@ -55,6 +55,14 @@ public final class ModuleLoader {
     }
   }
 
+  /**
+   * Indicates if no Java modules and archives have been loaded.
+   * @return result of check
+   */
+  public boolean isEmpty() {
+    return urls.isEmpty() && javaModules.isEmpty();
+  }
+
   /**
    * Adds a package from the repository or a Java class.
    * @param uri module uri
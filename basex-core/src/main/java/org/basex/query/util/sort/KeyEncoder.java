@@ -0,0 +1,197 @@
+package org.basex.query.util.sort;
+
+import java.math.*;
+
+import org.basex.query.*;
+import org.basex.query.util.collation.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.type.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * Encodes the sort keys of a record into a single normalized key. The comparison of two
+ * normalized keys ({@link #compare(long[], long[])}) yields the same result as the comparison of
+ * the original sort keys. The bytes of the encoded keys are packed into long values.
+ *
+ * Integers, doubles, floats, strings, dates and times can be encoded. Empty sequences are encoded
+ * as least or greatest values, and the bytes of descending keys are inverted. If a key cannot be
+ * encoded, or if it has a different type than the keys of the preceding records,
+ * no normalized key is returned, and the original keys must be compared.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class KeyEncoder {
+  /** Marker for empty sequences that are sorted first. */
+  private static final int LEAST = 0x01;
+  /** Marker for non-empty values. */
+  private static final int VALUE = 0x02;
+  /** Marker for empty sequences that are sorted last. */
+  private static final int GREATEST = 0x03;
+
+  /** Input info. */
+  private final InputInfo info;
+  /** Descending order. */
+  private final BoolList desc = new BoolList();
+  /** Empty sequences are sorted first. */
+  private final BoolList least = new BoolList();
+  /** Collations ({@code null}: codepoint collation). */
+  private Collation[] colls = {};
+  /** Types of the keys ({@code null}: type is still unknown). */
+  private Type[] types = {};
+
+  /** Key buffer. */
+  private final LongList key = new LongList();
+  /** Bytes that have not been added to the key buffer yet. */
+  private long bytes;
+  /** Number of pending bytes. */
+  private int pending;
+  /** Mask for inverting the bytes of descending keys. */
+  private int mask;
+
+  /**
+   * Constructor.
+   * @param info input info
+   */
+  public KeyEncoder(final InputInfo info) {
+    this.info = info;
+  }
+
+  /**
+   * Adds the definition of a sort key.
+   * @param dsc descending order
+   * @param lst empty sequences are sorted first
+   * @param coll collation ({@code null}: codepoint collation)
+   * @return self reference
+   */
+  public KeyEncoder add(final boolean dsc, final boolean lst, final Collation coll) {
+    desc.add(dsc);
+    least.add(lst);
+    colls = Array.add(colls, coll);
+    types = Array.add(types, null);
+    return this;
+  }
+
+  /**
+   * Encodes the sort keys of a record. The keys are stored at the beginning of the record.
+   * @param record record (empty sequences are represented by {@code null})
+   * @return normalized key, or {@code null} if the keys cannot be encoded
+   * @throws QueryException query exception
+   */
+  public long[] encode(final Value[] record) throws QueryException {
+    key.reset();
+    bytes = 0;
+    pending = 0;
+    final int kl = types.length;
+    for(int k = 0; k < kl; k++) {
+      if(!encode((Item) record[k], k)) return null;
+    }
+    // pad last bytes with zeros (the encoded keys are prefix-free)
+    if(pending > 0) key.add(bytes << (8 - pending << 3));
+    return key.toArray();
+  }
+
+  /**
+   * Compares two normalized keys.
+   * @param key1 first key
+   * @param key2 second key
+   * @return result of comparison
+   */
+  public static int compare(final long[] key1, final long[] key2) {
+    final int l1 = key1.length, l2 = key2.length, l = Math.min(l1, l2);
+    for(int i = 0; i < l; i++) {
+      final int c = Long.compareUnsigned(key1[i], key2[i]);
+      if(c != 0) return c;
+    }
+    return l1 - l2;
+  }
+
+  /**
+   * Encodes a single sort key.
+   * @param item item (can be {@code null})
+   * @param k index of the key
+   * @return success flag
+   * @throws QueryException query exception
+   */
+  private boolean encode(final Item item, final int k) throws QueryException {
+    mask = desc.get(k) ? 0xFF : 0;
+    if(item == null || item == Dbl.NAN || item == Flt.NAN) {
+      write(least.get(k) ? LEAST : GREATEST);
+      return true;
+    }
+
+    // all values of a key must have the same type
+    final Type type = type(item);
+    if(type == null) return false;
+    if(types[k] == null) types[k] = type;
+    else if(types[k] != type) return false;
+
+    write(VALUE);
+    if(type == AtomType.ITR) {
+      write(((Int) item).itr() ^ Long.MIN_VALUE);
+    } else if(type == AtomType.DBL || type == AtomType.FLT) {
+      final double d = item.dbl(info);
+      if(Double.isNaN(d)) return false;
+      // positive and negative zero are equal
+      final long l = Double.doubleToLongBits(d == 0 ? 0 : d);
+      write(l < 0 ? ~l : l ^ Long.MIN_VALUE);
+    } else if(type == AtomType.STR) {
+      final Collation coll = colls[k];
+      final byte[] string = coll == null ? item.string(info) : coll.key(item.string(info));
+      if(string == null) return false;
+      // escape 0 bytes, terminate string with two 0 bytes
+      for(final byte b : string) {
+        write(b);
+        if(b == 0) write(0xFF);
+      }
+      write(0);
+      write(0);
+    } else {
+      final BigDecimal sec = ((ADate) item).toSeconds();
+      final BigInteger floor = sec.setScale(0, RoundingMode.FLOOR).toBigInteger();
+      // reject values that exceed the supported range or precision
+      if(floor.bitLength() > 63 || sec.stripTrailingZeros().scale() > 9) return false;
+      write(floor.longValue() ^ Long.MIN_VALUE);
+      final int nano = sec.subtract(new BigDecimal(floor)).movePointRight(9).intValue();
+      for(int s = 24; s >= 0; s -= 8) write(nano >>> s);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the key type of an item.
+   * @param item item
+   * @return type, or {@code null} if the item cannot be encoded
+   */
+  private static Type type(final Item item) {
+    if(item instanceof Int) return AtomType.ITR;
+    if(item instanceof Dbl) return AtomType.DBL;
+    if(item instanceof Flt) return AtomType.FLT;
+    if(item.type.isStringOrUntyped()) return AtomType.STR;
+    if(item instanceof Dtm || item instanceof Dat || item instanceof Tim) return item.type;
+    return null;
+  }
+
+  /**
+   * Writes a long value.
+   * @param value value
+   */
+  private void write(final long value) {
+    for(int s = 56; s >= 0; s -= 8) write((int) (value >>> s));
+  }
+
+  /**
+   * Writes a byte. The byte is inverted if the current key is sorted in descending order.
+   * @param b byte
+   */
+  private void write(final int b) {
+    bytes = bytes << 8 | (b ^ mask) & 0xFF;
+    if(++pending == 8) {
+      key.add(bytes);
+      bytes = 0;
+      pending = 0;
+    }
+  }
+}
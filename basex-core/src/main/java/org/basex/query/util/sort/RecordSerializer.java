@@ -0,0 +1,169 @@
+package org.basex.query.util.sort;
+
+import static org.basex.util.Token.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.data.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.query.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.type.*;
+import org.basex.util.*;
+
+/**
+ * Writes records (arrays of values) to temporary files and reads them back.
+ *
+ * Atomic items of common types and database nodes are serialized. All other items
+ * (function items, fragments, etc.) are referenced and remain in main memory.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class RecordSerializer {
+  /** Item type: reference to an item in main memory. */
+  private static final int REF = 0;
+  /** Item type: database node. */
+  private static final int NODE = 1;
+  /** Item type: string. */
+  private static final int STR = 2;
+  /** Item type: untyped atomic value. */
+  private static final int ATM = 3;
+  /** Item type: integer. */
+  private static final int INT = 4;
+  /** Item type: double. */
+  private static final int DBL = 5;
+
+  /** Query context. */
+  private final QueryContext qc;
+  /** Input info. */
+  private final InputInfo info;
+  /** Databases of serialized nodes. */
+  private final ArrayList<Data> datas = new ArrayList<>();
+  /** Items that have not been serialized. */
+  private final ArrayList<Item> refs = new ArrayList<>();
+
+  /**
+   * Constructor.
+   * @param qc query context
+   * @param info input info
+   */
+  public RecordSerializer(final QueryContext qc, final InputInfo info) {
+    this.qc = qc;
+    this.info = info;
+  }
+
+  /**
+   * Writes a record.
+   * @param out output stream
+   * @param record record (values can be {@code null})
+   * @throws IOException I/O exception
+   */
+  public void write(final DataOutput out, final Value[] record) throws IOException {
+    out.writeNum(record.length);
+    for(final Value value : record) write(out, value);
+  }
+
+  /**
+   * Reads a record.
+   * @param in input stream
+   * @return record
+   * @throws IOException I/O exception
+   */
+  public Value[] read(final DataInput in) throws IOException {
+    final int rl = in.readNum();
+    final Value[] record = new Value[rl];
+    for(int r = 0; r < rl; r++) record[r] = readValue(in);
+    return record;
+  }
+
+  /**
+   * Writes a value.
+   * @param out output stream
+   * @param value value (can be {@code null})
+   * @throws IOException I/O exception
+   */
+  private void write(final DataOutput out, final Value value) throws IOException {
+    if(value == null) {
+      out.writeNum(0);
+      return;
+    }
+    final long vs = value.size();
+    out.writeNum((int) vs + 1);
+    for(long v = 0; v < vs; v++) write(out, value.itemAt(v));
+  }
+
+  /**
+   * Writes an item.
+   * @param out output stream
+   * @param item item
+   * @throws IOException I/O exception
+   */
+  private void write(final DataOutput out, final Item item) throws IOException {
+    final Class<?> clazz = item.getClass();
+    if(clazz == DBNode.class && item.score() == 0) {
+      final DBNode node = (DBNode) item;
+      int d = datas.indexOf(node.data());
+      if(d == -1) {
+        d = datas.size();
+        datas.add(node.data());
+      }
+      out.write1(NODE);
+      out.writeNum(d);
+      out.writeNum(node.pre());
+    } else if(clazz == Str.class && item.type == AtomType.STR) {
+      out.write1(STR);
+      out.writeToken(((Str) item).string());
+    } else if(clazz == Atm.class) {
+      out.write1(ATM);
+      out.writeToken(((Atm) item).string(info));
+    } else if(clazz == Int.class) {
+      out.write1(INT);
+      out.writeToken(token(((Int) item).itr()));
+      out.writeNum(((AtomType) item.type).ordinal());
+    } else if(clazz == Dbl.class) {
+      out.write1(DBL);
+      out.writeDouble(((Dbl) item).dbl());
+    } else {
+      out.write1(REF);
+      out.writeNum(refs.size());
+      refs.add(item);
+    }
+  }
+
+  /**
+   * Reads a value.
+   * @param in input stream
+   * @return value (can be {@code null})
+   * @throws IOException I/O exception
+   */
+  private Value readValue(final DataInput in) throws IOException {
+    final int vs = in.readNum() - 1;
+    if(vs == -1) return null;
+    if(vs == 1) return readItem(in);
+    final ValueBuilder vb = new ValueBuilder(qc);
+    for(int v = 0; v < vs; v++) vb.add(readItem(in));
+    return vb.value();
+  }
+
+  /**
+   * Reads an item.
+   * @param in input stream
+   * @return item
+   * @throws IOException I/O exception
+   */
+  private Item readItem(final DataInput in) throws IOException {
+    switch(in.read()) {
+      case NODE: return new DBNode(datas.get(in.readNum()), in.readNum());
+      case STR:  return Str.get(in.readToken());
+      case ATM:  return new Atm(in.readToken());
+      case INT:  return Int.get(toLong(in.readToken()), AtomType.values()[in.readNum()]);
+      case DBL:  return Dbl.get(in.readDouble());
+      default:   return refs.get(in.readNum());
+    }
+  }
+}
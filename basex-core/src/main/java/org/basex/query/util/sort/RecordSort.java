@@ -0,0 +1,512 @@
+package org.basex.query.util.sort;
+
+import static org.basex.query.QueryError.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.query.*;
+import org.basex.query.value.*;
+import org.basex.util.*;
+
+/**
+ * Sorts records (arrays of values) with a custom comparator. The sort is stable.
+ *
+ * Records are buffered in main memory until the number specified by {@link MainOptions#SORTLIMIT}
+ * is reached. The buffered records are then sorted and written to a temporary file (run).
+ * When the sorted records are requested, all runs are merged lazily.
+ *
+ * If only the smallest records are requested (top-k), a bounded heap is used instead, which
+ * contains the smallest records that have been added so far.
+ *
+ * If a {@link KeyEncoder} is specified, and if the keys of all buffered records can be encoded,
+ * the normalized keys are compared instead of the records, and large numbers of records are
+ * sorted in parallel.
+ *
+ * Records are written to the runs with a {@link RecordSerializer}.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class RecordSort {
+  /** Maximum number of runs that are merged at once. */
+  private static final int RUNS = 64;
+  /** Minimum number of records with normalized keys that are sorted in parallel. */
+  private static final int PARALLEL = 1 << 13;
+
+  /** Comparator. */
+  private final Comparator<Value[]> comp;
+  /** Query context. */
+  private final QueryContext qc;
+  /** Input info. */
+  private final InputInfo info;
+  /** Maximum number of buffered records ({@code 0}: no limit). */
+  private final int limit;
+  /** Maximum number of returned records. */
+  private final int max;
+
+  /** Buffered records. */
+  private Value[][] records = new Value[Array.CAPACITY][];
+  /** Number of buffered records. */
+  private int size;
+  /** Number of records that have been written to runs. */
+  private int spilled;
+  /** Sorted runs ({@code null} if no records have been written to disk). */
+  private ArrayList<Run> runs;
+  /** Serializer for the records of the runs. */
+  private final RecordSerializer serializer;
+
+  /** Positions of the buffered records, largest record first ({@code null}: no top-k sort). */
+  private MinHeap<Integer, Integer> top;
+  /** Indexes of the buffered records ({@code null}: no top-k sort). */
+  private int[] ids;
+  /** Number of added records. */
+  private int count;
+
+  /** Key encoder ({@code null}: records are compared with the comparator). */
+  private final KeyEncoder encoder;
+  /** Normalized keys of the buffered records ({@code null}: keys are not available). */
+  private long[][] keys;
+  /** First values of the normalized keys. */
+  private long[] heads;
+
+  /** Order of the buffered records ({@code null} if records have not been sorted yet). */
+  private int[] order;
+  /** Current position in the buffered records. */
+  private int pos;
+  /** Merged runs. */
+  private MinHeap<Run, Run> heap;
+  /** Current record. */
+  private Value[] record;
+  /** Index of the current record. */
+  private int index;
+
+  /**
+   * Constructor.
+   * @param comp record comparator (may throw {@link QueryRTException})
+   * @param qc query context
+   * @param info input info
+   */
+  public RecordSort(final Comparator<Value[]> comp, final QueryContext qc, final InputInfo info) {
+    this(comp, qc, info, Long.MAX_VALUE, null);
+  }
+
+  /**
+   * Constructor.
+   * @param comp record comparator (may throw {@link QueryRTException})
+   * @param qc query context
+   * @param info input info
+   * @param max maximum number of records to be returned ({@link Long#MAX_VALUE}: all records)
+   * @param encoder key encoder (can be {@code null})
+   */
+  public RecordSort(final Comparator<Value[]> comp, final QueryContext qc, final InputInfo info,
+      final long max, final KeyEncoder encoder) {
+    this.comp = comp;
+    this.qc = qc;
+    this.info = info;
+    this.encoder = encoder;
+    this.max = (int) Math.min(max, Integer.MAX_VALUE);
+    limit = Math.max(0, qc.context.options.get(MainOptions.SORTLIMIT));
+    serializer = new RecordSerializer(qc, info);
+
+    // top-k sort: keep bounded number of records in main memory
+    if(max < Integer.MAX_VALUE && (limit == 0 || max <= limit)) {
+      ids = new int[records.length];
+      top = new MinHeap<>((o1, o2) -> {
+        final int c = comp.compare(records[o2], records[o1]);
+        return c != 0 ? c : ids[o2] - ids[o1];
+      });
+    } else if(encoder != null) {
+      keys = new long[records.length][];
+      heads = new long[records.length];
+    }
+  }
+
+  /**
+   * Adds a record.
+   * @param rec record
+   * @throws QueryException query exception
+   */
+  public void add(final Value[] rec) throws QueryException {
+    if(top != null) {
+      select(rec);
+    } else {
+      if(size == records.length) records = Array.copy(records, new Value[Array.newSize(size)][]);
+      if(keys != null) {
+        final long[] key = encoder.encode(rec);
+        if(key == null) {
+          keys = null;
+        } else {
+          if(size == keys.length) {
+            keys = Array.copy(keys, new long[records.length][]);
+            heads = Arrays.copyOf(heads, records.length);
+          }
+          keys[size] = key;
+          heads[size] = key[0];
+        }
+      }
+      records[size++] = rec;
+      if(size == limit) spill();
+    }
+    count++;
+  }
+
+  /**
+   * Adds a record to the heap if it is one of the smallest records.
+   * @param rec record
+   * @throws QueryException query exception
+   */
+  private void select(final Value[] rec) throws QueryException {
+    try {
+      if(size < max) {
+        if(size == records.length) {
+          final int s = Array.newSize(size);
+          records = Array.copy(records, new Value[s][]);
+          ids = Arrays.copyOf(ids, s);
+        }
+        records[size] = rec;
+        ids[size] = count;
+        top.insert(size, size);
+        size++;
+      } else if(max > 0) {
+        // replace the largest record (if records are equal, the first one is retained)
+        final int o = top.minValue();
+        if(comp.compare(rec, records[o]) < 0) {
+          top.removeMin();
+          records[o] = rec;
+          ids[o] = count;
+          top.insert(o, o);
+        }
+      }
+    } catch(final QueryRTException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  /**
+   * Moves to the next record in sorted order. The records are sorted when this function is
+   * called for the first time.
+   * @return {@code true} if another record exists
+   * @throws QueryException query exception
+   */
+  public boolean next() throws QueryException {
+    if(order == null) finish();
+
+    if(heap == null) {
+      if(pos == size) return false;
+      final int o = order[pos++];
+      index = ids != null ? ids[o] : o;
+      record = records[o];
+      // free the space occupied by the record
+      records[o] = null;
+      return true;
+    }
+
+    if(heap.isEmpty()) return false;
+    try {
+      final Run run = heap.removeMin();
+      record = run.record;
+      index = run.index;
+      if(run.next()) heap.insert(run, run);
+    } catch(final QueryRTException ex) {
+      throw ex.getCause();
+    }
+    return true;
+  }
+
+  /**
+   * Returns the current record.
+   * @return record
+   */
+  public Value[] record() {
+    return record;
+  }
+
+  /**
+   * Returns the index of the current record (i.e., its position in the order of insertion).
+   * @return index
+   */
+  public int index() {
+    return index;
+  }
+
+  /**
+   * Sorts all records and returns their indexes in sorted order.
+   * @return indexes
+   * @throws QueryException query exception
+   */
+  public int[] indexes() throws QueryException {
+    final int[] indexes = new int[spilled + size];
+    for(int i = 0; next(); i++) indexes[i] = index;
+    return indexes;
+  }
+
+  /**
+   * Sorts the buffered records and prepares the merge of all runs.
+   * @throws QueryException query exception
+   */
+  private void finish() throws QueryException {
+    if(top != null) {
+      // heap returns the largest record first
+      order = new int[size];
+      try {
+        for(int o = size; --o >= 0;) order[o] = top.removeMin();
+      } catch(final QueryRTException ex) {
+        throw ex.getCause();
+      }
+      return;
+    }
+    if(runs == null) {
+      order = sort();
+      return;
+    }
+    if(size > 0) spill();
+    order = new int[0];
+    heap = merge(runs);
+  }
+
+  /**
+   * Returns a heap for merging the specified runs.
+   * @param rns runs
+   * @return heap
+   * @throws QueryException query exception
+   */
+  private MinHeap<Run, Run> merge(final ArrayList<Run> rns) throws QueryException {
+    final MinHeap<Run, Run> hp = new MinHeap<>(rns.size(), (r1, r2) -> {
+      final int c = comp.compare(r1.record, r2.record);
+      return c != 0 ? c : r1.index - r2.index;
+    });
+    try {
+      for(final Run run : rns) {
+        if(run.next()) hp.insert(run, run);
+      }
+    } catch(final QueryRTException ex) {
+      throw ex.getCause();
+    }
+    return hp;
+  }
+
+  /**
+   * Sorts the buffered records and writes them to a new run.
+   * @throws QueryException query exception
+   */
+  private void spill() throws QueryException {
+    final int[] ord = sort();
+    if(runs == null) runs = new ArrayList<>();
+    final SortFiles files = qc.resources.index(SortFiles.class);
+    try {
+      // limit number of runs (and open files) by merging existing runs
+      if(runs.size() == RUNS) {
+        final MinHeap<Run, Run> hp = merge(runs);
+        final IOFile file = files.create();
+        try(DataOutput out = new DataOutput(file)) {
+          out.writeNum(spilled);
+          while(!hp.isEmpty()) {
+            qc.checkStop();
+            final Run run = hp.removeMin();
+            write(out, run.index, run.record);
+            if(run.next()) hp.insert(run, run);
+          }
+        } catch(final QueryRTException ex) {
+          throw ex.getCause();
+        }
+        runs.clear();
+        runs.add(new Run(file, files));
+      }
+
+      final IOFile file = files.create();
+      try(DataOutput out = new DataOutput(file)) {
+        out.writeNum(size);
+        for(final int o : ord) {
+          qc.checkStop();
+          write(out, spilled + o, records[o]);
+          records[o] = null;
+        }
+      }
+      runs.add(new Run(file, files));
+    } catch(final IOException ex) {
+      throw IOERR_X.get(info, ex);
+    }
+    spilled += size;
+    size = 0;
+  }
+
+  /**
+   * Sorts the buffered records.
+   * @return order of the records
+   * @throws QueryException query exception
+   */
+  private int[] sort() throws QueryException {
+    final int[] ord = new int[size];
+    for(int o = 0; o < size; o++) ord[o] = o;
+    try {
+      final int[] tmp = new int[size];
+      if(keys != null && size >= PARALLEL) {
+        // sort in parallel with the shared worker threads
+        qc.context.jobs.workers.invoke(new Sort(ord, tmp, 0, size));
+      } else {
+        sort(ord, tmp, 0, size);
+      }
+    } catch(final QueryRTException ex) {
+      throw ex.getCause();
+    }
+    if(keys != null) Arrays.fill(keys, 0, size, null);
+    return ord;
+  }
+
+  /**
+   * Stable merge sort of the specified range. If normalized keys are compared,
+   * large ranges are sorted in parallel.
+   * @param ord order
+   * @param tmp temporary array
+   * @param from first position
+   * @param to position after the last entry
+   */
+  private void sort(final int[] ord, final int[] tmp, final int from, final int to) {
+    if(to - from < 8) {
+      // insertion sort
+      for(int i = from + 1; i < to; i++) {
+        final int o = ord[i];
+        int j = i;
+        for(; j > from && compare(ord[j - 1], o) > 0; j--) ord[j] = ord[j - 1];
+        ord[j] = o;
+      }
+      return;
+    }
+    final int mid = from + to >>> 1;
+    if(keys != null && to - from >= PARALLEL) {
+      ForkJoinTask.invokeAll(new Sort(ord, tmp, from, mid), new Sort(ord, tmp, mid, to));
+    } else {
+      if(keys == null) qc.checkStop();
+      sort(ord, tmp, from, mid);
+      sort(ord, tmp, mid, to);
+    }
+    // skip merge if both ranges are already in order
+    if(compare(ord[mid - 1], ord[mid]) <= 0) return;
+
+    System.arraycopy(ord, from, tmp, from, to - from);
+    for(int i = from, l = from, r = mid; i < to; i++) {
+      ord[i] = r == to || l < mid && compare(tmp[l], tmp[r]) <= 0 ? tmp[l++] : tmp[r++];
+    }
+  }
+
+  /**
+   * Compares two buffered records.
+   * @param o1 position of the first record
+   * @param o2 position of the second record
+   * @return result of comparison
+   */
+  private int compare(final int o1, final int o2) {
+    if(keys != null) {
+      final int c = Long.compareUnsigned(heads[o1], heads[o2]);
+      return c != 0 ? c : KeyEncoder.compare(keys[o1], keys[o2]);
+    }
+    return comp.compare(records[o1], records[o2]);
+  }
+
+  /**
+   * Writes a record.
+   * @param out output stream
+   * @param i index of the record
+   * @param rec record
+   * @throws IOException I/O exception
+   */
+  private void write(final DataOutput out, final int i, final Value[] rec) throws IOException {
+    out.writeNum(i);
+    serializer.write(out, rec);
+  }
+
+  /**
+   * Parallel sort of a range of records with normalized keys.
+   */
+  private final class Sort extends RecursiveAction {
+    /** Serial version UID. */
+    private static final long serialVersionUID = 1L;
+
+    /** Order. */
+    private final int[] ord;
+    /** Temporary array. */
+    private final int[] tmp;
+    /** First position. */
+    private final int from;
+    /** Position after the last entry. */
+    private final int to;
+
+    /**
+     * Constructor.
+     * @param ord order
+     * @param tmp temporary array
+     * @param from first position
+     * @param to position after the last entry
+     */
+    private Sort(final int[] ord, final int[] tmp, final int from, final int to) {
+      this.ord = ord;
+      this.tmp = tmp;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      sort(ord, tmp, from, to);
+    }
+  }
+
+  /**
+   * Sorted run, stored in a temporary file.
+   */
+  private final class Run {
+    /** File. */
+    private final IOFile file;
+    /** Temporary files. */
+    private final SortFiles files;
+    /** Input stream ({@code null} if the run has not been opened yet, or if it is exhausted). */
+    private DataInput in;
+    /** Number of remaining records. */
+    private int remaining = -1;
+    /** Current record. */
+    private Value[] record;
+    /** Index of the current record. */
+    private int index;
+
+    /**
+     * Constructor.
+     * @param file file
+     * @param files temporary files
+     */
+    private Run(final IOFile file, final SortFiles files) {
+      this.file = file;
+      this.files = files;
+    }
+
+    /**
+     * Reads the next record.
+     * @return {@code true} if a record was read
+     * @throws QueryRTException query exception
+     */
+    private boolean next() {
+      try {
+        if(remaining == -1) {
+          in = new DataInput(file);
+          remaining = in.readNum();
+        }
+        if(remaining == 0) {
+          in.close();
+          files.delete(file);
+          return false;
+        }
+        remaining--;
+        index = in.readNum();
+        record = serializer.read(in);
+        return true;
+      } catch(final IOException ex) {
+        throw new QueryRTException(IOERR_X.get(info, ex));
+      }
+    }
+  }
+}
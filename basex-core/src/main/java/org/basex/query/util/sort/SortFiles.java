@@ -0,0 +1,46 @@
+package org.basex.query.util.sort;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.io.*;
+import org.basex.query.*;
+import org.basex.util.*;
+
+/**
+ * Temporary files created by sort and group operations. Remaining files will be deleted
+ * after the query has been evaluated.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class SortFiles implements QueryResource {
+  /** Temporary files. */
+  private final Set<IOFile> files = new HashSet<>();
+
+  /**
+   * Creates a new temporary file.
+   * @return file
+   * @throws IOException I/O exception
+   */
+  public synchronized IOFile create() throws IOException {
+    final IOFile file = new IOFile(File.createTempFile(Prop.NAME + "-sort-", IO.TMPSUFFIX));
+    files.add(file);
+    return file;
+  }
+
+  /**
+   * Deletes a temporary file.
+   * @param file file
+   */
+  public synchronized void delete(final IOFile file) {
+    files.remove(file);
+    file.delete();
+  }
+
+  @Override
+  public synchronized void close() {
+    for(final IOFile file : files) file.delete();
+    files.clear();
+  }
+}
@@ -0,0 +1,2 @@
+/** Query processor, sort algorithms. */
+package org.basex.query.util.sort;
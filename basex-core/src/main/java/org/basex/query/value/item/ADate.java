@@ -372,8 +372,7 @@ public abstract class ADate extends ADateDur {
   public final boolean eq(final Item item, final Collation coll, final StaticContext sc,
       final InputInfo info) throws QueryException {
     final ADate d = (ADate) (item instanceof ADate ? item : type.cast(item, null, null, info));
-    final BigDecimal d1 = seconds().add(days().multiply(DAYSECONDS));
-    final BigDecimal d2 = d.seconds().add(d.days().multiply(DAYSECONDS));
+    final BigDecimal d1 = toSeconds(), d2 = d.toSeconds();
     return d1.compareTo(d2) == 0;
   }
 
@@ -384,15 +383,14 @@ public abstract class ADate extends ADateDur {
 
   @Override
   public final int hash(final InputInfo info) {
-    return seconds().add(days().multiply(DAYSECONDS)).intValue();
+    return toSeconds().intValue();
   }
 
   @Override
   public int diff(final Item item, final Collation coll, final InputInfo info)
       throws QueryException {
     final ADate d = (ADate) (item instanceof ADate ? item : type.cast(item, null, null, info));
-    final BigDecimal d1 = seconds().add(days().multiply(DAYSECONDS));
-    final BigDecimal d2 = d.seconds().add(d.days().multiply(DAYSECONDS));
+    final BigDecimal d1 = toSeconds(), d2 = d.toSeconds();
     return d1.compareTo(d2);
   }
 
@@ -409,6 +407,14 @@ public abstract class ADate extends ADateDur {
       tz == Short.MAX_VALUE ? Integer.MIN_VALUE : tz);
   }
 
+  /**
+   * Returns the date and time in seconds. The result is used for comparisons.
+   * @return seconds
+   */
+  public final BigDecimal toSeconds() {
+    return seconds().add(days().multiply(DAYSECONDS));
+  }
+
   /**
    * Returns the date in seconds.
    * @return seconds
@@ -93,11 +93,11 @@ public class DBNode extends ANode {
   }
 
   /**
-   * Sets the node type.
+   * Assigns a pre value and sets the node type.
    * @param p pre value
    * @param k node kind
    */
-  private void set(final int p, final int k) {
+  public final void set(final int p, final int k) {
     type = type(k);
     parent = null;
     value = null;
@@ -295,6 +295,14 @@ public class DBNode extends ANode {
         return n;
       }
       @Override
+      public int next(final int[] pres) {
+        final int pl = pres.length, last = pre + size;
+        int p = 0, c = curr;
+        while(p < pl && c < last) pres[p++] = c++;
+        curr = c;
+        return p;
+      }
+      @Override
       public ANode get(final long i) {
         final DBNode n = node;
         n.set(pre + 1 + (int) i, Data.ATTR);
@@ -321,6 +329,18 @@ public class DBNode extends ANode {
         curr += d.size(curr, kind);
         return node;
       }
+      @Override
+      public int next(final int[] pres) {
+        final Data d = data;
+        final int pl = pres.length, l = last;
+        int p = 0, c = curr;
+        while(p < pl && c < l) {
+          pres[p++] = c;
+          c += d.size(c, d.kind(c));
+        }
+        curr = c;
+        return p;
+      }
     };
   }
 
@@ -339,6 +359,18 @@ public class DBNode extends ANode {
         curr += data.attSize(curr, kind);
         return node;
       }
+      @Override
+      public int next(final int[] pres) {
+        final Data d = data;
+        final int pl = pres.length, l = last;
+        int p = 0, c = curr;
+        while(p < pl && c < l) {
+          pres[p++] = c;
+          c += d.attSize(c, d.kind(c));
+        }
+        curr = c;
+        return p;
+      }
     };
   }
 
@@ -357,6 +389,18 @@ public class DBNode extends ANode {
         curr += data.attSize(curr, k);
         return node;
       }
+      @Override
+      public int next(final int[] pres) {
+        final Data d = data;
+        final int pl = pres.length, l = last;
+        int p = 0, c = curr;
+        while(p < pl && c < l) {
+          pres[p++] = c;
+          c += d.attSize(c, d.kind(c));
+        }
+        curr = c;
+        return p;
+      }
     };
   }
 
@@ -368,6 +412,29 @@ public class DBNode extends ANode {
 
       @Override
       public DBNode next() {
+        if(curr == last()) return null;
+        kind = data.kind(curr);
+        node.set(curr, kind);
+        curr += data.attSize(curr, kind);
+        return node;
+      }
+      @Override
+      public int next(final int[] pres) {
+        final Data d = data;
+        final int pl = pres.length, l = last();
+        int p = 0, c = curr;
+        while(p < pl && c < l) {
+          pres[p++] = c;
+          c += d.attSize(c, d.kind(c));
+        }
+        curr = c;
+        return p;
+      }
+      /**
+       * Returns the pre value after the last node that needs to be scanned.
+       * @return pre value
+       */
+      private int last() {
         // initialize iterator: find last node that needs to be scanned
         if(size == -1) {
           if(data.meta.ndocs > 1) {
@@ -378,12 +445,7 @@ public class DBNode extends ANode {
             size = data.meta.size;
           }
         }
-
-        if(curr == size) return null;
-        kind = data.kind(curr);
-        node.set(curr, kind);
-        curr += data.attSize(curr, kind);
-        return node;
+        return size;
       }
     };
   }
@@ -405,6 +467,18 @@ public class DBNode extends ANode {
         curr += data.size(curr, kind);
         return node;
       }
+      @Override
+      public int next(final int[] pres) {
+        final Data d = data;
+        final int pl = pres.length, l = sz;
+        int p = 0, c = curr;
+        while(p < pl && c < l) {
+          pres[p++] = c;
+          c += d.size(c, d.kind(c));
+        }
+        curr = c;
+        return p;
+      }
     };
   }
 
@@ -48,6 +48,18 @@ public final class QueryStack {
     end = s + size;
   }
 
+  /**
+   * Enters a new stack frame and assigns the variables of the current frame of another stack.
+   * @param qs stack
+   * @return stack pointer of the old frame
+   */
+  public int enterFrame(final QueryStack qs) {
+    final int size = qs.end - qs.start, frame = enterFrame(size);
+    System.arraycopy(qs.stack, qs.start, stack, start, size);
+    System.arraycopy(qs.vars, qs.start, vars, start, size);
+    return frame;
+  }
+
   /**
    * Exits a stack frame and makes all bound variables eligible for garbage collection.
    * @param frame frame pointer of the underlying stack frame
@@ -3,6 +3,8 @@ package org.basex.query.var;
 import static org.basex.query.QueryError.*;
 import static org.basex.query.QueryText.*;
 
+import java.util.*;
+
 import org.basex.query.*;
 import org.basex.query.ann.*;
 import org.basex.query.expr.*;
@@ -26,8 +28,11 @@ public final class StaticVar extends StaticDecl {
   /** Flag for lazy evaluation. */
   private final boolean lazy;
 
+  /** Threads that evaluate the bound expression (used to detect circular references). */
+  private final ArrayList<Thread> threads = new ArrayList<>(1);
+
   /** Bound value. */
-  Value value;
+  volatile Value value;
 
   /**
    * Constructor for a variable declared in a query.
@@ -74,6 +79,20 @@ public final class StaticVar extends StaticDecl {
     if(expr instanceof Value || !(lazy || expr.has(Flag.NDT))) cc.replaceWith(expr, value(cc.qc));
   }
 
+  /**
+   * Declares a copy of this variable in the query of the specified compilation context.
+   * The bound expression must be copied after all declarations have been copied.
+   * @param cc compilation context
+   * @return copied variable
+   * @throws QueryException query exception
+   */
+  public StaticVar copy(final CompileContext cc) throws QueryException {
+    final Var var = new Var(name, declType, false, cc.qc, sc, info);
+    final StaticVar sv = cc.qc.vars.declare(var, anns, null, external, xqdoc(), new VarScope(sc));
+    cc.copy(this, sv);
+    return sv;
+  }
+
   /**
    * Evaluates this variable.
    * @param qc query context
@@ -89,18 +108,31 @@ public final class StaticVar extends StaticDecl {
       if(expr == null) throw VAREMPTY_X.get(info, name());
     }
 
-    if(value != null) return value;
-    dontEnter = true;
+    final Value v = value;
+    if(v != null) return v;
+
+    // the variable may be evaluated by several threads in parallel
+    final Thread thread = Thread.currentThread();
+    synchronized(threads) {
+      if(threads.contains(thread)) throw CIRCVAR_X.get(info, name());
+      threads.add(thread);
+    }
 
     final int fp = vs.enter(qc);
     try {
-      return bindValue(expr.value(qc), qc);
+      final Value val = expr.value(qc);
+      synchronized(threads) {
+        // return the value that has been bound first
+        return value != null ? value : bindValue(val, qc);
+      }
     } catch(final QueryException qe) {
       if(lazy) qe.notCatchable();
       throw qe;
     } finally {
       VarScope.exit(fp, qc);
-      dontEnter = false;
+      synchronized(threads) {
+        threads.remove(thread);
+      }
     }
   }
 
@@ -0,0 +1,212 @@
+package org.basex.server;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.core.*;
+import org.basex.util.*;
+
+/**
+ * This class dispatches the requests of client sessions. Idle sessions are registered with a
+ * selector and do not occupy any thread. As soon as new input is available, the session is
+ * passed on to a pool of worker threads, which processes all pending requests and returns the
+ * session to the selector. Timeouts of all sessions are managed by a single shared timer.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class ClientDispatcher extends Thread {
+  /** Interval for checking if clients have stopped accepting data (ms). */
+  private static final long STALLED = 1000;
+
+  /** Sessions that are waiting for authentication, and their timeout tasks (may be null). */
+  private final HashMap<ClientListener, TimerTask> authorizing = new HashMap<>();
+  /** Sessions to be registered with the selector. */
+  private final ConcurrentLinkedQueue<ClientListener> idle = new ConcurrentLinkedQueue<>();
+  /** Shared timer. */
+  private final Timer timer = new Timer(true);
+  /**
+   * Worker threads. The pool is deliberately unbounded: threads are only occupied by sessions
+   * that process requests, so their number never exceeds the number of connected sessions and
+   * multiplexed requests (each of which had its own thread before). A bounded pool could block
+   * sessions whose requests wait for other requests, e.g. for releasing locks.
+   * Idle threads are terminated after 60 seconds.
+   */
+  private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+    final Thread thread = new Thread(r);
+    thread.setDaemon(true);
+    return thread;
+  });
+  /** Selector for idle sessions. */
+  private final Selector selector;
+  /** Database context. */
+  private final Context context;
+  /** Indicates if the dispatcher is running. */
+  private volatile boolean running = true;
+
+  /**
+   * Constructor.
+   * @param context database context
+   * @throws IOException I/O exception
+   */
+  public ClientDispatcher(final Context context) throws IOException {
+    this.context = context;
+    selector = Selector.open();
+    setDaemon(true);
+
+    // close connections of clients that have not accepted any data within the keep-alive time
+    timer.schedule(new TimerTask() {
+      @Override
+      public void run() {
+        final long ka = context.soptions.get(StaticOptions.KEEPALIVE) * 1000L;
+        if(ka == 0) return;
+        final long ms = System.currentTimeMillis();
+        for(final ClientListener cl : context.sessions) {
+          if(cl.stalled(ms, ka)) cl.abort();
+        }
+      }
+    }, STALLED, STALLED);
+  }
+
+  /**
+   * Accepts a new client connection and starts the authentication.
+   * @param channel socket channel
+   * @throws IOException I/O exception
+   */
+  public void accept(final SocketChannel channel) throws IOException {
+    channel.socket().setTcpNoDelay(true);
+
+    // drop inactive connections
+    final long ka = context.soptions.get(StaticOptions.KEEPALIVE) * 1000L;
+    if(ka > 0) {
+      final long ms = System.currentTimeMillis();
+      for(final ClientListener cs : context.sessions) {
+        if(ms - cs.last > ka) cs.close();
+      }
+    }
+
+    // create client listener, stop authentication after timeout
+    final ClientListener cl = new ClientListener(channel, context, this);
+    final TimerTask task = ka > 0 ? new TimerTask() {
+      @Override
+      public void run() {
+        cl.close();
+      }
+    } : null;
+    // register listener (it will be closed if the dispatcher is stopped during authentication)
+    synchronized(authorizing) {
+      authorizing.put(cl, task);
+    }
+    if(task != null) timer.schedule(task, ka);
+    execute(cl);
+  }
+
+  /**
+   * Removes a client listener that is waiting for authentication.
+   * @param client client to be removed
+   */
+  void authorized(final ClientListener client) {
+    synchronized(authorizing) {
+      final TimerTask task = authorizing.remove(client);
+      if(task != null) task.cancel();
+    }
+  }
+
+  /**
+   * Waits for the next request of a client session.
+   * @param client client
+   */
+  void idle(final ClientListener client) {
+    idle.add(client);
+    selector.wakeup();
+  }
+
+  @Override
+  public void run() {
+    final ArrayList<ClientListener> ready = new ArrayList<>();
+    while(running) {
+      try {
+        selector.select();
+        if(!running) break;
+
+        // cancel the keys of sessions with new input
+        final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while(keys.hasNext()) {
+          final SelectionKey key = keys.next();
+          keys.remove();
+          key.cancel();
+          if(key.channel().isOpen()) ready.add((ClientListener) key.attachment());
+        }
+
+        // deregister channels, switch to blocking mode and process pending requests
+        if(!ready.isEmpty()) {
+          selector.selectNow();
+          for(final ClientListener cl : ready) {
+            try {
+              cl.channel().configureBlocking(true);
+              execute(cl);
+            } catch(final IOException ex) {
+              Util.debug(ex);
+              cl.close();
+            }
+          }
+          ready.clear();
+        }
+
+        // register idle sessions
+        for(ClientListener cl; (cl = idle.poll()) != null;) {
+          try {
+            cl.channel().configureBlocking(false).register(selector, SelectionKey.OP_READ, cl);
+          } catch(final ClosedChannelException ex) {
+            // session has been closed in the meantime
+            Util.debug(ex);
+          }
+        }
+      } catch(final ClosedSelectorException ex) {
+        Util.debug(ex);
+        break;
+      } catch(final IOException ex) {
+        Util.errln(ex);
+        break;
+      }
+    }
+  }
+
+  /**
+   * Processes the requests of a client session, or a single multiplexed request.
+   * @param client client
+   */
+  void execute(final ClientListener client) {
+    try {
+      workers.execute(client);
+    } catch(final RejectedExecutionException ex) {
+      // dispatcher has been stopped
+      Util.debug(ex);
+      client.close();
+    }
+  }
+
+  /**
+   * Closes all sessions that are waiting for authentication and stops the dispatcher.
+   */
+  public void close() {
+    final ArrayList<ClientListener> list;
+    synchronized(authorizing) {
+      list = new ArrayList<>(authorizing.keySet());
+    }
+    for(final ClientListener cl : list) {
+      authorized(cl);
+      cl.close();
+    }
+    running = false;
+    timer.cancel();
+    workers.shutdown();
+    try {
+      selector.close();
+    } catch(final IOException ex) {
+      Util.debug(ex);
+    }
+  }
+}
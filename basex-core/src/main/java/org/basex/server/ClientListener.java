@@ -4,9 +4,13 @@ import static org.basex.core.Text.*;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
 import java.util.*;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
 
-import org.basex.*;
 import org.basex.core.*;
 import org.basex.core.cmd.*;
 import org.basex.core.parse.*;
@@ -20,25 +24,49 @@ import org.basex.util.list.*;
 
 /**
  * Server-side client session in the client-server architecture.
+ * A session will be run by a worker thread of the {@link ClientDispatcher} whenever a new request
+ * is available, and it will be returned to the dispatcher if no further requests arrive within
+ * a short period of time.
+ *
+ * If multiplexing has been enabled by the client, requests are sent in frames
+ * (see {@link FrameOutput}). Each request is processed by a separate instance of this class,
+ * and its response is sent in frames as well. All requests share the context of the session
+ * (user, opened database, options): queries are evaluated in parallel, whereas commands that
+ * may change the context (e.g. OPEN or SET) are executed exclusively.
  *
  * @author BaseX Team 2005-18, BSD License
  * @author Andreas Weiler
  * @author Christian Gruen
  */
-public final class ClientListener extends Thread implements ClientInfo {
-  /** Timer for authentication time out. */
-  public final Timer timeout = new Timer();
+public final class ClientListener implements Runnable, ClientInfo {
+  /** Time to wait for further requests before the session is returned to the dispatcher (ms). */
+  private static final int LINGER = 10;
+
   /** Timestamp of last interaction. */
-  public long last;
+  public volatile long last;
 
   /** Active queries. */
-  private final HashMap<String, ServerQuery> queries = new HashMap<>();
+  private final Map<String, ServerQuery> queries;
+  /** Query id counter. */
+  private final AtomicInteger ids;
+  /** Multiplexed requests that are currently processed. */
+  private final Set<ClientListener> requests = ConcurrentHashMap.newKeySet();
+  /** Inputs of incomplete multiplexed requests, indexed by request ids. */
+  private final Map<Integer, FrameInput> inputs = new ConcurrentHashMap<>();
+  /** Outputs of multiplexed requests that are currently processed, indexed by request ids. */
+  private final Map<Integer, FrameOutput> outputs = new ConcurrentHashMap<>();
+  /** Lock for the context of the session (exclusive lock: context may be changed). */
+  private final ReentrantReadWriteLock state;
+  /** Session of a multiplexed request (can be {@code null}). */
+  private final ClientListener parent;
   /** Performance measurement. */
   private final Performance perf = new Performance();
   /** Database context. */
   private final Context context;
-  /** Server reference. */
-  private final BaseXServer server;
+  /** Dispatcher. */
+  private final ClientDispatcher dispatcher;
+  /** Socket channel. */
+  private final SocketChannel channel;
   /** Socket reference. */
   private final Socket socket;
 
@@ -46,122 +74,277 @@ public final class ClientListener extends Thread implements ClientInfo {
   private BufferInput in;
   /** Output stream. */
   private PrintOutput out;
+  /** Output stream to the client. */
+  private ClientOutput output;
+  /** Frame output of a multiplexed request (can be {@code null}). */
+  private FrameOutput frames;
   /** Current command. */
   private Command command;
-  /** Query id counter. */
-  private int id;
   /** Indicates if the server thread is running. */
   private volatile boolean authenticated;
+  /** Indicates if requests are multiplexed. */
+  private boolean multiplex;
   /** Indicates if the server has been closed. */
-  private boolean closed;
+  private volatile boolean closed;
 
   /**
    * Constructor.
-   * @param socket socket
+   * @param channel socket channel
    * @param context database context
-   * @param server server reference
+   * @param dispatcher dispatcher
    */
-  public ClientListener(final Socket socket, final Context context, final BaseXServer server) {
+  ClientListener(final SocketChannel channel, final Context context,
+      final ClientDispatcher dispatcher) {
     this.context = new Context(context, this);
-    this.socket = socket;
-    this.server = server;
+    this.channel = channel;
+    this.dispatcher = dispatcher;
+    socket = channel.socket();
+    queries = new ConcurrentHashMap<>();
+    ids = new AtomicInteger();
+    state = new ReentrantReadWriteLock();
+    parent = null;
     last = System.currentTimeMillis();
-    setDaemon(true);
+  }
+
+  /**
+   * Constructor for a multiplexed request.
+   * @param parent session
+   * @param input request input
+   * @param id request id
+   */
+  private ClientListener(final ClientListener parent, final FrameInput input, final int id) {
+    this.parent = parent;
+    context = parent.context;
+    channel = parent.channel;
+    dispatcher = parent.dispatcher;
+    socket = parent.socket;
+    queries = parent.queries;
+    ids = parent.ids;
+    state = parent.state;
+    in = BufferInput.get(input);
+    frames = new FrameOutput(parent.out, id);
+    parent.outputs.put(id, frames);
+    output = new ClientOutput(frames, parent);
+    out = PrintOutput.get(output);
+    authenticated = true;
   }
 
   @Override
   public void run() {
-    if(!authenticate()) return;
+    if(parent != null) {
+      respond();
+      return;
+    }
+    if(!authenticated && !authenticate()) return;
 
     try {
-      while(authenticated) {
-        command = null;
-        String cmd;
-        final ServerCmd sc;
-        try {
-          final int b = in.read();
-          if(b == -1) {
-            // end of stream: exit session
-            close();
-            break;
-          }
+      // process requests until no further input arrives within a short period of time
+      for(int b; (b = next()) != -2;) {
+        if(!request(b)) return;
+      }
+    } catch(final IOException ex) {
+      log(LogType.ERROR, Util.message(ex));
+      command = null;
+      close();
+      return;
+    }
+    // wait for next request
+    dispatcher.idle(this);
+  }
 
-          last = System.currentTimeMillis();
-          perf.ns();
-          sc = ServerCmd.get(b);
-          cmd = null;
-          if(sc == ServerCmd.CREATE) {
-            create();
-          } else if(sc == ServerCmd.ADD) {
-            add();
-          } else if(sc == ServerCmd.REPLACE) {
-            replace();
-          } else if(sc == ServerCmd.STORE) {
-            store();
-          } else if(sc != ServerCmd.COMMAND) {
-            query(sc);
-          } else {
-            // database command
-            cmd = new ByteList().add(b).add(in.readBytes()).toString();
-          }
-        } catch(final IOException ex) {
-          // this exception may be thrown if a session is stopped
-          Util.debug(ex);
-          close();
-          break;
-        }
-        if(sc != ServerCmd.COMMAND) continue;
+  /**
+   * Processes a multiplexed request and sends the response.
+   */
+  private void respond() {
+    try {
+      final int b = in.read();
+      if(b != -1 && !request(b)) return;
+      // send remaining data and end of response
+      out.close();
+    } catch(final IOException ex) {
+      log(LogType.ERROR, Util.message(ex));
+      close();
+    } finally {
+      parent.outputs.values().remove(frames);
+      parent.requests.remove(this);
+    }
+  }
 
-        // parse input and create command instance
+  /**
+   * Reads a frame of a multiplexed request.
+   * Processing of a request starts as soon as its first frame has been received.
+   * @param b first byte of the frame
+   * @return {@code true} if the session is still open
+   * @throws IOException I/O exception
+   */
+  private boolean frame(final int b) throws IOException {
+    if(b == -1) {
+      // end of stream: exit session
+      close();
+      return false;
+    }
+    last = System.currentTimeMillis();
+
+    final int rid = b << 24 | in.read() << 16 | in.read() << 8 | in.read();
+    final int len = FrameInput.readInt(in);
+    if(len == FrameOutput.CREDIT) {
+      // credit for sending further data of a response
+      final int bytes = FrameInput.readInt(in);
+      final FrameOutput fo = outputs.get(rid);
+      if(fo != null) fo.grant(bytes);
+      return true;
+    }
+    FrameInput input = inputs.get(rid);
+    if(input == null) {
+      input = new FrameInput(out, rid);
+      inputs.put(rid, input);
+      final ClientListener request = new ClientListener(this, input, rid);
+      requests.add(request);
+      dispatcher.execute(request);
+    }
+    if(len < 0) {
+      inputs.remove(rid);
+      input.finish(null);
+    } else {
+      final byte[] data = new byte[len];
+      for(int d = 0; d < len; d++) {
+        final int r = in.read();
+        if(r == -1) throw new EOFException();
+        data[d] = (byte) r;
+      }
+      input.add(data);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the first byte of the next request.
+   * As long as multiplexed requests are processed, the channel must remain in blocking mode.
+   * @return byte, {@code -1} if the end of the stream has been reached,
+   *   or {@code -2} if no input is available
+   * @throws IOException I/O exception
+   */
+  private int next() throws IOException {
+    socket.setSoTimeout(LINGER);
+    try {
+      while(true) {
         try {
-          command = CommandParser.get(cmd, context).parseSingle();
-          command.jc().tracer = QueryTracer.EVALINFO;
-          log(LogType.REQUEST, command.toString(true));
-        } catch(final QueryException ex) {
-          // log invalid command
-          final String msg = ex.getMessage();
-          log(LogType.REQUEST, cmd);
-          log(LogType.ERROR, msg);
-          // send 0 to mark end of potential result
-          out.write(0);
-          // send {INFO}0
-          out.print(msg);
-          out.write(0);
-          // send 1 to mark error
-          send(false);
-          continue;
+          return in.read();
+        } catch(final SocketTimeoutException ex) {
+          if(requests.isEmpty()) return -2;
         }
+      }
+    } finally {
+      socket.setSoTimeout(0);
+    }
+  }
 
-        // execute command and send {RESULT}
-        boolean ok = true;
-        String info;
-        try {
-          // run command
-          command.execute(context, new ServerOutput(out));
-          info = command.info();
-        } catch(final BaseXException ex) {
-          Util.debug(ex);
-          ok = false;
-          info = ex.getMessage();
+  /**
+   * Processes a single request.
+   * @param b first byte of the request
+   * @return {@code true} if the session is still open
+   * @throws IOException I/O exception
+   */
+  private boolean request(final int b) throws IOException {
+    if(multiplex) return frame(b);
+    try {
+      String cmd;
+      final ServerCmd sc;
+      try {
+        if(b == -1) {
+          // end of stream: exit session
+          close();
+          return false;
         }
 
-        // send 0 to mark end of result
+        last = System.currentTimeMillis();
+        perf.ns();
+        sc = ServerCmd.get(b);
+        cmd = null;
+        if(sc == ServerCmd.CREATE) {
+          create();
+        } else if(sc == ServerCmd.ADD) {
+          add();
+        } else if(sc == ServerCmd.REPLACE) {
+          replace();
+        } else if(sc == ServerCmd.STORE) {
+          store();
+        } else if(sc == ServerCmd.MULTIPLEX) {
+          multiplex();
+        } else if(sc != ServerCmd.COMMAND) {
+          final Lock lock = state.readLock();
+          lock.lock();
+          try {
+            query(sc);
+          } finally {
+            lock.unlock();
+          }
+        } else {
+          // database command
+          cmd = new ByteList().add(b).add(in.readBytes()).toString();
+        }
+      } catch(final IOException ex) {
+        // this exception may be thrown if a session is stopped
+        Util.debug(ex);
+        close();
+        return false;
+      }
+      if(sc != ServerCmd.COMMAND) return authenticated;
+
+      // parse input and create command instance
+      try {
+        command = CommandParser.get(cmd, context).parseSingle();
+        command.jc().tracer = QueryTracer.EVALINFO;
+        log(LogType.REQUEST, command.toString(true));
+      } catch(final QueryException ex) {
+        // log invalid command
+        final String msg = ex.getMessage();
+        log(LogType.REQUEST, cmd);
+        log(LogType.ERROR, msg);
+        // send 0 to mark end of potential result
         out.write(0);
-        // send info
-        info(info, ok);
+        // send {INFO}0
+        out.print(msg);
+        out.write(0);
+        // send 1 to mark error
+        send(false);
+        return authenticated;
+      }
 
-        // stop console
-        if(command instanceof Exit) {
-          command = null;
-          close();
-        }
+      // execute command and send {RESULT}
+      boolean ok = true;
+      String info;
+      final Lock lock = lock(command);
+      lock.lock();
+      output.job = command;
+      try {
+        // run command
+        command.execute(context, new ServerOutput(out));
+        info = command.info();
+      } catch(final BaseXException ex) {
+        Util.debug(ex);
+        ok = false;
+        info = ex.getMessage();
+      } finally {
+        output.job = null;
+        lock.unlock();
       }
-    } catch(final IOException ex) {
-      log(LogType.ERROR, Util.message(ex));
+
+      // send 0 to mark end of result
+      out.write(0);
+      // send info
+      info(info, ok);
+
+      // stop console
+      if(command instanceof Exit) {
+        command = null;
+        close();
+        return false;
+      }
+      return authenticated;
+    } finally {
       command = null;
-      close();
     }
-    command = null;
   }
 
   /**
@@ -175,7 +358,8 @@ public final class ClientListener extends Thread implements ClientInfo {
       final byte[] address = socket.getInetAddress().getAddress();
 
       // send {REALM:TIMESTAMP}0
-      out = PrintOutput.get(socket.getOutputStream());
+      output = new ClientOutput(socket.getOutputStream(), this);
+      out = PrintOutput.get(output);
       out.print(Prop.NAME + ':' + nonce);
       send(true);
 
@@ -190,10 +374,10 @@ public final class ClientListener extends Thread implements ClientInfo {
       // write log information
       if(auth) {
         context.user(user);
-        // send {OK}
-        send(true);
         context.blocker.remove(address);
-        context.sessions.add(this);
+        // register session before sending {OK} (skipped if the session has been closed)
+        auth = register();
+        if(auth) send(true);
       } else {
         if(!name.isEmpty()) log(LogType.ERROR, ACCESS_DENIED);
         // delay users with wrong passwords
@@ -201,42 +385,113 @@ public final class ClientListener extends Thread implements ClientInfo {
         send(false);
       }
     } catch(final IOException ex) {
-      if(auth) {
+      // ignore errors if the session has been closed during authentication
+      if(auth && !closed) {
         Util.stack(ex);
         log(LogType.ERROR, Util.message(ex));
         auth = false;
       }
     }
 
-    server.remove(this);
+    dispatcher.authorized(this);
     authenticated = auth;
+    if(!auth) {
+      context.sessions.remove(this);
+      try {
+        socket.close();
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
     return auth;
   }
 
+  /**
+   * Registers an authenticated session.
+   * @return {@code false} if the session has already been closed
+   */
+  private synchronized boolean register() {
+    if(closed) return false;
+    context.sessions.add(this);
+    return true;
+  }
+
   /**
    * Closes the session.
    */
   public synchronized void close() {
+    if(parent != null) {
+      parent.close();
+      return;
+    }
     if(closed) return;
     closed = true;
 
-    // stop running command, wait until reference has been invalidated
+    // release blocked responses
+    for(final FrameOutput fo : outputs.values()) fo.cancel(new EOFException());
+    // stop running commands, wait until references have been invalidated
+    stop();
+    for(final ClientListener request : requests) request.stop();
+    for(final FrameInput input : inputs.values()) input.finish(new EOFException());
+    context.sessions.remove(this);
+
+    try {
+      // no database can have been opened before the session was authenticated
+      if(authenticated) Close.close(context);
+      socket.close();
+    } catch(final Throwable ex) {
+      log(LogType.ERROR, Util.message(ex));
+      Util.stack(ex);
+    }
+  }
+
+  /**
+   * Stops the running command and waits until its reference has been invalidated.
+   */
+  private void stop() {
     final Command c = command;
     if(c != null) {
       c.stop();
       do Performance.sleep(1); while(command != null);
     }
-    context.sessions.remove(this);
+  }
 
+  /**
+   * Checks if the client has not accepted any data of this session or its multiplexed requests
+   * for the specified time.
+   * @param ms current time (ms)
+   * @param timeout timeout (ms)
+   * @return result of check
+   */
+  boolean stalled(final long ms, final long timeout) {
+    if(output != null && output.stalled(ms, timeout)) return true;
+    for(final ClientListener request : requests) {
+      if(request.stalled(ms, timeout)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Closes the connection of a session whose client does not accept any data.
+   * Blocked write operations will be canceled, and the session will be closed by its worker.
+   */
+  void abort() {
+    for(final FrameOutput fo : outputs.values()) fo.cancel(new EOFException());
     try {
-      Close.close(context);
       socket.close();
-    } catch(final Throwable ex) {
-      log(LogType.ERROR, Util.message(ex));
-      Util.stack(ex);
+    } catch(final IOException ex) {
+      Util.debug(ex);
     }
   }
 
+  /**
+   * Returns the socket channel of this session.
+   * @return channel
+   */
+  SocketChannel channel() {
+    return channel;
+  }
+
   /**
    * Returns the context of this session.
    * @return user reference
@@ -298,6 +553,19 @@ public final class ClientListener extends Thread implements ClientInfo {
     send(ok);
   }
 
+  /**
+   * Enables multiplexing.
+   * @throws IOException I/O exception
+   */
+  private void multiplex() throws IOException {
+    in.readString();
+    log(LogType.REQUEST, ServerCmd.MULTIPLEX.toString());
+    multiplex = parent == null;
+    // send 0 to mark end of result
+    out.write(0);
+    success("");
+  }
+
   /**
    * Creates a database.
    * @throws IOException I/O exception
@@ -338,6 +606,8 @@ public final class ClientListener extends Thread implements ClientInfo {
   private void execute(final Command cmd) throws IOException {
     log(LogType.REQUEST, cmd + " [...]");
     final ServerInput si = new ServerInput(in);
+    final Lock lock = lock(cmd);
+    lock.lock();
     try {
       cmd.setInput(si);
       cmd.execute(context);
@@ -345,9 +615,21 @@ public final class ClientListener extends Thread implements ClientInfo {
     } catch(final BaseXException ex) {
       si.flush();
       error(ex.getMessage());
+    } finally {
+      lock.unlock();
     }
   }
 
+  /**
+   * Returns the lock for executing the specified command. Only queries can be evaluated in
+   * parallel: all other commands may change the context of the session.
+   * @param cmd command
+   * @return lock
+   */
+  private Lock lock(final Command cmd) {
+    return cmd instanceof AQuery ? state.readLock() : state.writeLock();
+  }
+
   /**
    * Processes the query iterator.
    * @param sc server command
@@ -365,7 +647,7 @@ public final class ClientListener extends Thread implements ClientInfo {
         final String query = arg;
         qp = new ServerQuery(query, context);
         qp.jc().tracer = QueryTracer.EVALINFO;
-        arg = Integer.toString(id++);
+        arg = Integer.toString(ids.getAndIncrement());
         queries.put(arg, qp);
         // send {ID}0
         out.print(arg);
@@ -391,12 +673,13 @@ public final class ClientListener extends Thread implements ClientInfo {
           qp.context(val, typ);
           info.append(val);
           if(!typ.isEmpty()) info.append(" as ").append(typ);
-        } else if(sc == ServerCmd.RESULTS) {
-          qp.execute(out, true, true, false);
-        } else if(sc == ServerCmd.EXEC) {
-          qp.execute(out, false, true, false);
-        } else if(sc == ServerCmd.FULL) {
-          qp.execute(out, true, true, true);
+        } else if(sc == ServerCmd.RESULTS || sc == ServerCmd.EXEC || sc == ServerCmd.FULL) {
+          output.job = qp;
+          try {
+            qp.execute(out, sc != ServerCmd.EXEC, true, sc == ServerCmd.FULL);
+          } finally {
+            output.job = null;
+          }
         } else if(sc == ServerCmd.INFO) {
           out.print(qp.info());
         } else if(sc == ServerCmd.OPTIONS) {
@@ -0,0 +1,99 @@
+package org.basex.server;
+
+import java.io.*;
+
+import org.basex.core.jobs.*;
+
+/**
+ * This class sends the responses of a session to the client. While data is written, the
+ * timeout of the current job is paused: the time required by the client for consuming
+ * results is not counted as evaluation time. If the client does not accept any data within
+ * the keep-alive time, the connection will be closed by the {@link ClientDispatcher}.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+final class ClientOutput extends OutputStream {
+  /** Output stream. */
+  private final OutputStream os;
+  /** Session. */
+  private final ClientListener session;
+
+  /** Job that sends data (can be {@code null}). */
+  volatile Job job;
+  /** Time at which the current write operation was started ({@code 0}: not writing). */
+  private volatile long writing;
+
+  /**
+   * Constructor.
+   * @param os output stream
+   * @param session session
+   */
+  ClientOutput(final OutputStream os, final ClientListener session) {
+    this.os = os;
+    this.session = session;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    write(new byte[] { (byte) b }, 0, 1);
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    final Job jb = start();
+    try {
+      os.write(b, off, len);
+    } finally {
+      finish(jb);
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    final Job jb = start();
+    try {
+      os.flush();
+    } finally {
+      finish(jb);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    os.close();
+  }
+
+  /**
+   * Checks if the client has not accepted any data for the specified time.
+   * @param ms current time (ms)
+   * @param timeout timeout (ms)
+   * @return result of check
+   */
+  boolean stalled(final long ms, final long timeout) {
+    final long w = writing;
+    return w != 0 && ms - w > timeout;
+  }
+
+  /**
+   * Starts a write operation.
+   * @return current job (can be {@code null})
+   */
+  private Job start() {
+    final Job jb = job;
+    if(jb != null) jb.pauseTimeout(true);
+    writing = System.currentTimeMillis();
+    return jb;
+  }
+
+  /**
+   * Finishes a write operation.
+   * @param jb current job (can be {@code null})
+   */
+  private void finish(final Job jb) {
+    final long ms = System.currentTimeMillis();
+    writing = 0;
+    session.last = ms;
+    if(jb != null) jb.pauseTimeout(false);
+  }
+}
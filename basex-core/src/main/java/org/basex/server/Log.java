@@ -4,14 +4,21 @@ import static org.basex.util.Token.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
 
 import org.basex.core.*;
+import org.basex.core.StaticOptions.*;
 import org.basex.core.users.*;
 import org.basex.io.*;
 import org.basex.util.*;
+import org.basex.util.list.*;
 
 /**
  * This class writes daily log files to disk.
+ * Entries are added to a bounded queue and written in batches by a background thread.
+ * If the queue is full, new entries are handled as specified by {@link StaticOptions#LOGOVERFLOW}.
  * The log format has been updated in Version 7.4; it now has the following columns:
  * <ul>
  *   <li><b>Time</b>: timestamp (format: {@code xs:time})</li>
@@ -36,11 +43,46 @@ public final class Log {
     /** OK.      */ OK
   }
 
+  /** Keep every n-th entry if the queue is full and entries are sampled. */
+  private static final int SAMPLE = 16;
+  /** Maximum size of a batch of entries that is written at once. */
+  private static final int BATCH = 1 << 16;
+
   /** Static options. */
   private final StaticOptions sopts;
+  /** Maximum number of queued entries. */
+  private final int capacity;
+  /** Handling of new entries if the queue is full. */
+  private final LogOverflow overflow;
+  /** Maximum length of log messages. */
+  private final int maxlen;
+  /** Entries that have not been written yet. */
+  private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+  /** Number of entries that have been queued, but not written yet. */
+  private final AtomicInteger size = new AtomicInteger();
+  /** Number of entries that have been queued. */
+  private final AtomicLong queued = new AtomicLong();
+  /** Number of entries that did not fit into the queue. */
+  private final AtomicLong overflows = new AtomicLong();
+  /** Number of dropped entries. */
+  private final AtomicLong dropped = new AtomicLong();
+  /** Number of dropped entries that have been reported in the log file. */
+  private long reported;
+  /** Second of the last formatted timestamp. */
+  private long second = -1;
+  /** Formatted time of the last timestamp, without milliseconds. */
+  private byte[] seconds;
+  /** Formatted date of the last timestamp. */
+  private String day;
+  /** Number of written entries. */
+  private volatile long written;
+  /** Thread that writes queued entries to disk (can be {@code null}). */
+  private volatile Thread writer;
+  /** Indicates if the writer is requested to stop after all queued entries have been written. */
+  private volatile boolean closing;
 
   /** Current log file. */
-  private LogFile file;
+  private volatile LogFile file;
 
   /**
    * Constructor.
@@ -48,14 +90,19 @@ public final class Log {
    */
   public Log(final StaticOptions sopts) {
     this.sopts = sopts;
+    capacity = Math.max(1, sopts.get(StaticOptions.LOGQUEUE));
+    overflow = sopts.get(StaticOptions.LOGOVERFLOW);
+    maxlen = sopts.get(StaticOptions.LOGMSGMAXLEN);
   }
 
   /**
    * Returns a log file for the specified name (current or new instance).
+   * Queued entries will be written before the file is returned.
    * @param name name of log file
    * @return log file, or {@code null} if it does not exist
    */
   public LogFile file(final String name) {
+    flush();
     LogFile lf = file;
     if(lf == null || !lf.valid(name)) lf = new LogFile(name, dir());
     return lf.exists() ? lf : null;
@@ -95,7 +142,7 @@ public final class Log {
   }
 
   /**
-   * Writes an entry to the log file.
+   * Queues an entry. The entry will be written to the log file by a background thread.
    * @param type type (ERROR, OK, REQUEST, INFO, HTTP status code)
    * @param info info string (can be {@code null})
    * @param perf performance string (can be {@code null})
@@ -108,48 +155,229 @@ public final class Log {
     // check if logging is disabled
     if(!sopts.get(StaticOptions.LOG)) return;
 
-    // construct log text
-    final Date date = new Date();
-    final int ml = sopts.get(StaticOptions.LOGMSGMAXLEN);
-    final TokenBuilder tb = new TokenBuilder();
-    tb.add(DateTime.format(date, DateTime.TIME));
-    tb.add('\t').add(address != null ? address.replaceFirst("^/", "") : SERVER);
-    tb.add('\t').add(user != null ? user : UserText.ADMIN);
-    tb.add('\t').add(type);
-    tb.add('\t').add(info != null ? chop(normalize(token(info)), ml) : EMPTY);
-    if(perf != null) tb.add('\t').add(perf.toString());
-    tb.add(Prop.NL);
+    final Entry entry = entry(type, info, perf, address, user);
+    final int s = reserve(type);
+    if(s == -1) {
+      dropped.incrementAndGet();
+    } else {
+      entries.add(entry);
+      queued.incrementAndGet();
+      // wake up writer if it may be waiting for new entries
+      if(s == 0) LockSupport.unpark(writer());
+    }
+  }
 
+  /**
+   * Reserves a place for a new entry in the queue.
+   * If the queue is full, the overflow policy is applied.
+   * @param type type of the entry
+   * @return previous number of queued entries, or {@code -1} if the entry is dropped
+   */
+  private int reserve(final String type) {
+    boolean full = false;
+    while(true) {
+      final int s = size.get();
+      if(s < capacity) {
+        if(size.compareAndSet(s, s + 1)) return s;
+        continue;
+      }
+      // queue is full: apply overflow policy once, wait for writer
+      if(!full) {
+        full = true;
+        if(overflow == LogOverflow.DROP || overflow == LogOverflow.SAMPLE &&
+            overflows.incrementAndGet() % SAMPLE != 0 && !type.equals(LogType.ERROR.name())) {
+          return -1;
+        }
+      }
+      LockSupport.unpark(writer());
+      Performance.sleep(1);
+    }
+  }
+
+  /**
+   * Returns the writer thread. A new thread is started if no thread exists.
+   * @return writer
+   */
+  private Thread writer() {
+    Thread w = writer;
+    if(w == null) {
+      synchronized(this) {
+        w = writer;
+        if(w == null) {
+          w = new Thread(this::run, "LogWriter");
+          w.setDaemon(true);
+          writer = w;
+          w.start();
+        }
+      }
+    }
+    return w;
+  }
+
+  /**
+   * Writes queued entries in batches until the log is closed.
+   * The thread remains registered as writer until it stops, so no second writer can be started
+   * while the queue is drained. If the thread is stopped by an unexpected error,
+   * a new writer will be started on demand.
+   */
+  private void run() {
+    final Thread thread = Thread.currentThread();
+    final ByteList batch = new ByteList();
+    try {
+      while(!closing || size.get() > 0) {
+        Entry entry = entries.poll();
+        if(entry == null) {
+          // wait for new entries (or for an entry that has been reserved, but not added yet)
+          if(size.get() == 0) LockSupport.parkNanos(this, 100000000);
+          else Thread.yield();
+          continue;
+        }
+
+        // collect entries of the same day, write them at once
+        int n = 0;
+        try {
+          String name = null;
+          for(; entry != null; entry = entries.poll()) {
+            n++;
+            name = add(entry, name, batch);
+            if(batch.size() >= BATCH) break;
+          }
+          // report dropped entries
+          final long d = dropped.get();
+          if(d != reported) {
+            name = add(entry(LogType.INFO.toString(), (d - reported) +
+                " log entries have been dropped.", null, null, null), name, batch);
+            reported = d;
+          }
+          write(name, batch);
+        } finally {
+          // polled entries are released even if they could not be written
+          size.addAndGet(-n);
+          written += n;
+        }
+      }
+    } catch(final Throwable ex) {
+      Util.stack(ex);
+    } finally {
+      synchronized(this) {
+        if(writer == thread) writer = null;
+      }
+    }
+  }
+
+  /**
+   * Adds an entry to a batch. If the entry belongs to another day than the batch,
+   * the batch is written first.
+   * @param entry entry
+   * @param name name of the log file of the batch (can be {@code null})
+   * @param batch batch
+   * @return name of the log file of the entry
+   */
+  private String add(final Entry entry, final String name, final ByteList batch) {
+    // timestamps are formatted by the writer thread; date and seconds are cached
+    final long time = entry.time, sec = time / 1000;
+    if(sec != second) {
+      final Date date = new Date(time);
+      day = DateTime.format(date, DateTime.DATE);
+      seconds = token(DateTime.format(date, DateTime.TIME).substring(0, 8));
+      second = sec;
+    }
+    if(name != null && !name.equals(day)) write(name, batch);
+    final int ms = (int) (time % 1000);
+    batch.add(seconds).add('.').add('0' + ms / 100).add('0' + ms / 10 % 10).add('0' + ms % 10);
+    batch.add(entry.line);
+    return day;
+  }
+
+  /**
+   * Writes a batch of entries to the specified log file and resets the batch.
+   * @param name name of log file
+   * @param batch batch
+   */
+  private void write(final String name, final ByteList batch) {
+    if(batch.isEmpty()) return;
     try {
       synchronized(sopts) {
-        // create new log file and write log entry
-        final String name = DateTime.format(date, DateTime.DATE);
-        if(file != null && !file.valid(name)) close();
+        // create new log file and write log entries
+        if(file != null && !file.valid(name)) closeFile();
         if(file == null) file = LogFile.create(name, dir());
-        // write log entry
-        file.write(tb.finish());
+        file.write(batch.toArray());
       }
     } catch(final IOException ex) {
       Util.stack(ex);
     }
+    batch.reset();
   }
 
   /**
-   * Closes the log file.
+   * Waits until all entries that have been queued so far have been written.
+   */
+  public void flush() {
+    final long q = queued.get();
+    // (re)start the writer if it has been closed or stopped
+    while(written < q) {
+      LockSupport.unpark(writer());
+      Performance.sleep(1);
+    }
+  }
+
+  /**
+   * Returns information on the log queue.
+   * @return info string
+   */
+  public String info() {
+    return Util.info("% queued, % written, % dropped", size.get(), written, dropped.get());
+  }
+
+  /**
+   * Returns the number of entries that have been dropped, because the queue was full.
+   * @return number of dropped entries
+   */
+  public long dropped() {
+    return dropped.get();
+  }
+
+  /**
+   * Writes all queued entries and closes the log file.
    */
   public void close() {
+    final Thread w;
+    synchronized(this) {
+      w = writer;
+      closing = true;
+    }
+    if(w != null) {
+      // the writer unregisters itself after the remaining entries have been written
+      LockSupport.unpark(w);
+      try {
+        w.join();
+      } catch(final InterruptedException ex) {
+        Util.debug(ex);
+      }
+    }
+    synchronized(this) {
+      closing = false;
+    }
     try {
       synchronized(sopts) {
-        if(file != null) {
-          file.close();
-          file = null;
-        }
+        closeFile();
       }
     } catch(final IOException ex) {
       Util.stack(ex);
     }
   }
 
+  /**
+   * Closes the current log file.
+   * @throws IOException I/O exception
+   */
+  private void closeFile() throws IOException {
+    if(file != null) {
+      file.close();
+      file = null;
+    }
+  }
+
   /**
    * Returns all log files.
    * @return log directory
@@ -165,4 +393,46 @@ public final class Log {
   private IOFile dir() {
     return sopts.dbPath(".").resolve(sopts.get(StaticOptions.LOGPATH));
   }
+
+  /**
+   * Creates a log entry.
+   * @param type type (ERROR, OK, REQUEST, INFO, HTTP status code)
+   * @param info info string (can be {@code null})
+   * @param perf performance string (can be {@code null})
+   * @param address address string ({@code SERVER} is written if value is {@code null})
+   * @param user user ({@code admin} is written if value is {@code null})
+   * @return entry
+   */
+  private Entry entry(final String type, final String info, final Performance perf,
+      final String address, final String user) {
+
+    // construct log text (without timestamp)
+    final long time = System.currentTimeMillis();
+    final TokenBuilder tb = new TokenBuilder();
+    tb.add('\t').add(address != null ? address.replaceFirst("^/", "") : SERVER);
+    tb.add('\t').add(user != null ? user : UserText.ADMIN);
+    tb.add('\t').add(type);
+    tb.add('\t').add(info != null ? chop(normalize(token(info)), maxlen) : EMPTY);
+    if(perf != null) tb.add('\t').add(perf.toString());
+    tb.add(Prop.NL);
+    return new Entry(time, tb.finish());
+  }
+
+  /** Log entry. */
+  private static final class Entry {
+    /** Timestamp. */
+    final long time;
+    /** Line to be written, without timestamp. */
+    final byte[] line;
+
+    /**
+     * Constructor.
+     * @param time timestamp
+     * @param line line to be written, without timestamp
+     */
+    Entry(final long time, final byte[] line) {
+      this.time = time;
+      this.line = line;
+    }
+  }
 }
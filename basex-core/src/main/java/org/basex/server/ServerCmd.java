@@ -37,6 +37,8 @@ public enum ServerCmd {
   UPDATING(30),
   /** Code for executing a query and returning all information relevant for XQJ: {id}0. */
   FULL(31),
+  /** Code for switching to multiplexed requests, which are sent in frames: 0. */
+  MULTIPLEX(32),
   /** Code for running a database command: {path}0{input}0. */
   COMMAND(-1);
 
@@ -102,7 +102,10 @@ public final class ServerQuery extends Job {
   }
 
   /**
-   * Executes the query.
+   * Executes the query. If results are iterated, they are sent to the client while the query
+   * is evaluated. The locks of the query will be kept until the client has consumed the results.
+   * The timeout of the query is paused while the client consumes results
+   * (see {@link ClientOutput}).
    * @param out output stream
    * @param iterative iterative evaluation
    * @param encode encode results (client/server communication, iterative processing)
@@ -138,6 +141,8 @@ public final class ServerQuery extends Job {
             ser.serialize(item);
             po.flush();
             out.write(0);
+            // send first result immediately; remaining results will be sent in chunks
+            if(c == 0) out.flush();
           } else {
             ser.serialize(item);
           }
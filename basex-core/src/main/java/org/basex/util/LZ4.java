@@ -0,0 +1,160 @@
+package org.basex.util;
+
+/**
+ * This class compresses and decompresses blocks of bytes with the LZ4 block format.
+ * A greedy single-pass matcher is used, which favors speed over compression ratio.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class LZ4 {
+  /** Minimum match length. */
+  private static final int MIN_MATCH = 4;
+  /** Number of bytes at the end of the input that will always be literals. */
+  private static final int LAST_LITERALS = 5;
+  /** Minimum distance of the last match from the end of the input. */
+  private static final int MF_LIMIT = 12;
+  /** Maximum match distance. */
+  private static final int MAX_DISTANCE = 0xFFFF;
+  /** Size of the hash table (power of two). */
+  private static final int HASH_LOG = 12;
+
+  /** Private constructor. */
+  private LZ4() { }
+
+  /**
+   * Compresses the specified bytes.
+   * @param src source array
+   * @param len number of bytes to compress
+   * @param dst target array
+   * @return size of the compressed bytes, or {@code -1} if they do not fit into the target array
+   */
+  public static int compress(final byte[] src, final int len, final byte[] dst) {
+    final int[] table = new int[1 << HASH_LOG];
+    final int limit = len - MF_LIMIT, matchLimit = len - LAST_LITERALS;
+    int ip = 0, anchor = 0, op = 0;
+
+    while(ip < limit) {
+      final int seq = int4(src, ip), h = seq * -1640531535 >>> 32 - HASH_LOG;
+      int ref = table[h] - 1;
+      table[h] = ip + 1;
+      if(ref < 0 || ip - ref > MAX_DISTANCE || int4(src, ref) != seq) {
+        ip++;
+        continue;
+      }
+      // extend match backwards and forwards
+      while(ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+        ip--;
+        ref--;
+      }
+      int ml = MIN_MATCH;
+      while(ip + ml < matchLimit && src[ip + ml] == src[ref + ml]) ml++;
+
+      op = literals(src, anchor, ip - anchor, ml - MIN_MATCH, dst, op);
+      if(op == -1 || op + 2 > dst.length) return -1;
+      final int dist = ip - ref;
+      dst[op++] = (byte) dist;
+      dst[op++] = (byte) (dist >>> 8);
+      if(ml - MIN_MATCH >= 15) {
+        op = length(ml - MIN_MATCH - 15, dst, op);
+        if(op == -1) return -1;
+      }
+      ip += ml;
+      anchor = ip;
+    }
+    return literals(src, anchor, len - anchor, 0, dst, op);
+  }
+
+  /**
+   * Decompresses the specified bytes.
+   * @param src source array
+   * @param len number of compressed bytes
+   * @param dst target array
+   * @return number of decompressed bytes
+   */
+  public static int decompress(final byte[] src, final int len, final byte[] dst) {
+    int ip = 0, op = 0;
+    while(ip < len) {
+      final int token = src[ip++] & 0xFF;
+      int lit = token >>> 4;
+      if(lit == 15) {
+        int b;
+        do {
+          b = src[ip++] & 0xFF;
+          lit += b;
+        } while(b == 0xFF);
+      }
+      Array.copy(src, ip, lit, dst, op);
+      ip += lit;
+      op += lit;
+      if(ip >= len) break;
+
+      final int dist = src[ip++] & 0xFF | (src[ip++] & 0xFF) << 8;
+      int ml = token & 0x0F;
+      if(ml == 15) {
+        int b;
+        do {
+          b = src[ip++] & 0xFF;
+          ml += b;
+        } while(b == 0xFF);
+      }
+      ml += MIN_MATCH;
+      // matches may overlap with the bytes to be written
+      for(int r = op - dist, e = op + ml; op < e;) dst[op++] = dst[r++];
+    }
+    return op;
+  }
+
+  /**
+   * Writes a token and literals.
+   * @param src source array
+   * @param off offset of the literals
+   * @param lit number of literals
+   * @param ml match length code
+   * @param dst target array
+   * @param o offset in the target array
+   * @return new offset, or {@code -1} if the target array is too small
+   */
+  private static int literals(final byte[] src, final int off, final int lit, final int ml,
+      final byte[] dst, final int o) {
+    int op = o;
+    if(op >= dst.length) return -1;
+    dst[op++] = (byte) (Math.min(lit, 15) << 4 | Math.min(ml, 15));
+    if(lit >= 15) {
+      op = length(lit - 15, dst, op);
+      if(op == -1) return -1;
+    }
+    if(op + lit > dst.length) return -1;
+    Array.copy(src, off, lit, dst, op);
+    return op + lit;
+  }
+
+  /**
+   * Writes an extended length.
+   * @param length remaining length
+   * @param dst target array
+   * @param o offset in the target array
+   * @return new offset, or {@code -1} if the target array is too small
+   */
+  private static int length(final int length, final byte[] dst, final int o) {
+    int op = o, l = length;
+    for(; l >= 0xFF; l -= 0xFF) {
+      if(op >= dst.length) return -1;
+      dst[op++] = (byte) 0xFF;
+    }
+    if(op >= dst.length) return -1;
+    dst[op++] = (byte) l;
+    return op;
+  }
+
+  /**
+   * Reads an integer value.
+   * @param array array
+   * @param i offset
+   * @return value
+   */
+  private static int int4(final byte[] array, final int i) {
+    return array[i] & 0xFF | (array[i + 1] & 0xFF) << 8 | (array[i + 2] & 0xFF) << 16 |
+      array[i + 3] << 24;
+  }
+}
@@ -113,7 +113,7 @@ public final class XdmInfoTest extends SandboxTest {
     byte[] exec(final ServerCmd cmd, final String arg) throws IOException {
       final ArrayOutput ao = new ArrayOutput();
       sout.write(cmd.code);
-      send(arg);
+      send(arg, sout);
       sout.flush();
       @SuppressWarnings("resource")
       final BufferInput bi = BufferInput.get(sin);
@@ -0,0 +1,102 @@
+package org.basex.core.jobs;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * This class tests the reservation of worker threads ({@link WorkerPool}).
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class WorkerPoolTest extends SandboxTest {
+  /** Worker pool. */
+  private WorkerPool pool;
+
+  /** Creates a pool with 4 threads and a limit of 2 threads per job. */
+  @Before
+  public void init() {
+    final StaticOptions sopts = context.soptions;
+    sopts.set(StaticOptions.FORKJOINTHREADS, 4);
+    sopts.set(StaticOptions.FORKJOINLIMIT, 2);
+    pool = new WorkerPool(sopts);
+  }
+
+  /** Closes the pool and resets the options. */
+  @After
+  public void close() {
+    pool.close();
+    final StaticOptions sopts = context.soptions;
+    sopts.set(StaticOptions.FORKJOINTHREADS, StaticOptions.FORKJOINTHREADS.value());
+    sopts.set(StaticOptions.FORKJOINLIMIT, StaticOptions.FORKJOINLIMIT.value());
+  }
+
+  /**
+   * Checks that the limit applies to jobs, and not to single calls.
+   * @throws Exception exception
+   */
+  @Test
+  public void limit() throws Exception {
+    assertEquals(2, pool.limit);
+    final JobContext jc = job();
+    try(Workers workers = pool.reserve(jc, 10)) {
+      assertEquals(2, workers.chunks);
+      // all threads of the job are reserved: evaluate tasks in the current thread
+      try(Workers nested = pool.reserve(jc, 10)) {
+        assertEquals(1, nested.chunks);
+      }
+      // worker threads of the job can evaluate one chunk by themselves
+      assertEquals(Integer.valueOf(1), pool.invoke(ForkJoinTask.adapt(() -> {
+        try(Workers nested = pool.reserve(jc, 10)) {
+          return nested.chunks;
+        }
+      })));
+      // other jobs are not affected
+      try(Workers other = pool.reserve(job(), 10)) {
+        assertEquals(2, other.chunks);
+      }
+    }
+    // threads have been released
+    try(Workers workers = pool.reserve(jc, 10)) {
+      assertEquals(2, workers.chunks);
+    }
+    // a single task is evaluated in the current thread
+    try(Workers workers = pool.reserve(jc, 1)) {
+      assertEquals(1, workers.chunks);
+    }
+  }
+
+  /**
+   * Checks the counters for queued and running tasks.
+   */
+  @Test
+  public void counters() {
+    final JobContext jc = job();
+    final Workers workers = pool.reserve(jc, 10);
+    assertEquals(2, jc.queued.get());
+    assertTrue(workers.start());
+    assertEquals(1, jc.queued.get());
+    assertEquals(1, jc.running.get());
+    workers.finish();
+    assertEquals(0, jc.running.get());
+
+    // chunks that have not been started will be skipped after the evaluation has been finished
+    workers.close();
+    assertEquals(0, jc.queued.get());
+    assertFalse(workers.start());
+  }
+
+  /**
+   * Returns the context of a new job.
+   * @return job context
+   */
+  private static JobContext job() {
+    return new Job() { }.jc();
+  }
+}
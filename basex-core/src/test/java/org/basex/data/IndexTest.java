@@ -53,6 +53,7 @@ public final class IndexTest extends AdvancedQueryTest {
   public void after() {
     execute(new DropDB(NAME));
     set(MainOptions.TOKENINDEX, false);
+    set(MainOptions.FTINDEX, false);
     set(MainOptions.UPDINDEX, false);
     set(MainOptions.AUTOOPTIMIZE, false);
     set(MainOptions.MAINMEM, false);
@@ -203,6 +204,61 @@ public final class IndexTest extends AdvancedQueryTest {
     execute(new Delete("A"));
   }
 
+  /**
+   * Test.
+   */
+  @Test
+  public void updindexFullText() {
+    // main-memory databases have no full-text index
+    if((Boolean) mainmem) return;
+    set(MainOptions.UPDINDEX, true);
+    set(MainOptions.FTINDEX, true);
+    execute(new CreateDB(NAME));
+    execute(new Add("x.xml", "<x><a>A B</a><a>B C</a></x>"));
+    for(int i = 0; i < 5; i++) {
+      execute(new Replace("x.xml", "<x><a>A B</a><a>C D</a></x>"));
+    }
+    query(_FT_SEARCH.args(NAME, "A") + "/string()", "A B");
+    query(_FT_SEARCH.args(NAME, "D") + "/string()", "C D");
+    query("count(" + _FT_SEARCH.args(NAME, "B") + ')', 1);
+    query(_FT_TOKENS.args(NAME, "D") + "/string()", "d");
+    query(_DB_INFO.args(NAME) + "//ftindex/text()", true);
+
+    execute(new Close());
+    execute(new Open(NAME));
+    query("count(" + _FT_SEARCH.args(NAME, "B") + ')', 1);
+    query("rename node //a[1] as 'b', delete node //a[2]", "");
+    query(_FT_SEARCH.args(NAME, "A") + "/../name()", "b");
+    query(_FT_SEARCH.args(NAME, "D"), "");
+    query(_DB_INFO.args(NAME) + "//ftindex/text()", true);
+
+    execute(new Optimize());
+    query(_FT_SEARCH.args(NAME, "A") + "/../name()", "b");
+    query(_FT_SEARCH.args(NAME, "D"), "");
+  }
+
+  /**
+   * Test.
+   */
+  @Test
+  public void updindexFullTextEntries() {
+    // main-memory databases have no full-text index
+    if((Boolean) mainmem) return;
+    set(MainOptions.UPDINDEX, true);
+    set(MainOptions.FTINDEX, true);
+    execute(new CreateDB(NAME));
+    execute(new Add("x.xml", "<x><a>A B</a><a>B C</a></x>"));
+    execute(new Optimize());
+    // outdated postings in the index files must not be counted
+    for(int i = 0; i < 5; i++) execute(new Replace("x.xml", "<x><a>A B</a><a>C D</a></x>"));
+    query("count(" + _FT_SEARCH.args(NAME, "B") + ')', 1);
+    query(_FT_TOKENS.args(NAME) + " ! (. || @count)", "a1\nb1\nc1\nd1");
+
+    query("delete node //a[2]", "");
+    query(_FT_TOKENS.args(NAME) + " ! (. || @count)", "a1\nb1");
+    query(_FT_TOKENS.args(NAME, "c"), "");
+  }
+
   /**
    * Test.
    */
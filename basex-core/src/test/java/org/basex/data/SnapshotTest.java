@@ -0,0 +1,298 @@
+package org.basex.data;
+
+import static org.basex.query.func.Function.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.core.locks.*;
+import org.basex.core.parse.Commands.CmdIndex;
+import org.basex.index.*;
+import org.basex.query.value.node.*;
+import org.basex.util.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * This class tests the snapshots of databases ({@link SnapshotData}).
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class SnapshotTest extends SandboxTest {
+  /** Number of elements. */
+  private static final int SIZE = 2000;
+
+  /** Creates the test database. */
+  @Before
+  public void create() {
+    context.soptions.set(StaticOptions.SNAPSHOTS, true);
+    final StringBuilder sb = new StringBuilder("<a>");
+    for(int i = 1; i <= SIZE; i++) sb.append("<b>text").append(i).append("</b>");
+    execute(new CreateDB(NAME, sb.append("</a>").toString()));
+  }
+
+  /** Drops the test database. */
+  @After
+  public void drop() {
+    execute(new DropDB(NAME));
+    context.soptions.set(StaticOptions.SNAPSHOTS, false);
+  }
+
+  /**
+   * Checks that a snapshot is not affected by updates.
+   * @throws Exception exception
+   */
+  @Test
+  public void versions() throws Exception {
+    final DiskData data = data();
+    final SnapshotData snapshot = data.snapshot();
+    try {
+      final String old = serialize(snapshot);
+      query("delete node //b[position() mod 3 = 0]");
+      query("for $b in //b[position() mod 3 = 1] return replace value of node $b/text() with " +
+          "'updated text ' || $b");
+      query("insert node <c>{ (1 to 500) ! <d>{ . }</d> }</c> into /a");
+
+      assertEquals(old, serialize(snapshot));
+      final String current = serialize(data);
+      assertNotEquals(old, current);
+
+      // a new snapshot reflects the committed updates
+      final SnapshotData snapshot2 = data.snapshot();
+      try {
+        assertNotSame(snapshot, snapshot2);
+        assertEquals(current, serialize(snapshot2));
+      } finally {
+        snapshot2.close();
+      }
+    } finally {
+      snapshot.close();
+    }
+  }
+
+  /**
+   * Checks that pages are reused after snapshots have been released.
+   * @throws Exception exception
+   */
+  @Test
+  public void release() throws Exception {
+    final DiskData data = data();
+    final long size = data.meta.dbfile(DataText.DATATBL).length();
+    for(int i = 0; i < 10; i++) {
+      final SnapshotData snapshot = data.snapshot();
+      query("for $b in //b return replace value of node $b/text() with 'text' || " + i);
+      snapshot.close();
+    }
+    assertTrue(data.meta.dbfile(DataText.DATATBL).length() <= size * 3);
+  }
+
+  /**
+   * Runs an update while a read-only query is evaluated.
+   * @throws Exception exception
+   */
+  @Test
+  public void parallel() throws Exception {
+    final String count = "count(" + _DB_OPEN.args(NAME) + "//b)";
+    final Context ctx = new Context(context);
+    ctx.user(context.user());
+    final ExecutorService es = Executors.newSingleThreadExecutor();
+    try {
+      final Future<String> reader = es.submit(() ->
+        new XQuery(count + ',' + _PROF_SLEEP.args(2000) + ',' + count).execute(ctx));
+      Thread.sleep(500);
+      execute(new XQuery("insert node <b/> into " + _DB_OPEN.args(NAME) + "/a"));
+      assertFalse(reader.isDone());
+      assertEquals(SIZE + "\n" + SIZE, reader.get());
+      assertEquals(String.valueOf(SIZE + 1), execute(new XQuery(count)));
+    } finally {
+      es.shutdown();
+      ctx.closeDB();
+    }
+  }
+
+  /**
+   * Creates, replaces, optimizes and drops a database while read-only queries access snapshots.
+   * @throws Exception exception
+   */
+  @Test
+  public void structural() throws Exception {
+    execute(new Close());
+    final String count = "count(" + _DB_OPEN.args(NAME) + "//b)";
+    final String replace = _DB_REPLACE.args(NAME, NAME + ".xml", " <a>{ (1 to 10) ! <b/> }</a>");
+    final String create = _DB_CREATE.args(NAME,
+        " <a>{ (1 to " + SIZE + ") ! <b>{ . }</b> }</a>", NAME + ".xml");
+    final StringBuilder doc = new StringBuilder("<a>");
+    for(int i = 1; i <= SIZE; i++) doc.append("<b/>");
+    final String input = doc.append("</a>").toString();
+
+    final ExecutorService es = Executors.newFixedThreadPool(2);
+    final AtomicBoolean running = new AtomicBoolean(true);
+    try {
+      final ArrayList<Future<Integer>> readers = new ArrayList<>();
+      for(int r = 0; r < 2; r++) {
+        readers.add(es.submit(() -> {
+          final Context ctx = new Context(context);
+          ctx.user(context.user());
+          int found = 0;
+          try {
+            while(running.get()) {
+              try {
+                final String result = new XQuery(count).execute(ctx);
+                // counts of the created, replaced, or optimized database
+                assertTrue(result, result.equals(String.valueOf(SIZE)) || result.equals("10"));
+                found++;
+              } catch(final BaseXException ex) {
+                // the database may have been dropped
+                assertTrue(ex.getMessage(), ex.getMessage().contains(
+                    Util.info(Text.DB_NOT_FOUND_X, NAME)));
+              }
+            }
+          } finally {
+            ctx.closeDB();
+          }
+          return found;
+        }));
+      }
+
+      for(int i = 0; i < 20; i++) {
+        if(i % 2 == 0) {
+          execute(new CreateDB(NAME, input));
+          execute(new OptimizeAll());
+          execute(new Close());
+        } else {
+          execute(new XQuery(create));
+        }
+        execute(new XQuery(replace));
+        execute(new XQuery(_DB_OPTIMIZE.args(NAME, true)));
+        if(i % 2 == 0) execute(new DropDB(NAME));
+        else execute(new XQuery(_DB_DROP.args(NAME)));
+      }
+      running.set(false);
+      for(final Future<Integer> reader : readers) reader.get();
+    } finally {
+      running.set(false);
+      es.shutdown();
+    }
+  }
+
+  /**
+   * Checks that queries with explicit and implicit index access are evaluated with indexes.
+   */
+  @Test
+  public void indexes() {
+    execute(new CreateIndex(CmdIndex.FULLTEXT));
+    execute(new Close());
+
+    // explicit index access: database will be locked
+    final String text = _DB_TEXT.args(NAME, "text5");
+    final String search = _FT_SEARCH.args(NAME, "text7");
+    assertTrue(readLocks(text).contains(NAME));
+    assertTrue(readLocks(search).contains(NAME));
+    assertEquals("text5", execute(new XQuery(text + " ! string()")));
+    assertEquals("text7", execute(new XQuery(search + " ! string()")));
+
+    // implicit index access: live index of snapshot will be used
+    set(MainOptions.QUERYINFO, true);
+    try {
+      final XQuery xquery = new XQuery(_DB_OPEN.args(NAME) + "//b[text() = 'text5'] ! string()");
+      assertEquals("text5", execute(xquery));
+      assertTrue(xquery.info(), xquery.info().contains("apply text index"));
+    } finally {
+      set(MainOptions.QUERYINFO, false);
+    }
+  }
+
+  /**
+   * Checks that an update waits until snapshots with index access have been released.
+   * @throws Exception exception
+   */
+  @Test
+  public void indexWait() throws Exception {
+    final DiskData data = data();
+    final SnapshotData snapshot = data.snapshot();
+    assertTrue(snapshot.indexed(IndexType.TEXT));
+
+    final Context ctx = new Context(context);
+    ctx.user(context.user());
+    final ExecutorService es = Executors.newSingleThreadExecutor();
+    try {
+      final Future<String> update = es.submit(() ->
+        new XQuery("insert node <b/> into " + _DB_OPEN.args(NAME) + "/a").execute(ctx));
+      Thread.sleep(500);
+      assertFalse(update.isDone());
+
+      // new snapshots do not use the index while an update is pending
+      final SnapshotData snapshot2 = data.snapshot();
+      try {
+        assertFalse(snapshot2.indexed(IndexType.TEXT));
+      } finally {
+        snapshot2.close();
+      }
+      snapshot.close();
+      update.get(5, TimeUnit.SECONDS);
+      assertEquals(String.valueOf(SIZE + 1), execute(new XQuery("count(//b)")));
+    } finally {
+      es.shutdown();
+      ctx.closeDB();
+    }
+  }
+
+  /**
+   * Checks that only persistent databases are accessed without locks.
+   */
+  @Test
+  public void locks() {
+    assertFalse(readLocks(_DB_OPEN.args(NAME)).contains(NAME));
+    assertFalse(readLocks("//b").contains(Locking.CONTEXT));
+
+    // main-memory databases are not snapshotted, and must be locked
+    final String name = NAME + "mem";
+    set(MainOptions.MAINMEM, true);
+    try {
+      execute(new CreateDB(name, "<x/>"));
+      assertTrue(readLocks(_DB_OPEN.args(name)).contains(name));
+      assertTrue(readLocks("//x").contains(Locking.CONTEXT));
+    } finally {
+      execute(new Close());
+      set(MainOptions.MAINMEM, false);
+    }
+  }
+
+  /**
+   * Returns the read locks of the specified query.
+   * @param query query
+   * @return read locks
+   */
+  private static LockList readLocks(final String query) {
+    final XQuery cmd = new XQuery(query);
+    cmd.updating(context);
+    cmd.addLocks();
+    return cmd.jc().locks.reads;
+  }
+
+  /**
+   * Returns the opened database.
+   * @return database
+   */
+  private static DiskData data() {
+    final Data data = context.data();
+    assertTrue(data.meta.snapshots);
+    return (DiskData) data;
+  }
+
+  /**
+   * Serializes the document of the specified database.
+   * @param data database
+   * @return string
+   * @throws Exception exception
+   */
+  private static String serialize(final Data data) throws Exception {
+    return new DBNode(data, 0).serialize().toString();
+  }
+}
@@ -0,0 +1,63 @@
+package org.basex.index;
+
+import static org.basex.util.Token.*;
+import static org.junit.Assert.*;
+
+import org.basex.util.list.*;
+import org.junit.*;
+
+/**
+ * Tests for {@link BloomFilter}.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class BloomFilterTest {
+  /** Number of keys. */
+  private static final int KEYS = 10000;
+
+  /** Added keys must always be found. */
+  @Test
+  public void contains() {
+    final BloomFilter filter = filter();
+    for(int i = 0; i < KEYS; i++) assertTrue(filter.contains(token("key" + i)));
+  }
+
+  /** Keys added after creation must be found. */
+  @Test
+  public void add() {
+    final BloomFilter filter = filter();
+    for(int i = 0; i < KEYS; i++) filter.add(token("new" + i));
+    for(int i = 0; i < KEYS; i++) assertTrue(filter.contains(token("new" + i)));
+  }
+
+  /** Most missing keys must be rejected. */
+  @Test
+  public void missing() {
+    final BloomFilter filter = filter();
+    int found = 0;
+    for(int i = 0; i < KEYS; i++) {
+      if(filter.contains(token("missing" + i))) found++;
+    }
+    assertTrue("False positives: " + found, found < KEYS / 20);
+  }
+
+  /** Empty filter. */
+  @Test
+  public void empty() {
+    final BloomFilter filter = new BloomFilter(new LongList());
+    assertFalse(filter.contains(token("key")));
+    filter.add(token("key"));
+    assertTrue(filter.contains(token("key")));
+  }
+
+  /**
+   * Creates a filter with the default keys.
+   * @return filter
+   */
+  private static BloomFilter filter() {
+    final LongList hashes = new LongList();
+    for(int i = 0; i < KEYS; i++) hashes.add(BloomFilter.hash(token("key" + i)));
+    return new BloomFilter(hashes);
+  }
+}
@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 
 import java.util.*;
 
+import org.basex.core.*;
 import org.junit.*;
 
 /**
@@ -23,6 +24,12 @@ public final class IndexCacheTest {
     cache = new IndexCache();
   }
 
+  /** Clean up method. */
+  @After
+  public void tearDown() {
+    cache.clear();
+  }
+
   /** Test for method {@link IndexCache#get(byte[])}. */
   @Test
   public void testGetNotExisting() {
@@ -74,6 +81,48 @@ public final class IndexCacheTest {
     assertNull(cache.get(key));
   }
 
+  /** Test that the number of cached entries is bounded. */
+  @Test
+  public void testCapacity() {
+    IndexCache.size(1600);
+    try {
+      for(int i = 0; i < 10000; ++i) cache.add(token("keyCapacity" + i), i, i);
+      assertTrue(cache.size() <= 1600);
+    } finally {
+      IndexCache.size(StaticOptions.INDEXCACHE.value());
+    }
+  }
+
+  /** Test that frequently accessed entries are not evicted by a scan over new keys. */
+  @Test
+  public void testScan() {
+    IndexCache.size(1600);
+    try {
+      final byte[] key = token("keyScan");
+      cache.add(key, 1, 1L);
+      assertCacheEntry(key, 1, 1L);
+      for(int i = 0; i < 10000; ++i) cache.add(token("keyScan" + i), i, i);
+      assertCacheEntry(key, 1, 1L);
+    } finally {
+      IndexCache.size(StaticOptions.INDEXCACHE.value());
+    }
+  }
+
+  /** Test for method {@link IndexCache#clear()}. */
+  @Test
+  public void testClear() {
+    final IndexCache other = new IndexCache();
+    final byte[] key = token("keyClear");
+    cache.add(key, 1, 1L);
+    other.add(key, 2, 2L);
+    cache.clear();
+
+    assertNull(cache.get(key));
+    assertEquals(0, cache.size());
+    assertEquals(2, other.get(key).size);
+    other.clear();
+  }
+
   /**
    * Test that new records can be continuously added without hitting
    * {@link OutOfMemoryError}.
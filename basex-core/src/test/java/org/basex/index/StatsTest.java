@@ -0,0 +1,112 @@
+package org.basex.index;
+
+import static org.basex.util.Token.*;
+import static org.junit.Assert.*;
+
+import java.util.function.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.data.*;
+import org.basex.index.name.*;
+import org.basex.index.stats.*;
+import org.basex.query.*;
+import org.junit.Test;
+
+/**
+ * Tests for the selectivity estimates of the {@link Stats} class.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class StatsTest extends SandboxTest {
+  /** Number of values. */
+  private static final int VALUES = 20000;
+
+  /** Numeric ranges. */
+  @Test
+  public void range() {
+    final Stats stats = stats(i -> token(i));
+    assertEquals(0.1, stats.selectivity(0, VALUES / 10 - 1), 0.03);
+    assertEquals(0.5, stats.selectivity(VALUES / 2, VALUES), 0.03);
+    assertEquals(1, stats.selectivity(-1, VALUES), 0);
+    assertEquals(0, stats.selectivity(VALUES, VALUES * 2), 0);
+    assertEquals(-1, stats(i -> token("x" + i)).selectivity(0, 1), 0);
+  }
+
+  /** Distinct values. */
+  @Test
+  public void distinct() {
+    final Stats stats = stats(i -> token("value" + i));
+    assertEquals(VALUES, stats.distinct(), VALUES / 20);
+    assertEquals(1.0 / VALUES, stats.selectivity(token("value1")), 0.0001);
+    assertEquals(4, stats(i -> token("v" + i % 4)).distinct());
+  }
+
+  /** Categories. */
+  @Test
+  public void categories() {
+    final Stats stats = stats(i -> token(i % 10 == 0 ? "a" : "b"));
+    assertEquals(0.1, stats.selectivity(token("a")), 0);
+    assertEquals(0.9, stats.selectivity(token("b")), 0);
+    assertEquals(0, stats.selectivity(token("c")), 0);
+  }
+
+  /** Statistics of a database that has been reopened. */
+  @Test
+  public void reopen() {
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int i = 0; i < VALUES; i++) sb.append("<a>").append(i).append("</a><b>b").append(i).
+      append("</b>");
+    execute(new CreateDB(NAME, sb.append("</x>").toString()));
+    execute(new Close());
+    execute(new Open(NAME));
+
+    final Names names = context.data().elemNames;
+    final Stats a = names.stats(names.id(token("a"))), b = names.stats(names.id(token("b")));
+    assertEquals(0.1, a.selectivity(0, VALUES / 10 - 1), 0.03);
+    assertEquals(VALUES, b.distinct(), VALUES / 20);
+    execute(new DropDB(NAME));
+  }
+
+  /**
+   * Orders predicates by their selectivity.
+   * @throws Exception exception
+   */
+  @Test
+  public void order() throws Exception {
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int i = 0; i < 1000; i++) {
+      sb.append("<a b='").append(i % 2).append("' c='").append(i % 100).append("'/>");
+    }
+    set(MainOptions.ATTRINDEX, false);
+    try {
+      execute(new CreateDB(NAME, sb.append("</x>").toString()));
+    } finally {
+      set(MainOptions.ATTRINDEX, true);
+    }
+    try(QueryProcessor qp = new QueryProcessor("//a[@b = '1'][@c = '1']", context)) {
+      qp.compile();
+      final String plan = qp.qc.root.toString();
+      assertTrue(plan, plan.indexOf("@*:c") < plan.indexOf("@*:b"));
+      assertEquals(10, qp.value().size());
+    }
+    execute(new DropDB(NAME));
+  }
+
+  /**
+   * Creates statistics for generated values.
+   * @param values function for generating values
+   * @return statistics
+   */
+  private static Stats stats(final IntFunction<byte[]> values) {
+    final MetaData meta = new MetaData(NAME, new MainOptions(), null);
+    final Stats stats = new Stats();
+    for(int i = 0; i < VALUES; i++) {
+      stats.add(values.apply(i), meta);
+      stats.count++;
+    }
+    return stats;
+  }
+}
@@ -0,0 +1,79 @@
+package org.basex.io.random;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import org.basex.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Tests for class {@link Buffers}.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class BuffersTest extends SandboxTest {
+  /** Signals that a buffer is being written. */
+  private final CountDownLatch writing = new CountDownLatch(1);
+  /** Allows the write operation to finish. */
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  /** Buffer manager, which blocks before a buffer is written. */
+  private final Buffers buffers = new Buffers() {
+    @Override
+    void read(final Buffer bf) { }
+
+    @Override
+    void write(final Buffer bf) throws InterruptedIOException {
+      writing.countDown();
+      try {
+        release.await();
+      } catch(final InterruptedException ex) {
+        throw new InterruptedIOException(ex.getMessage());
+      }
+      bf.dirty = false;
+    }
+  };
+
+  /**
+   * Modifies a buffer while it is written in the background.
+   * @throws Exception exception
+   */
+  @Test
+  public void modifyWhileWriting() throws Exception {
+    // modify first block, switch to second block
+    buffers.cursor(0);
+    final Buffer bf = buffers.current();
+    bf.dirty = true;
+    bf.data[0] = 1;
+    buffers.cursor(1);
+
+    // write first block in the background
+    final ExecutorService es = Executors.newSingleThreadExecutor();
+    try {
+      final Future<?> flush = es.submit(() -> {
+        buffers.flush(false);
+        return null;
+      });
+      assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+      // modify first block again after it has been selected for being written
+      buffers.cursor(0);
+      assertSame(bf, buffers.current());
+      bf.dirty = true;
+      bf.data[0] = 2;
+      buffers.cursor(1);
+
+      release.countDown();
+      flush.get(5, TimeUnit.SECONDS);
+    } finally {
+      es.shutdown();
+    }
+    // the latest modification has not been written yet
+    assertTrue(bf.dirty);
+    buffers.close();
+  }
+}
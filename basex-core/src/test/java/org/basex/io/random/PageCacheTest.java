@@ -0,0 +1,64 @@
+package org.basex.io.random;
+
+import static org.junit.Assert.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.util.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Tests for class {@link PageCache}.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class PageCacheTest extends SandboxTest {
+  /** Number of written blocks (exceeds the cache size). */
+  private static final int BLOCKS = 1 << 9;
+
+  /** Shrinks the cache. */
+  @BeforeClass
+  public static void init() {
+    PageCache.size(1);
+  }
+
+  /** Restores the cache size. */
+  @AfterClass
+  public static void finish() {
+    PageCache.size(context.soptions.get(StaticOptions.PAGECACHE));
+  }
+
+  /**
+   * Writes more blocks than fit into the cache to two files, and reads them back.
+   */
+  @Test
+  public void evict() {
+    final IOFile file1 = new IOFile(sandbox(), "cache1"), file2 = new IOFile(sandbox(), "cache2");
+    try {
+      try(DataAccess da1 = new DataAccess(file1); DataAccess da2 = new DataAccess(file2)) {
+        for(int b = 0; b < BLOCKS; b++) {
+          da1.write4((long) b * IO.BLOCKSIZE, b);
+          da2.write4((long) b * IO.BLOCKSIZE + 4, -b);
+        }
+        for(int b = 0; b < BLOCKS; b++) {
+          assertEquals(b, da1.read4((long) b * IO.BLOCKSIZE));
+          assertEquals(-b, da2.read4((long) b * IO.BLOCKSIZE + 4));
+        }
+      }
+      try(DataAccess da1 = new DataAccess(file1)) {
+        for(int b = BLOCKS - 1; b >= 0; b--) {
+          assertEquals(b, da1.read4((long) b * IO.BLOCKSIZE));
+        }
+      }
+    } catch(final Exception ex) {
+      Util.stack(ex);
+      fail(ex.toString());
+    } finally {
+      file1.delete();
+      file2.delete();
+    }
+  }
+}
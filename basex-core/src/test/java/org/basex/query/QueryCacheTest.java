@@ -0,0 +1,88 @@
+package org.basex.query;
+
+import static org.junit.Assert.*;
+
+import org.basex.*;
+import org.basex.io.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Query cache tests.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class QueryCacheTest extends SandboxTest {
+  /** Clears the cache. */
+  @Before
+  public void clear() {
+    context.queries.clear();
+  }
+
+  /**
+   * Evaluates a cached query with different bindings.
+   * @throws Exception exception
+   */
+  @Test
+  public void bindings() throws Exception {
+    final String query = "declare namespace p = 'p';"
+        + "declare variable $p:x as xs:integer external := 1;"
+        + "declare variable $y := $p:x * 2;"
+        + "declare function local:f($a) { $a + $y };"
+        + "let $f := function($b) { local:f($b) + $p:x } return $f(1)";
+    assertEquals("4", eval(query, null));
+    for(int i = 2; i < 5; i++) {
+      assertEquals(Integer.toString(3 * i + 1), eval(query, Integer.toString(i)));
+    }
+  }
+
+  /**
+   * Evaluates a cached query with an imported module that has been modified.
+   * @throws Exception exception
+   */
+  @Test
+  public void modules() throws Exception {
+    final IOFile module = new IOFile(sandbox(), "cache.xqm");
+    write(module, "module namespace m = 'm'; declare function m:f() { 1 };");
+    final String query = "import module namespace m = 'm' at '" + module.url() + "'; m:f()";
+    assertEquals("1", eval(query, null));
+    assertEquals("1", eval(query, null));
+
+    final long time = module.timeStamp();
+    write(module, "module namespace m = 'm'; declare function m:f() { 2 };");
+    module.file().setLastModified(time + 2000);
+    assertEquals("2", eval(query, null));
+    assertEquals("2", eval(query, null));
+  }
+
+  /**
+   * Evaluates a query that is currently evaluated by another query processor.
+   * @throws Exception exception
+   */
+  @Test
+  public void leased() throws Exception {
+    final String query = "<a xmlns:p='p'>{ 1 }</a>", result = "<a xmlns:p=\"p\">1</a>";
+    try(QueryProcessor qp = new QueryProcessor(query, context)) {
+      qp.parse();
+      assertEquals(result, eval(query, null));
+      assertEquals(result, qp.value().serialize().toString());
+    }
+    assertEquals(result, eval(query, null));
+  }
+
+  /**
+   * Evaluates a query with a processor.
+   * @param query query
+   * @param x value to be bound to {@code $p:x} (can be {@code null})
+   * @return result
+   * @throws Exception exception
+   */
+  private static String eval(final String query, final String x) throws Exception {
+    try(QueryProcessor qp = new QueryProcessor(query, context)) {
+      qp.parse();
+      if(x != null) qp.bind("p:x", x);
+      return qp.value().serialize().toString();
+    }
+  }
+}
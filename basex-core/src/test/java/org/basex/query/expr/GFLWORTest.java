@@ -4,6 +4,7 @@ import static org.basex.query.QueryError.*;
 import static org.basex.query.func.Function.*;
 import static org.junit.Assert.*;
 
+import org.basex.core.*;
 import org.basex.query.ast.*;
 import org.basex.query.expr.gflwor.*;
 import org.basex.query.up.expr.*;
@@ -336,4 +337,152 @@ public final class GFLWORTest extends QueryPlanTest {
         1, count(Let.class, 1));
     error("let $x := <x>false</x> let $b as xs:boolean := $x/text() return $b", INVTYPE_X_X_X);
   }
+
+  /** Sorts tuples with sorted runs on disk. */
+  @Test public void orderBySpill() {
+    set(MainOptions.SORTLIMIT, 3);
+    try {
+      query("for $i in (5, 3, 4, 1, 2, 1) order by $i return $i", "1\n1\n2\n3\n4\n5");
+      query("for $i in 1 to 10 let $s := string($i) order by $i mod 3, $i descending " +
+          "return $s", "9\n6\n3\n10\n7\n4\n1\n8\n5\n2");
+      query("for $i in (<a>b</a>, <a>a</a>, <a>c</a>, <a>a</a>) order by $i return $i",
+          "<a>a</a>\n<a>a</a>\n<a>b</a>\n<a>c</a>");
+      query("for $i in (4, 3, 1, 2) order by $i[. mod 2 = 1] empty greatest return $i",
+          "1\n3\n4\n2");
+      query(SORT.args(" reverse(1 to 10)") + "[. < 5]", "1\n2\n3\n4");
+      query(_HOF_SORT_WITH.args(" (3, 1, 2, 5, 4)", " function($a, $b) { $a > $b }"),
+          "5\n4\n3\n2\n1");
+      query("count(for $i in 1 to 1000 order by -$i return $i)", 1000);
+    } finally {
+      set(MainOptions.SORTLIMIT, 0);
+    }
+  }
+
+  /** Aggregates the values of non-grouping variables, spills groups to disk. */
+  @Test public void groupByAggregate() {
+    final String query = "for $i in 1 to 20 let $x := $i group by $k := $i mod 3 order by $k " +
+        "return string-join(($k, count($x), sum($x), avg($x), min($x), max($x)), ',')";
+    final String result = "0,6,63,10.5,3,18\n1,7,70,10,1,19\n2,7,77,11,2,20";
+    query(query, result);
+    query("for $i in (1, 'a', 2) let $x := $i group by $k := $i instance of xs:string " +
+        "order by $k return count($x)", "2\n1");
+    query("for $i in (1, 2) let $x := $i[. > 1] group by $k := 1 return (sum($x), avg($x))",
+        "2\n2");
+    query("for $i in (1, 2) let $x := () group by $k := $i return (sum($x), avg($x), max($x))",
+        "0\n0");
+    error("for $i in (1, 'a') let $x := $i group by $k := 1 return max($x)", CMP_X_X_X);
+
+    set(MainOptions.GROUPLIMIT, 2);
+    try {
+      query(query, result);
+      query("count(for $i in 1 to 1000 group by $k := $i mod 100 return $k)", 100);
+      query("sum(for $i in 1 to 1000 let $x := $i group by $k := $i mod 100 return count($x))",
+          1000);
+    } finally {
+      set(MainOptions.GROUPLIMIT, 0);
+    }
+  }
+
+  /** Evaluates the tuples of for clauses in parallel. */
+  @Test public void parallelFor() {
+    set(MainOptions.PARALLELFOR, true);
+    try {
+      query("declare function local:f($i) { $i * 2 }; " +
+          "let $n := 10 for $i at $p in 1 to $n let $j := local:f($i) where $j mod 3 != 0 " +
+          "return $p || ':' || $j", "1:2\n2:4\n4:8\n5:10\n7:14\n8:16\n10:20");
+      query("string-join(for $i in 1 to 1000 return $i) = string-join(1 to 1000)", true);
+      query("for $i in 1 to 3 for $j in 1 to $i return $i * $j", "1\n2\n4\n3\n6\n9");
+      query("(for $i in 1 to 3 return <a>{ $i }</a>)/string()", "1\n2\n3");
+      query("<a><b>1</b><b>2</b></a>/(for $i in 1 to 2 return b[$i]/string())", "1\n2");
+      error("for $i in 1 to 10 return if($i = 7) then error() else $i", FUNERR1);
+      // lazy global variables are bound once
+      query("declare %basex:lazy variable $v := sum(1 to 100000); " +
+          "sum(for $i in 1 to 100 return $v + $i)", 500005005050L);
+    } finally {
+      set(MainOptions.PARALLELFOR, false);
+    }
+  }
+
+  /** Stops the parallel evaluation of for clauses. */
+  @Test public void parallelForStop() {
+    final String id = query(_JOBS_EVAL.args("declare option db:parallelfor 'true'; " +
+        "for $i in 1 to 8 return count((1 to 10000000000)[. = $i * 0])"));
+    Performance.sleep(200);
+    query(_JOBS_STOP.args(id));
+    Performance.sleep(1000);
+    query(_JOBS_FINISHED.args(id), true);
+  }
+
+  /** Sorts tuples with normalized keys. */
+  @Test public void orderByKeys() {
+    query("string-join(for $i in (5, 3, -1, 0, 9223372036854775807, -9223372036854775807, 3) " +
+        "order by $i descending return $i, ',')",
+        "9223372036854775807,5,3,3,0,-1,-9223372036854775807");
+    query("string-join(for $i at $p in (1e0, -0e0, 0e0, xs:double('NaN'), -1e300, " +
+        "xs:double('INF'), xs:double('-INF'), 2.5e0) order by $i return $p, ',')",
+        "4,7,5,2,3,1,8,6");
+    query("string-join(for $i at $p in ('b', 'a', '', 'ab', 'a', 'B', 'é', 'z') " +
+        "order by $i descending return $p, ',')", "7,8,1,4,2,5,6,3");
+    query("string-join(for $i at $p in ('b', 'a', '', 'ab', 'a', 'B', 'é', 'z', 'A') " +
+        "order by $i collation '?lang=de' return $p, ',')", "3,2,5,9,4,1,6,7,8");
+    query("string-join(for $i at $p in (<a>b</a>, <a/>, 'c', ()) order by $i[.] empty greatest " +
+        "return $p, ',')", "2,1,3");
+    query("string-join(for $i at $p in (xs:date('2001-01-02'), xs:date('2000-12-31+14:00'), " +
+        "xs:date('2001-01-01Z')) order by $i return $p, ',')", "2,3,1");
+    query("let $s := (for $i in 1 to 20000 order by $i mod 100, $i descending return $i) " +
+        "return ($s[1], $s[last()])", "20000\n99");
+    // fall back to comparisons of items
+    query("string-join(for $i at $p in (1, 2.5, 1e0, 0) order by $i return $p, ',')",
+        "4,1,3,2");
+    error("for $i in (1, 'a') order by $i return $i", INVTYPE_X_X_X);
+  }
+
+  /** Sorts only the tuples that are accessed by positional predicates (top-k). */
+  @Test public void orderByLimit() {
+    check("(for $i in (5, 3, 4, 1, 2, 1) order by $i return $i)[position() <= 3]",
+        "1\n1\n2", "//OrderBy/@max = 3");
+    check("(for $i in 1 to 10 order by $i mod 3, $i descending return $i)[5]",
+        7, "//OrderBy/@max = 5");
+    check("subsequence(for $i in 1 to 10 order by $i mod 2, $i return $i, 2, 3)",
+        "4\n6\n8", "//OrderBy/@max = 4");
+    check(HEAD.args(" for $i in 1 to 10 let $j := -$i order by $j return $i"),
+        10, "//OrderBy/@max = 1");
+    check("(for $i in 1 to 10 order by $i descending count $c return $c + $i)[2]",
+        11, "//OrderBy/@max = 2");
+    // no limit if tuples may yield no or no single result
+    check("(for $i in 1 to 10 order by $i descending return $i[. > 5])[position() <= 3]",
+        "10\n9\n8", "empty(//OrderBy/@max)");
+    check("(for $i in 1 to 10 order by $i descending for $j in 1 to 2 return $j)[1]",
+        1, "empty(//OrderBy/@max)");
+  }
+
+  /** Rewrites nested for clauses with equality predicates to hash joins. */
+  @Test public void hashJoin() {
+    check("for $a in 1 to 3 for $b in (3, 1.0, 2.0, 1) where $a = $b return $a || $b",
+        "11\n11\n22\n33", exists(HashJoin.class));
+    check("for $a in (1e0, 2e0) for $b in (xs:float(2), xs:float(1)) where $a = $b " +
+        "return $a || $b", "11\n22", exists(HashJoin.class));
+    check("for $a in ('a', 'b', 'c') for $b in ('b', 'a', 'b') where $a eq $b return $a || $b",
+        "aa\nbb\nbb", exists(HashJoin.class));
+    check("let $o := (for $i in 1 to 5 return <o c='{ $i mod 3 }'/>) " +
+        "let $c := (for $i in (0 to 3, 1) return <c i='{ $i }'/>) " +
+        "for $a in $o for $b in $c where $a/@c = $b/@i return $a/@c || $b/@i",
+        "11\n11\n22\n00\n11\n11\n22", exists(HashJoin.class));
+    // multiple keys: items are returned only once, and in their original order
+    check("let $c := (<c><i>1</i><i>2</i></c>, <c><i>2</i></c>, <c/>) " +
+        "for $a in (('1', '2'), '3') for $b in $c where $b/i = ($a, '2') return count($b/i)",
+        "2\n1\n2\n1\n2\n1", exists(HashJoin.class));
+
+    // no rewrite if the input depends on the outer clauses
+    check("for $a in 1 to 2 for $b in ($a to 3) where $a = $b return $a || $b",
+        "11\n22", empty(HashJoin.class));
+    // no rewrite if numbers would be promoted with loss of precision
+    check("for $a in (9007199254740993, 1) for $b in (9007199254740992e0, 1e0) " +
+        "where $a = $b return $a", "9007199254740993\n1", empty(HashJoin.class));
+    check("for $a in 1 to 3 for $b in (3, 1.0, 2e0, 1) where $a = $b return $a || $b",
+        "11\n11\n22\n33", empty(HashJoin.class));
+    // no rewrite if the keys cannot be hashed
+    check("for $a in (1, 2) for $b in (1, 3) where $a < $b return $a || $b",
+        "13\n23", empty(HashJoin.class));
+  }
 }
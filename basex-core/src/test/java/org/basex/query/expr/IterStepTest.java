@@ -0,0 +1,169 @@
+package org.basex.query.expr;
+
+import static org.basex.query.func.Function.*;
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.query.*;
+import org.basex.query.expr.path.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * Tests for the batch-wise scanning of database axes ({@link IterStep}).
+ * The results are compared with the results of the item-wise evaluation.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class IterStepTest extends AdvancedQueryTest {
+  /** Name of the database with namespaces. */
+  private static final String NS = NAME + "ns";
+  /** Number of documents. */
+  private static final int DOCS = 3;
+  /** Number of elements and attributes per document. */
+  private static final int SIZE = 100;
+
+  /** Creates the test databases. */
+  @BeforeClass
+  public static void init() {
+    execute(new CreateDB(NS));
+    execute(new CreateDB(NAME));
+    for(int d = 1; d <= DOCS; d++) {
+      execute(new Add(NAME + d + ".xml", doc(false)));
+      execute(new Open(NS));
+      execute(new Add(NS + d + ".xml", doc(true)));
+      execute(new Open(NAME));
+    }
+  }
+
+  /** Drops the test databases. */
+  @AfterClass
+  public static void finish() {
+    execute(new DropDB(NAME));
+    execute(new DropDB(NS));
+  }
+
+  /** Restores the default evaluation. */
+  @After
+  public void reset() {
+    set(MainOptions.SCANBATCH, true);
+  }
+
+  /** Child axis. */
+  @Test public void child() {
+    compare("$doc/root/a", DOCS * SIZE);
+    compare("$doc/root/*", DOCS * (SIZE * 2 + 1));
+    compare("$doc/root/node()", DOCS * (SIZE * 2 + 1 + SIZE / 5));
+    compare("$doc/root/text()", 0);
+    compare("$doc/root/a[@n mod 7 = 0]", DOCS * (SIZE / 7));
+    compare("$doc/root/a[text() = 't50']", DOCS);
+  }
+
+  /** Descendant axis. */
+  @Test public void descendant() {
+    compare("$doc//a", DOCS * SIZE);
+    compare("$doc//text()", DOCS * SIZE);
+    compare("$doc//comment()", DOCS * (SIZE / 10));
+    compare("$doc//processing-instruction()", DOCS * (SIZE / 10));
+    compare("$doc/descendant::node()[self::b or self::c]", DOCS * SIZE * 2);
+    compare("$doc//*:a", DOCS * SIZE);
+    compare("$doc//unknown", 0);
+  }
+
+  /** Attribute axis. */
+  @Test public void attribute() {
+    compare("$doc//e/@*", DOCS * SIZE);
+    compare("$doc//e/@a50", DOCS);
+    compare("$doc//e/@*[. = '7']", DOCS);
+    compare("$doc//@n", DOCS * SIZE);
+  }
+
+  /** Following axes. */
+  @Test public void following() {
+    compare("($doc/root/a)[1]/following::a", DOCS * (SIZE - 1));
+    compare("($doc/root/a)[1]/following::node()", DOCS * (SIZE * 4 - 1 + SIZE / 5));
+    compare("($doc/root/a)[1]/following-sibling::*", DOCS * SIZE * 2);
+  }
+
+  /** Namespaces. */
+  @Test public void namespaces() {
+    compareNS("$doc//a", DOCS * SIZE);
+    compareNS("$doc//p:a", DOCS * SIZE);
+    compareNS("$doc//*:a", DOCS * SIZE * 2);
+    compareNS("$doc//Q{urn:p}*", DOCS * SIZE);
+    compareNS("$doc/root/p:*", DOCS * SIZE);
+    compareNS("$doc//e/@p:*", DOCS * SIZE / 2);
+    compareNS("$doc//e/@*:a2", DOCS);
+  }
+
+  /** Element names with the reserved xml prefix. */
+  @Test public void xmlPrefix() {
+    final String db = NAME + "xml";
+    execute(new CreateDB(db, doc(false).replace("<e", "<xml:a/><e")));
+    try {
+      compare(db, "$doc//a", SIZE + 1);
+      compare(db, "$doc//xml:a", 1);
+      compare(db, "$doc/root/*:a", SIZE + 1);
+    } finally {
+      execute(new DropDB(db));
+      execute(new Open(NAME));
+    }
+  }
+
+  /**
+   * Compares the item-wise and batch-wise results of a path in the database without namespaces.
+   * @param path path expression
+   * @param count expected number of results
+   */
+  private static void compare(final String path, final int count) {
+    compare(NAME, path, count);
+  }
+
+  /**
+   * Compares the item-wise and batch-wise results of a path in the database with namespaces.
+   * @param path path expression
+   * @param count expected number of results
+   */
+  private static void compareNS(final String path, final int count) {
+    compare(NS, path, count);
+  }
+
+  /**
+   * Compares the item-wise and batch-wise results of a path, which is evaluated for all
+   * documents of a database ({@code $doc}).
+   * @param db database
+   * @param path path expression
+   * @param count expected number of results
+   */
+  private static void compare(final String db, final String path, final int count) {
+    final String query = "declare namespace p = 'urn:p'; for $doc in " + _DB_OPEN.args(db) +
+        " return (" + path + ") ! " + _DB_NODE_PRE.args(" .");
+    set(MainOptions.SCANBATCH, false);
+    final String expected = query(query);
+    set(MainOptions.SCANBATCH, true);
+    assertEquals(path, count, expected.isEmpty() ? 0 : expected.split("\n").length);
+    assertEquals(path, expected, query(query));
+  }
+
+  /**
+   * Creates a test document.
+   * @param ns namespaces
+   * @return document
+   */
+  private static String doc(final boolean ns) {
+    final StringBuilder sb = new StringBuilder("<root").append(ns ? " xmlns:p='urn:p'>" : ">");
+    for(int s = 1; s <= SIZE; s++) {
+      sb.append("<a n='").append(s).append("'>t").append(s).append("</a>");
+      sb.append(ns ? "<p:a/>" : "<b><c/></b>");
+      if(s % 10 == 0) sb.append("<!--c--><?pi x?>");
+    }
+    sb.append("<e");
+    for(int s = 1; s <= SIZE; s++) {
+      sb.append(' ').append(ns && s % 2 == 0 ? "p:a" : "a").append(s).append("='").append(s);
+      sb.append('\'');
+    }
+    return sb.append("/></root>").toString();
+  }
+}
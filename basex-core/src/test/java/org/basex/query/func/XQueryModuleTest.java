@@ -6,6 +6,7 @@ import static org.basex.query.func.Function.*;
 import org.basex.core.*;
 import org.basex.core.cmd.*;
 import org.basex.query.*;
+import org.basex.util.*;
 import org.junit.Test;
 
 /**
@@ -109,10 +110,32 @@ public final class XQueryModuleTest extends AdvancedQueryTest {
     query(_XQUERY_FORK_JOIN.args(" (true#0, function() { (1 to 10000000)[.=1] })"), "true\n1");
     query(_XQUERY_FORK_JOIN.args(" ()"), "");
 
+    // nested calls, results of chunked functions are returned in the correct order
+    query("string-join(" + _XQUERY_FORK_JOIN.args(" for $i in 1 to 3 return function() { " +
+        _XQUERY_FORK_JOIN.args(" for $j in 1 to 3 return function() { $i * $j }") + " }") + ")",
+        "123246369");
+    query("string-join(" + _XQUERY_FORK_JOIN.args(" for $i in 1 to 20 return function() { $i }") +
+        ", ' ')", "1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 16 17 18 19 20");
+
     // errors
     error(_XQUERY_FORK_JOIN.args(" count#1"), ZEROFUNCS_X_X);
     error(_XQUERY_FORK_JOIN.args(" 123"), ZEROFUNCS_X_X);
     error(_XQUERY_FORK_JOIN.args(" error#0"), FUNERR1);
+
+    // no tasks remain queued after an error
+    query("try { " + _XQUERY_FORK_JOIN.args(" (1 to 100) ! error#0") + " } catch * { }, " +
+        _JOBS_LIST_DETAILS.args(_JOBS_CURRENT.args()) + "/@queued/string()", 0);
+  }
+
+  /** Test method. */
+  @Test
+  public void forkJoinStop() {
+    final String id = query(_JOBS_EVAL.args(_XQUERY_FORK_JOIN.args(
+        " (1 to 8) ! function() { count((1 to 10000000000)[. = 0]) }").trim()));
+    Performance.sleep(200);
+    query(_JOBS_STOP.args(id));
+    Performance.sleep(1000);
+    query(_JOBS_FINISHED.args(id), true);
   }
 
   /** Test method. */
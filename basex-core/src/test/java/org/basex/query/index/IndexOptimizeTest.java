@@ -235,6 +235,17 @@ public final class IndexOptimizeTest extends QueryPlanTest {
         exists(ValueAccess.class));
   }
 
+  /** Skips index rewritings if the index returns more results than nodes will be scanned. */
+  @Test public void scan() {
+    final StringBuilder sb = new StringBuilder("<x><a>1</a>");
+    for(int i = 0; i < 100; i++) sb.append("<b>1</b>");
+    execute(new CreateDB(NAME, sb.append("</x>").toString()));
+    final String path = _DB_OPEN.args(NAME) + "//a[text() = '1']";
+    check(path, "<a>1</a>", empty(ValueAccess.class));
+    // enforced rewritings are not skipped
+    check("(# db:enforceindex #) { " + path + " }", "<a>1</a>", exists(ValueAccess.class));
+  }
+
   /** Optimizations of predicates that are changed by optimizations. */
   @Test public void gh1597() {
     execute(new CreateDB(NAME, "<x>A</x>"));
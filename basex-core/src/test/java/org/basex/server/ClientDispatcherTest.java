@@ -0,0 +1,162 @@
+package org.basex.server;
+
+import static org.basex.core.Text.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.concurrent.*;
+
+import org.basex.*;
+import org.basex.api.client.*;
+import org.basex.core.*;
+import org.basex.core.users.*;
+import org.basex.io.in.*;
+import org.basex.util.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * This class tests the dispatching of client sessions ({@link ClientDispatcher}).
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class ClientDispatcherTest extends SandboxTest {
+  /** Client threads. */
+  private final ExecutorService clients = Executors.newCachedThreadPool();
+  /** Server socket. */
+  private ServerSocketChannel server;
+  /** Dispatcher. */
+  private ClientDispatcher dispatcher;
+
+  /**
+   * Starts the dispatcher.
+   * @throws IOException I/O exception
+   */
+  @Before
+  public void start() throws IOException {
+    server = ServerSocketChannel.open();
+    server.socket().bind(new InetSocketAddress(S_LOCALHOST, 0));
+    dispatcher = dispatcher();
+  }
+
+  /**
+   * Stops the dispatcher and closes all sessions.
+   * @throws IOException I/O exception
+   */
+  @After
+  public void stop() throws IOException {
+    dispatcher.close();
+    context.sessions.close();
+    server.close();
+    clients.shutdownNow();
+    context.soptions.set(StaticOptions.KEEPALIVE, StaticOptions.KEEPALIVE.value());
+  }
+
+  /**
+   * Stops the dispatcher while clients are being authenticated.
+   * @throws Exception exception
+   */
+  @Test
+  public void closeDuringAuthentication() throws Exception {
+    for(int c = 0; c < 50; c++) {
+      final Future<ClientSession> client = clients.submit(this::client);
+      dispatcher.accept(server.accept());
+      Performance.sleep(c % 5);
+      dispatcher.close();
+
+      // no closed session must remain registered (otherwise, closing all sessions would not end)
+      clients.submit(() -> context.sessions.close()).get(5, TimeUnit.SECONDS);
+      try {
+        client.get(5, TimeUnit.SECONDS).close();
+      } catch(final ExecutionException | IOException ex) {
+        // session was closed during authentication
+        Util.debug(ex);
+      }
+      Performance.sleep(50);
+      assertTrue(context.sessions.isEmpty());
+      dispatcher = dispatcher();
+    }
+  }
+
+  /**
+   * Closes sessions that are inactive for longer than the keepalive timeout.
+   * @throws Exception exception
+   */
+  @Test
+  public void keepAlive() throws Exception {
+    context.soptions.set(StaticOptions.KEEPALIVE, 1);
+
+    // authentication is stopped after the timeout
+    try(Socket socket = new Socket(S_LOCALHOST, port())) {
+      dispatcher.accept(server.accept());
+      socket.setSoTimeout(5000);
+      final BufferInput bi = new BufferInput(socket.getInputStream());
+      assertTrue(bi.readString().startsWith(Prop.NAME + ':'));
+      assertEquals(-1, bi.read());
+    }
+    assertTrue(context.sessions.isEmpty());
+
+    // inactive sessions are closed as soon as a new client connects
+    final ClientSession inactive = connect();
+    assertEquals(1, context.sessions.size());
+    Performance.sleep(1500);
+    try(ClientSession active = connect()) {
+      assertEquals(1, context.sessions.size());
+      assertEquals("1", active.query("1").execute());
+      try {
+        inactive.query("1").execute();
+        fail("Session was not closed.");
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    } finally {
+      try {
+        inactive.close();
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
+  }
+
+  /**
+   * Connects a client.
+   * @return client session
+   * @throws Exception exception
+   */
+  private ClientSession connect() throws Exception {
+    final Future<ClientSession> client = clients.submit(this::client);
+    dispatcher.accept(server.accept());
+    return client.get(5, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Creates a client session.
+   * @return client session
+   * @throws IOException I/O exception
+   */
+  private ClientSession client() throws IOException {
+    return new ClientSession(S_LOCALHOST, port(), UserText.ADMIN, UserText.ADMIN);
+  }
+
+  /**
+   * Returns the port of the server socket.
+   * @return port
+   */
+  private int port() {
+    return server.socket().getLocalPort();
+  }
+
+  /**
+   * Creates and starts a dispatcher.
+   * @return dispatcher
+   * @throws IOException I/O exception
+   */
+  private static ClientDispatcher dispatcher() throws IOException {
+    final ClientDispatcher cd = new ClientDispatcher(context);
+    cd.start();
+    return cd;
+  }
+}
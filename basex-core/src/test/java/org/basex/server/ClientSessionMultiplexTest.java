@@ -0,0 +1,155 @@
+package org.basex.server;
+
+import static org.basex.query.func.Function.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.api.client.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.core.cmd.Set;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * This class tests the client/server session API with multiplexed requests.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class ClientSessionMultiplexTest extends ClientSessionTest {
+  /** Initializes the test. */
+  @Override
+  @Before
+  public void startSession() {
+    super.startSession();
+    try {
+      assertTrue(((ClientSession) session).multiplex());
+    } catch(final Exception ex) {
+      fail(ex.getMessage());
+    }
+  }
+
+  /**
+   * Runs a query while another query is evaluated.
+   * @throws Exception exception
+   */
+  @Test
+  public void overtake() throws Exception {
+    final ExecutorService es = Executors.newSingleThreadExecutor();
+    try {
+      final Future<String> slow = es.submit(() ->
+        session.query(_PROF_SLEEP.args(2000) + ", 'slow'").execute());
+      Thread.sleep(200);
+      assertEqual("fast", session.query("'fast'").execute());
+      assertFalse(slow.isDone());
+      assertEqual("slow", slow.get());
+    } finally {
+      es.shutdown();
+    }
+  }
+
+  /**
+   * Evaluates queries in parallel.
+   * @throws Exception exception
+   */
+  @Test
+  public void parallel() throws Exception {
+    final int size = 16;
+    final ExecutorService es = Executors.newFixedThreadPool(size);
+    try {
+      final ArrayList<Future<String>> results = new ArrayList<>();
+      for(int t = 0; t < size; t++) {
+        final int n = t;
+        results.add(es.submit(() -> {
+          final StringBuilder sb = new StringBuilder();
+          try(Query query = session.query("(1 to 1000) ! (. * " + n + ')')) {
+            while(query.more()) sb.append(query.next()).append(' ');
+          }
+          return sb.toString();
+        }));
+      }
+      for(int t = 0; t < size; t++) {
+        final StringBuilder sb = new StringBuilder();
+        for(int i = 1; i <= 1000; i++) sb.append(i * t).append(' ');
+        assertEquals(sb.toString(), results.get(t).get());
+      }
+    } finally {
+      es.shutdown();
+    }
+  }
+
+  /**
+   * Returns the command infos of the threads that share a session.
+   * @throws Exception exception
+   */
+  @Test
+  public void info() throws Exception {
+    final int size = 8;
+    final ExecutorService es = Executors.newFixedThreadPool(size);
+    session.execute(new Set(MainOptions.QUERYINFO, true));
+    try {
+      final ArrayList<Future<Boolean>> results = new ArrayList<>();
+      for(int t = 0; t < size; t++) {
+        final String query = _PROF_SLEEP.args(10).trim() + ", " + t;
+        results.add(es.submit(() -> {
+          for(int i = 0; i < 20; i++) {
+            session.execute(new XQuery(query));
+            // give other threads the chance to finish their queries
+            Thread.sleep(5);
+            if(!session.info().contains(query)) return false;
+          }
+          return true;
+        }));
+      }
+      for(final Future<Boolean> result : results) assertTrue(result.get());
+    } finally {
+      es.shutdown();
+      session.execute(new Set(MainOptions.QUERYINFO, false));
+    }
+  }
+
+  /**
+   * Stops consuming the results of a query. The server must be blocked until further results
+   * are requested by the client.
+   * @throws Exception exception
+   */
+  @Test
+  public void window() throws Exception {
+    // results fit into the socket buffers, but exceed the window of a response
+    final int items = 2000;
+    final String jobs = "count(" + _JOBS_LIST.args() + ")";
+    try(Query query = session.query("let $s := string-join((1 to 1000) ! 'x') " +
+        "return (1 to " + items + ") ! $s")) {
+      assertTrue(query.more());
+      Thread.sleep(1000);
+      // the query is still running, as the client has not consumed the pending results
+      assertEqual("2", session.query(jobs).execute());
+      int c = 0;
+      for(; query.more(); query.next()) c++;
+      assertEquals(items, c);
+    }
+    assertEqual("1", session.query(jobs).execute());
+  }
+
+  /**
+   * Executes a command that may change the session context after a running query.
+   * @throws Exception exception
+   */
+  @Test
+  public void exclusive() throws Exception {
+    final ExecutorService es = Executors.newSingleThreadExecutor();
+    try {
+      final Future<String> slow = es.submit(() ->
+        session.query(_PROF_SLEEP.args(1000) + ", 'slow'").execute());
+      Thread.sleep(200);
+      session.execute(new Set(MainOptions.RUNS, 1));
+      assertTrue(slow.isDone());
+      assertEqual("slow", slow.get());
+    } finally {
+      es.shutdown();
+    }
+  }
+}
@@ -1,12 +1,17 @@
 package org.basex.server;
 
+import static org.basex.query.func.Function.*;
 import static org.junit.Assert.*;
 
 import java.io.*;
 
 import org.basex.*;
+import org.basex.api.client.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
 import org.basex.util.*;
 import org.junit.*;
+import org.junit.Test;
 
 /**
  * This class tests the client/server session API.
@@ -15,6 +20,12 @@ import org.junit.*;
  * @author Christian Gruen
  */
 public class ClientSessionTest extends SessionTest {
+  /** Number of results returned by {@link #RESULTS}. */
+  private static final int ITEMS = 30000;
+  /** Query that returns results exceeding the size of the socket buffers. */
+  private static final String RESULTS = "let $s := string-join((1 to 1000) ! 'x') " +
+      "return (1 to " + ITEMS + ") ! $s";
+
   /** Server reference. */
   private static BaseXServer server;
 
@@ -45,4 +56,90 @@ public class ClientSessionTest extends SessionTest {
       fail(Util.message(ex));
     }
   }
+
+  /** Runs a query that raises an error after some results have been sent to the client.
+   * @throws IOException I/O exception */
+  @Test
+  public void queryErrorStreamed() throws IOException {
+    try(Query query = session.query("(1, 2, " + ERROR.args().trim() + ')')) {
+      assertEqual("1", query.next());
+      assertEqual("2", query.next());
+      try {
+        query.next();
+        fail("Error expected.");
+      } catch(final BaseXException ex) {
+        assertTrue(ex.getMessage(), ex.getMessage().contains("FOER0000"));
+      }
+      assertNull(query.next());
+    }
+    // session is still usable
+    assertEqual("3", session.query("1 + 2").execute());
+    assertEqual("4", session.execute("xquery 2 * 2"));
+  }
+
+  /**
+   * Consumes results slower than permitted by the timeout.
+   * The time spent by the client must not be counted against the timeout of the query.
+   * @throws Exception exception
+   */
+  @Test
+  public void slowConsumer() throws Exception {
+    final StaticOptions sopts = server.context.soptions;
+    final int timeout = sopts.get(StaticOptions.TIMEOUT);
+    session.execute(new CreateUser(NAME, NAME));
+    session.execute(new Grant("read", NAME));
+    sopts.set(StaticOptions.TIMEOUT, 3);
+    try(ClientSession cs = createClient(NAME, NAME)) {
+      try(Query query = cs.query(RESULTS)) {
+        assertTrue(query.more());
+        Performance.sleep(5000);
+        int c = 0;
+        for(; query.more(); query.next()) c++;
+        assertEquals(ITEMS, c);
+      }
+    } finally {
+      sopts.set(StaticOptions.TIMEOUT, timeout);
+      // wait until the session has been closed by the server
+      while(server.context.sessions.stream().anyMatch(cl -> NAME.equals(cl.clientName()))) {
+        Performance.sleep(10);
+      }
+      session.execute(new DropUser(NAME));
+    }
+  }
+
+  /**
+   * Stops consuming results. The connection must be closed after the keep-alive time,
+   * and the locks of the query must be released.
+   * @throws Exception exception
+   */
+  @Test
+  public void stalledConsumer() throws Exception {
+    session.execute(new CreateDB(NAME, "<a/>"));
+    session.execute(new Close());
+
+    final StaticOptions sopts = server.context.soptions;
+    final int keepalive = sopts.get(StaticOptions.KEEPALIVE);
+    final ClientSession cs = createClient();
+    sopts.set(StaticOptions.KEEPALIVE, 1);
+    try {
+      final Query query = cs.query(_DB_OPEN.args(NAME) + ", " + RESULTS);
+      assertTrue(query.more());
+      Performance.sleep(4000);
+      // read lock has been released
+      session.execute(new XQuery("insert node <b/> into " + _DB_OPEN.args(NAME) + "/a"));
+      try {
+        while(query.more()) query.next();
+        fail("Connection is expected to be closed.");
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    } finally {
+      sopts.set(StaticOptions.KEEPALIVE, keepalive);
+      try {
+        cs.close();
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
+  }
 }
@@ -0,0 +1,157 @@
+package org.basex.server;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.core.StaticOptions.*;
+import org.basex.server.Log.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+import org.junit.*;
+import org.junit.Test;
+
+/**
+ * This class tests the asynchronous writing of log entries.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class LogTest extends SandboxTest {
+  /** Number of entries. */
+  private static final int ENTRIES = 10000;
+
+  /** Resets the options. */
+  @After
+  public void reset() {
+    final StaticOptions sopts = context.soptions;
+    sopts.set(StaticOptions.LOGQUEUE, StaticOptions.LOGQUEUE.value());
+    sopts.set(StaticOptions.LOGOVERFLOW, StaticOptions.LOGOVERFLOW.value());
+  }
+
+  /**
+   * Writes entries in parallel.
+   * @throws Exception exception
+   */
+  @Test
+  public void parallel() throws Exception {
+    context.soptions.set(StaticOptions.LOGQUEUE, 16);
+    final Log log = new Log(context.soptions);
+    final int threads = 8;
+    final ExecutorService es = Executors.newFixedThreadPool(threads);
+    try {
+      final ArrayList<Future<?>> futures = new ArrayList<>();
+      for(int t = 0; t < threads; t++) {
+        futures.add(es.submit(() -> {
+          for(int e = 0; e < ENTRIES / threads; e++) log.writeServer(LogType.INFO, NAME);
+        }));
+      }
+      for(final Future<?> future : futures) future.get();
+    } finally {
+      es.shutdown();
+    }
+    assertEquals(ENTRIES, entries(log));
+    assertEquals(0, log.dropped());
+  }
+
+  /**
+   * Closes the log while entries are written.
+   * @throws Exception exception
+   */
+  @Test
+  public void close() throws Exception {
+    context.soptions.set(StaticOptions.LOGQUEUE, 16);
+    final Log log = new Log(context.soptions);
+    final int threads = 4;
+    final ExecutorService es = Executors.newFixedThreadPool(threads);
+    try {
+      final ArrayList<Future<?>> futures = new ArrayList<>();
+      for(int t = 0; t < threads; t++) {
+        futures.add(es.submit(() -> {
+          for(int e = 0; e < ENTRIES / threads; e++) log.writeServer(LogType.INFO, NAME);
+        }));
+      }
+      for(final Future<?> future : futures) {
+        while(!future.isDone()) log.close();
+        future.get();
+      }
+    } finally {
+      es.shutdown();
+    }
+    assertEquals(ENTRIES, entries(log));
+  }
+
+  /**
+   * Drops entries if the queue is full.
+   * @throws Exception exception
+   */
+  @Test
+  public void drop() throws Exception {
+    context.soptions.set(StaticOptions.LOGQUEUE, 1);
+    context.soptions.set(StaticOptions.LOGOVERFLOW, LogOverflow.DROP);
+    final Log log = new Log(context.soptions);
+    for(int e = 0; e < ENTRIES; e++) log.writeServer(LogType.INFO, NAME);
+    assertEquals(ENTRIES, entries(log) + log.dropped());
+  }
+
+  /**
+   * Samples entries if the queue is full. Errors are never dropped.
+   * @throws Exception exception
+   */
+  @Test
+  public void sample() throws Exception {
+    context.soptions.set(StaticOptions.LOGQUEUE, 1);
+    context.soptions.set(StaticOptions.LOGOVERFLOW, LogOverflow.SAMPLE);
+    final Log log = new Log(context.soptions);
+    final int errors = ENTRIES / 10;
+    for(int e = 0; e < ENTRIES; e++) {
+      log.writeServer(e % 10 == 0 ? LogType.ERROR : LogType.INFO, NAME);
+    }
+    final long dropped = log.dropped();
+    final StringList lines = lines(log);
+    assertEquals(errors, count(lines, LogType.ERROR + "\t" + NAME));
+    assertEquals(ENTRIES - errors, count(lines, LogType.INFO + "\t" + NAME) + dropped);
+  }
+
+  /**
+   * Returns the number of written test entries, closes the log and deletes the log file.
+   * @param log log
+   * @return number of entries
+   * @throws Exception exception
+   */
+  private static long entries(final Log log) throws Exception {
+    return count(lines(log), NAME);
+  }
+
+  /**
+   * Returns the number of lines with the specified suffix.
+   * @param lines lines
+   * @param suffix suffix
+   * @return number of lines
+   */
+  private static long count(final StringList lines, final String suffix) {
+    long count = 0;
+    for(final String line : lines) {
+      if(line.endsWith('\t' + suffix)) count++;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the lines of the log file, closes the log and deletes the log file.
+   * @param log log
+   * @return lines
+   * @throws Exception exception
+   */
+  private static StringList lines(final Log log) throws Exception {
+    final LogFile file = log.file(DateTime.format(new Date(), DateTime.DATE));
+    assertNotNull(file);
+    final StringList lines = file.read();
+    log.close();
+    assertTrue(file.delete());
+    return lines;
+  }
+}
@@ -616,6 +616,22 @@ public abstract class SessionTest extends SandboxTest {
     }
   }
 
+  /** Runs commands while the results of a query are iterated.
+   * @throws IOException I/O exception */
+  @Test
+  public void queryInterleaved() throws IOException {
+    try(Query query = session.query("1 to 3")) {
+      assertEqual("1", query.next());
+      assertEqual("4", session.execute("xquery 2 * 2"));
+      try(Query query2 = session.query("'a'")) {
+        assertEqual("a", query2.next());
+      }
+      assertEqual("2", query.next());
+      assertEqual("3", query.next());
+      assertNull(query.next());
+    }
+  }
+
   /** Runs 5 queries in parallel.
    * @throws IOException I/O exception */
   @Test
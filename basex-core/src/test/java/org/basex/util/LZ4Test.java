@@ -0,0 +1,61 @@
+package org.basex.util;
+
+import static org.basex.util.Token.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * Class for testing the {@link LZ4} methods.
+ *
+ * @author BaseX Team 2005-18, BSD License
+ * @author Christian Gruen
+ */
+public final class LZ4Test {
+  /** Test. */
+  @Test
+  public void text() {
+    final TokenBuilder tb = new TokenBuilder();
+    for(int i = 0; i < 1000; i++) tb.add("<node id='" + i + "'>text " + i % 7 + "</node>");
+    assertTrue(run(tb.finish()) < tb.size() / 2);
+  }
+
+  /** Test. */
+  @Test
+  public void zeros() {
+    assertTrue(run(new byte[4096]) < 64);
+  }
+
+  /** Test. */
+  @Test
+  public void random() {
+    final byte[] bytes = new byte[4096];
+    new Random(0).nextBytes(bytes);
+    assertEquals(-1, LZ4.compress(bytes, bytes.length, new byte[bytes.length - 1]));
+  }
+
+  /** Test. */
+  @Test
+  public void small() {
+    run(token("abc"));
+    run(token("abcabcabcabcabcabcabcabc"));
+    run(new byte[0]);
+  }
+
+  /**
+   * Compresses and decompresses a token.
+   * @param token token
+   * @return size of the compressed token
+   */
+  private static int run(final byte[] token) {
+    final byte[] packed = new byte[token.length + 16 + token.length / 255];
+    final int l = LZ4.compress(token, token.length, packed);
+    assertTrue(l != -1);
+    final byte[] unpacked = new byte[token.length];
+    assertEquals(token.length, LZ4.decompress(packed, l, unpacked));
+    assertArrayEquals(token, unpacked);
+    return l;
+  }
+}
@@ -1,9 +1,12 @@
 package org.basex.local.single;
 
+import static org.junit.Assert.*;
+
 import java.io.*;
 import java.util.*;
 
 import org.basex.*;
+import org.basex.core.*;
 import org.basex.core.cmd.*;
 import org.basex.io.*;
 import org.basex.io.out.*;
@@ -12,7 +15,7 @@ import org.junit.*;
 import org.junit.Test;
 
 /**
- * This class benchmarks simple table scans.
+ * This class benchmarks simple table scans, and compares item-wise and batch-wise scans.
  *
  * @author BaseX Team 2005-18, BSD License
  * @author Christian Gruen
@@ -97,23 +100,51 @@ public final class ScanTest extends SandboxTest {
   }
 
   /**
-   * Performs the specified query; some performance measurements are output and
-   * the result is ignored.
+   * Counts the number of elements with a given name and a predicate.
+   */
+  @Test
+  public void childrenWithName() {
+    run("count( /XML/SUB[text()] )");
+  }
+
+  /**
+   * Counts the number of descendant text nodes with a given value.
+   */
+  @Test
+  public void descendantTexts() {
+    run("count( descendant::text()[. = 'abc'] )");
+  }
+
+  /**
+   * Performs the specified query with item-wise and batch-wise scans of the database axes;
+   * the results are compared, and some performance measurements are output.
    * @param query query to be evaluated
    */
-  private void run(final String query) {
+  private static void run(final String query) {
     Util.outln("Query: " + query);
+    try {
+      set(MainOptions.SCANBATCH, false);
+      final String result = query(query);
+      Util.outln("Item-wise: " + measure(query));
+      set(MainOptions.SCANBATCH, true);
+      assertEquals(result, query(query));
+      Util.outln("Batches:   " + measure(query));
+    } finally {
+      set(MainOptions.SCANBATCH, true);
+    }
+    Util.outln();
+  }
+
+  /**
+   * Performs the specified query and returns the average runtime.
+   * @param query query to be evaluated
+   * @return average runtime
+   */
+  private static String measure(final String query) {
     // warm up
     query(query);
     final Performance p = new Performance();
-    // run query and dump required time
-    final Performance pl = new Performance();
-    for(int l = 0; l < LOOPS; l++) {
-      query(query);
-      Util.outln(pl);
-    }
-    // print average runtime
-    Util.outln(p.getTime(LOOPS));
-    Util.outln();
+    for(int l = 0; l < LOOPS; l++) query(query);
+    return p.getTime(LOOPS);
   }
 }